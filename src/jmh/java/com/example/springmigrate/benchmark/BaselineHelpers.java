@@ -0,0 +1,95 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Previous implementations of the per file helpers, measured side by side with the current
+ * ones, so a change to a helper can be checked against where it started
+ */
+final class BaselineHelpers {
+
+    private BaselineHelpers() {
+    }
+
+    /**
+     * Exception driven uuid validation
+     */
+    static boolean isValidUUID(String name) {
+        try {
+            UUID.fromString(name);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Name and path base compared on concatenated, lowercased and replaced copies
+     */
+    static boolean isLogicalRepresentationOfDirectory(
+            @NotNull FileNodeDto dto,
+            @NotNull FilePhysical filePhysical,
+            @NotNull Map<String, String> mimeTypes) {
+
+        String physicalName = setFileNameWithExtension(filePhysical, mimeTypes);
+        String fullNodeName = dto.getName().concat(mimeTypes.get(dto.getMimeType())).toLowerCase();
+        boolean isEqualName = (physicalName.equals(dto.getName()) || physicalName.equals(fullNodeName));
+
+        boolean isEqualPathBase = filePhysical.getParentPath()
+                .replace(File.separator, "")
+                .equals(dto.getPathBase().replace(File.separator, ""));
+
+        return isEqualName && isEqualPathBase;
+    }
+
+    /**
+     * Mime type probed for every file, even if its extension is already known
+     */
+    static String setFileNameWithExtension(@NotNull FilePhysical filePhysical, @NotNull Map<String, String> mimeTypes) {
+
+        String physicalName = filePhysical.getName();
+        String mimeType = filePhysical.getMimeType();
+
+        if (!isFullNameWithExtension(filePhysical)) {
+            try {
+                physicalName = filePhysical.getName().toLowerCase().concat(".").concat(mimeTypes.get(mimeType));
+            } catch (NullPointerException | ClassCastException ex) {
+                // mime type not present
+            }
+        }
+        return physicalName;
+    }
+
+    /**
+     * Extension taken from the absolute path string
+     */
+    static boolean isFullNameWithExtension(@NotNull FilePhysical filePhysical) {
+        return !FilenameUtils.getExtension(getAbsolutePath(filePhysical).toString()).isBlank();
+    }
+
+    /**
+     * Absolute path parsed again from the parent path string
+     */
+    @NotNull
+    static Path getAbsolutePath(@NotNull FilePhysical filePhysical) {
+        return Paths.get(filePhysical.getParentDirectory().getFullPath(), filePhysical.getFileName());
+    }
+
+    /**
+     * Base path through a parent directory built for it
+     */
+    @NotNull
+    static String getBasePath(@NotNull DirectoryPhysical directory) {
+        return directory.getParent().getFullPath();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.config.utils.DestinationNameRegistry;
+import com.example.springmigrate.config.utils.MigrationUtils;
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per file helpers of {@link MigrationUtils}, run once or more for every file migrated, next to
+ * their {@link BaselineHelpers baseline}. Allocations per operation are reported by the GC
+ * profiler:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="MigrationUtilsBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MigrationUtilsBenchmark {
+
+    private final Map<String, String> mimeTypes = new HashMap<>();
+    private String uuid;
+    private String name;
+    private FileNodeDto node;
+    private FilePhysical physical;
+    private FilePhysical physicalWithExtension;
+    private DestinationNameRegistry registry;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        mimeTypes.put("application/pdf", ".pdf");
+        mimeTypes.put("image/png", ".png");
+        mimeTypes.put("text/plain", ".txt");
+
+        directory = Files.createTempDirectory("migration-utils-benchmark");
+        uuid = UUID.randomUUID().toString();
+        name = "document-0000042.pdf";
+
+        node = new FileNodeDto();
+        node.setId(uuid);
+        node.setName("Document-0000042");
+        node.setMimeType("application/pdf");
+        node.setPathBase(directory.toString());
+
+        physical = FilePhysical.builder()
+                .name(uuid)
+                .parentDirectory(new DirectoryPhysical(directory))
+                .build();
+        physicalWithExtension = FilePhysical.builder()
+                .name(name)
+                .parentDirectory(new DirectoryPhysical(directory))
+                .build();
+
+        registry = new DestinationNameRegistry();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Benchmark
+    public boolean validUuid() {
+        return MigrationUtils.isValidUUID(uuid);
+    }
+
+    @Benchmark
+    public boolean baselineValidUuid() {
+        return BaselineHelpers.isValidUUID(uuid);
+    }
+
+    @Benchmark
+    public boolean invalidUuid() {
+        return MigrationUtils.isValidUUID(name);
+    }
+
+    @Benchmark
+    public boolean baselineInvalidUuid() {
+        return BaselineHelpers.isValidUUID(name);
+    }
+
+    @Benchmark
+    public boolean logicalRepresentation() {
+        return MigrationUtils.isLogicalRepresentationOfDirectory(node, physicalWithExtension, mimeTypes);
+    }
+
+    @Benchmark
+    public boolean baselineLogicalRepresentation() {
+        return BaselineHelpers.isLogicalRepresentationOfDirectory(node, physicalWithExtension, mimeTypes);
+    }
+
+    @Benchmark
+    public String fileNameWithExtension() {
+        return MigrationUtils.setFileNameWithExtension(physicalWithExtension, mimeTypes);
+    }
+
+    @Benchmark
+    public String baselineFileNameWithExtension() {
+        return BaselineHelpers.setFileNameWithExtension(physicalWithExtension, mimeTypes);
+    }
+
+    @Benchmark
+    public String fileNameWithoutExtension() {
+        return MigrationUtils.setFileNameWithExtension(physical, mimeTypes);
+    }
+
+    @Benchmark
+    public FilePhysical pathNameIfDuplicatedFile() {
+        // released again, every operation reserves the same free name
+        FilePhysical reserved = MigrationUtils.getPathNameIfDuplicatedFile(physicalWithExtension, registry);
+        registry.release(reserved);
+        return reserved;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Path helpers of {@link FilePhysical} and {@link DirectoryPhysical}, called for every file
+ * moved, next to their {@link BaselineHelpers baseline}:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="PhysicalModelBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhysicalModelBenchmark {
+
+    private FilePhysical file;
+    private FilePhysical uuidFile;
+    private DirectoryPhysical directory;
+
+    @Setup
+    public void setUp() {
+        directory = new DirectoryPhysical(Paths.get("/opt", "tools", "tomcat", "latest", "Documents", "1", "VT"));
+        file = new FilePhysical("document-0000042", ".pdf", directory.getPath().resolve("document-0000042.pdf"));
+        uuidFile = FilePhysical.builder()
+                .name(UUID.randomUUID().toString())
+                .parentDirectory(directory)
+                .build();
+    }
+
+    @Benchmark
+    public Path absolutePath() {
+        return file.getAbsolutePath();
+    }
+
+    @Benchmark
+    public Path baselineAbsolutePath() {
+        return BaselineHelpers.getAbsolutePath(file);
+    }
+
+    @Benchmark
+    public String fileName() {
+        return file.getFileName();
+    }
+
+    @Benchmark
+    public boolean fullNameWithExtension() {
+        return file.isFullNameWithExtension();
+    }
+
+    @Benchmark
+    public boolean baselineFullNameWithExtension() {
+        return BaselineHelpers.isFullNameWithExtension(file);
+    }
+
+    @Benchmark
+    public boolean uuidNameWithExtension() {
+        return uuidFile.isFullNameWithExtension();
+    }
+
+    @Benchmark
+    public boolean baselineUuidNameWithExtension() {
+        return BaselineHelpers.isFullNameWithExtension(uuidFile);
+    }
+
+    @Benchmark
+    public DirectoryPhysical parent() {
+        return directory.getParent();
+    }
+
+    @Benchmark
+    public String basePath() {
+        return directory.getBasePath();
+    }
+
+    @Benchmark
+    public String baselineBasePath() {
+        return BaselineHelpers.getBasePath(directory);
+    }
+}
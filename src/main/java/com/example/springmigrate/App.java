@@ -1,6 +1,8 @@
 package com.example.springmigrate;
 
 import com.example.springmigrate.config.utils.Command;
+import com.example.springmigrate.config.utils.MigrationMetrics;
+import com.example.springmigrate.config.utils.MigrationOptions;
 import com.example.springmigrate.service.implementation.MigratePhysicalDataService;
 import com.example.springmigrate.service.implementation.MigrateUnixService;
 import lombok.extern.log4j.Log4j2;
@@ -17,10 +19,10 @@ public class App implements CommandLineRunner {
     MigratePhysicalDataService normalMigrate;
     MigrateUnixService customMigrate;
 
-    public App(MigratePhysicalDataService normalMigrate, MigrateUnixService customMigrate) {
+    public App(MigratePhysicalDataService normalMigrate, MigrateUnixService customMigrate, MigrationOptions options, MigrationMetrics metrics) {
         this.normalMigrate = normalMigrate;
         this.customMigrate = customMigrate;
-        this.command = new Command(normalMigrate, customMigrate);
+        this.command = new Command(normalMigrate, customMigrate, options, metrics);
     }
 
     public static void main(String[] args) {
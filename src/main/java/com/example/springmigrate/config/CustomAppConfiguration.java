@@ -1,6 +1,8 @@
 package com.example.springmigrate.config;
 
 import com.example.springmigrate.config.utils.ApiUrl;
+import com.example.springmigrate.config.utils.HttpClientOptions;
+import com.example.springmigrate.config.utils.MigrationMetrics;
 import com.example.springmigrate.config.utils.RetrofitClient;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.context.annotation.Bean;
@@ -24,7 +26,7 @@ public class CustomAppConfiguration {
 
 
     @Bean
-    public RetrofitClient retrofitClient(ApiUrl apiUrl) {
-        return new RetrofitClient(apiUrl);
+    public RetrofitClient retrofitClient(ApiUrl apiUrl, MigrationMetrics metrics, HttpClientOptions options) {
+        return new RetrofitClient(apiUrl, metrics, options);
     }
 }
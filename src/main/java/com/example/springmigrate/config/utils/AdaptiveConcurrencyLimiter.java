@@ -0,0 +1,199 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit of API requests in flight, tuned by additive increase and multiplicative decrease
+ * (AIMD) from the latency of the requests, shared by all clients so the whole migration
+ * converges to the concurrency the server sustains:
+ * <ul>
+ *     <li>the limit grows by one per round trip while the smoothed latency stays below
+ *     {@code tolerance} times the latency without load and the limit is used</li>
+ *     <li>the limit is multiplied by {@code backoffRatio} on a latency spike, a {@code 429},
+ *     a {@code 503} or a timeout, at most once per round trip</li>
+ * </ul>
+ * The latency without load is the minimum latency of a window of samples, a new window
+ * replaces it, so the limiter follows the server when its baseline changes.
+ */
+@Log4j2
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Outcome of a request
+     */
+    public enum Outcome {
+        /**
+         * Answered, its latency is a sample
+         */
+        SUCCESS,
+        /**
+         * Rejected or timed out by an overloaded server
+         */
+        DROPPED,
+        /**
+         * Neither, like a cancelled request or a connect error
+         */
+        IGNORED
+    }
+
+    private static final int WINDOW_SAMPLES = 500;
+    private static final double SMOOTHING = 0.1;
+    // latency differences below are noise, not load
+    private static final long MIN_SPIKE_NANOS = 1_000_000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private double smoothedNanos;
+    private long decreasedAt;
+
+    /**
+     * Constructor
+     *
+     * @param initialLimit initial limit
+     * @param minLimit     minimum limit
+     * @param maxLimit     maximum limit
+     * @param tolerance    ratio of the smoothed latency to the latency without load considered a spike
+     * @param backoffRatio ratio the limit is multiplied by when decreased
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1, tolerance);
+        this.backoffRatio = Math.min(1, Math.max(0.1, backoffRatio));
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * Waits until a request can be sent within the limit
+     *
+     * @return start time of the request, to be given back on release
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public long acquire() throws InterruptedIOException {
+
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                released.await();
+            }
+            inFlight++;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for API concurrency limit");
+        } finally {
+            lock.unlock();
+        }
+
+        return System.nanoTime();
+    }
+
+    /**
+     * Releases a request and adjusts the limit from its outcome
+     *
+     * @param startNanos start time returned by {@link #acquire()}
+     * @param outcome    outcome of the request
+     */
+    public void release(long startNanos, @NotNull Outcome outcome) {
+
+        long now = System.nanoTime();
+        long rtt = now - startNanos;
+
+        lock.lock();
+        try {
+            int used = inFlight;
+            inFlight--;
+
+            switch (outcome) {
+                case SUCCESS:
+                    sample(rtt);
+                    if (isSpike()) {
+                        decrease(now, "latency " + smoothedNanos / 1_000_000 + "ms");
+                    } else if (used * 2 >= limit) {
+                        // about one more per round trip of the whole limit
+                        limit = Math.min(maxLimit, limit + 1 / limit);
+                    }
+                    break;
+                case DROPPED:
+                    decrease(now, "dropped request");
+                    break;
+                default:
+                    break;
+            }
+
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of requests in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void sample(long rtt) {
+
+        smoothedNanos = smoothedNanos == 0 ? rtt : smoothedNanos + SMOOTHING * (rtt - smoothedNanos);
+
+        windowMinNanos = Math.min(windowMinNanos, rtt);
+        baselineNanos = Math.min(baselineNanos, rtt);
+
+        if (++windowSamples >= WINDOW_SAMPLES) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    private boolean isSpike() {
+        return smoothedNanos > baselineNanos * tolerance && smoothedNanos - baselineNanos > MIN_SPIKE_NANOS;
+    }
+
+    private void decrease(long now, @NotNull String cause) {
+
+        // requests sent before the last decrease saw the previous limit
+        if (decreasedAt != 0 && now - decreasedAt < Math.max(smoothedNanos, MIN_SPIKE_NANOS)) {
+            return;
+        }
+
+        double previous = limit;
+        limit = Math.max(minLimit, limit * backoffRatio);
+        decreasedAt = now;
+
+        log.debug("API concurrency limit {} -> {} due {}", (int) previous, (int) limit, cause);
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.springmigrate.config.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cache of the nodes read from the API, by a key like their identifier or filter:
+ * <ul>
+ *     <li>values are kept as their JSON, weighted by its size, within the maximum entries and
+ *     bytes of the {@link CacheOptions}, the least recently used first evicted</li>
+ *     <li>a lookup finding nothing is remembered as missing for the negative TTL, so unknown
+ *     identifiers aren't asked again and again</li>
+ *     <li>writes replace or invalidate the values they change, a lookup in flight while a
+ *     value is written isn't cached, as it may have read the value before the write</li>
+ * </ul>
+ * Every lookup gets its own copy of a cached value, as DTOs are mutable.
+ */
+public class ApiCache {
+
+    // JSON is kept as UTF-16 chars, plus the entry and key
+    private static final long ENTRY_BYTES = 64;
+    private static final int STRIPES = 1024;
+
+    private final String name;
+    private final CacheOptions options;
+    private final LruCache<String, String> values;
+    // expiration of the keys known missing
+    private final LruCache<String, Long> missing;
+    // writes are numbered, by the keys hashed to a stripe, so loads overlapping them aren't cached
+    private final long[] writes = new long[STRIPES];
+    private long generation;
+    private long cleared;
+    private long missingCleared;
+    private long negativeHits;
+
+    /**
+     * Constructor
+     *
+     * @param name    cache name, its label in the metrics
+     * @param options cache options
+     * @param metrics metrics
+     */
+    public ApiCache(@NotNull String name, @NotNull CacheOptions options, @NotNull MigrationMetrics metrics) {
+        this.name = name;
+        this.options = options;
+        this.values = new LruCache<>(
+                options.getMaxEntries(),
+                options.getMaxWeightBytes(),
+                (key, json) -> ENTRY_BYTES + 2L * (key.length() + json.length()));
+        this.missing = new LruCache<>(options.getMaxEntries());
+
+        metrics.counter(MigrationMetrics.CACHE_REQUESTS, this::getHits, "cache", name, "result", "hit");
+        metrics.counter(MigrationMetrics.CACHE_REQUESTS, this::getMisses, "cache", name, "result", "miss");
+        metrics.counter(MigrationMetrics.CACHE_REQUESTS, this::getNegativeHits, "cache", name, "result", "negative_hit");
+        metrics.counter(MigrationMetrics.CACHE_EVICTIONS, values::getEvictions, "cache", name);
+        metrics.gauge(MigrationMetrics.CACHE_BYTES, values::getWeight, "cache", name);
+        metrics.gauge(MigrationMetrics.CACHE_HIT_RATIO, this::getHitRatio, "cache", name);
+    }
+
+    /**
+     * Returns a copy of the cached value, or loads and caches it if missing
+     *
+     * @param key    key, a {@code null} key is loaded and not cached
+     * @param type   type of the value
+     * @param loader loader of the missing value, {@code null} if not found
+     * @param <V>    value type
+     * @return value, {@code null} if not found or known missing
+     * @throws IOException if the value can't be loaded
+     */
+    public <V> V get(String key, @NotNull Type type, @NotNull LruCache.Loader<String, V, IOException> loader)
+            throws IOException {
+
+        if (!options.isEnabled() || key == null) {
+            return loader.load(key);
+        }
+
+        String json = values.get(key);
+
+        if (json != null) {
+            return DtoCopies.fromJson(json, type);
+        }
+
+        if (isMissing(key)) {
+            return null;
+        }
+
+        long loading = generation();
+        V value = loader.load(key);
+        store(key, value, loading);
+
+        return value;
+    }
+
+    /**
+     * Returns a copy of the cached value, or loads and caches it if missing, without blocking
+     *
+     * @param key    key, a {@code null} key is loaded and not cached
+     * @param type   type of the value
+     * @param loader loader of the missing value, completed with {@code null} if not found
+     * @param <V>    value type
+     * @return future with the value, {@code null} if not found or known missing
+     */
+    @NotNull
+    public <V> CompletableFuture<V> getAsync(
+            String key,
+            @NotNull Type type,
+            @NotNull Function<String, CompletableFuture<V>> loader) {
+
+        if (!options.isEnabled() || key == null) {
+            return loader.apply(key);
+        }
+
+        String json = values.get(key);
+
+        if (json != null) {
+            return CompletableFuture.completedFuture(DtoCopies.fromJson(json, type));
+        }
+
+        if (isMissing(key)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long loading = generation();
+
+        return loader.apply(key).thenApply(value -> {
+            store(key, value, loading);
+            return value;
+        });
+    }
+
+    /**
+     * Caches the value written, replacing the cached one
+     *
+     * @param key   key
+     * @param value value written, {@code null} invalidates the key
+     */
+    public synchronized void put(String key, Object value) {
+
+        if (!options.isEnabled() || key == null) {
+            return;
+        }
+
+        written(key);
+        missing.invalidate(key);
+
+        if (value == null) {
+            values.invalidate(key);
+        } else {
+            values.put(key, DtoCopies.toJson(value));
+        }
+    }
+
+    /**
+     * Removes the cached value, or the key known missing
+     *
+     * @param key key
+     */
+    public synchronized void invalidate(String key) {
+
+        if (key == null) {
+            return;
+        }
+
+        written(key);
+        values.invalidate(key);
+        missing.invalidate(key);
+    }
+
+    /**
+     * Removes all cached values and keys known missing
+     */
+    public synchronized void invalidateAll() {
+        cleared = ++generation;
+        values.clear();
+        missing.clear();
+    }
+
+    /**
+     * Forgets the keys known missing, as they may have been created
+     */
+    public synchronized void invalidateMissing() {
+        missingCleared = ++generation;
+        missing.clear();
+    }
+
+    /**
+     * Returns the key of a lookup by its arguments, like a filter, as sent to the API
+     *
+     * @param arguments arguments of the lookup
+     * @return key
+     */
+    @NotNull
+    public static String key(Object arguments) {
+        return DtoCopies.toJson(arguments);
+    }
+
+    /**
+     * Returns the cache name
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of cached values
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached value
+     */
+    public long getHits() {
+        return values.getHits();
+    }
+
+    /**
+     * Returns the number of lookups that found nothing cached, and were loaded
+     */
+    public synchronized long getMisses() {
+        return values.getMisses() - negativeHits;
+    }
+
+    /**
+     * Returns the number of lookups of a key known missing
+     */
+    public synchronized long getNegativeHits() {
+        return negativeHits;
+    }
+
+    /**
+     * Returns the number of values evicted to stay within the bounds
+     */
+    public long getEvictions() {
+        return values.getEvictions();
+    }
+
+    /**
+     * Returns the share of lookups answered without loading, 0 before any lookup
+     */
+    public synchronized double getHitRatio() {
+        long hits = values.getHits();
+        long lookups = hits + values.getMisses();
+        return lookups == 0 ? 0 : (double) (hits + negativeHits) / lookups;
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    private void written(@NotNull String key) {
+        writes[Math.floorMod(key.hashCode(), STRIPES)] = ++generation;
+    }
+
+    private synchronized boolean isMissing(@NotNull String key) {
+
+        Long expiration = missing.get(key);
+
+        if (expiration == null) {
+            return false;
+        }
+
+        if (expiration - System.nanoTime() <= 0) {
+            missing.invalidate(key);
+            return false;
+        }
+
+        negativeHits++;
+        return true;
+    }
+
+    /**
+     * Caches a loaded value, unless its key was written while it was loaded
+     */
+    private synchronized void store(@NotNull String key, Object value, long loading) {
+
+        if (cleared > loading || writes[Math.floorMod(key.hashCode(), STRIPES)] > loading) {
+            return;
+        }
+
+        if (value != null) {
+            values.put(key, DtoCopies.toJson(value));
+        } else if (options.getNegativeTtlSeconds() > 0 && missingCleared <= loading) {
+            missing.put(key, System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getNegativeTtlSeconds()));
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Executes API calls asynchronously with a bounded number of calls in flight.
+ * <p>
+ * The window size is read from {@link MigrationOptions#getApiConcurrency()} on every call,
+ * callers block while the window is full, so a fast producer can't queue unlimited requests.
+ * <p>
+ * A call chained to a response must be enqueued from {@link #chainedCalls()}, not from the
+ * OkHttp callback thread: OkHttp counts a call as running until its callback returns, so a
+ * callback waiting for the window holds a dispatcher slot, and enough of them stall every call.
+ */
+@Log4j2
+@Component
+public class ApiCallExecutor {
+
+    private static final ExecutorService CHAINED_CALLS = chainedCallsExecutor();
+
+    private final MigrationOptions options;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private int inFlight;
+    private int tracked;
+
+    public ApiCallExecutor(MigrationOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Enqueues a call, blocking while the in flight window is full
+     *
+     * @param call retrofit call
+     * @param <T>  response body type
+     * @return future completed with the response, or exceptionally with the I/O error
+     */
+    @NotNull
+    public <T> CompletableFuture<Response<T>> enqueue(@NotNull Call<T> call) {
+
+        CompletableFuture<Response<T>> future = new CompletableFuture<>();
+
+        try {
+            acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new InterruptedIOException("Interrupted waiting for API window"));
+            return future;
+        }
+
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(@NotNull Call<T> call, @NotNull Response<T> response) {
+                release();
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(@NotNull Call<T> call, @NotNull Throwable t) {
+                release();
+                future.completeExceptionally(t);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Enqueues a call and maps non successful responses to {@code null}, like the blocking clients
+     *
+     * @param call retrofit call
+     * @param <T>  response body type
+     * @return future completed with the response body if successful, otherwise {@code null}
+     */
+    @NotNull
+    public <T> CompletableFuture<T> enqueueForBody(@NotNull Call<T> call) {
+        return enqueue(call).thenApply(response -> response.isSuccessful() ? response.body() : null);
+    }
+
+    /**
+     * Returns the executor enqueueing the calls chained to a response, like with
+     * {@link CompletableFuture#thenComposeAsync(Function, Executor)}, its threads may block
+     * while the window is full instead of the HTTP callback thread
+     */
+    @NotNull
+    public static Executor chainedCalls() {
+        return CHAINED_CALLS;
+    }
+
+    /**
+     * Tracks a chain of calls until completed, so {@link #awaitIdle()} also waits for the
+     * calls not enqueued yet by the chain
+     *
+     * @param future future of the whole chain
+     * @param <T>    result type
+     * @return the same future
+     */
+    @NotNull
+    public <T> CompletableFuture<T> track(@NotNull CompletableFuture<T> future) {
+
+        lock.lock();
+        try {
+            tracked++;
+        } finally {
+            lock.unlock();
+        }
+
+        future.whenComplete((result, ex) -> {
+            lock.lock();
+            try {
+                tracked--;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Consumes items in order while the lookups of the next items are already in flight
+     *
+     * @param items    items to process
+     * @param lookup   asynchronous lookup for an item
+     * @param consumer consumer of an item and its lookup, called in items order
+     * @param <T>      item type
+     * @param <R>      lookup result type
+     */
+    public <T, R> void forEachOrdered(
+            @NotNull List<T> items,
+            @NotNull Function<T, CompletableFuture<R>> lookup,
+            @NotNull BiConsumer<T, CompletableFuture<R>> consumer) {
+
+        int lookahead = 2 * getWindow();
+        Deque<CompletableFuture<R>> pending = new ArrayDeque<>();
+        int next = 0;
+
+        for (int i = 0; i < items.size(); i++) {
+
+            while (next < items.size() && next - i < lookahead) {
+                pending.add(lookup.apply(items.get(next++)));
+            }
+
+            consumer.accept(items.get(i), pending.poll());
+        }
+    }
+
+    /**
+     * Waits until no call or tracked chain is in flight
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void awaitIdle() throws InterruptedIOException {
+        lock.lock();
+        try {
+            while (inFlight > 0 || tracked > 0) {
+                changed.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for API calls");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of calls in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a future and unwraps its failure
+     *
+     * @param future future
+     * @param <T>    result type
+     * @return future result
+     * @throws IOException if the call failed with I/O error
+     */
+    public static <T> T await(@NotNull CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+    @NotNull
+    private static ExecutorService chainedCallsExecutor() {
+
+        AtomicInteger count = new AtomicInteger();
+
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "api-chain-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private int getWindow() {
+        return Math.max(1, options.getApiConcurrency());
+    }
+
+    private void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= getWindow()) {
+                changed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.network.Hedged;
+import com.example.springmigrate.network.Idempotent;
+import lombok.extern.log4j.Log4j2;
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latency budgets and hedged requests, per endpoint, from the latency observed by this client
+ * instead of fixed timeouts:
+ * <ul>
+ *     <li>a read, a GET request or an {@link Idempotent} search, fails with a timeout once it
+ *     waits longer than its budget, {@code budgetMultiplier} times the p99 latency of its
+ *     endpoint, so it can be retried instead of stalling the migration. Writes keep the client
+ *     timeouts, purges and truncates are sent once and may take minutes</li>
+ *     <li>a {@link Hedged} request slower than the p95 latency of its endpoint is sent a second
+ *     time and the first response wins, the other request is cancelled. Hedges are limited to
+ *     {@code hedgeMaxRatio} of the requests, so an overloaded server isn't sent twice the load</li>
+ * </ul>
+ * Latencies are measured until the response headers. Until {@code latencySamples} requests
+ * of an endpoint are answered, its budget is the maximum one and its requests aren't hedged.
+ * <p>
+ * Hedged requests are sent by the client without this interceptor, whose interceptors must
+ * include {@link #DEADLINES} to apply the budgets.
+ */
+@Log4j2
+public class ApiLatencyInterceptor implements Interceptor {
+
+    /**
+     * Applies the budget of a request, tagged by this interceptor, to its connect, write and
+     * read timeouts
+     */
+    public static final Interceptor DEADLINES = chain -> {
+        Budget budget = chain.request().tag(Budget.class);
+
+        if (budget == null) {
+            return chain.proceed(chain.request());
+        }
+
+        return chain
+                .withConnectTimeout(budget.millis, TimeUnit.MILLISECONDS)
+                .withWriteTimeout(budget.millis, TimeUnit.MILLISECONDS)
+                .withReadTimeout(budget.millis, TimeUnit.MILLISECONDS)
+                .proceed(chain.request());
+    };
+
+    private static final int WINDOW = 1024;
+    private static final int REFRESH = 64;
+
+    private final HttpClientOptions options;
+    private final MigrationMetrics metrics;
+    private final OkHttpClient hedgeClient;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final ExecutorService attempts;
+
+    /**
+     * Constructor
+     *
+     * @param options     budget and hedging options
+     * @param metrics     metrics
+     * @param hedgeClient client sending the attempts of hedged requests
+     */
+    public ApiLatencyInterceptor(@NotNull HttpClientOptions options, @NotNull MigrationMetrics metrics, @NotNull OkHttpClient hedgeClient) {
+        this.options = options;
+        this.metrics = metrics;
+        this.hedgeClient = hedgeClient;
+
+        AtomicInteger count = new AtomicInteger();
+        this.attempts = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "api-hedge-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+
+        Request request = chain.request();
+
+        if (!options.isLatencyBudgets() || !isRead(request)) {
+            return chain.proceed(request);
+        }
+
+        String name = ApiMetricsInterceptor.endpoint(request);
+        Endpoint endpoint = endpoints.computeIfAbsent(name, this::endpoint);
+        Request budgeted = request.newBuilder().tag(Budget.class, new Budget(endpoint.budgetMillis())).build();
+
+        if (options.isHedging() && isHedged(request) && endpoint.isWarm()) {
+            return hedge(chain, budgeted, name, endpoint);
+        }
+
+        long start = System.nanoTime();
+        Response response = chain.proceed(budgeted);
+        endpoint.record(System.nanoTime() - start);
+
+        return response;
+    }
+
+    /**
+     * Returns whether a request only reads, so it has a budget: GET and HEAD requests, and
+     * {@link Idempotent} searches, package private for tests
+     */
+    static boolean isRead(@NotNull Request request) {
+
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+                return true;
+            case "POST":
+                return ApiRetryInterceptor.isIdempotent(request);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Sends a request, and a second time if not answered by the p95 latency of its endpoint,
+     * returning the first response
+     */
+    @NotNull
+    private Response hedge(@NotNull Chain chain, @NotNull Request request, @NotNull String name, @NotNull Endpoint endpoint) throws IOException {
+
+        CompletableFuture<Response> winner = new CompletableFuture<>();
+        AtomicReference<Call> winning = new AtomicReference<>();
+        List<Call> calls = new CopyOnWriteArrayList<>();
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+
+        send(request, winner, winning, calls, sent, failed);
+        endpoint.requests.incrementAndGet();
+
+        try {
+            try {
+                return finish(winner.get(endpoint.hedgeDelayNanos(), TimeUnit.NANOSECONDS), endpoint, start);
+            } catch (TimeoutException ex) {
+                // slower than most, hedge if the budget of hedges allows
+            }
+
+            if (!chain.call().isCanceled() && endpoint.tryHedge(options.getHedgeMaxRatio())) {
+                metrics.increment(MigrationMetrics.API_HEDGES, "endpoint", name, "outcome", "sent");
+                Call hedge = send(request, winner, winning, calls, sent, failed);
+
+                Response response = winner.get();
+                if (winning.get() == hedge) {
+                    metrics.increment(MigrationMetrics.API_HEDGES, "endpoint", name, "outcome", "won");
+                }
+                return finish(response, endpoint, start);
+            }
+
+            return finish(winner.get(), endpoint, start);
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + name);
+
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+
+        } finally {
+            for (Call call : calls) {
+                if (call != winning.get()) {
+                    call.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends an attempt of a hedged request, the first response completes the winner, the
+     * request fails when all attempts sent failed
+     */
+    @NotNull
+    private Call send(
+            @NotNull Request request,
+            @NotNull CompletableFuture<Response> winner,
+            @NotNull AtomicReference<Call> winning,
+            @NotNull List<Call> calls,
+            @NotNull AtomicInteger sent,
+            @NotNull AtomicInteger failed) {
+
+        Call call = hedgeClient.newCall(request);
+        calls.add(call);
+        sent.incrementAndGet();
+
+        attempts.execute(() -> {
+            try {
+                Response response = call.execute();
+                if (winning.compareAndSet(null, call)) {
+                    winner.complete(response);
+                } else {
+                    response.close();
+                }
+            } catch (IOException ex) {
+                if (failed.incrementAndGet() == sent.get()) {
+                    winner.completeExceptionally(ex);
+                }
+            } catch (RuntimeException ex) {
+                winner.completeExceptionally(ex);
+            }
+        });
+
+        return call;
+    }
+
+    @NotNull
+    private static Response finish(@NotNull Response response, @NotNull Endpoint endpoint, long start) {
+        endpoint.record(System.nanoTime() - start);
+        return response;
+    }
+
+    @NotNull
+    private Endpoint endpoint(@NotNull String name) {
+        Endpoint endpoint = new Endpoint();
+        metrics.gauge(MigrationMetrics.API_BUDGET, () -> endpoint.budgetMillis() / 1000.0, "endpoint", name);
+        return endpoint;
+    }
+
+    private static boolean isHedged(@NotNull Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        return invocation != null && invocation.method().isAnnotationPresent(Hedged.class);
+    }
+
+    /**
+     * Budget of a request
+     */
+    private static class Budget {
+
+        private final int millis;
+
+        private Budget(long millis) {
+            this.millis = (int) Math.min(Integer.MAX_VALUE, millis);
+        }
+    }
+
+    /**
+     * Latencies of the last answered requests of an endpoint, and its hedges
+     */
+    private class Endpoint {
+
+        private final long[] samples = new long[WINDOW];
+        private int next;
+        private int count;
+        private long p95Nanos;
+        private long p99Nanos;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger hedges = new AtomicInteger();
+
+        private synchronized void record(long nanos) {
+
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW;
+            count++;
+
+            // percentiles of the window, refreshed every few samples
+            if (count % REFRESH == 0 || count == options.getLatencySamples()) {
+                long[] sorted = Arrays.copyOf(samples, Math.min(count, WINDOW));
+                Arrays.sort(sorted);
+                p95Nanos = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+                p99Nanos = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+            }
+        }
+
+        private synchronized boolean isWarm() {
+            return count >= options.getLatencySamples() && p99Nanos > 0;
+        }
+
+        private synchronized long budgetMillis() {
+
+            if (!isWarm()) {
+                return options.getMaxBudgetMillis();
+            }
+
+            long budget = (long) (TimeUnit.NANOSECONDS.toMillis(p99Nanos) * options.getBudgetMultiplier());
+
+            return Math.max(options.getMinBudgetMillis(), Math.min(options.getMaxBudgetMillis(), budget));
+        }
+
+        private synchronized long hedgeDelayNanos() {
+            return Math.max(1, p95Nanos);
+        }
+
+        /**
+         * Counts a hedge if hedges stay within the ratio of requests
+         */
+        private boolean tryHedge(double maxRatio) {
+
+            while (true) {
+                int current = hedges.get();
+                if (current + 1 > requests.get() * maxRatio) {
+                    return false;
+                }
+                if (hedges.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
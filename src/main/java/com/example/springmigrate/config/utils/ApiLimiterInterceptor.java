@@ -0,0 +1,65 @@
+package com.example.springmigrate.config.utils;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Sends every API request within the {@link AdaptiveConcurrencyLimiter concurrency limit} and
+ * the {@link TokenBucket rate limit}, if any. A request is measured until its response headers
+ */
+public class ApiLimiterInterceptor implements Interceptor {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final TokenBucket rateLimit;
+
+    /**
+     * Constructor
+     *
+     * @param limiter   concurrency limiter, {@code null} if not limited
+     * @param rateLimit rate limit, {@code null} if not limited
+     */
+    public ApiLimiterInterceptor(AdaptiveConcurrencyLimiter limiter, TokenBucket rateLimit) {
+        this.limiter = limiter;
+        this.rateLimit = rateLimit;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+
+        if (rateLimit != null) {
+            rateLimit.acquire();
+        }
+
+        if (limiter == null) {
+            return chain.proceed(chain.request());
+        }
+
+        long start = limiter.acquire();
+        AdaptiveConcurrencyLimiter.Outcome outcome = AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+
+        try {
+            Response response = chain.proceed(chain.request());
+
+            outcome = response.code() == TOO_MANY_REQUESTS || response.code() == SERVICE_UNAVAILABLE
+                    ? AdaptiveConcurrencyLimiter.Outcome.DROPPED
+                    : AdaptiveConcurrencyLimiter.Outcome.SUCCESS;
+
+            return response;
+
+        } catch (SocketTimeoutException ex) {
+            outcome = AdaptiveConcurrencyLimiter.Outcome.DROPPED;
+            throw ex;
+
+        } finally {
+            limiter.release(start, outcome);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.springmigrate.config.utils;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * Records the latency of every API request in {@link MigrationMetrics#API_REQUESTS}, labeled by
+ * endpoint, the client interface method of the request, and by status code, or {@code io_error}
+ * if no response was received
+ */
+public class ApiMetricsInterceptor implements Interceptor {
+
+    private final MigrationMetrics metrics;
+
+    public ApiMetricsInterceptor(@NotNull MigrationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+
+        Request request = chain.request();
+        String endpoint = endpoint(request);
+        long start = System.nanoTime();
+
+        try {
+            Response response = chain.proceed(request);
+            metrics.record(MigrationMetrics.API_REQUESTS, System.nanoTime() - start,
+                    "endpoint", endpoint, "status", Integer.toString(response.code()));
+            return response;
+
+        } catch (IOException ex) {
+            metrics.record(MigrationMetrics.API_REQUESTS, System.nanoTime() - start,
+                    "endpoint", endpoint, "status", "io_error");
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the client method of a request, its method and path if not sent by a client
+     */
+    @NotNull
+    static String endpoint(@NotNull Request request) {
+
+        Invocation invocation = request.tag(Invocation.class);
+
+        if (invocation == null) {
+            return request.method() + " " + request.url().encodedPath();
+        }
+
+        Method method = invocation.method();
+
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.config.utils.error.ApiUnavailableException;
+import com.example.springmigrate.network.Idempotent;
+import lombok.extern.log4j.Log4j2;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends failed API requests again, and pauses the requests of an endpoint while its
+ * {@link CircuitBreaker circuit} is open.
+ * <p>
+ * Retried failures are:
+ * <ul>
+ *     <li>connect errors and {@code 429}, the request was never processed</li>
+ *     <li>any other I/O error and {@code 5xx}, only if the request is idempotent: its HTTP
+ *     method is, or its client method is {@link Idempotent}</li>
+ * </ul>
+ * Retries wait a random time up to an exponential backoff, capped, or the {@code Retry-After}
+ * of the response. A request still failing with a retried status after all retries fails with
+ * {@link ApiUnavailableException}, so the clients never take it as "not found".
+ */
+@Log4j2
+public class ApiRetryInterceptor implements Interceptor {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final HttpClientOptions options;
+    private final MigrationMetrics metrics;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public ApiRetryInterceptor(@NotNull HttpClientOptions options, @NotNull MigrationMetrics metrics) {
+        this.options = options;
+        this.metrics = metrics;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+
+        Request request = chain.request();
+        String endpoint = ApiMetricsInterceptor.endpoint(request);
+        CircuitBreaker breaker = breaker(endpoint);
+        boolean idempotent = isIdempotent(request);
+
+        for (int attempt = 0; ; attempt++) {
+            boolean probe = breaker.acquire();
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException ex) {
+                if (chain.call().isCanceled() || isInterrupted(ex)) {
+                    breaker.release(probe);
+                    throw ex;
+                }
+
+                breaker.onFailure(probe);
+
+                boolean retried = idempotent || isConnectFailure(ex);
+                if (!retried || attempt >= options.getMaxRetries()) {
+                    throw ex;
+                }
+
+                retry(endpoint, "io_error", attempt, backoff(attempt), ex.toString());
+                continue;
+            }
+
+            int code = response.code();
+            boolean failed = code == TOO_MANY_REQUESTS || code >= 500;
+
+            if (!failed) {
+                breaker.onSuccess(probe);
+                return response;
+            }
+
+            breaker.onFailure(probe);
+
+            boolean retried = code == TOO_MANY_REQUESTS || idempotent;
+            if (!retried) {
+                return response;
+            }
+
+            long delay = retryAfter(response, backoff(attempt));
+            response.close();
+
+            if (attempt >= options.getMaxRetries()) {
+                throw new ApiUnavailableException(
+                        endpoint + " failed with status " + code + " after " + attempt + " retries");
+            }
+
+            retry(endpoint, Integer.toString(code), attempt, delay, "status " + code);
+        }
+    }
+
+    /**
+     * Returns the circuit breakers by endpoint
+     */
+    @NotNull
+    public Map<String, CircuitBreaker> getBreakers() {
+        return breakers;
+    }
+
+    @NotNull
+    private CircuitBreaker breaker(@NotNull String endpoint) {
+        return breakers.computeIfAbsent(endpoint, name -> {
+            CircuitBreaker breaker = new CircuitBreaker(
+                    name,
+                    options.getCircuitFailureThreshold(),
+                    TimeUnit.SECONDS.toNanos(options.getCircuitOpenSeconds()),
+                    TimeUnit.SECONDS.toNanos(options.getCircuitMaxWaitSeconds()));
+
+            metrics.gauge(MigrationMetrics.API_CIRCUIT_STATE, () -> breaker.getState().ordinal(), "endpoint", name);
+            metrics.counter(MigrationMetrics.API_CIRCUIT_OPENED, breaker::getOpened, "endpoint", name);
+
+            return breaker;
+        });
+    }
+
+    private void retry(@NotNull String endpoint, @NotNull String reason, int attempt, long delayMillis, @NotNull String cause)
+            throws InterruptedIOException {
+
+        metrics.increment(MigrationMetrics.API_RETRIES, "endpoint", endpoint, "reason", reason);
+        log.debug("Retrying {} in {}ms, attempt {} failed: {}", endpoint, delayMillis, attempt + 1, cause);
+
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted retrying " + endpoint);
+        }
+    }
+
+    /**
+     * Full jitter backoff, a random time up to the capped exponential delay of the attempt
+     */
+    private long backoff(int attempt) {
+        long ceiling = options.getRetryBaseDelayMillis() << Math.min(attempt, 30);
+        long capped = Math.min(options.getRetryMaxDelayMillis(), ceiling < 0 ? Long.MAX_VALUE : ceiling);
+        return capped <= 0 ? 0 : ThreadLocalRandom.current().nextLong(capped + 1);
+    }
+
+    /**
+     * Delay asked by the {@code Retry-After} seconds of a response, capped by the maximum delay
+     */
+    private long retryAfter(@NotNull Response response, long defaultMillis) {
+
+        String header = response.header("Retry-After");
+
+        if (header != null) {
+            try {
+                long millis = TimeUnit.SECONDS.toMillis(Long.parseLong(header.trim()));
+                return Math.max(0, Math.min(options.getRetryMaxDelayMillis(), millis));
+            } catch (NumberFormatException ex) {
+                // http date, not sent by the API
+            }
+        }
+
+        return defaultMillis;
+    }
+
+    static boolean isIdempotent(@NotNull Request request) {
+
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+                return true;
+            default:
+                Invocation invocation = request.tag(Invocation.class);
+                return invocation != null && invocation.method().isAnnotationPresent(Idempotent.class);
+        }
+    }
+
+    private static boolean isConnectFailure(@NotNull IOException ex) {
+        return ex instanceof ConnectException
+                || ex instanceof NoRouteToHostException
+                || ex instanceof UnknownHostException;
+    }
+
+    private static boolean isInterrupted(@NotNull IOException ex) {
+        return Thread.currentThread().isInterrupted()
+                || (ex instanceof InterruptedIOException && !(ex instanceof SocketTimeoutException));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Options of the caches of directory and file nodes read from the API, bound from the
+ * {@code app.cache} properties
+ */
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheOptions {
+
+    /**
+     * Cache nodes read from the API
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum nodes kept by every cache
+     */
+    private int maxEntries = 50_000;
+
+    /**
+     * Maximum bytes kept by every cache, file data included
+     */
+    private long maxWeightBytes = 64L * 1024 * 1024;
+
+    /**
+     * Seconds a node not found is remembered as missing
+     */
+    private long negativeTtlSeconds = 60;
+}
@@ -0,0 +1,203 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.config.utils.error.ApiUnavailableException;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker of an API endpoint. After {@code failureThreshold} consecutive failures the
+ * circuit opens and callers wait, instead of failing, until it is half open again: then a single
+ * probe request is let through, closing the circuit if successful or opening it again otherwise.
+ * Only the outcome of the probe ends the probe: a request sent before the circuit opened may
+ * complete while it is half open, and must not let a second probe through.
+ * <p>
+ * Waiting pauses the migration while the API is down, as every lookup holds its file until the
+ * API answers. Callers give up after {@code maxWaitNanos}.
+ */
+@Log4j2
+public class CircuitBreaker {
+
+    /**
+     * Circuit state, its ordinal is exported as a gauge
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long maxWaitNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+    private long opened;
+
+    /**
+     * Constructor
+     *
+     * @param name             endpoint name
+     * @param failureThreshold consecutive failures opening the circuit
+     * @param openNanos        time the circuit stays open before a probe
+     * @param maxWaitNanos     maximum time a caller waits for the circuit to close
+     */
+    public CircuitBreaker(@NotNull String name, int failureThreshold, long openNanos, long maxWaitNanos) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    /**
+     * Waits until a request can be sent: the circuit is closed, or half open and no other
+     * probe is in flight
+     *
+     * @return whether the caller holds the probe permit, to pass to the outcome of its request
+     * @throws InterruptedIOException  if interrupted while waiting
+     * @throws ApiUnavailableException if the circuit stayed open longer than the maximum wait
+     */
+    public boolean acquire() throws InterruptedIOException, ApiUnavailableException {
+
+        long deadline = System.nanoTime() + maxWaitNanos;
+
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+
+                if (state == State.OPEN && now - openedAt >= openNanos) {
+                    state = State.HALF_OPEN;
+                    log.info("Circuit of {} half open, probing", name);
+                }
+
+                if (state == State.CLOSED) {
+                    return false;
+                }
+
+                if (state == State.HALF_OPEN && !probing) {
+                    probing = true;
+                    return true;
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    throw new ApiUnavailableException("Circuit of " + name + " still open after "
+                            + TimeUnit.NANOSECONDS.toSeconds(maxWaitNanos) + "s");
+                }
+
+                // wake up when the open period ends, or earlier if the probe finishes
+                long wait = state == State.OPEN ? Math.min(remaining, openNanos - (now - openedAt)) : remaining;
+                changed.awaitNanos(Math.max(1, wait));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for circuit of " + name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a successful request, closing the circuit if it was the probe
+     *
+     * @param probe whether the request held the probe permit, as returned by {@link #acquire()}
+     */
+    public void onSuccess(boolean probe) {
+
+        lock.lock();
+        try {
+            if (probe) {
+                probing = false;
+                state = State.CLOSED;
+                log.info("Circuit of {} closed", name);
+                changed.signalAll();
+            }
+            // a request sent before the circuit opened doesn't close it
+            if (state == State.CLOSED) {
+                failures = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a failed request, opening the circuit if the probe failed or too many requests
+     * failed in a row
+     *
+     * @param probe whether the request held the probe permit, as returned by {@link #acquire()}
+     */
+    public void onFailure(boolean probe) {
+
+        lock.lock();
+        try {
+            if (probe) {
+                probing = false;
+                failures++;
+                open();
+            } else if (state == State.CLOSED && ++failures >= failureThreshold) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the probe permit without outcome, like a cancelled request
+     *
+     * @param probe whether the request held the probe permit, as returned by {@link #acquire()}
+     */
+    public void release(boolean probe) {
+
+        lock.lock();
+        try {
+            if (probe && probing) {
+                probing = false;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @NotNull
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of times the circuit was opened
+     */
+    public long getOpened() {
+        lock.lock();
+        try {
+            return opened;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        opened++;
+        log.warn("Circuit of {} open after {} consecutive failures, requests paused for {}s",
+                name, failures, TimeUnit.NANOSECONDS.toSeconds(openNanos));
+        changed.signalAll();
+    }
+}
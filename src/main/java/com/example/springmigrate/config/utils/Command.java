@@ -24,11 +24,16 @@ public class Command implements Runnable {
 
     private final MigratePhysicalDataService normalMigrate;
     private final MigrateUnixService customMigrate;
+    private final MigrationOptions options;
+    private final MigrationMetrics metrics;
 
     @CommandLine.Option(names = {"-u", "--url"}, description = "URL de la API", defaultValue = "http://localhost:9004/")
     private String url;
 
-    @CommandLine.Option(names = {"-D", "--directorios"}, split = ",", description = "Lista de directorios a migrar.", required = true)
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
+    @CommandLine.Option(names = {"-D", "--directorios"}, split = ",", description = "Lista de directorios a migrar (no requerido con --execute).")
     private String[] directories;
 
     @CommandLine.Option(names = {"-c", "--custom"}, description = "Tipo de migración a ejecutar [normal, custom]")
@@ -40,24 +45,92 @@ public class Command implements Runnable {
     @CommandLine.Option(names = {"-N", "--not-found-directory"}, description = "Directory to store files not found in database", defaultValue = "notfound")
     private String notFoundDirectoryName;
 
+    @CommandLine.Option(names = {"-i", "--index"}, description = "Match files by name against a local index of all file nodes (custom migration)")
+    private boolean indexedNameMatching;
+
+    @CommandLine.Option(names = {"--api-concurrency"}, description = "Maximum number of API requests in flight", defaultValue = "16")
+    private int apiConcurrency;
+
+    @CommandLine.Option(names = {"--update-concurrency"}, description = "Number of file node updates written concurrently (custom migration)", defaultValue = "8")
+    private int updateConcurrency;
+
+    @CommandLine.Option(names = {"--update-queue-size"}, description = "Number of file node updates queued before moves wait for them (custom migration)", defaultValue = "1000")
+    private int updateQueueSize;
+
+    @CommandLine.Option(names = {"--lookup-batch-size"}, description = "Number of uuid named files resolved by a single API request", defaultValue = "200")
+    private int lookupBatchSize;
+
+    @CommandLine.Option(names = {"-t", "--threads"}, description = "Number of threads traversing directories and processing files (default: available processors)")
+    private Integer threads;
+
+    @CommandLine.Option(names = {"-l", "--layout"}, description = "Layout of found and not found directories: ${COMPLETION-CANDIDATES} (custom migration)", defaultValue = "FLAT")
+    private ShardLayout layout;
+
+    @CommandLine.Option(names = {"-j", "--journal"}, description = "Journal file, an interrupted migration is resumed from it, deleted once completed (custom migration)")
+    private Path journal;
+
+    @CommandLine.Option(names = {"--plan"}, description = "Write the migration plan to this file instead of migrating (implies custom migration)")
+    private Path plan;
+
+    @CommandLine.Option(names = {"--execute"}, description = "Execute a migration plan written by --plan, directories are read from the plan (implies custom migration)")
+    private Path executePlan;
+
+    @CommandLine.Option(names = {"--metrics-file"}, description = "Prometheus text file of the metrics, rewritten while migrating (metrics are exported to JMX too)")
+    private Path metricsFile;
+
+    @CommandLine.Option(names = {"--metrics-interval"}, description = "Seconds between metrics exports", defaultValue = "15")
+    private long metricsInterval;
+
 
-    public Command(MigratePhysicalDataService normalMigrate, MigrateUnixService customMigrate) {
+    public Command(MigratePhysicalDataService normalMigrate, MigrateUnixService customMigrate, MigrationOptions options, MigrationMetrics metrics) {
         this.normalMigrate = normalMigrate;
         this.customMigrate = customMigrate;
+        this.options = options;
+        this.metrics = metrics;
     }
 
     @Override
     public void run() {
 
+        validateOptions();
         userWarningMessage();
 
         String root = getRootDrive();
         // Bean creation to inject in Config#Retrofit
         new ApiUrl(url);
-        List<Path> paths = Arrays.stream(directories).map(Paths::get).collect(Collectors.toList());
+        List<Path> paths = directories == null
+                ? List.of()
+                : Arrays.stream(directories).map(Paths::get).collect(Collectors.toList());
+
+        options.setIndexedNameMatching(indexedNameMatching);
+        options.setApiConcurrency(apiConcurrency);
+        options.setUpdateConcurrency(updateConcurrency);
+        options.setUpdateQueueSize(updateQueueSize);
+        options.setLookupBatchSize(lookupBatchSize);
+        if (threads != null) {
+            options.setThreads(threads);
+        }
+        options.setLayout(layout);
+        options.setJournal(journal);
+        options.setMetricsFile(metricsFile);
+        options.setMetricsInterval(metricsInterval);
+
+        metrics.start(options.getMetricsFile(), options.getMetricsInterval());
 
         try {
-            if (custom) {
+            if (executePlan != null) {
+                // plan computed by a previous run
+                customMigrate.execute(executePlan);
+
+            } else if (plan != null) {
+                customMigrate.plan(
+                        root.toLowerCase(),
+                        foundDirectoryName.toLowerCase(),
+                        notFoundDirectoryName.toLowerCase(),
+                        paths,
+                        plan);
+
+            } else if (custom) {
                 // Unix like
                 customMigrate.migrate(
                         root.toLowerCase(),
@@ -73,6 +146,26 @@ public class Command implements Runnable {
 
         } catch (IOException ex) {
             log.error("Unexpected error: {}", ex.getMessage());
+        } finally {
+            metrics.stop();
+        }
+    }
+
+    /**
+     * Rejects options that can't be combined, before anything is migrated. A plan is only
+     * computed and executed by the custom migration, so --plan and --execute imply it
+     */
+    private void validateOptions() {
+
+        if (plan != null && executePlan != null) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--plan and --execute can't be combined");
+        }
+        if (executePlan == null && (directories == null || directories.length == 0)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Missing required option: '--directorios=<directories>'");
+        }
+        if (!custom && (plan != null || executePlan != null)) {
+            log.info("--plan and --execute run the custom migration");
+            custom = true;
         }
     }
 
@@ -0,0 +1,144 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Registry of file names taken in destination directories, allocates unique names without
+ * probing the disk.
+ * <p>
+ * A directory is listed once, the first time a name is requested in it, and from then on every
+ * file moved into it must get its name here. Names are compared ignoring case. A taken name gets
+ * a prefix (001-, 002-, ...) from a counter kept per name, so allocating the n-th copy of a name
+ * doesn't try the previous n - 1 prefixes again.
+ * <p>
+ * Reservations are atomic, concurrent workers never get the same name. A reserved name stays
+ * taken after the file is moved, it must only be released if the move is given up.
+ */
+@Log4j2
+@Component
+public class DestinationNameRegistry {
+
+    private final Map<Path, DirectoryNames> directories = new ConcurrentHashMap<>();
+
+    /**
+     * Reserves a unique name for a file in its parent directory
+     *
+     * @param file file with the wanted name and destination directory
+     * @return file with the same name, or prefixed (001-, 002-, ...) if the name is taken
+     */
+    @NotNull
+    public FilePhysical reserve(@NotNull FilePhysical file) {
+
+        String extension = file.getExtension() == null ? "" : file.getExtension();
+        String name = directoryNames(file.getParentDirectory()).reserve(file.getName(), extension);
+
+        return FilePhysical.builder()
+                .name(name)
+                .extension(extension)
+                .parentDirectory(file.getParentDirectory())
+                .build();
+    }
+
+    /**
+     * Releases the name of a file whose move was given up
+     *
+     * @param reserved file returned by {@link #reserve(FilePhysical)}
+     */
+    public void release(@NotNull FilePhysical reserved) {
+
+        DirectoryNames names = directories.get(directoryKey(reserved.getParentDirectory()));
+
+        if (names != null) {
+            names.taken.remove(nameKey(reserved.getFileName()));
+        }
+    }
+
+    /**
+     * Forgets all directories, they are listed again on the next reservation
+     */
+    public void clear() {
+        directories.clear();
+    }
+
+    /**
+     * Returns the number of directories listed
+     */
+    public int size() {
+        return directories.size();
+    }
+
+    @NotNull
+    private DirectoryNames directoryNames(@NotNull DirectoryPhysical directory) {
+        // listed once, concurrent reservations in the same directory wait for the listing
+        return directories.computeIfAbsent(directoryKey(directory), DirectoryNames::seed);
+    }
+
+    @NotNull
+    private static Path directoryKey(@NotNull DirectoryPhysical directory) {
+        return directory.getPath().toAbsolutePath().normalize();
+    }
+
+    @NotNull
+    private static String nameKey(@NotNull String fileName) {
+        return fileName.toLowerCase();
+    }
+
+    /**
+     * Names taken in a directory
+     */
+    private static class DirectoryNames {
+
+        private final Set<String> taken = ConcurrentHashMap.newKeySet();
+        // next prefix to try, by name
+        private final Map<String, AtomicInteger> prefixes = new ConcurrentHashMap<>();
+
+        @NotNull
+        static DirectoryNames seed(@NotNull Path directory) {
+
+            DirectoryNames names = new DirectoryNames();
+
+            if (Files.isDirectory(directory)) {
+                try (Stream<Path> paths = Files.list(directory)) {
+                    paths.forEach(path -> names.taken.add(nameKey(path.getFileName().toString())));
+                } catch (IOException ex) {
+                    log.error("Unable to list {}: {}", directory, ex.getMessage());
+                }
+            }
+
+            return names;
+        }
+
+        @NotNull
+        String reserve(@NotNull String name, @NotNull String extension) {
+
+            String key = nameKey(name.concat(extension));
+
+            if (taken.add(key)) {
+                return name;
+            }
+
+            AtomicInteger next = prefixes.computeIfAbsent(key, k -> new AtomicInteger(1));
+
+            while (true) {
+                String prefixed = String.format("%03d-%s", next.getAndIncrement(), name);
+
+                if (taken.add(nameKey(prefixed.concat(extension)))) {
+                    return prefixed;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.springmigrate.config.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Type;
+
+/**
+ * Deep copies of the DTOs shared by lookups and caches, through their JSON, as DTOs are mutable
+ */
+final class DtoCopies {
+
+    // null fields too, not given their default value by the copy
+    private static final Gson GSON = new GsonBuilder()
+            .serializeNulls()
+            .create();
+
+    private DtoCopies() {
+    }
+
+    /**
+     * Returns a deep copy of a value
+     *
+     * @param value value
+     * @param type  type of the value
+     * @param <V>   value type
+     * @return copy, {@code null} if the value is {@code null}
+     */
+    static <V> V copy(Object value, @NotNull Type type) {
+        return value == null ? null : GSON.fromJson(GSON.toJsonTree(value), type);
+    }
+
+    /**
+     * Returns the JSON of a value
+     */
+    @NotNull
+    static String toJson(Object value) {
+        return GSON.toJson(value);
+    }
+
+    /**
+     * Returns a new value from its JSON
+     */
+    static <V> V fromJson(@NotNull String json, @NotNull Type type) {
+        return GSON.fromJson(json, type);
+    }
+}
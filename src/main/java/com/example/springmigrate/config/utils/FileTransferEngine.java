@@ -0,0 +1,399 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves files choosing the cheapest transfer for the source and target locations.
+ * <p>
+ * The file store of every directory is read once and cached. When source and target share a
+ * store the file is renamed with {@link StandardCopyOption#ATOMIC_MOVE}, otherwise it is copied
+ * with {@link FileChannel#transferTo}, which lets the kernel copy without user space buffers.
+ * <p>
+ * Cross store copies are written to a {@code .part} file next to the target. Files larger than a
+ * chunk are copied by several threads, one chunk each, and every finished chunk is recorded in a
+ * {@code .part.offsets} sidecar, so an interrupted copy resumes with the missing chunks. The part
+ * file is renamed to the target once its size is verified, and only then the source is deleted.
+ * <p>
+ * Targets must not exist, names are expected to be allocated by {@link DestinationNameRegistry}.
+ */
+@Log4j2
+@Component
+public class FileTransferEngine {
+
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    public static final String PART_SUFFIX = ".part";
+    public static final String OFFSETS_SUFFIX = ".part.offsets";
+
+    private static final int FILE_STORES_CACHE_SIZE = 10_000;
+
+    /**
+     * Kind of transfer, statistics are kept per kind
+     */
+    public enum TransferKind {
+        /**
+         * Rename inside the same file store
+         */
+        RENAME,
+        /**
+         * Copy of a file smaller than a chunk to another file store
+         */
+        COPY,
+        /**
+         * Copy in parallel chunks to another file store
+         */
+        CHUNKED_COPY
+    }
+
+    private final long chunkSize;
+    private final int parallelism;
+    // file store of every directory
+    private final LruCache<Path, FileStore> fileStores = new LruCache<>(FILE_STORES_CACHE_SIZE);
+    private final Map<TransferKind, TransferStats> stats = new EnumMap<>(TransferKind.class);
+    private volatile ExecutorService chunkExecutor;
+
+    public FileTransferEngine() {
+        this(DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param chunkSize   bytes copied by a single thread
+     * @param parallelism threads copying chunks of large files
+     */
+    public FileTransferEngine(long chunkSize, int parallelism) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+
+        for (TransferKind kind : TransferKind.values()) {
+            stats.put(kind, new TransferStats());
+        }
+    }
+
+    /**
+     * Moves a file or a directory. Directories can only be renamed inside the same file store
+     *
+     * @param source source path
+     * @param target target path, must not exist
+     * @return kind of transfer done
+     * @throws FileAlreadyExistsException if the target exists, the source is kept
+     * @throws IOException if the file couldn't be moved, the source is kept
+     */
+    @NotNull
+    public TransferKind move(@NotNull Path source, @NotNull Path target) throws IOException {
+
+        long start = System.nanoTime();
+
+        // an atomic rename would replace it
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+
+        if (sameFileStore(source, target)) {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                record(TransferKind.RENAME, 0, start);
+                return TransferKind.RENAME;
+
+            } catch (AtomicMoveNotSupportedException ex) {
+                log.debug("Atomic move not supported from {} to {}", source, target);
+            }
+        }
+
+        if (!Files.isRegularFile(source)) {
+            // a directory can't be copied by chunks
+            Files.move(source, target);
+            record(TransferKind.RENAME, 0, start);
+            return TransferKind.RENAME;
+        }
+
+        long size = Files.size(source);
+        TransferKind kind = size > chunkSize ? TransferKind.CHUNKED_COPY : TransferKind.COPY;
+
+        copyAndDelete(source, target, size);
+        record(kind, size, start);
+
+        return kind;
+    }
+
+    /**
+     * Returns the statistics of a kind of transfer
+     *
+     * @param kind kind of transfer
+     * @return statistics
+     */
+    @NotNull
+    public TransferStats getStats(@NotNull TransferKind kind) {
+        return stats.get(kind);
+    }
+
+    /**
+     * Returns the share of moves whose directory file stores were cached
+     */
+    public double getFileStoreHitRatio() {
+        return fileStores.getHitRatio();
+    }
+
+    /**
+     * Logs the statistics of every kind of transfer done
+     */
+    public void logStats() {
+        for (TransferKind kind : TransferKind.values()) {
+            TransferStats kindStats = stats.get(kind);
+
+            if (kindStats.getFiles() > 0) {
+                log.info("Transfers {}: {}", kind, kindStats);
+            }
+        }
+    }
+
+    private boolean sameFileStore(@NotNull Path source, @NotNull Path target) throws IOException {
+
+        Path sourceDirectory = directoryOf(source);
+        Path targetDirectory = directoryOf(target);
+
+        if (sourceDirectory.equals(targetDirectory)) {
+            return true;
+        }
+
+        return fileStores.get(sourceDirectory, Files::getFileStore)
+                .equals(fileStores.get(targetDirectory, Files::getFileStore));
+    }
+
+    @NotNull
+    private static Path directoryOf(@NotNull Path path) {
+        Path parent = path.toAbsolutePath().normalize().getParent();
+        return parent == null ? path.toAbsolutePath() : parent;
+    }
+
+    /**
+     * Copies a file to another file store and deletes the source once the copy is verified,
+     * package private for tests
+     */
+    void copyAndDelete(@NotNull Path source, @NotNull Path target, long size) throws IOException {
+
+        if (Files.exists(target)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Path offsets = target.resolveSibling(target.getFileName() + OFFSETS_SUFFIX);
+
+        if (size > chunkSize) {
+            copyChunks(source, part, offsets, size);
+        } else {
+            Files.deleteIfExists(part);
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                transfer(in, out, 0, size);
+                out.force(true);
+            }
+        }
+
+        // verified before the source is deleted
+        long copied = Files.size(part);
+        if (copied != size) {
+            throw new IOException(String.format("Copy of %s has %d bytes, expected %d", source, copied, size));
+        }
+
+        Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+        Files.deleteIfExists(offsets);
+        Files.delete(source);
+    }
+
+    /**
+     * Copies the missing chunks of a file in parallel, finished chunks are recorded in the offsets file
+     */
+    private void copyChunks(@NotNull Path source, @NotNull Path part, @NotNull Path offsets, long size) throws IOException {
+
+        String header = size + " " + chunkSize;
+        Set<Long> done = readOffsets(part, offsets, header);
+
+        if (done.isEmpty()) {
+            Files.deleteIfExists(part);
+            Files.write(offsets, Collections.singletonList(header), StandardCharsets.UTF_8);
+        }
+
+        if (!Files.exists(part)) {
+            Files.createFile(part);
+        }
+
+        List<Future<Long>> chunks = new ArrayList<>();
+
+        for (long position = 0; position < size; position += chunkSize) {
+            if (!done.contains(position)) {
+                long from = position;
+                long count = Math.min(chunkSize, size - position);
+
+                chunks.add(chunkExecutor().submit(() -> {
+                    copyChunk(source, part, from, count);
+                    return from;
+                }));
+            }
+        }
+
+        IOException failure = null;
+
+        for (Future<Long> chunk : chunks) {
+            try {
+                recordOffset(offsets, chunk.get());
+            } catch (ExecutionException ex) {
+                failure = failure != null ? failure : new IOException("Unable to copy " + source, ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : new IOException("Interrupted copying " + source);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Copies a chunk with its own channels, every channel keeps its own position
+     */
+    private static void copyChunk(@NotNull Path source, @NotNull Path part, long position, long count) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            out.position(position);
+            transfer(in, out, position, count);
+            // durable before recorded as done
+            out.force(false);
+        }
+    }
+
+    @NotNull
+    private static Set<Long> readOffsets(@NotNull Path part, @NotNull Path offsets, @NotNull String header) {
+
+        Set<Long> done = new HashSet<>();
+
+        if (!Files.exists(part) || !Files.exists(offsets)) {
+            return done;
+        }
+
+        try {
+            List<String> lines = Files.readAllLines(offsets, StandardCharsets.UTF_8);
+
+            // same source size and chunk size, otherwise restart
+            if (!lines.isEmpty() && lines.get(0).equals(header)) {
+                for (String line : lines.subList(1, lines.size())) {
+                    if (!line.isBlank()) {
+                        done.add(Long.parseLong(line.trim()));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            done.clear();
+        }
+
+        if (!done.isEmpty()) {
+            log.info("Resuming copy to {}, {} chunks already copied", part, done.size());
+        }
+
+        return done;
+    }
+
+    private static synchronized void recordOffset(@NotNull Path offsets, long position) throws IOException {
+        Files.write(offsets,
+                Collections.singletonList(Long.toString(position)),
+                StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+    }
+
+    private static void transfer(@NotNull FileChannel in, @NotNull FileChannel out, long position, long count) throws IOException {
+
+        long transferred = 0;
+
+        // zero copy, written at the current position of the target channel
+        while (transferred < count) {
+            long bytes = in.transferTo(position + transferred, count - transferred, out);
+
+            if (bytes <= 0) {
+                throw new IOException("Unexpected end of file at " + (position + transferred));
+            }
+            transferred += bytes;
+        }
+    }
+
+    @NotNull
+    private ExecutorService chunkExecutor() {
+
+        if (chunkExecutor == null) {
+            synchronized (this) {
+                if (chunkExecutor == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    chunkExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                        Thread thread = new Thread(runnable, "transfer-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+
+        return chunkExecutor;
+    }
+
+    private void record(@NotNull TransferKind kind, long bytes, long startNanos) {
+        stats.get(kind).add(bytes, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Counters of a kind of transfer
+     */
+    public static class TransferStats {
+
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        void add(long fileBytes, long elapsedNanos) {
+            files.incrementAndGet();
+            bytes.addAndGet(fileBytes);
+            nanos.addAndGet(elapsedNanos);
+        }
+
+        public long getFiles() {
+            return files.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * Returns files transferred per second of transfer time
+         */
+        public double getFilesPerSecond() {
+            long elapsed = nanos.get();
+            return elapsed == 0 ? 0 : files.get() / (elapsed / 1e9);
+        }
+
+        /**
+         * Returns MiB transferred per second of transfer time
+         */
+        public double getMegabytesPerSecond() {
+            long elapsed = nanos.get();
+            return elapsed == 0 ? 0 : (bytes.get() / (1024.0 * 1024)) / (elapsed / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files, %d bytes, %.1f files/s, %.1f MiB/s",
+                    getFiles(), getBytes(), getFilesPerSecond(), getMegabytesPerSecond());
+        }
+    }
+}
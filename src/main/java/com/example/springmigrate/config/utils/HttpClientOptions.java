@@ -0,0 +1,189 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Options of the HTTP client of the API, bound from the {@code app.http} properties.
+ * The defaults keep enough connections alive for {@link MigrationOptions#getApiConcurrency()}
+ * calls in flight against a single host
+ */
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "app.http")
+public class HttpClientOptions {
+
+    /**
+     * Idle connections kept in the pool
+     */
+    private int maxIdleConnections = 64;
+
+    /**
+     * Seconds an idle connection is kept in the pool
+     */
+    private long keepAliveSeconds = 300;
+
+    /**
+     * Maximum number of asynchronous calls running, upper bound only, calls in flight are
+     * limited by {@link ApiCallExecutor}
+     */
+    private int maxRequests = 512;
+
+    /**
+     * Maximum number of asynchronous calls running against the API host
+     */
+    private int maxRequestsPerHost = 512;
+
+    /**
+     * Speak cleartext HTTP/2 to the API without upgrade (h2c prior knowledge), all calls are
+     * multiplexed over a single connection. Only for {@code http} URLs of servers supporting it
+     */
+    private boolean http2PriorKnowledge;
+
+    /**
+     * Disable Nagle's algorithm, small requests aren't delayed waiting for more data
+     */
+    private boolean tcpNoDelay = true;
+
+    /**
+     * Socket send buffer size in bytes, {@code 0} for the system default
+     */
+    private int sendBufferSize;
+
+    /**
+     * Socket receive buffer size in bytes, {@code 0} for the system default
+     */
+    private int receiveBufferSize;
+
+    /**
+     * Connect timeout in seconds, idempotent requests are bounded by their latency budget too
+     */
+    private long connectTimeoutSeconds = 600;
+
+    /**
+     * Read timeout in seconds
+     */
+    private long readTimeoutSeconds = 600;
+
+    /**
+     * Write timeout in seconds
+     */
+    private long writeTimeoutSeconds = 600;
+
+    /**
+     * Retries of a request failed with a connect error, a {@code 429} or, if the request is
+     * idempotent, any I/O error or {@code 5xx}
+     */
+    private int maxRetries = 5;
+
+    /**
+     * Delay before the first retry, doubled by every retry, in milliseconds
+     */
+    private long retryBaseDelayMillis = 200;
+
+    /**
+     * Maximum delay between retries in milliseconds, the actual delay is a random time up to it
+     */
+    private long retryMaxDelayMillis = 10_000;
+
+    /**
+     * Consecutive failures of an endpoint opening its circuit
+     */
+    private int circuitFailureThreshold = 20;
+
+    /**
+     * Seconds an open circuit waits before probing the endpoint again
+     */
+    private long circuitOpenSeconds = 30;
+
+    /**
+     * Seconds a request waits for an open circuit to close before failing
+     */
+    private long circuitMaxWaitSeconds = 3600;
+
+    /**
+     * Tune the requests in flight to the latency of the API, otherwise they are only
+     * limited by {@link MigrationOptions#getApiConcurrency()}, which bounds them anyway
+     */
+    private boolean adaptiveConcurrency = true;
+
+    /**
+     * Requests in flight when the migration starts
+     */
+    private int initialConcurrency = 16;
+
+    /**
+     * Minimum requests in flight, however loaded the API is
+     */
+    private int minConcurrency = 1;
+
+    /**
+     * Maximum requests in flight
+     */
+    private int maxConcurrency = 256;
+
+    /**
+     * Ratio of the latency to the latency without load considered a spike
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * Ratio the requests in flight are multiplied by on a latency spike, a {@code 429},
+     * a {@code 503} or a timeout
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * Maximum requests per second, {@code 0} for no rate limit
+     */
+    private double rateLimit;
+
+    /**
+     * Requests sent at once after an idle period, {@code 0} for one second of requests
+     */
+    private int rateLimitBurst;
+
+    /**
+     * Fail reads slower than the budget of their endpoint, so they are retried
+     */
+    private boolean latencyBudgets = true;
+
+    /**
+     * Budget of an endpoint, as times its p99 latency
+     */
+    private double budgetMultiplier = 4.0;
+
+    /**
+     * Minimum budget in milliseconds
+     */
+    private long minBudgetMillis = 1000;
+
+    /**
+     * Maximum budget in milliseconds, also the budget until the latency of an endpoint is known
+     */
+    private long maxBudgetMillis = 60_000;
+
+    /**
+     * Answered requests of an endpoint before its latency is known
+     */
+    private int latencySamples = 100;
+
+    /**
+     * Send hedged reads a second time when slower than the p95 latency of their endpoint
+     */
+    private boolean hedging = true;
+
+    /**
+     * Maximum ratio of hedges to hedged requests
+     */
+    private double hedgeMaxRatio = 0.05;
+
+    /**
+     * Share one request, and its result, between concurrent identical lookups
+     */
+    private boolean coalesceRequests = true;
+}
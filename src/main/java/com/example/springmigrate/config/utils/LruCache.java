@@ -0,0 +1,223 @@
+package com.example.springmigrate.config.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe cache bounded by number of entries, and optionally by their total weight, the
+ * least recently used entry is evicted first.
+ * <p>
+ * Values are loaded outside the lock, two threads missing the same key at the same time
+ * could both load it, so loaders must be idempotent.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+
+    /**
+     * Loader of a missing value
+     *
+     * @param <K> key type
+     * @param <V> value type
+     * @param <E> exception thrown by the loader
+     */
+    @FunctionalInterface
+    public interface Loader<K, V, E extends Exception> {
+
+        /**
+         * Loads the value of a key
+         *
+         * @param key key
+         * @return value, {@code null} values are not cached
+         * @throws E if the value can't be loaded
+         */
+        V load(K key) throws E;
+    }
+
+    /**
+     * Weight of a cached value
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+
+        /**
+         * Returns the weight of an entry, like its size in bytes
+         *
+         * @param key   key
+         * @param value value
+         * @return weight, not negative
+         */
+        long weigh(K key, V value);
+    }
+
+    private final int maxSize;
+    private final long maxWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor
+     *
+     * @param maxSize maximum number of entries
+     */
+    public LruCache(int maxSize) {
+        this(maxSize, Long.MAX_VALUE, (key, value) -> 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxSize   maximum number of entries
+     * @param maxWeight maximum total weight of the entries
+     * @param weigher   weight of an entry
+     */
+    public LruCache(int maxSize, long maxWeight, @NotNull Weigher<? super K, ? super V> weigher) {
+        this.maxSize = Math.max(1, maxSize);
+        this.maxWeight = Math.max(0, maxWeight);
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the cached value
+     *
+     * @param key key
+     * @return value if cached, otherwise {@code null}
+     */
+    public synchronized V get(@NotNull K key) {
+
+        V value = entries.get(key);
+
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the cached value, or loads and caches it if missing
+     *
+     * @param key    key
+     * @param loader loader of the missing value
+     * @param <E>    exception thrown by the loader
+     * @return value, {@code null} if missing and the loader returned {@code null}
+     * @throws E if the value can't be loaded
+     */
+    public <E extends Exception> V get(@NotNull K key, @NotNull Loader<K, V, E> loader) throws E {
+
+        V value = get(key);
+
+        if (value == null) {
+            value = loader.load(key);
+
+            if (value != null) {
+                put(key, value);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Caches a value
+     *
+     * @param key   key
+     * @param value value
+     */
+    public synchronized void put(@NotNull K key, @NotNull V value) {
+
+        V previous = entries.put(key, value);
+
+        if (previous != null) {
+            weight -= weigher.weigh(key, previous);
+        }
+        weight += weigher.weigh(key, value);
+
+        // least recently used first, a value heavier than the maximum weight isn't kept
+        Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxSize || weight > maxWeight) && eldest.hasNext()) {
+            Map.Entry<K, V> entry = eldest.next();
+            weight -= weigher.weigh(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes a cached value
+     *
+     * @param key key
+     */
+    public synchronized void invalidate(@NotNull K key) {
+
+        V value = entries.remove(key);
+
+        if (value != null) {
+            weight -= weigher.weigh(key, value);
+        }
+    }
+
+    /**
+     * Removes all cached values
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of cached values
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the cached values
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Returns the number of values evicted to stay within the bounds
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached value
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that didn't find a cached value
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of lookups that found a cached value, 0 before any lookup
+     */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
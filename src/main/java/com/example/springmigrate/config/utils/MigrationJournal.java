@@ -0,0 +1,394 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.config.utils.error.NodeAlreadyProcessed;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal of the work done by a migration, so an interrupted run resumes where it stopped.
+ * <p>
+ * Every completed physical move and logical update is appended as a record to a memory mapped file,
+ * mapped by regions of {@link #REGION_SIZE} bytes. Records written to the mapping survive a crash of
+ * the process, and are forced to disk every {@link #SYNC_EVERY_RECORDS} records and on close, so an
+ * operating system crash loses at most the last batch.
+ * <p>
+ * Opening an existing journal replays it: moves are indexed by source path and updates by node
+ * identifier, so a file or node already processed is known in constant time. A record torn by a
+ * crash fails its checksum and ends the replay, the next records overwrite it.
+ * <p>
+ * A journal belongs to a single run: once the run completed without pending work it is
+ * {@link #retire() retired}, so the next run neither skips its files nor replays its work.
+ */
+@Log4j2
+public class MigrationJournal implements Closeable {
+
+    public static final int REGION_SIZE = 16 * 1024 * 1024;
+    public static final int SYNC_EVERY_RECORDS = 256;
+
+    // record header: body length and body checksum
+    private static final int HEADER_SIZE = 8;
+    // length of the marker ending a region whose free space can't hold the next record
+    private static final int END_OF_REGION = -1;
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    /**
+     * Kind of work done
+     */
+    public enum Kind {
+        /**
+         * Physical file moved from source to target
+         */
+        MOVED,
+        /**
+         * File node pointed to the target name and parent
+         */
+        UPDATED
+    }
+
+    /**
+     * Journal record
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final Kind kind;
+        private final String source;
+        private final String target;
+        // null if the file has no node
+        private final String nodeId;
+        private final String parentId;
+        private final Integer versionLock;
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Entry> moves = new ConcurrentHashMap<>();
+    private final Map<String, Entry> updates = new ConcurrentHashMap<>();
+    private final Set<String> updatedSources = ConcurrentHashMap.newKeySet();
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int unsynced;
+
+    private MigrationJournal(@NotNull Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        replay();
+    }
+
+    /**
+     * Opens a journal, replaying the records of previous runs
+     *
+     * @param path journal file, created if not exists
+     * @return journal
+     * @throws IOException if the journal can't be opened
+     */
+    @NotNull
+    public static MigrationJournal open(@NotNull Path path) throws IOException {
+        MigrationJournal journal = new MigrationJournal(path);
+        log.info("Journal {} replayed: {} moves, {} updates", path, journal.moves.size(), journal.updates.size());
+        return journal;
+    }
+
+    /**
+     * Records a completed physical move
+     *
+     * @param source      source path
+     * @param target      target path
+     * @param nodeId      file node identifier, {@code null} if the file has no node
+     * @param parentId    parent node the file node must point to, {@code null} if the file has no node
+     * @param versionLock version of the file node, {@code null} if unknown
+     * @throws IOException if the record can't be written
+     */
+    public void recordMoved(@NotNull Path source, @NotNull Path target, String nodeId, String parentId, Integer versionLock) throws IOException {
+        append(new Entry(Kind.MOVED, source.toString(), target.toString(), nodeId, parentId, versionLock));
+    }
+
+    /**
+     * Records a completed logical update
+     *
+     * @param source      source path of the physical file
+     * @param target      target path of the physical file
+     * @param nodeId      file node identifier
+     * @param parentId    parent node the file node points to
+     * @param versionLock version of the updated file node
+     * @throws IOException if the record can't be written
+     */
+    public void recordUpdated(@NotNull Path source, @NotNull Path target, @NotNull String nodeId, String parentId, Integer versionLock) throws IOException {
+        append(new Entry(Kind.UPDATED, source.toString(), target.toString(), nodeId, parentId, versionLock));
+    }
+
+    /**
+     * Check that a physical file wasn't already moved, nor its node updated, by this or a previous run
+     *
+     * @param source source path
+     * @throws NodeAlreadyProcessed if the file was already processed
+     */
+    public void checkNotProcessed(@NotNull Path source) {
+
+        String key = source.toString();
+
+        if (moves.containsKey(key) || updatedSources.contains(key)) {
+            throw new NodeAlreadyProcessed("Already processed: " + source);
+        }
+    }
+
+    /**
+     * Returns identifiers of all file nodes moved or updated
+     */
+    @NotNull
+    public Set<String> getNodeIds() {
+
+        Set<String> ids = new HashSet<>(updates.keySet());
+
+        for (Entry entry : moves.values()) {
+            if (entry.getNodeId() != null) {
+                ids.add(entry.getNodeId());
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns nodes updated whose physical file wasn't moved yet
+     */
+    @NotNull
+    public List<Entry> getPendingMoves() {
+
+        List<Entry> pending = new ArrayList<>();
+
+        for (Entry update : updates.values()) {
+            if (!moves.containsKey(update.getSource())) {
+                pending.add(update);
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * Returns physical files moved whose node wasn't updated yet
+     */
+    @NotNull
+    public List<Entry> getPendingUpdates() {
+
+        List<Entry> pending = new ArrayList<>();
+
+        for (Entry move : moves.values()) {
+            if (move.getNodeId() != null && !updates.containsKey(move.getNodeId())) {
+                pending.add(move);
+            }
+        }
+
+        return pending;
+    }
+
+    /**
+     * Forces the records written to disk
+     */
+    public synchronized void sync() {
+        if (region != null && unsynced > 0) {
+            region.force();
+            unsynced = 0;
+        }
+    }
+
+    /**
+     * Check that every move has its update and every update its move
+     */
+    public boolean isComplete() {
+        return getPendingMoves().isEmpty() && getPendingUpdates().isEmpty();
+    }
+
+    /**
+     * Closes the journal and deletes its file, the run it records completed
+     *
+     * @throws IOException if the journal can't be deleted
+     */
+    public synchronized void retire() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+        log.info("Journal {} retired", path);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        region = null;
+        channel.close();
+    }
+
+    private synchronized void append(@NotNull Entry entry) throws IOException {
+
+        // late completions, like updates written behind
+        if (region == null) {
+            throw new IOException("Journal closed: " + path);
+        }
+
+        byte[] body = encode(entry);
+        int size = HEADER_SIZE + body.length;
+
+        if (size + 4 > REGION_SIZE) {
+            throw new IOException("Journal record too large: " + entry.getSource());
+        }
+
+        // room for the record and an end marker
+        if (region.remaining() < size + 4) {
+            region.putInt(END_OF_REGION);
+            region.force();
+            map(regionStart + REGION_SIZE);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        region.putInt(body.length);
+        region.putInt((int) crc.getValue());
+        region.put(body);
+
+        index(entry);
+
+        if (++unsynced >= SYNC_EVERY_RECORDS) {
+            sync();
+        }
+    }
+
+    private void replay() throws IOException {
+
+        map(0);
+
+        while (true) {
+            int start = region.position();
+
+            if (region.remaining() < HEADER_SIZE) {
+                map(regionStart + REGION_SIZE);
+                continue;
+            }
+
+            int length = region.getInt();
+
+            if (length == END_OF_REGION) {
+                map(regionStart + REGION_SIZE);
+                continue;
+            }
+
+            if (length <= 0 || length > region.remaining() - 4) {
+                // end of the journal
+                region.position(start);
+                return;
+            }
+
+            int checksum = region.getInt();
+            byte[] body = new byte[length];
+            region.get(body);
+
+            CRC32 crc = new CRC32();
+            crc.update(body);
+
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Journal {} ends with a torn record at {}", path, regionStart + start);
+                region.position(start);
+                return;
+            }
+
+            index(decode(body));
+        }
+    }
+
+    private void map(long start) throws IOException {
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+    }
+
+    private void index(@NotNull Entry entry) {
+        if (entry.getKind() == Kind.MOVED) {
+            moves.put(entry.getSource(), entry);
+        } else {
+            updates.put(entry.getNodeId(), entry);
+            updatedSources.add(entry.getSource());
+        }
+    }
+
+    @NotNull
+    private static byte[] encode(@NotNull Entry entry) {
+
+        byte[][] strings = {
+                bytes(entry.getSource()),
+                bytes(entry.getTarget()),
+                bytes(entry.getNodeId()),
+                bytes(entry.getParentId())
+        };
+
+        int size = 1 + 8;
+        for (byte[] string : strings) {
+            size += 4 + (string == null ? 0 : string.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put((byte) entry.getKind().ordinal());
+
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length);
+                buffer.put(string);
+            }
+        }
+
+        buffer.putLong(entry.getVersionLock() == null ? NO_VERSION : entry.getVersionLock());
+
+        return buffer.array();
+    }
+
+    @NotNull
+    private static Entry decode(@NotNull byte[] body) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        Kind kind = Kind.values()[buffer.get()];
+        String source = string(buffer);
+        String target = string(buffer);
+        String nodeId = string(buffer);
+        String parentId = string(buffer);
+        long version = buffer.getLong();
+
+        return new Entry(kind, source, target, nodeId, parentId, version == NO_VERSION ? null : (int) version);
+    }
+
+    private static byte[] bytes(String string) {
+        return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(@NotNull ByteBuffer buffer) {
+
+        int length = buffer.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,523 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import javax.management.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of a migration run: counters, latency timers and gauges, exported while the run goes
+ * on, so a run lasting hours can be watched and its slowdowns spotted:
+ * <ul>
+ *     <li>Prometheus text file, rewritten every interval, for the textfile collector of the
+ *     node exporter</li>
+ *     <li>attributes of the {@value #OBJECT_NAME} MBean</li>
+ *     <li>a log line with the rates of the last interval</li>
+ * </ul>
+ * A meter is identified by its name and its labels, given as name and value pairs. Counters and
+ * timers are created on first use. Gauges, and counters kept by other components, are read when
+ * exported, registering them again replaces the previous ones.
+ */
+@Log4j2
+@Component
+public class MigrationMetrics {
+
+    public static final String FILES = "migration_files_total";
+    public static final String API_REQUESTS = "migration_api_request_seconds";
+    public static final String API_IN_FLIGHT = "migration_api_in_flight";
+    public static final String API_RETRIES = "migration_api_retries_total";
+    public static final String API_CIRCUIT_STATE = "migration_api_circuit_state";
+    public static final String API_CIRCUIT_OPENED = "migration_api_circuit_opened_total";
+    public static final String API_CONCURRENCY_LIMIT = "migration_api_concurrency_limit";
+    public static final String API_HEDGES = "migration_api_hedges_total";
+    public static final String API_BUDGET = "migration_api_budget_seconds";
+    public static final String API_COALESCED = "migration_api_coalesced_total";
+    public static final String TRANSFER_FILES = "migration_transfer_files_total";
+    public static final String TRANSFER_BYTES = "migration_transfer_bytes_total";
+    public static final String QUEUE_DEPTH = "migration_queue_depth";
+    public static final String CACHE_HIT_RATIO = "migration_cache_hit_ratio";
+    public static final String CACHE_REQUESTS = "migration_cache_requests_total";
+    public static final String CACHE_EVICTIONS = "migration_cache_evictions_total";
+    public static final String CACHE_BYTES = "migration_cache_bytes";
+    public static final String OBJECT_NAME = "com.example.springmigrate:type=MigrationMetrics";
+
+    private static final Map<String, String> HELP = Map.ofEntries(
+            Map.entry(FILES, "Physical files by result: scanned, matched, unmatched or failed"),
+            Map.entry(API_REQUESTS, "API request latency until the response headers, by endpoint and status"),
+            Map.entry(API_IN_FLIGHT, "Asynchronous API calls in flight"),
+            Map.entry(API_RETRIES, "API requests sent again, by endpoint and cause of the failure"),
+            Map.entry(API_CIRCUIT_STATE, "Circuit of an endpoint: 0 closed, 1 half open, 2 open"),
+            Map.entry(API_CIRCUIT_OPENED, "Times the circuit of an endpoint was opened"),
+            Map.entry(API_CONCURRENCY_LIMIT, "Limit of API requests in flight tuned from their latency"),
+            Map.entry(API_HEDGES, "Hedged API requests sent a second time, and second requests answering first"),
+            Map.entry(API_BUDGET, "Latency budget of the idempotent requests of an endpoint"),
+            Map.entry(API_COALESCED, "API requests not sent, answered by an identical request in flight"),
+            Map.entry(TRANSFER_FILES, "Files moved by kind of transfer"),
+            Map.entry(TRANSFER_BYTES, "Bytes copied by kind of transfer, renames move no bytes"),
+            Map.entry(QUEUE_DEPTH, "Items waiting in a queue"),
+            Map.entry(CACHE_HIT_RATIO, "Share of cache lookups finding a cached value"),
+            Map.entry(CACHE_REQUESTS, "Cache lookups by result: hit, miss, or negative hit of a value known missing"),
+            Map.entry(CACHE_EVICTIONS, "Cached values evicted to stay within the size and weight of the cache"),
+            Map.entry(CACHE_BYTES, "Approximate bytes of the cached values"));
+
+    private enum Type {
+        COUNTER, GAUGE, SUMMARY
+    }
+
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+    private ScheduledExecutorService exporter;
+    private Path file;
+    private Map<String, Double> lastSnapshot = Collections.emptyMap();
+    private long lastSnapshotNanos;
+
+    /**
+     * Increments a counter
+     *
+     * @param name   counter name
+     * @param labels label names and values
+     */
+    public void increment(@NotNull String name, @NotNull String... labels) {
+        add(name, 1, labels);
+    }
+
+    /**
+     * Adds to a counter
+     *
+     * @param name   counter name
+     * @param amount amount added
+     * @param labels label names and values
+     */
+    public void add(@NotNull String name, long amount, @NotNull String... labels) {
+        meter(name, Type.COUNTER, labels).count.add(amount);
+    }
+
+    /**
+     * Records a duration in a timer
+     *
+     * @param name   timer name
+     * @param nanos  duration
+     * @param labels label names and values
+     */
+    public void record(@NotNull String name, long nanos, @NotNull String... labels) {
+
+        Meter meter = meter(name, Type.SUMMARY, labels);
+
+        meter.count.increment();
+        meter.sumNanos.add(nanos);
+        meter.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Registers a gauge, replacing a gauge with the same name and labels
+     *
+     * @param name   gauge name
+     * @param value  current value, read when exported
+     * @param labels label names and values
+     */
+    public void gauge(@NotNull String name, @NotNull Supplier<? extends Number> value, @NotNull String... labels) {
+        register(name, Type.GAUGE, value, labels);
+    }
+
+    /**
+     * Registers a counter kept by another component, replacing a counter with the same name
+     * and labels
+     *
+     * @param name   counter name
+     * @param value  current count, read when exported
+     * @param labels label names and values
+     */
+    public void counter(@NotNull String name, @NotNull Supplier<? extends Number> value, @NotNull String... labels) {
+        register(name, Type.COUNTER, value, labels);
+    }
+
+    /**
+     * Removes a meter
+     *
+     * @param name   meter name
+     * @param labels label names and values
+     */
+    public void remove(@NotNull String name, @NotNull String... labels) {
+        meters.remove(key(name, labels(labels)));
+    }
+
+    /**
+     * Registers the transfer counters and the file store cache of a transfer engine
+     *
+     * @param engine file transfers
+     */
+    public void bind(@NotNull FileTransferEngine engine) {
+        for (FileTransferEngine.TransferKind kind : FileTransferEngine.TransferKind.values()) {
+            String label = kind.name().toLowerCase();
+            counter(TRANSFER_FILES, () -> engine.getStats(kind).getFiles(), "kind", label);
+            counter(TRANSFER_BYTES, () -> engine.getStats(kind).getBytes(), "kind", label);
+        }
+        gauge(CACHE_HIT_RATIO, engine::getFileStoreHitRatio, "cache", "file_stores");
+    }
+
+    /**
+     * Registers the calls in flight of an API calls executor
+     *
+     * @param executor asynchronous API calls executor
+     */
+    public void bind(@NotNull ApiCallExecutor executor) {
+        gauge(API_IN_FLIGHT, executor::getInFlight);
+    }
+
+    /**
+     * Starts exporting: registers the MBean and, every interval, writes the Prometheus file
+     * and logs the rates of the interval
+     *
+     * @param file            Prometheus text file, {@code null} to export to JMX only
+     * @param intervalSeconds seconds between exports
+     */
+    public synchronized void start(Path file, long intervalSeconds) {
+
+        stop();
+
+        this.file = file;
+        this.lastSnapshot = snapshot();
+        this.lastSnapshotNanos = System.nanoTime();
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(), name);
+            }
+        } catch (JMException ex) {
+            log.warn("Unable to register metrics MBean: {}", ex.getMessage());
+        }
+
+        exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, intervalSeconds);
+        exporter.scheduleAtFixedRate(this::export, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops exporting, the last values are written and logged, and the MBean unregistered
+     */
+    public synchronized void stop() {
+
+        if (exporter == null) {
+            return;
+        }
+
+        exporter.shutdownNow();
+        exporter = null;
+        export();
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException ex) {
+            log.warn("Unable to unregister metrics MBean: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns all meters in the Prometheus text exposition format
+     */
+    @NotNull
+    public String scrape() {
+
+        // meters grouped by name, every name described once
+        Map<String, List<Meter>> byName = new TreeMap<>();
+        for (Meter meter : meters.values()) {
+            byName.computeIfAbsent(meter.name, name -> new ArrayList<>()).add(meter);
+        }
+
+        StringBuilder text = new StringBuilder();
+
+        for (Map.Entry<String, List<Meter>> entry : byName.entrySet()) {
+            String name = entry.getKey();
+            List<Meter> named = entry.getValue();
+            named.sort(Comparator.comparing(meter -> meter.labels));
+            Type type = named.get(0).type;
+
+            describe(text, name, type);
+            for (Meter meter : named) {
+                if (type == Type.SUMMARY) {
+                    sample(text, name + "_count", meter.labels, meter.count.sum());
+                    sample(text, name + "_sum", meter.labels, meter.sumNanos.sum() / 1e9);
+                } else {
+                    sample(text, name, meter.labels, meter.value());
+                }
+            }
+
+            if (type == Type.SUMMARY) {
+                describe(text, name + "_max", Type.GAUGE);
+                for (Meter meter : named) {
+                    sample(text, name + "_max", meter.labels, meter.maxNanos.get() / 1e9);
+                }
+            }
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Returns the value of every meter, by name and labels, timers as count, sum and max seconds
+     */
+    @NotNull
+    public Map<String, Double> snapshot() {
+
+        Map<String, Double> values = new TreeMap<>();
+
+        for (Meter meter : meters.values()) {
+            if (meter.type == Type.SUMMARY) {
+                values.put(key(meter.name + "_count", meter.labels), (double) meter.count.sum());
+                values.put(key(meter.name + "_sum", meter.labels), meter.sumNanos.sum() / 1e9);
+                values.put(key(meter.name + "_max", meter.labels), meter.maxNanos.get() / 1e9);
+            } else {
+                values.put(key(meter.name, meter.labels), meter.value());
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes the Prometheus file and logs the rates since the previous export
+     */
+    private synchronized void export() {
+
+        if (file != null) {
+            try {
+                write(file, scrape());
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Unable to write metrics to {}: {}", file, ex.getMessage());
+            }
+        }
+
+        Map<String, Double> current = snapshot();
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastSnapshotNanos) / 1e9);
+
+        log.info("Files/s: {} scanned, {} matched, {} unmatched, {} failed; API requests/s: {}; moved/s: {}",
+                rate(current, seconds, FILES, "result=\"scanned\""),
+                rate(current, seconds, FILES, "result=\"matched\""),
+                rate(current, seconds, FILES, "result=\"unmatched\""),
+                rate(current, seconds, FILES, "result=\"failed\""),
+                rate(current, seconds, API_REQUESTS + "_count", ""),
+                rate(current, seconds, TRANSFER_FILES, ""));
+
+        lastSnapshot = current;
+        lastSnapshotNanos = now;
+    }
+
+    /**
+     * Rate of the meters of a name whose labels contain a label, during the last interval
+     */
+    @NotNull
+    private String rate(@NotNull Map<String, Double> current, double seconds, @NotNull String name, @NotNull String label) {
+
+        double delta = 0;
+
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            String key = entry.getKey();
+            if ((key.equals(name) || key.startsWith(name + "{")) && key.contains(label)) {
+                delta += entry.getValue() - lastSnapshot.getOrDefault(key, 0.0);
+            }
+        }
+
+        return String.format("%.1f", delta / seconds);
+    }
+
+    private static void write(@NotNull Path file, @NotNull String text) throws IOException {
+
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        Files.write(part, text.getBytes(StandardCharsets.UTF_8));
+
+        // scrapers never read a half written file
+        try {
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void describe(@NotNull StringBuilder text, @NotNull String name, @NotNull Type type) {
+        String help = HELP.get(name);
+        if (help != null) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        }
+        text.append("# TYPE ").append(name).append(' ').append(type.name().toLowerCase()).append('\n');
+    }
+
+    private static void sample(@NotNull StringBuilder text, @NotNull String name, @NotNull String labels, double value) {
+        text.append(key(name, labels)).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+
+    @NotNull
+    private Meter meter(@NotNull String name, @NotNull Type type, @NotNull String... labels) {
+
+        String rendered = labels(labels);
+
+        return meters.computeIfAbsent(key(name, rendered), key -> new Meter(name, rendered, type, null));
+    }
+
+    private void register(@NotNull String name, @NotNull Type type, @NotNull Supplier<? extends Number> value, @NotNull String... labels) {
+        String rendered = labels(labels);
+        meters.put(key(name, rendered), new Meter(name, rendered, type, value));
+    }
+
+    @NotNull
+    private static String key(@NotNull String name, @NotNull String labels) {
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+
+    /**
+     * Renders label names and values as {@code name="value",...}
+     */
+    @NotNull
+    private static String labels(@NotNull String... labels) {
+
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs: " + Arrays.toString(labels));
+        }
+
+        StringBuilder rendered = new StringBuilder();
+
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+
+        return rendered.toString();
+    }
+
+    /**
+     * Counter, timer or gauge with its labels
+     */
+    private static class Meter {
+
+        private final String name;
+        private final String labels;
+        private final Type type;
+        // read when exported, null if kept here
+        private final Supplier<? extends Number> supplier;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Meter(String name, String labels, Type type, Supplier<? extends Number> supplier) {
+            this.name = name;
+            this.labels = labels;
+            this.type = type;
+            this.supplier = supplier;
+        }
+
+        private double value() {
+            if (supplier == null) {
+                return count.sum();
+            }
+
+            try {
+                Number value = supplier.get();
+                return value == null ? Double.NaN : value.doubleValue();
+            } catch (RuntimeException ex) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Meters as read only attributes, named as in the Prometheus file
+     */
+    private class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+
+            Double value = snapshot().get(attribute);
+
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+
+            Map<String, Double> values = snapshot();
+            AttributeList list = new AttributeList();
+
+            for (String attribute : attributes) {
+                Double value = values.get(attribute);
+                if (value != null) {
+                    list.add(new Attribute(attribute, value));
+                }
+            }
+
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+
+            // meters registered since the last call are listed too
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String name : snapshot().keySet()) {
+                attributes.add(new MBeanAttributeInfo(name, Double.class.getName(), name, true, false, false));
+            }
+
+            return new MBeanInfo(
+                    MigrationMetrics.class.getName(),
+                    "Migration metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]),
+                    null,
+                    null,
+                    null);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+
+/**
+ * Runtime options of a migration, filled from the command line before the migration starts
+ */
+@Setter
+@Getter
+@Component
+public class MigrationOptions {
+
+    /**
+     * Match physical files by name against a local index of all file nodes
+     * instead of one server side search per file
+     */
+    private boolean indexedNameMatching;
+
+    /**
+     * Maximum number of asynchronous API calls in flight
+     */
+    private int apiConcurrency = 16;
+
+    /**
+     * Number of concurrent file node updates written behind the physical moves
+     */
+    private int updateConcurrency = 8;
+
+    /**
+     * Number of file node updates queued or in flight before the physical moves wait
+     */
+    private int updateQueueSize = 1000;
+
+    /**
+     * Number of uuids resolved by a single search request
+     */
+    private int lookupBatchSize = 200;
+
+    /**
+     * Number of threads traversing directories and processing files
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Layout of the found and not found directories
+     */
+    private ShardLayout layout = ShardLayout.FLAT;
+
+    /**
+     * Journal of the work done, {@code null} to run without journal
+     */
+    private Path journal;
+
+    /**
+     * Prometheus text file of the metrics, {@code null} to export them to JMX only
+     */
+    private Path metricsFile;
+
+    /**
+     * Seconds between metrics exports
+     */
+    private long metricsInterval = 15;
+}
@@ -0,0 +1,82 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wall clock time of the phases of a migration. A phase run several times, once per source
+ * directory, accumulates its time. Phases are kept in the order they first started
+ */
+@Log4j2
+@Component
+public class MigrationPhases {
+
+    private final Map<String, Long> nanos = new LinkedHashMap<>();
+
+    /**
+     * Work of a phase
+     *
+     * @param <E> exception thrown by the work
+     */
+    @FunctionalInterface
+    public interface Work<E extends Exception> {
+
+        void run() throws E;
+    }
+
+    /**
+     * Runs a phase and adds its time, even if it failed
+     *
+     * @param name phase name
+     * @param work work of the phase
+     * @param <E>  exception thrown by the work
+     * @throws E if the work failed
+     */
+    public <E extends Exception> void run(@NotNull String name, @NotNull Work<E> work) throws E {
+
+        synchronized (this) {
+            nanos.putIfAbsent(name, 0L);
+        }
+
+        long start = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            add(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns milliseconds spent in every phase
+     */
+    @NotNull
+    public synchronized Map<String, Long> getMillis() {
+
+        Map<String, Long> millis = new LinkedHashMap<>();
+        nanos.forEach((name, elapsed) -> millis.put(name, elapsed / 1_000_000));
+
+        return millis;
+    }
+
+    /**
+     * Forgets the phases of a previous migration
+     */
+    public synchronized void clear() {
+        nanos.clear();
+    }
+
+    /**
+     * Logs the time spent in every phase
+     */
+    public void logDurations() {
+        getMillis().forEach((name, millis) -> log.info("Phase {}: {} ms", name, millis));
+    }
+
+    private synchronized void add(@NotNull String name, long elapsed) {
+        nanos.merge(name, elapsed, Long::sum);
+    }
+}
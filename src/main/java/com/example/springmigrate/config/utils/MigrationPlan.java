@@ -0,0 +1,308 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Complete list of the side effects of a migration, computed by a planning run and applied later
+ * by an execution run.
+ * <p>
+ * A plan is written as a compact binary file: a header with the found, not found and source
+ * directories and the not found directory node, the steps, and a trailer, so a truncated plan is rejected when read. Every step
+ * can be applied again with the same result, an interrupted execution is just executed again.
+ * <p>
+ * Steps are added by several threads while planning.
+ */
+@Getter
+public class MigrationPlan {
+
+    // "MGPL"
+    private static final int MAGIC = 0x4D47504C;
+    private static final int VERSION = 2;
+
+    /**
+     * Kind of step, steps are executed by kind in this order
+     */
+    public enum Kind {
+        /**
+         * Physical file moved, or renamed, from source to target, and its node, if any, pointed to
+         * the target name and parent
+         */
+        FILE,
+        /**
+         * File node not found in storage pointed to the not found directory
+         */
+        UNLINK_FILE,
+        /**
+         * Roots truncated and the found directory node created again as the only root
+         */
+        RECREATE_ROOT,
+        /**
+         * Directory node purged
+         */
+        DELETE_DIRECTORY
+    }
+
+    /**
+     * Plan step, unused fields are {@code null}
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Step {
+        private final Kind kind;
+        private final String source;
+        private final String target;
+        private final String nodeId;
+        private final String parentId;
+
+        /**
+         * Moves a physical file and points its node, if any, to the target
+         *
+         * @param source   source path
+         * @param target   target path
+         * @param nodeId   file node identifier, {@code null} if the file has no node
+         * @param parentId directory node of the target, {@code null} if the file has no node
+         * @return step
+         */
+        @NotNull
+        public static Step file(@NotNull Path source, @NotNull Path target, String nodeId, String parentId) {
+            return new Step(Kind.FILE, source.toString(), target.toString(), nodeId, parentId);
+        }
+
+        /**
+         * Points a file node not found in storage to the not found directory node
+         *
+         * @param nodeId   file node identifier
+         * @param parentId not found directory node identifier
+         * @return step
+         */
+        @NotNull
+        public static Step unlinkFile(@NotNull String nodeId, @NotNull String parentId) {
+            return new Step(Kind.UNLINK_FILE, null, null, nodeId, parentId);
+        }
+
+        /**
+         * Truncates roots and creates the found directory node as root
+         *
+         * @param pathBase    root path base
+         * @param directoryId found directory node identifier
+         * @return step
+         */
+        @NotNull
+        public static Step recreateRoot(@NotNull String pathBase, @NotNull String directoryId) {
+            return new Step(Kind.RECREATE_ROOT, pathBase, null, directoryId, null);
+        }
+
+        /**
+         * Purges a directory node
+         *
+         * @param nodeId directory node identifier
+         * @return step
+         */
+        @NotNull
+        public static Step deleteDirectory(@NotNull String nodeId) {
+            return new Step(Kind.DELETE_DIRECTORY, null, null, nodeId, null);
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case FILE:
+                    return nodeId == null
+                            ? String.format("FILE %s -> %s", source, target)
+                            : String.format("FILE %s -> %s, node %s -> %s", source, target, nodeId, parentId);
+                case UNLINK_FILE:
+                    return String.format("UNLINK_FILE node %s -> %s", nodeId, parentId);
+                case RECREATE_ROOT:
+                    return String.format("RECREATE_ROOT %s, node %s", source, nodeId);
+                default:
+                    return String.format("%s node %s", kind, nodeId);
+            }
+        }
+    }
+
+    private final Path foundDirectory;
+    private final Path notFoundDirectory;
+    private final String notFoundNodeId;
+    private final List<Path> sourceDirectories;
+    @Getter(AccessLevel.NONE)
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param foundDirectory    physical found directory
+     * @param notFoundDirectory physical directory of files not found in database
+     * @param notFoundNodeId    directory node of files not found, where nodes left in purged directories are moved
+     * @param sourceDirectories directories migrated
+     */
+    public MigrationPlan(
+            @NotNull Path foundDirectory,
+            @NotNull Path notFoundDirectory,
+            @NotNull String notFoundNodeId,
+            @NotNull List<Path> sourceDirectories) {
+        this.foundDirectory = foundDirectory;
+        this.notFoundDirectory = notFoundDirectory;
+        this.notFoundNodeId = notFoundNodeId;
+        this.sourceDirectories = new ArrayList<>(sourceDirectories);
+    }
+
+    /**
+     * Adds a step
+     *
+     * @param step step
+     */
+    public synchronized void add(@NotNull Step step) {
+        steps.add(step);
+    }
+
+    /**
+     * Returns steps of a kind, in the order they were added
+     *
+     * @param kind kind of step
+     * @return steps
+     */
+    @NotNull
+    public synchronized List<Step> getSteps(@NotNull Kind kind) {
+
+        List<Step> selected = new ArrayList<>();
+
+        for (Step step : steps) {
+            if (step.getKind() == kind) {
+                selected.add(step);
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * Returns number of steps of every kind
+     */
+    @NotNull
+    public synchronized Map<Kind, Integer> getCounts() {
+
+        Map<Kind, Integer> counts = new EnumMap<>(Kind.class);
+
+        for (Kind kind : Kind.values()) {
+            counts.put(kind, 0);
+        }
+        for (Step step : steps) {
+            counts.merge(step.getKind(), 1, Integer::sum);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Writes the plan
+     *
+     * @param file plan file, replaced if exists
+     * @throws IOException if the plan can't be written
+     */
+    public synchronized void write(@NotNull Path file) throws IOException {
+
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(part)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, foundDirectory.toString());
+            writeString(out, notFoundDirectory.toString());
+            writeString(out, notFoundNodeId);
+
+            out.writeInt(sourceDirectories.size());
+            for (Path directory : sourceDirectories) {
+                writeString(out, directory.toString());
+            }
+
+            out.writeInt(steps.size());
+            for (Step step : steps) {
+                out.writeByte(step.getKind().ordinal());
+                writeString(out, step.getSource());
+                writeString(out, step.getTarget());
+                writeString(out, step.getNodeId());
+                writeString(out, step.getParentId());
+            }
+
+            out.writeInt(MAGIC);
+        }
+
+        // never a half written plan
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a plan
+     *
+     * @param file plan file
+     * @return plan
+     * @throws IOException if the plan can't be read, or isn't a complete plan
+     */
+    @NotNull
+    public static MigrationPlan read(@NotNull Path file) throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a migration plan: " + file);
+            }
+
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported migration plan version " + version + ": " + file);
+            }
+
+            Path found = Paths.get(readString(in));
+            Path notFound = Paths.get(readString(in));
+            String notFoundNodeId = readString(in);
+
+            int directories = in.readInt();
+            List<Path> sourceDirectories = new ArrayList<>(directories);
+            for (int i = 0; i < directories; i++) {
+                sourceDirectories.add(Paths.get(readString(in)));
+            }
+
+            MigrationPlan plan = new MigrationPlan(found, notFound, notFoundNodeId, sourceDirectories);
+
+            int steps = in.readInt();
+            Kind[] kinds = Kind.values();
+            for (int i = 0; i < steps; i++) {
+                plan.steps.add(new Step(
+                        kinds[in.readUnsignedByte()],
+                        readString(in),
+                        readString(in),
+                        readString(in),
+                        readString(in)));
+            }
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Migration plan is corrupted: " + file);
+            }
+
+            return plan;
+
+        } catch (EOFException | ArrayIndexOutOfBoundsException ex) {
+            throw new IOException("Migration plan is truncated or corrupted: " + file, ex);
+        }
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.springmigrate.config.utils;
 
 import com.example.springmigrate.config.utils.error.NoRequirementsMeted;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 import com.example.springmigrate.model.DirectoryPhysical;
 import com.example.springmigrate.model.FilePhysical;
 import lombok.extern.log4j.Log4j2;
@@ -22,17 +23,18 @@ import java.util.stream.Stream;
 public class MigrationUtils {
 
     /**
-     * Move all directory content to destiny directory
+     * Renames a directory, or moves its files to the destination directory if already exists
      *
      * @param srcPath source directory
      * @param dstPath destination directory
+     * @param engine  file transfers
      * @throws IOException if IOException occurred
      */
-    public static void copyDirectoryContentTo(@NotNull Path srcPath, Path dstPath) throws IOException {
+    public static void copyDirectoryContentTo(@NotNull Path srcPath, Path dstPath, @NotNull FileTransferEngine engine) throws IOException {
         // (Is folder) for base recursive implementation
         if (!Files.exists(dstPath)) {
             // different folders: RENAME
-            Files.move(srcPath, dstPath);
+            engine.move(srcPath, dstPath);
 
         } else {
             // same folders, one of them already renamed
@@ -41,13 +43,10 @@ public class MigrationUtils {
                 if (Files.isRegularFile(child)) {
                     try {
                         Path p = Paths.get(dstPath.toString(), child.getFileName().toString());
-                        // copy if not exists
+                        // move if not exists, otherwise delete file from source only if folder was renamed
                         if (!Files.exists(p)) {
-                            Files.copy(child, p);
-                        }
-
-                        // delete file after copy from source only if folder was renamed
-                        if (!p.equals(child)) {
+                            engine.move(child, p);
+                        } else if (!p.equals(child)) {
                             Files.delete(child);
                         }
 
@@ -115,9 +114,34 @@ public class MigrationUtils {
             FilePhysical filePhysical,
             Map<String, String> mimeTypes)  {
 
+        return isLogicalRepresentationOfDirectory(dto.getName(), dto.getMimeType(), dto.getPathBase(), filePhysical, mimeTypes);
+    }
+
+    /**
+     * Check if physical and logical representations have same name and same parent directory
+     *
+     * @param projection   logical file node projection
+     * @param filePhysical physical file
+     * @param mimeTypes    map of mime types
+     * @return {@code true} if the names and parents match, otherwise {@code false}
+     */
+    public static boolean isLogicalRepresentationOfDirectory(
+            @NotNull FileNodeProjectionDto projection,
+            FilePhysical filePhysical,
+            Map<String, String> mimeTypes)  {
+
+        return isLogicalRepresentationOfDirectory(projection.getName(), projection.getMimeType(), projection.getPathBase(), filePhysical, mimeTypes);
+    }
+
+    private static boolean isLogicalRepresentationOfDirectory(
+            @NotNull String nodeName,
+            String mimeType,
+            @NotNull String pathBase,
+            FilePhysical filePhysical,
+            Map<String, String> mimeTypes)  {
+
         // add extension from metadata
         String physicalName = setFileNameWithExtension(filePhysical, mimeTypes);
-        String nodeName = dto.getName();
 
         /* Use cases:
               nodeName without extension (name)
@@ -125,41 +149,107 @@ public class MigrationUtils {
               fullNodeName name with extension (name.pdf)
               fullNodeName name with duplicate extension (name.pdf.pdf)
          */
-        String fullNodeName = nodeName.concat(mimeTypes.get(dto.getMimeType())).toLowerCase();
-        //physicalName.matches("^\\d{3}-");
-        boolean isEqualName = (physicalName.equals(nodeName) || physicalName.equals(fullNodeName));
+        // compared in place, the full node name is never built
+        boolean isEqualName = physicalName.equals(nodeName)
+                || equalsLowerCaseConcatenation(physicalName, nodeName, mimeTypes.get(mimeType));
 
         // normalize path bases (api response -> pathBase='opttoolstomcatlatest/Documents/1/VT')
-        boolean isEqualPathBase = filePhysical.getParentPath()
-                .replace(File.separator, "")
-                .equals(dto.getPathBase().replace(File.separator, ""));
+        boolean isEqualPathBase = equalsIgnoringSeparators(filePhysical.getParentPath(), pathBase);
 
         return isEqualName && isEqualPathBase;
     }
 
     /**
-     * Move file to found directory in physical storage
+     * Checks if a name is the lowercased concatenation of a prefix and a suffix, without
+     * concatenating them. Characters are lowercased one by one, regardless of the locale
+     *
+     * @param name   name
+     * @param prefix prefix
+     * @param suffix suffix, {@code null} never matches
+     * @return {@code true} if equals, otherwise {@code false}
+     */
+    static boolean equalsLowerCaseConcatenation(@NotNull String name, @NotNull String prefix, String suffix) {
+
+        if (suffix == null || name.length() != prefix.length() + suffix.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            char expected = i < prefix.length() ? prefix.charAt(i) : suffix.charAt(i - prefix.length());
+
+            if (name.charAt(i) != Character.toLowerCase(expected)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if two paths are equal once their separators are removed, without removing them
+     *
+     * @param path  path
+     * @param other other path
+     * @return {@code true} if equals, otherwise {@code false}
+     */
+    static boolean equalsIgnoringSeparators(@NotNull String path, @NotNull String other) {
+
+        int i = 0;
+        int j = 0;
+
+        while (true) {
+            while (i < path.length() && path.charAt(i) == File.separatorChar) {
+                i++;
+            }
+            while (j < other.length() && other.charAt(j) == File.separatorChar) {
+                j++;
+            }
+
+            if (i == path.length() || j == other.length()) {
+                return i == path.length() && j == other.length();
+            }
+            if (path.charAt(i++) != other.charAt(j++)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Move file to found directory in physical storage, with a name unique in the destination
+     * directory, not clashing with names allocated by other threads
      *
-     * @param file file
+     * @param file     file
+     * @param newName  new name
+     * @param parent   destination directory
+     * @param registry names taken in destination directories
+     * @param engine   file transfers
      * @throws IOException if IOException occurred
      */
     @NotNull
     public static FilePhysical movePhysicalFile(
             @NotNull FilePhysical file,
             @NotNull String newName,
-            @NotNull DirectoryPhysical parent) throws IOException {
+            @NotNull DirectoryPhysical parent,
+            @NotNull DestinationNameRegistry registry,
+            @NotNull FileTransferEngine engine) throws IOException {
 
         Path sourcePath = file.getAbsolutePath();
 
         file.setName(newName);
         file.setParentDirectory(parent);
-        FilePhysical renamed = getPathNameIfDuplicatedFile(file);
+        FilePhysical renamed = getPathNameIfDuplicatedFile(file, registry);
+
+        try {
+            engine.move(sourcePath, renamed.getAbsolutePath());
+        } catch (IOException ex) {
+            // not moved, the name is free again
+            registry.release(renamed);
+            throw ex;
+        }
 
-        Files.move(sourcePath, renamed.getAbsolutePath());
         return renamed;
     }
 
-
     /**
      * Add extension to filename
      *
@@ -172,11 +262,11 @@ public class MigrationUtils {
             @NotNull Map<String, String> mimeTypes) {
 
         String physicalName = filePhysical.getName();
-        // get mimetype from metadata
-        String mimeType = filePhysical.getMimeType();
 
         // Try set extension
         if (!filePhysical.isFullNameWithExtension()) {
+            // get mimetype from metadata, probed only when needed
+            String mimeType = filePhysical.getMimeType();
             try {
                 physicalName = filePhysical.getName().toLowerCase().concat(".").concat(mimeTypes.get(mimeType));
             } catch (NullPointerException | ClassCastException ex) {
@@ -187,28 +277,23 @@ public class MigrationUtils {
     }
 
     /**
-     * Check for duplicated files in physical storage and return a file with unique filename
+     * Reserves a unique lowercased filename in the storage path, not clashing with existing
+     * files nor with names allocated by other threads.
+     * <p>
+     * The name stays taken, it must be released if the file is finally not moved
      *
      * @param filePhysical physical file
+     * @param registry     names taken in destination directories
      * @return new file with unique name in storage path
+     * @see DestinationNameRegistry#release(FilePhysical)
      */
-    public static FilePhysical getPathNameIfDuplicatedFile(@NotNull FilePhysical filePhysical) {
-        String name = filePhysical.getName().toLowerCase();
-        File finalFileName = new File(filePhysical.getAbsolutePath().toString().toLowerCase());
-        int prefix = 1;
+    public static FilePhysical getPathNameIfDuplicatedFile(@NotNull FilePhysical filePhysical, @NotNull DestinationNameRegistry registry) {
 
-
-        while (finalFileName.exists()) {
-            name = String.format("%03d-%s", prefix, filePhysical.getName().toLowerCase());
-            finalFileName = new File(Paths.get(filePhysical.getParentDirectory().getPath().toString(), name.concat(filePhysical.getExtension() == null ? "" : filePhysical.getExtension().toLowerCase())).toString());
-            prefix++;
-        }
-
-        return FilePhysical.builder()
-                .name(name)
-                .extension(filePhysical.getExtension() == null ? "" : filePhysical.getExtension())
+        return registry.reserve(FilePhysical.builder()
+                .name(filePhysical.getName().toLowerCase())
+                .extension(filePhysical.getExtension())
                 .parentDirectory(filePhysical.getParentDirectory())
-                .build();
+                .build());
     }
 
     /**
@@ -275,11 +360,13 @@ public class MigrationUtils {
      */
     public static void showResume(@NotNull DirectoryPhysical found, @NotNull DirectoryPhysical notFound, @NotNull List<Path> sourceDirectories) {
 
-        File file = new File(found.getFullPath());
-        int filesFound = Objects.requireNonNull(file.listFiles(File::isFile)).length;
+        // files could be spread over buckets, counted recursively
+        long filesMissing = fileCount(notFound.getPath());
+        long filesFound = fileCount(found.getPath());
 
-        file = new File(notFound.getFullPath());
-        int filesMissing = Objects.requireNonNull(file.listFiles(File::isFile)).length;
+        if (notFound.getPath().startsWith(found.getPath())) {
+            filesFound -= filesMissing;
+        }
 
         log.info("*******************************************************");
         log.info("*******************************************************");
@@ -300,19 +387,31 @@ public class MigrationUtils {
     }
 
     /**
-     * Validate UUID
+     * Validate UUID, in its canonical form only (8-4-4-4-12 hex digits). Most names checked are
+     * not uuids, they are rejected without parsing nor exceptions
      *
      * @param name name
      * @return {@code true} if element name is a valid UUID, {@code false} otherwise
      */
     @NotNull
     public static Boolean isValidUUID(String name) {
-        try {
-            // for validation only
-            UUID.fromString(name);
-        } catch (IllegalArgumentException ex) {
+
+        if (name == null || name.length() != 36) {
             return false;
         }
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+
         return true;
     }
 
@@ -0,0 +1,155 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.dto.PaginatedListDto;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy iterator over a paginated search, only the current page is kept in memory.
+ * <p>
+ * Page size adapts to the observed response: it is halved when a page takes longer than
+ * {@link #TARGET_LATENCY_MILLIS} or weighs more than {@link #MAX_PAGE_BYTES}, and doubled
+ * when both are under half their limit. Sizes are powers of two, so the items already read
+ * are always a whole number of pages of the new size.
+ * <p>
+ * Pages are addressed by offset, the cursor must not be used over a result set modified
+ * while iterating (e.g. updating the parent of children searched by parent).
+ *
+ * @param <T> item type
+ */
+@Log4j2
+public class PageCursor<T> implements Iterator<T> {
+
+    public static final int MIN_PAGE_SIZE = 128;
+    public static final int MAX_PAGE_SIZE = 16384;
+    public static final int INITIAL_PAGE_SIZE = 1024;
+    public static final long TARGET_LATENCY_MILLIS = 2000;
+    public static final long MAX_PAGE_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Request of a page
+     *
+     * @param <T> item type
+     */
+    @FunctionalInterface
+    public interface PageFetcher<T> {
+
+        /**
+         * Fetches a page
+         *
+         * @param page page number, starting at 0
+         * @param size page size
+         * @return page and its size, {@code null} if the request was not successful
+         * @throws IOException if I/O exception occurred
+         */
+        SizedPage<T> fetch(int page, int size) throws IOException;
+    }
+
+    private final PageFetcher<T> fetcher;
+    private Iterator<T> current = Collections.emptyIterator();
+    private long offset;
+    private int size = INITIAL_PAGE_SIZE;
+    private boolean exhausted;
+
+    public PageCursor(@NotNull PageFetcher<T> fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Returns a sequential stream over all items, pages are requested as the stream is consumed
+     *
+     * @param fetcher page request
+     * @param <T>     item type
+     * @return stream of items, I/O errors are thrown as {@link UncheckedIOException}
+     */
+    @NotNull
+    public static <T> Stream<T> stream(@NotNull PageFetcher<T> fetcher) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(new PageCursor<>(fetcher), Spliterator.ORDERED),
+                false);
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        while (!current.hasNext() && !exhausted) {
+            fetchNextPage();
+        }
+
+        return current.hasNext();
+    }
+
+    @Override
+    public T next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return current.next();
+    }
+
+    /**
+     * Returns the size of the next page
+     */
+    public int getPageSize() {
+        return size;
+    }
+
+    private void fetchNextPage() {
+
+        int pageSize = size;
+        long start = System.nanoTime();
+        SizedPage<T> sized;
+
+        try {
+            sized = fetcher.fetch((int) (offset / pageSize), pageSize);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (sized == null) {
+            throw new UncheckedIOException(new IOException("Unable to read page at offset " + offset));
+        }
+
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
+        PaginatedListDto<T> page = sized.getPage() == null ? new PaginatedListDto<>() : sized.getPage();
+        List<T> results = page.getResults() == null ? Collections.emptyList() : page.getResults();
+
+        offset += results.size();
+        current = results.iterator();
+        exhausted = results.size() < pageSize || (page.getRowNum() > 0 && offset >= page.getRowNum());
+
+        adapt(latencyMillis, sized.getPayloadBytes());
+    }
+
+    private void adapt(long latencyMillis, long payloadBytes) {
+
+        boolean tooSlow = latencyMillis > TARGET_LATENCY_MILLIS;
+        boolean tooLarge = payloadBytes > MAX_PAGE_BYTES;
+
+        if ((tooSlow || tooLarge) && size > MIN_PAGE_SIZE) {
+            size /= 2;
+            log.debug("Page size reduced to {} ({} ms, {} bytes)", size, latencyMillis, payloadBytes);
+
+        } else if (latencyMillis < TARGET_LATENCY_MILLIS / 2
+                && payloadBytes < MAX_PAGE_BYTES / 2
+                && size < MAX_PAGE_SIZE
+                // items read must be whole pages of the new size
+                && offset % (2L * size) == 0) {
+            size *= 2;
+            log.debug("Page size increased to {} ({} ms, {} bytes)", size, latencyMillis, payloadBytes);
+        }
+    }
+}
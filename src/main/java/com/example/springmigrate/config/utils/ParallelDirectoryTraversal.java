@@ -0,0 +1,156 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Work stealing traversal of a directory tree.
+ * <p>
+ * Every directory is a task: its content is listed, its subdirectories are prepared
+ * sequentially in listing order (e.g. renamed), and then the files, in chunks, and the
+ * subdirectories are forked as independent tasks. Idle threads steal pending chunks and
+ * subtrees, so a huge subtree is split across all threads.
+ * <p>
+ * Handlers are called concurrently for different directories and chunks, a failure in
+ * a directory is logged and doesn't stop the traversal of the others.
+ * <p>
+ * Handlers may block, like on the bounded window of {@link ApiCallExecutor}. Blocked workers
+ * are deliberately not compensated through {@link ForkJoinPool#managedBlock}, so at most
+ * {@code parallelism} handlers run and a full window slows the traversal down. What they
+ * wait for completes on other threads, never on a task of this pool.
+ */
+@Log4j2
+public class ParallelDirectoryTraversal {
+
+    /**
+     * Directory content handler
+     */
+    public interface Handler {
+
+        /**
+         * Prepares the subdirectories of a directory before they are traversed,
+         * called once per directory and before its files are processed
+         *
+         * @param directory      parent directory
+         * @param subdirectories subdirectories in listing order
+         * @return subdirectories to traverse
+         */
+        List<Path> prepareDirectories(@NotNull Path directory, @NotNull List<Path> subdirectories);
+
+        /**
+         * Processes a chunk of files of a directory
+         *
+         * @param directory parent directory
+         * @param files     regular files, in listing order
+         */
+        void processFiles(@NotNull Path directory, @NotNull List<Path> files);
+    }
+
+    private final int parallelism;
+    private final int filesPerTask;
+
+    /**
+     * Constructor
+     *
+     * @param parallelism  number of threads
+     * @param filesPerTask maximum number of files processed by a single task
+     */
+    public ParallelDirectoryTraversal(int parallelism, int filesPerTask) {
+        this.parallelism = Math.max(1, parallelism);
+        this.filesPerTask = Math.max(1, filesPerTask);
+    }
+
+    /**
+     * Traverses a directory tree, returns when all directories and files were handled
+     *
+     * @param root    root directory
+     * @param handler directory content handler
+     */
+    public void traverse(@NotNull Path root, @NotNull Handler handler) {
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invoke(new DirectoryTask(root, handler));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final Handler handler;
+
+        DirectoryTask(Path directory, Handler handler) {
+            this.directory = directory;
+            this.handler = handler;
+        }
+
+        @Override
+        protected void compute() {
+
+            List<RecursiveAction> tasks = new ArrayList<>();
+
+            try {
+                List<Path> files = new ArrayList<>();
+                List<Path> directories = new ArrayList<>();
+
+                for (Path path : MigrationUtils.getPathList(directory)) {
+                    if (Files.isRegularFile(path)) {
+                        files.add(path);
+                    } else {
+                        directories.add(path);
+                    }
+                }
+
+                // order sensitive, before anything in the subtrees runs
+                for (Path subdirectory : handler.prepareDirectories(directory, directories)) {
+                    tasks.add(new DirectoryTask(subdirectory, handler));
+                }
+
+                for (int from = 0; from < files.size(); from += filesPerTask) {
+                    tasks.add(new FilesTask(directory, files.subList(from, Math.min(files.size(), from + filesPerTask)), handler));
+                }
+
+            } catch (Exception ex) {
+                log.error("Unable to traverse {}: {}", directory, ex.getMessage());
+            }
+
+            invokeAll(tasks);
+        }
+    }
+
+    private static class FilesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final List<Path> files;
+        private final Handler handler;
+
+        FilesTask(Path directory, List<Path> files, Handler handler) {
+            this.directory = directory;
+            this.files = files;
+            this.handler = handler;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                handler.processFiles(directory, files);
+            } catch (Exception ex) {
+                log.error("Unable to process files of {}: {}", directory, ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stage of a {@link StagedPipeline}: a bounded queue consumed by its own pool of threads.
+ * <p>
+ * Submitting to a full queue blocks, so a fast stage can't race ahead of a slow one.
+ * A failure processing an item is logged and counted, and the stage goes on with the next item.
+ * An interrupted worker counts its item as failed and stops its thread, keeping the interrupt.
+ *
+ * @param <T> item type
+ */
+@Log4j2
+public class PipelineStage<T> {
+
+    /**
+     * Item processing of a stage
+     *
+     * @param <T> item type
+     */
+    @FunctionalInterface
+    public interface Worker<T> {
+
+        /**
+         * Processes an item, usually submitting it to the next stage
+         *
+         * @param item item
+         * @throws Exception if the item could not be processed
+         */
+        void process(T item) throws Exception;
+    }
+
+    private static final long POLL_MILLIS = 100;
+
+    private final String name;
+    private final int capacity;
+    private final int threads;
+    private final BlockingQueue<T> queue;
+    private final Worker<T> worker;
+    private final ExecutorService executor;
+    private final CountDownLatch done;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    /**
+     * Creates and starts a stage
+     *
+     * @param name     stage name, also used for thread names
+     * @param threads  number of threads
+     * @param capacity queue capacity
+     * @param worker   item processing
+     */
+    public PipelineStage(@NotNull String name, int threads, int capacity, @NotNull Worker<T> worker) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.worker = worker;
+        this.done = new CountDownLatch(this.threads);
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < this.threads; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Submits an item, blocking while the queue is full
+     *
+     * @param item item
+     * @throws InterruptedException  if interrupted while waiting
+     * @throws IllegalStateException if the stage is already finished
+     */
+    public void submit(@NotNull T item) throws InterruptedException {
+
+        if (closed) {
+            throw new IllegalStateException("Stage " + name + " is finished");
+        }
+
+        queue.put(item);
+    }
+
+    /**
+     * Stops accepting items and waits until all queued items are processed.
+     * Must be called after the last submit
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void finish() throws InterruptedException {
+        closed = true;
+
+        try {
+            done.await();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the number of items waiting in the queue
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of items processed, successfully or not
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Returns the number of items whose processing failed
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns items processed per second since the stage started
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : processed.get() / seconds;
+    }
+
+    /**
+     * Returns the fraction of time the stage threads were processing items, from 0 to 1
+     */
+    public double getUtilization() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : (double) busyNanos.get() / ((double) elapsed * threads);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: queue %d/%d, %d processed (%d failed), %.1f/s, %.0f%% busy",
+                name, getQueueDepth(), capacity, getProcessed(), getFailed(), getThroughput(), getUtilization() * 100);
+    }
+
+    private void work() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                T item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (item == null) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    worker.process(item);
+                } catch (InterruptedException ex) {
+                    failed.incrementAndGet();
+                    log.warn("Stage {} interrupted processing {}", name, item);
+                    throw ex;
+                } catch (Exception ex) {
+                    failed.incrementAndGet();
+                    log.error("Stage {} failed processing {}: {}", name, item, ex.getMessage());
+                } finally {
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                    processed.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            done.countDown();
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.example.springmigrate.config.utils;
 
 import lombok.RequiredArgsConstructor;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.jetbrains.annotations.NotNull;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+import javax.net.SocketFactory;
+import java.io.IOException;
 import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 
@@ -13,23 +22,149 @@ import java.util.concurrent.TimeUnit;
 public class RetrofitClient {
 
     private final ApiUrl apiUrl;
-    private static Retrofit instance;
+    private final MigrationMetrics metrics;
+    private final HttpClientOptions options;
+    // one client per API, created on first use by any thread
+    private volatile Retrofit instance;
 
     public Retrofit getInstance() throws ConnectException {
-        if (instance == null) {
-            OkHttpClient.Builder httpClient = new OkHttpClient.Builder()
-                    .readTimeout(600, TimeUnit.SECONDS)
-                    .connectTimeout(600, TimeUnit.SECONDS)
-                    .writeTimeout(600, TimeUnit.SECONDS);
+        Retrofit retrofit = instance;
 
+        if (retrofit == null) {
+            synchronized (this) {
+                retrofit = instance;
+                if (retrofit == null) {
+                    retrofit = new Retrofit.Builder()
+                            .baseUrl(apiUrl.getBaseUrl())
+                            .addConverterFactory(GsonConverterFactory.create())
+                            .client(newHttpClient())
+                            .build();
+                    instance = retrofit;
+                }
+            }
+        }
+
+        return retrofit;
+    }
+
+    /**
+     * Builds the HTTP client of the API with the pool, dispatcher, protocol, socket, retry and limit options
+     *
+     * @return HTTP client
+     */
+    @NotNull
+    public OkHttpClient newHttpClient() {
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(options.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(options.getMaxRequestsPerHost());
 
-            instance = new Retrofit.Builder()
-                    .baseUrl(apiUrl.getBaseUrl())
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .client(httpClient.build())
-                    .build();
+        OkHttpClient.Builder httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(
+                        options.getMaxIdleConnections(),
+                        options.getKeepAliveSeconds(),
+                        TimeUnit.SECONDS))
+                .socketFactory(new TunedSocketFactory(options))
+                .addInterceptor(ApiLatencyInterceptor.DEADLINES)
+                .addInterceptor(limiterInterceptor())
+                .addInterceptor(new ApiMetricsInterceptor(metrics))
+                .readTimeout(options.getReadTimeoutSeconds(), TimeUnit.SECONDS)
+                .connectTimeout(options.getConnectTimeoutSeconds(), TimeUnit.SECONDS)
+                .writeTimeout(options.getWriteTimeoutSeconds(), TimeUnit.SECONDS);
+
+        if (options.isHttp2PriorKnowledge()) {
+            httpClient.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
         }
 
-        return instance;
+        // sends the attempts of hedged requests, sharing pool and dispatcher
+        OkHttpClient attempts = httpClient.build();
+        OkHttpClient.Builder client = attempts.newBuilder();
+
+        // retries outermost, every attempt is hedged, limited and measured
+        client.interceptors().add(0, new ApiRetryInterceptor(options, metrics));
+        client.interceptors().add(1, new ApiLatencyInterceptor(options, metrics, attempts));
+
+        return client.build();
+    }
+
+    /**
+     * Limits of the requests sent, every attempt of a request is limited, waiting for a
+     * retry is not
+     */
+    @NotNull
+    private ApiLimiterInterceptor limiterInterceptor() {
+
+        AdaptiveConcurrencyLimiter limiter = null;
+        TokenBucket rateLimit = null;
+
+        if (options.isAdaptiveConcurrency()) {
+            limiter = new AdaptiveConcurrencyLimiter(
+                    options.getInitialConcurrency(),
+                    options.getMinConcurrency(),
+                    options.getMaxConcurrency(),
+                    options.getLatencyTolerance(),
+                    options.getBackoffRatio());
+            metrics.gauge(MigrationMetrics.API_CONCURRENCY_LIMIT, limiter::getLimit);
+        }
+
+        if (options.getRateLimit() > 0) {
+            rateLimit = new TokenBucket(
+                    options.getRateLimit(),
+                    options.getRateLimitBurst() > 0 ? options.getRateLimitBurst() : options.getRateLimit());
+        }
+
+        return new ApiLimiterInterceptor(limiter, rateLimit);
+    }
+
+    /**
+     * Plain sockets with the TCP options applied before connecting, as buffer sizes
+     * must be set before the TCP window is negotiated
+     */
+    private static class TunedSocketFactory extends SocketFactory {
+
+        private final SocketFactory delegate = SocketFactory.getDefault();
+        private final HttpClientOptions options;
+
+        private TunedSocketFactory(HttpClientOptions options) {
+            this.options = options;
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return tune(delegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return tune(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return tune(delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return tune(delegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return tune(delegate.createSocket(address, port, localAddress, localPort));
+        }
+
+        @NotNull
+        private Socket tune(@NotNull Socket socket) throws IOException {
+            socket.setTcpNoDelay(options.isTcpNoDelay());
+            if (options.getSendBufferSize() > 0) {
+                socket.setSendBufferSize(options.getSendBufferSize());
+            }
+            if (options.getReceiveBufferSize() > 0) {
+                socket.setReceiveBufferSize(options.getReceiveBufferSize());
+            }
+            return socket;
+        }
     }
 }
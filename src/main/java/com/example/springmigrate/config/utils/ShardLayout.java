@@ -0,0 +1,129 @@
+package com.example.springmigrate.config.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Layout of the files in a destination directory, flat or spread over bucket subdirectories
+ * so the number of entries per directory stays bounded
+ */
+public enum ShardLayout {
+
+    /**
+     * All files directly in the destination directory
+     */
+    FLAT(Collections.emptyList()),
+
+    /**
+     * Two levels of 256 buckets ({@code 3f/a0}) chosen by a hash of a file key
+     */
+    HASH(Arrays.asList(Pattern.compile("[0-9a-f]{2}"), Pattern.compile("[0-9a-f]{2}"))),
+
+    /**
+     * Year and month buckets ({@code 2021/07}) of the file last modification
+     */
+    DATE(Arrays.asList(Pattern.compile("\\d{4}"), Pattern.compile("\\d{2}")));
+
+    private static final int BUCKETS_PER_LEVEL = 256;
+
+    private final List<Pattern> levels;
+
+    ShardLayout(List<Pattern> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Returns the number of bucket levels
+     */
+    public int getDepth() {
+        return levels.size();
+    }
+
+    /**
+     * Check if a directory name is a bucket name of a level
+     *
+     * @param level level, starting at 0
+     * @param name  directory name
+     * @return {@code true} if the name is a bucket of the level
+     */
+    public boolean isBucketName(int level, @NotNull String name) {
+        return level < levels.size() && levels.get(level).matcher(name).matches();
+    }
+
+    /**
+     * Returns the bucket of a file
+     *
+     * @param key      stable key of the file (e.g. node identifier), used by {@link #HASH}
+     * @param modified file last modification, used by {@link #DATE}
+     * @return bucket directory names from the top level, empty if {@link #FLAT}
+     */
+    @NotNull
+    public List<String> bucket(@NotNull String key, @NotNull Instant modified) {
+
+        switch (this) {
+            case HASH:
+                int hash = mix(key.toLowerCase().hashCode());
+                return Arrays.asList(
+                        String.format("%02x", hash & 0xff),
+                        String.format("%02x", (hash >>> 8) & 0xff));
+
+            case DATE:
+                LocalDate date = modified.atZone(ZoneId.systemDefault()).toLocalDate();
+                return Arrays.asList(
+                        String.format("%04d", date.getYear()),
+                        String.format("%02d", date.getMonthValue()));
+
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Check if all buckets are known up front, so they can be created before the files
+     */
+    public boolean isPredefined() {
+        return this == HASH;
+    }
+
+    /**
+     * Returns all bucket names of a level, if known up front
+     *
+     * @param level level, starting at 0
+     * @return bucket names, empty if buckets depend on the files
+     */
+    @NotNull
+    public List<String> bucketNames(int level) {
+
+        if (!isPredefined() || level >= levels.size()) {
+            return Collections.emptyList();
+        }
+
+        List<String> names = new ArrayList<>(BUCKETS_PER_LEVEL);
+
+        for (int bucket = 0; bucket < BUCKETS_PER_LEVEL; bucket++) {
+            names.add(String.format("%02x", bucket));
+        }
+
+        return names;
+    }
+
+    /**
+     * Spreads similar keys over all buckets (murmur3 finalizer)
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
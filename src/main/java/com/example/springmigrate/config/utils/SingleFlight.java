@@ -0,0 +1,242 @@
+package com.example.springmigrate.config.utils;
+
+import com.google.gson.Gson;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical API lookups: while a lookup is in flight, the same lookup,
+ * same endpoint and arguments, waits for it instead of sending another request.
+ * <p>
+ * Arguments are compared by their JSON, as sent to the API, and lookups reading different
+ * results of a request never share it. DTOs are mutable, so a shared result is never given
+ * to a caller, every caller gets its own deep copy. Only the lookups in flight are shared,
+ * a lookup sent after the previous one answered is sent again, nothing is cached.
+ */
+@Component
+public class SingleFlight {
+
+    // arguments as sent to the API
+    private static final Gson KEYS = new Gson();
+
+    private final HttpClientOptions options;
+    private final MigrationMetrics metrics;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    public SingleFlight(HttpClientOptions options, MigrationMetrics metrics) {
+        this.options = options;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Blocking lookup
+     *
+     * @param endpoint  endpoint of the lookup
+     * @param arguments arguments of the lookup
+     * @param type      type of the result, to copy it
+     * @param lookup    sends the lookup
+     * @param <V>       result type
+     * @return result of the lookup, or a copy of the result of the identical lookup in flight
+     * @throws IOException if the lookup failed
+     */
+    public <V> V execute(@NotNull String endpoint, Object arguments, @NotNull Type type, @NotNull Lookup<V> lookup)
+            throws IOException {
+
+        if (!options.isCoalesceRequests()) {
+            return lookup.execute();
+        }
+
+        String key = key(endpoint, arguments, type);
+        Flight flight = new Flight();
+        Flight joined = join(key, flight, endpoint);
+
+        if (joined != null) {
+            return DtoCopies.copy(await(joined.result, endpoint), type);
+        }
+
+        V value;
+        try {
+            value = lookup.execute();
+        } catch (IOException | RuntimeException ex) {
+            land(key, flight);
+            flight.result.completeExceptionally(ex);
+            throw ex;
+        }
+
+        boolean shared = land(key, flight);
+        flight.result.complete(value);
+
+        return shared ? DtoCopies.copy(value, type) : value;
+    }
+
+    /**
+     * Non-blocking lookup
+     *
+     * @param endpoint  endpoint of the lookup
+     * @param arguments arguments of the lookup
+     * @param type      type of the result, to copy it
+     * @param lookup    sends the lookup
+     * @param <V>       result type
+     * @return future with the result of the lookup, or a copy of the result of the identical lookup in flight
+     */
+    @NotNull
+    public <V> CompletableFuture<V> executeAsync(
+            @NotNull String endpoint,
+            Object arguments,
+            @NotNull Type type,
+            @NotNull Supplier<CompletableFuture<V>> lookup) {
+
+        if (!options.isCoalesceRequests()) {
+            return lookup.get();
+        }
+
+        String key = key(endpoint, arguments, type);
+        Flight flight = new Flight();
+        Flight joined = join(key, flight, endpoint);
+
+        if (joined != null) {
+            return joined.result.thenApply(value -> DtoCopies.copy(value, type));
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = lookup.get();
+        } catch (RuntimeException ex) {
+            land(key, flight);
+            flight.result.completeExceptionally(ex);
+            throw ex;
+        }
+
+        CompletableFuture<V> own = new CompletableFuture<>();
+
+        result.whenComplete((value, error) -> {
+            boolean shared = land(key, flight);
+            if (error != null) {
+                flight.result.completeExceptionally(error);
+                own.completeExceptionally(error);
+            } else {
+                flight.result.complete(value);
+                try {
+                    own.complete(shared ? DtoCopies.copy(value, type) : value);
+                } catch (RuntimeException ex) {
+                    own.completeExceptionally(ex);
+                }
+            }
+        });
+
+        return own;
+    }
+
+    /**
+     * Returns number of lookups in flight
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * Starts the given flight, or joins the identical one in flight
+     *
+     * @return flight joined, {@code null} if the given flight was started
+     */
+    private Flight join(@NotNull String key, @NotNull Flight flight, @NotNull String endpoint) {
+
+        while (true) {
+            Flight existing = flights.putIfAbsent(key, flight);
+
+            if (existing == null) {
+                return null;
+            }
+
+            if (existing.join()) {
+                metrics.increment(MigrationMetrics.API_COALESCED, "endpoint", endpoint);
+                return existing;
+            }
+
+            // landed while joining, removed right after
+            flights.remove(key, existing);
+        }
+    }
+
+    /**
+     * Ends a flight before publishing its result
+     *
+     * @return {@code true} if other lookups joined it, so its result is shared
+     */
+    private boolean land(@NotNull String key, @NotNull Flight flight) {
+        boolean shared = flight.land();
+        flights.remove(key, flight);
+        return shared;
+    }
+
+    @NotNull
+    private static String key(@NotNull String endpoint, Object arguments, @NotNull Type type) {
+        return endpoint + " " + type.getTypeName() + " " + KEYS.toJson(arguments);
+    }
+
+    private static Object await(@NotNull CompletableFuture<Object> result, @NotNull String endpoint) throws IOException {
+
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + endpoint);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() instanceof CompletionException && ex.getCause().getCause() != null
+                    ? ex.getCause().getCause()
+                    : ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A lookup in flight and the lookups joining it. Once landed, it can't be joined, so the
+     * result of a lookup nobody joined is never copied nor shared
+     */
+    private static class Flight {
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private int joined;
+        private boolean landed;
+
+        private synchronized boolean join() {
+            if (landed) {
+                return false;
+            }
+            joined++;
+            return true;
+        }
+
+        private synchronized boolean land() {
+            landed = true;
+            return joined > 0;
+        }
+    }
+
+    /**
+     * Blocking lookup sending a request
+     *
+     * @param <V> result type
+     */
+    @FunctionalInterface
+    public interface Lookup<V> {
+
+        V execute() throws IOException;
+    }
+}
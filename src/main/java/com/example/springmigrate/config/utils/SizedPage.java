@@ -0,0 +1,23 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.dto.PaginatedListDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Page of a paginated search with the size of its response body, measured by the client as it
+ * is not part of the API response
+ *
+ * @param <T> item type
+ * @see PageCursor
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SizedPage<T> {
+
+    private PaginatedListDto<T> page;
+    // size of the response body, -1 if unknown
+    private long payloadBytes = -1;
+}
@@ -0,0 +1,100 @@
+package com.example.springmigrate.config.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline of stages connected by bounded queues, every stage with its own threads.
+ * <p>
+ * Stages are added downstream first, so a stage worker can submit to the next one.
+ * Queue depth, throughput and utilization of every stage are logged periodically,
+ * a full queue in front of a busy stage points to the bottleneck.
+ */
+@Log4j2
+public class StagedPipeline {
+
+    private final String name;
+    private final List<PipelineStage<?>> stages = new ArrayList<>();
+    private final ScheduledExecutorService reporter;
+
+    /**
+     * Constructor
+     *
+     * @param name            pipeline name
+     * @param reportEverySecs seconds between statistics logs, 0 to disable
+     */
+    public StagedPipeline(@NotNull String name, long reportEverySecs) {
+        this.name = name;
+
+        if (reportEverySecs > 0) {
+            reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name + "-stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(this::logStats, reportEverySecs, reportEverySecs, TimeUnit.SECONDS);
+        } else {
+            reporter = null;
+        }
+    }
+
+    /**
+     * Adds and starts a stage, stages must be added from the last to the first
+     *
+     * @param name     stage name
+     * @param threads  number of threads
+     * @param capacity queue capacity
+     * @param worker   item processing
+     * @param <T>      item type
+     * @return stage
+     */
+    @NotNull
+    public synchronized <T> PipelineStage<T> addStage(@NotNull String name, int threads, int capacity, @NotNull PipelineStage.Worker<T> worker) {
+        PipelineStage<T> stage = new PipelineStage<>(name, threads, capacity, worker);
+        stages.add(0, stage);
+        return stage;
+    }
+
+    /**
+     * Returns the stages, from the first to the last
+     */
+    @NotNull
+    public synchronized List<PipelineStage<?>> getStages() {
+        return Collections.unmodifiableList(new ArrayList<>(stages));
+    }
+
+    /**
+     * Finishes all stages from the first to the last, once the first stage received
+     * its last item, and logs the final statistics
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void finish() throws InterruptedException {
+        try {
+            for (PipelineStage<?> stage : getStages()) {
+                stage.finish();
+            }
+        } finally {
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+            logStats();
+        }
+    }
+
+    /**
+     * Logs the statistics of every stage
+     */
+    public void logStats() {
+        for (PipelineStage<?> stage : getStages()) {
+            log.info("Pipeline {} {}", name, stage);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.springmigrate.config.utils;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limit: a bucket of {@code burst} tokens refilled at {@code rate} tokens per second,
+ * every request takes a token, waiting for it if the bucket is empty
+ */
+public class TokenBucket {
+
+    private final double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Constructor, the bucket starts full
+     *
+     * @param ratePerSecond tokens added per second
+     * @param burst         bucket size, requests sent at once after an idle period
+     */
+    public TokenBucket(double ratePerSecond, double burst) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        }
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, waiting until one is available
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedIOException {
+
+        long wait = reserve();
+
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for rate limit");
+            }
+        }
+    }
+
+    /**
+     * Takes a token, possibly in advance, and returns nanos to wait until it is due.
+     * Tokens taken in advance leave the bucket in debt, so waiters are served in order
+     */
+    synchronized long reserve() {
+
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+        refilledAt = now;
+        tokens -= 1;
+
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / ratePerNano);
+    }
+}
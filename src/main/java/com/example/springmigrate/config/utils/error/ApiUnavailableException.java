@@ -0,0 +1,20 @@
+package com.example.springmigrate.config.utils.error;
+
+import java.io.IOException;
+
+/**
+ * The API kept failing after all retries, so the missing answer must not be taken as
+ * "not found"
+ */
+public class ApiUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ApiUnavailableException(String message) {
+        super(message);
+    }
+
+    public ApiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
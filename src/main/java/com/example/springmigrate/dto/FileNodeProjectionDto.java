@@ -0,0 +1,27 @@
+package com.example.springmigrate.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+
+/**
+ * Migration projection of a file node, without file data and exports.
+ * <p>
+ * Only for reading, a file node must be updated from its full representation
+ * ({@link FileNodeDto}), otherwise omitted fields could be lost.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FileNodeProjectionDto {
+
+    private String id;
+    private String name;
+    private String mimeType;
+    private String parentDirectoryId;
+    private String pathBase;
+    private Integer versionLock;
+}
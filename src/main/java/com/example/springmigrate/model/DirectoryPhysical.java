@@ -39,7 +39,10 @@ public class DirectoryPhysical {
      * Returns base path of a directory
      */
     public String getBasePath() {
-        return getParent().getFullPath();
+        Path parent = path.getParent();
+
+        // no parent directory built for its path only
+        return parent == null ? getParent().getFullPath() : parent.toString();
     }
 
 
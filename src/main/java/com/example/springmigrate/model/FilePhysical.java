@@ -4,7 +4,6 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.io.FilenameUtils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -40,17 +39,45 @@ public class FilePhysical {
     }
 
     public Path getAbsolutePath() {
-        return Paths.get(parentDirectory.getFullPath(), getFileName());
+        // resolved against the parent path, never parsed again
+        return parentDirectory.getPath().resolve(getFileName());
     }
 
     public Path getAbsolutePathWithoutExtension() {
-        return Paths.get(parentDirectory.getFullPath(), getName());
+        return parentDirectory.getPath().resolve(getName());
     }
 
+    /**
+     * Returns {@code true} if the file name has a non blank extension. Name and extension
+     * are scanned backwards to the last dot, without joining them
+     */
     public Boolean isFullNameWithExtension() {
-        String extension = FilenameUtils.getExtension(this.getAbsolutePath().toString());
 
-        return !extension.isBlank();
+        boolean blank = true;
+
+        for (int i = getFileNameLength() - 1; i >= 0; i--) {
+            char c = getFileNameChar(i);
+
+            if (c == '.') {
+                return !blank;
+            }
+            if (c == '/' || c == '\\') {
+                return false;
+            }
+            if (!Character.isWhitespace(c)) {
+                blank = false;
+            }
+        }
+
+        return false;
+    }
+
+    private int getFileNameLength() {
+        return name.length() + (extension == null ? 0 : extension.length());
+    }
+
+    private char getFileNameChar(int index) {
+        return index < name.length() ? name.charAt(index) : extension.charAt(index - name.length());
     }
 
     @NotNull
@@ -74,4 +101,4 @@ public class FilePhysical {
         }
 
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.example.springmigrate.network;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a client method whose request is sent a second time if the first one is slower than
+ * most requests of the method, the first response wins. Only for idempotent reads
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Hedged {
+}
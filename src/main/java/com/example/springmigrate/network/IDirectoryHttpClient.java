@@ -17,15 +17,19 @@ public interface IDirectoryHttpClient {
     @POST("/directories/create-all/logical")
     Call<List<DirectoryNodeDto>> createDirectoryHierarchicallyLogical(@Body List<DirectoryNodeDto> dtos);
 
+    @Hedged
     @GET("/directories/{id}")
     Call<DirectoryNodeDto> findDirectoryById(@Path("id") String id);
 
     @PUT("/directories/{id}")
     Call<DirectoryNodeDto> updateDirectory(@Path("id") String id, @Body DirectoryNodeDto dto);
 
+    @Hedged
+    @Idempotent
     @POST("/directories/searchAll")
     Call<PaginatedListDto<DirectoryNodeDto>> searchAllDirectoriesByFilter(@Body DirectoryFilterNodeDto dto);
 
+    @Idempotent
     @POST("/directories/searchOne")
     Call<DirectoryNodeDto> searchDirectoryByFilter(@Body DirectoryFilterNodeDto dto);
 
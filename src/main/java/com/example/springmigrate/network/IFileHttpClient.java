@@ -3,6 +3,7 @@ package com.example.springmigrate.network;
 
 import com.example.springmigrate.dto.FileFilterDto;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 import com.example.springmigrate.dto.PaginatedListDto;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
@@ -18,6 +19,7 @@ public interface IFileHttpClient {
     @POST("/files")
     Call<FileNodeDto> createFile(@Body FileNodeDto dto);
 
+    @Hedged
     @GET("/files/{id}")
     Call<FileNodeDto> findFileById(@Path("id") String id);
 
@@ -27,6 +29,13 @@ public interface IFileHttpClient {
     @DELETE("/files/{id}")
     Call<ResponseBody> deleteFileById(@Path("id") String id);
 
+    @Hedged
+    @Idempotent
     @POST("/files/searchAll")
     Call<PaginatedListDto<FileNodeDto>> findFilesByFilter(@Body FileFilterDto filter);
+
+    @Hedged
+    @Idempotent
+    @POST("/files/searchAll")
+    Call<PaginatedListDto<FileNodeProjectionDto>> findFileProjectionsByFilter(@Body FileFilterDto filter);
 }
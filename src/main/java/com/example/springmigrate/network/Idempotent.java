@@ -0,0 +1,15 @@
+package com.example.springmigrate.network;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a client method whose request can be sent again without side effects although its
+ * HTTP method is not idempotent, like searches sent as {@code POST}
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+}
@@ -1,10 +1,14 @@
 package com.example.springmigrate.network.implementation;
 
+import com.example.springmigrate.config.utils.ApiCallExecutor;
 import com.example.springmigrate.config.utils.RetrofitClient;
+import com.example.springmigrate.config.utils.SingleFlight;
+import com.example.springmigrate.config.utils.SizedPage;
 import com.example.springmigrate.dto.DirectoryFilterNodeDto;
 import com.example.springmigrate.dto.DirectoryNodeDto;
 import com.example.springmigrate.dto.PaginatedListDto;
 import com.example.springmigrate.network.IDirectoryHttpClient;
+import com.google.gson.reflect.TypeToken;
 import lombok.extern.log4j.Log4j2;
 import okhttp3.ResponseBody;
 import org.springframework.stereotype.Component;
@@ -12,18 +16,31 @@ import retrofit2.Call;
 import retrofit2.Response;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.ConnectException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 @Log4j2
 public class ApiDirectoryHttpClientImpl {
 
+    private static final String FIND_BY_ID = "IDirectoryHttpClient.findDirectoryById";
+    private static final String SEARCH = "IDirectoryHttpClient.searchAllDirectoriesByFilter";
+    private static final String SEARCH_FIRST = "IDirectoryHttpClient.searchDirectoryByFilter";
+    private static final Type DIRECTORY = DirectoryNodeDto.class;
+    private static final Type DIRECTORIES = new TypeToken<List<DirectoryNodeDto>>() {}.getType();
+    private static final Type PAGE = new TypeToken<SizedPage<DirectoryNodeDto>>() {}.getType();
+
     private final IDirectoryHttpClient httpClient;
+    private final ApiCallExecutor executor;
+    private final SingleFlight singleFlight;
 
-    public ApiDirectoryHttpClientImpl(RetrofitClient retrofitClient) throws ConnectException {
+    public ApiDirectoryHttpClientImpl(RetrofitClient retrofitClient, ApiCallExecutor executor, SingleFlight singleFlight) throws ConnectException {
         httpClient = retrofitClient.getInstance()
                 .create(IDirectoryHttpClient.class);
+        this.executor = executor;
+        this.singleFlight = singleFlight;
     }
 
     public List<DirectoryNodeDto> apiFindDirectories() throws IOException {
@@ -53,14 +70,16 @@ public class ApiDirectoryHttpClientImpl {
 
     public DirectoryNodeDto apiFindDirectoryById(String id) throws IOException {
 
-        Call<DirectoryNodeDto> call = httpClient.findDirectoryById(id);
-        Response<DirectoryNodeDto> response = call.execute();
+        return singleFlight.execute(FIND_BY_ID, id, DIRECTORY, () -> {
+            Call<DirectoryNodeDto> call = httpClient.findDirectoryById(id);
+            Response<DirectoryNodeDto> response = call.execute();
 
-        if (!response.isSuccessful()) {
-            return null;
-        }
+            if (!response.isSuccessful()) {
+                return null;
+            }
 
-        return response.body();
+            return response.body();
+        });
     }
 
 
@@ -79,29 +98,70 @@ public class ApiDirectoryHttpClientImpl {
 
     public List<DirectoryNodeDto> apiSearchAllDirectoriesByFilter(DirectoryFilterNodeDto dtos) throws IOException {
 
-        Call<PaginatedListDto<DirectoryNodeDto>> call = httpClient.searchAllDirectoriesByFilter(dtos);
-        Response<PaginatedListDto<DirectoryNodeDto>> response = call.execute();
+        return singleFlight.execute(SEARCH, dtos, DIRECTORIES, () -> {
+            Call<PaginatedListDto<DirectoryNodeDto>> call = httpClient.searchAllDirectoriesByFilter(dtos);
+            Response<PaginatedListDto<DirectoryNodeDto>> response = call.execute();
 
-        if (!response.isSuccessful() || response.body() == null) {
-            return null;
-        }
+            if (!response.isSuccessful() || response.body() == null) {
+                return null;
+            }
+
+            return response.body().getResults();
+        });
+    }
+
+    public SizedPage<DirectoryNodeDto> apiSearchDirectoriesPage(DirectoryFilterNodeDto dto) throws IOException {
+
+        return singleFlight.execute(SEARCH, dto, PAGE, () -> {
+            Call<PaginatedListDto<DirectoryNodeDto>> call = httpClient.searchAllDirectoriesByFilter(dto);
+            Response<PaginatedListDto<DirectoryNodeDto>> response = call.execute();
+
+            if (!response.isSuccessful()) {
+                return null;
+            }
+
+            PaginatedListDto<DirectoryNodeDto> page = response.body() == null ? new PaginatedListDto<>() : response.body();
 
-        return response.body().getResults();
+            return new SizedPage<>(page, response.raw().body() == null ? -1 : response.raw().body().contentLength());
+        });
     }
 
     public DirectoryNodeDto apiSearchDirectoryByFilter(DirectoryFilterNodeDto dto) throws IOException {
 
-        Call<DirectoryNodeDto> call = httpClient.searchDirectoryByFilter(dto);
-        Response<DirectoryNodeDto> response = call.execute();
+        return singleFlight.execute(SEARCH_FIRST, dto, DIRECTORY, () -> {
+            Call<DirectoryNodeDto> call = httpClient.searchDirectoryByFilter(dto);
+            Response<DirectoryNodeDto> response = call.execute();
 
-        if (!response.isSuccessful()) {
-            return null;
-        }
+            if (!response.isSuccessful()) {
+                return null;
+            }
 
-        return response.body();
+            return response.body();
+        });
     }
 
 
+    public CompletableFuture<DirectoryNodeDto> apiFindDirectoryByIdAsync(String id) {
+        return singleFlight.executeAsync(FIND_BY_ID, id, DIRECTORY,
+                () -> executor.enqueueForBody(httpClient.findDirectoryById(id)));
+    }
+
+    public CompletableFuture<DirectoryNodeDto> apiUpdateDirectoryAsync(DirectoryNodeDto dto) {
+        return executor.enqueueForBody(httpClient.updateDirectory(dto.getId(), dto));
+    }
+
+    public CompletableFuture<List<DirectoryNodeDto>> apiSearchAllDirectoriesByFilterAsync(DirectoryFilterNodeDto dto) {
+
+        return singleFlight.executeAsync(SEARCH, dto, DIRECTORIES, () -> executor.enqueue(httpClient.searchAllDirectoriesByFilter(dto))
+                .thenApply(response -> {
+                    if (!response.isSuccessful() || response.body() == null) {
+                        return null;
+                    }
+
+                    return response.body().getResults();
+                }));
+    }
+
     public void apiDeleteDirectoryById(String id) throws IOException {
 
         Call<ResponseBody> call = httpClient.deleteDirectoryById(id);
@@ -1,30 +1,52 @@
 package com.example.springmigrate.network.implementation;
 
+import com.example.springmigrate.config.utils.ApiCallExecutor;
 import com.example.springmigrate.config.utils.RetrofitClient;
+import com.example.springmigrate.config.utils.SingleFlight;
+import com.example.springmigrate.config.utils.SizedPage;
+import com.example.springmigrate.dto.ContentFileNodeDto;
 import com.example.springmigrate.dto.FileFilterDto;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 import com.example.springmigrate.dto.PaginatedListDto;
 import com.example.springmigrate.network.IFileHttpClient;
+import com.google.gson.reflect.TypeToken;
 import lombok.extern.log4j.Log4j2;
 import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Component;
 import retrofit2.Call;
 import retrofit2.Response;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.ConnectException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 @Log4j2
 public class ApiFileHttpClientImpl {
 
+    private static final String FIND_BY_ID = "IFileHttpClient.findFileById";
+    private static final String FIND_BY_FILTER = "IFileHttpClient.findFilesByFilter";
+    private static final String FIND_PROJECTIONS = "IFileHttpClient.findFileProjectionsByFilter";
+    private static final Type FILE = FileNodeDto.class;
+    private static final Type FILES = new TypeToken<List<FileNodeDto>>() {}.getType();
+    private static final Type PAGE = new TypeToken<SizedPage<FileNodeDto>>() {}.getType();
+    private static final Type PROJECTIONS_PAGE = new TypeToken<SizedPage<FileNodeProjectionDto>>() {}.getType();
+
     private final IFileHttpClient httpClient;
+    private final ApiCallExecutor executor;
+    private final SingleFlight singleFlight;
 
-    public ApiFileHttpClientImpl(RetrofitClient retrofitClient) throws ConnectException {
+    public ApiFileHttpClientImpl(RetrofitClient retrofitClient, ApiCallExecutor executor, SingleFlight singleFlight) throws ConnectException {
         httpClient = retrofitClient.getInstance()
                 .create(IFileHttpClient.class);
+        this.executor = executor;
+        this.singleFlight = singleFlight;
     }
 
     public List<FileNodeDto> apiFindFiles() throws IOException {
@@ -42,18 +64,73 @@ public class ApiFileHttpClientImpl {
 
     public List<FileNodeDto> apiFindFilesByFilter(FileFilterDto filter) throws IOException {
 
-        Call<PaginatedListDto<FileNodeDto>> call = httpClient.findFilesByFilter(filter);
-        Response<PaginatedListDto<FileNodeDto>> response = call.execute();
+        return singleFlight.execute(FIND_BY_FILTER, filter, FILES, () -> {
+            Call<PaginatedListDto<FileNodeDto>> call = httpClient.findFilesByFilter(filter);
+            Response<PaginatedListDto<FileNodeDto>> response = call.execute();
 
-        if (!response.isSuccessful()) {
-            return null;
-        }
+            if (!response.isSuccessful()) {
+                return null;
+            }
+
+            if (response.body() == null) {
+                return new ArrayList<>();
+            }
+
+            return response.body().getResults();
+        });
+    }
+
+    public SizedPage<FileNodeDto> apiFindFilesPage(FileFilterDto filter) throws IOException {
+
+        return singleFlight.execute(FIND_BY_FILTER, filter, PAGE, () -> {
+            Call<PaginatedListDto<FileNodeDto>> call = httpClient.findFilesByFilter(filter);
+            Response<PaginatedListDto<FileNodeDto>> response = call.execute();
+
+            if (!response.isSuccessful()) {
+                return null;
+            }
+
+            PaginatedListDto<FileNodeDto> page = response.body() == null ? new PaginatedListDto<>() : response.body();
+
+            return new SizedPage<>(page, response.raw().body() == null ? -1 : response.raw().body().contentLength());
+        });
+    }
+
+    public SizedPage<FileNodeProjectionDto> apiFindFileProjectionsPage(FileFilterDto filter) throws IOException {
+
+        // never transfer file data
+        FileFilterDto projections = withoutData(filter);
+
+        return singleFlight.execute(FIND_PROJECTIONS, projections, PROJECTIONS_PAGE, () -> {
+            Call<PaginatedListDto<FileNodeProjectionDto>> call = httpClient.findFileProjectionsByFilter(projections);
+            Response<PaginatedListDto<FileNodeProjectionDto>> response = call.execute();
+
+            if (!response.isSuccessful()) {
+                return null;
+            }
 
-        if (response.body() == null) {
-            return new ArrayList<>();
+            PaginatedListDto<FileNodeProjectionDto> page = response.body() == null ? new PaginatedListDto<>() : response.body();
+
+            return new SizedPage<>(page, response.raw().body() == null ? -1 : response.raw().body().contentLength());
+        });
+    }
+
+    /**
+     * Copies the filter excluding the file data, the caller's filter is left unchanged
+     *
+     * @param filter filter, its content may be missing
+     * @return copy of the filter
+     */
+    @NotNull
+    private static FileFilterDto withoutData(@NotNull FileFilterDto filter) {
+
+        ContentFileNodeDto content = new ContentFileNodeDto();
+        if (filter.getContent() != null) {
+            BeanUtils.copyProperties(filter.getContent(), content);
         }
+        content.setIncludeData(false);
 
-        return response.body().getResults();
+        return new FileFilterDto(content, filter.getPage(), filter.getSize());
     }
 
     public FileNodeDto apiCreateFile(FileNodeDto dto) throws IOException {
@@ -71,15 +148,17 @@ public class ApiFileHttpClientImpl {
 
     public FileNodeDto apiFindFileById(String id) throws IOException {
 
-        Call<FileNodeDto> call = httpClient.findFileById(id);
-        Response<FileNodeDto> response = call.execute();
+        return singleFlight.execute(FIND_BY_ID, id, FILE, () -> {
+            Call<FileNodeDto> call = httpClient.findFileById(id);
+            Response<FileNodeDto> response = call.execute();
 
-        //log.info("#apiFindFileById({}): {}", response.code(), id);
-        if (!response.isSuccessful()) {
-            return null;
-        }
+            //log.info("#apiFindFileById({}): {}", response.code(), id);
+            if (!response.isSuccessful()) {
+                return null;
+            }
 
-        return response.body();
+            return response.body();
+        });
     }
 
     public FileNodeDto apiUpdateFile(FileNodeDto dto, String id) throws IOException {
@@ -95,10 +174,58 @@ public class ApiFileHttpClientImpl {
         return response.body();
     }
 
+    public CompletableFuture<List<FileNodeDto>> apiFindFilesByFilterAsync(FileFilterDto filter) {
+
+        return singleFlight.executeAsync(FIND_BY_FILTER, filter, FILES, () -> executor.enqueue(httpClient.findFilesByFilter(filter))
+                .thenApply(response -> {
+                    if (!response.isSuccessful()) {
+                        return null;
+                    }
+
+                    if (response.body() == null) {
+                        return new ArrayList<>();
+                    }
+
+                    return response.body().getResults();
+                }));
+    }
+
+    public CompletableFuture<FileNodeDto> apiFindFileByIdAsync(String id) {
+        return singleFlight.executeAsync(FIND_BY_ID, id, FILE,
+                () -> executor.enqueueForBody(httpClient.findFileById(id)));
+    }
+
+    /**
+     * Reads the full file node and updates its name and parent, the node is never
+     * updated from a projection
+     *
+     * @param id                file node identifier
+     * @param name              new name, {@code null} to keep the current one
+     * @param parentDirectoryId new parent directory identifier
+     * @return future with the updated node, {@code null} if not found or not updated
+     */
+    public CompletableFuture<FileNodeDto> apiMoveFileAsync(String id, String name, String parentDirectoryId) {
+
+        // the update waits for the window off the callback thread
+        return executor.track(executor.enqueueForBody(httpClient.findFileById(id))
+                .thenComposeAsync(dto -> {
+                    if (dto == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+
+                    if (name != null) {
+                        dto.setName(name);
+                    }
+                    dto.setParentDirectoryId(parentDirectoryId);
+
+                    return executor.enqueueForBody(httpClient.updateFile(dto, id));
+                }, ApiCallExecutor.chainedCalls()));
+    }
+
     public void apiDeleteFileById(String id) throws IOException {
 
         Call<ResponseBody> call = httpClient.deleteFileById(id);
         Response<ResponseBody> response = call.execute();
         //log.info("#apiDeleteFileById({}): {}", response.code(), id);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.example.springmigrate.network.implementation;
 
+import com.example.springmigrate.config.utils.ApiCallExecutor;
 import com.example.springmigrate.config.utils.RetrofitClient;
 import com.example.springmigrate.dto.RootNodeDto;
 import com.example.springmigrate.network.IRootDirectoryHttpClient;
@@ -13,6 +14,7 @@ import retrofit2.http.Body;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 @Component
@@ -20,10 +22,12 @@ import java.util.List;
 public class ApiRootDirectoryHttpClient {
 
     private final IRootDirectoryHttpClient httpClient;
+    private final ApiCallExecutor executor;
 
-    public ApiRootDirectoryHttpClient(RetrofitClient retrofitClient) throws ConnectException {
+    public ApiRootDirectoryHttpClient(RetrofitClient retrofitClient, ApiCallExecutor executor) throws ConnectException {
         this.httpClient = retrofitClient.getInstance()
                 .create(IRootDirectoryHttpClient.class);
+        this.executor = executor;
     }
 
     public List<RootNodeDto> apiFindRootDirectories() throws IOException {
@@ -50,6 +54,15 @@ public class ApiRootDirectoryHttpClient {
         return response.body();
     }
 
+    public CompletableFuture<List<RootNodeDto>> apiFindByDirectoryIdAsync(String directoryId) {
+        return executor.enqueueForBody(httpClient.findRootsByDirectoryId(directoryId));
+    }
+
+    public CompletableFuture<Boolean> apiDeleteByDirectoryIdAsync(String id) {
+        return executor.enqueue(httpClient.deleteByDirectoryId(id))
+                .thenApply(Response::isSuccessful);
+    }
+
     public void apiDeleteByDirectoryId(String id) throws IOException {
 
         Call<ResponseBody> call = httpClient.deleteByDirectoryId(id);
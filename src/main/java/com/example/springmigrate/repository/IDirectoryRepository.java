@@ -1,11 +1,13 @@
 package com.example.springmigrate.repository;
 
 
+import com.example.springmigrate.config.utils.SizedPage;
 import com.example.springmigrate.dto.DirectoryFilterNodeDto;
 import com.example.springmigrate.dto.DirectoryNodeDto;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface IDirectoryRepository {
 
@@ -58,6 +60,15 @@ public interface IDirectoryRepository {
     List<DirectoryNodeDto> findAllDirectoriesByFilter(DirectoryFilterNodeDto filter) throws IOException;
 
 
+    /**
+     * Find a page of directories by filter
+     *
+     * @param filter directory filter with page and size
+     * @return page of directories with the size of the response, {@code null} if the request was not successful
+     */
+    SizedPage<DirectoryNodeDto> findDirectoriesPage(DirectoryFilterNodeDto filter) throws IOException;
+
+
     /**
      * Find first directory that mach with filter criteria
      *
@@ -67,6 +78,34 @@ public interface IDirectoryRepository {
     DirectoryNodeDto findDirectoryByFilter(DirectoryFilterNodeDto filter) throws IOException;
 
 
+    /**
+     * Find directory by uuid identifier without blocking
+     *
+     * @param uuid identifier
+     * @return future with the directory if exists, otherwise {@code null}
+     */
+    CompletableFuture<DirectoryNodeDto> findDirectoryByIdAsync(String uuid);
+
+
+    /**
+     * Update a directory without blocking
+     *
+     * @param directory directory
+     * @return future with the directory if updated, otherwise {@code null}
+     * @see #updateDirectory(DirectoryNodeDto)
+     */
+    CompletableFuture<DirectoryNodeDto> updateDirectoryAsync(DirectoryNodeDto directory);
+
+
+    /**
+     * Find all directories by filter without blocking
+     *
+     * @param filter directory filter
+     * @return future with the list of directories
+     */
+    CompletableFuture<List<DirectoryNodeDto>> findAllDirectoriesByFilterAsync(DirectoryFilterNodeDto filter);
+
+
     /**
      * Delete(soft) directory by identifier
      *
@@ -1,10 +1,13 @@
 package com.example.springmigrate.repository;
 
+import com.example.springmigrate.config.utils.SizedPage;
 import com.example.springmigrate.dto.FileFilterDto;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface IFileRepository {
 
@@ -25,6 +28,24 @@ public interface IFileRepository {
     List<FileNodeDto> findFilesByFilter(FileFilterDto filter) throws IOException;
 
 
+    /**
+     * Find a page of files that meet filter requirements
+     *
+     * @param filter filter with page and size
+     * @return page of files with the size of the response, {@code null} if the request was not successful
+     */
+    SizedPage<FileNodeDto> findFilesPage(FileFilterDto filter) throws IOException;
+
+
+    /**
+     * Find a page of file projections that meet filter requirements, file data is not requested
+     *
+     * @param filter filter with content, page and size
+     * @return page of file projections with the size of the response, {@code null} if the request was not successful
+     */
+    SizedPage<FileNodeProjectionDto> findFileProjectionsPage(FileFilterDto filter) throws IOException;
+
+
     /**
      * Find file by uuid identifier
      *
@@ -52,6 +73,35 @@ public interface IFileRepository {
     FileNodeDto updateFile(String id, FileNodeDto file) throws IOException;
 
 
+    /**
+     * Find a list of files tah meet filter requirements without blocking
+     *
+     * @param filter filter
+     * @return future with the list of files tah meet filter requirements
+     */
+    CompletableFuture<List<FileNodeDto>> findFilesByFilterAsync(FileFilterDto filter);
+
+
+    /**
+     * Find file by uuid identifier without blocking
+     *
+     * @param uuid identifier
+     * @return future with the file if exists, otherwise {@code null}
+     */
+    CompletableFuture<FileNodeDto> findFileByIdAsync(String uuid);
+
+
+    /**
+     * Moves a file node to another directory, reading the full node before updating it
+     *
+     * @param id                file node identifier
+     * @param name              new name, {@code null} to keep the current one
+     * @param parentDirectoryId new parent directory identifier
+     * @return future with the updated node, {@code null} if not found or not updated
+     */
+    CompletableFuture<FileNodeDto> moveFileAsync(String id, String name, String parentDirectoryId);
+
+
     /**
      * Delete file by identifier(Soft)
      *
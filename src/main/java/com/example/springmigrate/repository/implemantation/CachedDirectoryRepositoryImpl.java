@@ -0,0 +1,157 @@
+package com.example.springmigrate.repository.implemantation;
+
+import com.example.springmigrate.config.utils.ApiCache;
+import com.example.springmigrate.config.utils.CacheOptions;
+import com.example.springmigrate.config.utils.MigrationMetrics;
+import com.example.springmigrate.config.utils.SizedPage;
+import com.example.springmigrate.dto.DirectoryFilterNodeDto;
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import com.example.springmigrate.repository.IDirectoryRepository;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Directory repository caching the directories found by identifier and by filter, see
+ * {@link ApiCache}. Writes go to the API first, then replace the directories written and
+ * invalidate the lookups by filter, whose results they may change. A purge deletes unknown
+ * directories and files, so it clears the cached directories and files
+ */
+@Primary
+@Repository
+public class CachedDirectoryRepositoryImpl implements IDirectoryRepository {
+
+    private final DirectoryRepositoryImpl repository;
+    private final CachedFileRepositoryImpl files;
+    private final ApiCache byId;
+    private final ApiCache byFilter;
+
+    public CachedDirectoryRepositoryImpl(
+            DirectoryRepositoryImpl repository,
+            CachedFileRepositoryImpl files,
+            CacheOptions options,
+            MigrationMetrics metrics) {
+        this.repository = repository;
+        this.files = files;
+        this.byId = new ApiCache("directories_by_id", options, metrics);
+        this.byFilter = new ApiCache("directories_by_filter", options, metrics);
+    }
+
+    @Override
+    public List<DirectoryNodeDto> findAll() throws IOException {
+        return repository.findAll();
+    }
+
+    @Override
+    public List<DirectoryNodeDto> createDirectory(List<DirectoryNodeDto> directories) throws IOException {
+
+        List<DirectoryNodeDto> created = repository.createDirectory(directories);
+
+        byFilter.invalidateAll();
+        byId.invalidateMissing();
+        if (created != null) {
+            for (DirectoryNodeDto directory : created) {
+                byId.put(directory.getId(), directory);
+            }
+        }
+
+        return created;
+    }
+
+    @Override
+    public DirectoryNodeDto findDirectoryById(String uuid) throws IOException {
+        return byId.get(uuid, DirectoryNodeDto.class, repository::findDirectoryById);
+    }
+
+    @Override
+    public DirectoryNodeDto updateDirectory(DirectoryNodeDto directory) throws IOException {
+
+        written(directory.getId());
+        DirectoryNodeDto updated = repository.updateDirectory(directory);
+        updated(directory.getId(), updated);
+
+        return updated;
+    }
+
+    @Override
+    public List<DirectoryNodeDto> findAllDirectoriesByFilter(DirectoryFilterNodeDto filter) throws IOException {
+        return repository.findAllDirectoriesByFilter(filter);
+    }
+
+    @Override
+    public SizedPage<DirectoryNodeDto> findDirectoriesPage(DirectoryFilterNodeDto filter) throws IOException {
+        return repository.findDirectoriesPage(filter);
+    }
+
+    @Override
+    public DirectoryNodeDto findDirectoryByFilter(DirectoryFilterNodeDto filter) throws IOException {
+        return byFilter.get(ApiCache.key(filter), DirectoryNodeDto.class, key -> repository.findDirectoryByFilter(filter));
+    }
+
+    @Override
+    public CompletableFuture<DirectoryNodeDto> findDirectoryByIdAsync(String uuid) {
+        return byId.getAsync(uuid, DirectoryNodeDto.class, repository::findDirectoryByIdAsync);
+    }
+
+    @Override
+    public CompletableFuture<DirectoryNodeDto> updateDirectoryAsync(DirectoryNodeDto directory) {
+
+        written(directory.getId());
+
+        return repository.updateDirectoryAsync(directory)
+                .whenComplete((updated, error) -> updated(directory.getId(), updated));
+    }
+
+    @Override
+    public CompletableFuture<List<DirectoryNodeDto>> findAllDirectoriesByFilterAsync(DirectoryFilterNodeDto filter) {
+        return repository.findAllDirectoriesByFilterAsync(filter);
+    }
+
+    @Override
+    public void deleteDirectory(String uuid) throws IOException {
+        written(uuid);
+        repository.deleteDirectory(uuid);
+        written(uuid);
+    }
+
+    @Override
+    public void deleteDirectoryHard(String uuid) throws IOException {
+        invalidateAll();
+        repository.deleteDirectoryHard(uuid);
+        invalidateAll();
+    }
+
+    /**
+     * Removes all cached directories and files, as after a purge or a truncate deleting
+     * unknown nodes
+     */
+    public void invalidateAll() {
+
+        byFilter.invalidateAll();
+        byId.invalidateAll();
+        files.invalidateAll();
+    }
+
+    /**
+     * Invalidates a directory about to be written, so no lookup caches it meanwhile
+     */
+    private void written(String id) {
+
+        byFilter.invalidateAll();
+        byId.invalidate(id);
+    }
+
+    /**
+     * Caches a directory written, invalidated again if the write failed
+     */
+    private void updated(String id, DirectoryNodeDto updated) {
+
+        written(id);
+        if (updated != null) {
+            byId.put(id, updated);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.springmigrate.repository.implemantation;
+
+import com.example.springmigrate.config.utils.ApiCache;
+import com.example.springmigrate.config.utils.CacheOptions;
+import com.example.springmigrate.config.utils.MigrationMetrics;
+import com.example.springmigrate.config.utils.SizedPage;
+import com.example.springmigrate.dto.FileFilterDto;
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
+import com.example.springmigrate.repository.IFileRepository;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * File repository caching the files found by identifier, see {@link ApiCache}. Writes go to
+ * the API first, then replace the files written. Searches by filter aren't cached, they are
+ * paged and every file is searched once
+ */
+@Primary
+@Repository
+public class CachedFileRepositoryImpl implements IFileRepository {
+
+    private final FileRepositoryImpl repository;
+    private final ApiCache byId;
+
+    public CachedFileRepositoryImpl(FileRepositoryImpl repository, CacheOptions options, MigrationMetrics metrics) {
+        this.repository = repository;
+        this.byId = new ApiCache("files_by_id", options, metrics);
+    }
+
+    @Override
+    public List<FileNodeDto> findAll() throws IOException {
+        return repository.findAll();
+    }
+
+    @Override
+    public List<FileNodeDto> findFilesByFilter(FileFilterDto filter) throws IOException {
+        return repository.findFilesByFilter(filter);
+    }
+
+    @Override
+    public SizedPage<FileNodeDto> findFilesPage(FileFilterDto filter) throws IOException {
+        return repository.findFilesPage(filter);
+    }
+
+    @Override
+    public SizedPage<FileNodeProjectionDto> findFileProjectionsPage(FileFilterDto filter) throws IOException {
+        return repository.findFileProjectionsPage(filter);
+    }
+
+    @Override
+    public FileNodeDto findFileById(String uuid) throws IOException {
+        return byId.get(uuid, FileNodeDto.class, repository::findFileById);
+    }
+
+    @Override
+    public FileNodeDto createFile(FileNodeDto file) throws IOException {
+
+        FileNodeDto created = repository.createFile(file);
+
+        byId.invalidateMissing();
+        if (created != null) {
+            byId.put(created.getId(), created);
+        }
+
+        return created;
+    }
+
+    @Override
+    public FileNodeDto updateFile(String id, FileNodeDto file) throws IOException {
+
+        byId.invalidate(id);
+        FileNodeDto updated = repository.updateFile(id, file);
+        updated(id, updated);
+
+        return updated;
+    }
+
+    @Override
+    public CompletableFuture<List<FileNodeDto>> findFilesByFilterAsync(FileFilterDto filter) {
+        return repository.findFilesByFilterAsync(filter);
+    }
+
+    @Override
+    public CompletableFuture<FileNodeDto> findFileByIdAsync(String uuid) {
+        return byId.getAsync(uuid, FileNodeDto.class, repository::findFileByIdAsync);
+    }
+
+    @Override
+    public CompletableFuture<FileNodeDto> moveFileAsync(String id, String name, String parentDirectoryId) {
+
+        byId.invalidate(id);
+
+        return repository.moveFileAsync(id, name, parentDirectoryId)
+                .whenComplete((updated, error) -> updated(id, updated));
+    }
+
+    @Override
+    public void deleteFile(String uuid) throws IOException {
+        byId.invalidate(uuid);
+        repository.deleteFile(uuid);
+        byId.invalidate(uuid);
+    }
+
+    /**
+     * Removes all cached files, as after a purge or a truncate deleting unknown files
+     */
+    public void invalidateAll() {
+        byId.invalidateAll();
+    }
+
+    /**
+     * Caches a file written, invalidated if the write failed
+     */
+    private void updated(String id, FileNodeDto updated) {
+
+        if (updated != null) {
+            byId.put(id, updated);
+        } else {
+            byId.invalidate(id);
+        }
+    }
+}
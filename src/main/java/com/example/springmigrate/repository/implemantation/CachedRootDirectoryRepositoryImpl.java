@@ -0,0 +1,51 @@
+package com.example.springmigrate.repository.implemantation;
+
+import com.example.springmigrate.dto.RootNodeDto;
+import com.example.springmigrate.repository.IRootDirectoryRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Root directory repository keeping the cached directories and files consistent, a truncate
+ * deletes the whole tree without going through {@link CachedDirectoryRepositoryImpl} and
+ * {@link CachedFileRepositoryImpl}
+ */
+@Primary
+@Repository
+@AllArgsConstructor
+public class CachedRootDirectoryRepositoryImpl implements IRootDirectoryRepository {
+
+    private final RootDirectoryRepositoryImpl repository;
+    private final CachedDirectoryRepositoryImpl directories;
+
+    @Override
+    public List<RootNodeDto> findAll() throws IOException {
+        return repository.findAll();
+    }
+
+    @Override
+    public List<RootNodeDto> findByDirectoryId(String directoryId) throws IOException {
+        return repository.findByDirectoryId(directoryId);
+    }
+
+    @Override
+    public void deleteByDirectoryId(String directoryId) throws IOException {
+        repository.deleteByDirectoryId(directoryId);
+    }
+
+    @Override
+    public void truncate() throws IOException {
+        directories.invalidateAll();
+        repository.truncate();
+        directories.invalidateAll();
+    }
+
+    @Override
+    public RootNodeDto createRoot(RootNodeDto rootNode) throws IOException {
+        return repository.createRoot(rootNode);
+    }
+}
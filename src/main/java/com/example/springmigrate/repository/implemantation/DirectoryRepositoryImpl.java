@@ -1,5 +1,6 @@
 package com.example.springmigrate.repository.implemantation;
 
+import com.example.springmigrate.config.utils.SizedPage;
 import com.example.springmigrate.dto.DirectoryFilterNodeDto;
 import com.example.springmigrate.dto.DirectoryNodeDto;
 import com.example.springmigrate.network.implementation.ApiDirectoryHttpClientImpl;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Repository
 @AllArgsConstructor
@@ -75,6 +77,17 @@ public class DirectoryRepositoryImpl implements IDirectoryRepository {
         return directoryHttpClient.apiSearchAllDirectoriesByFilter(filter);
     }
 
+    /**
+     * Find a page of directories by filter
+     *
+     * @param filter directory filter with page and size
+     * @return page of directories with the size of the response, {@code null} if the request was not successful
+     */
+    @Override
+    public SizedPage<DirectoryNodeDto> findDirectoriesPage(DirectoryFilterNodeDto filter) throws IOException {
+        return directoryHttpClient.apiSearchDirectoriesPage(filter);
+    }
+
     /**
      * Find first directory that mach with filter criteria
      *
@@ -86,6 +99,21 @@ public class DirectoryRepositoryImpl implements IDirectoryRepository {
         return directoryHttpClient.apiSearchDirectoryByFilter(filter);
     }
 
+    @Override
+    public CompletableFuture<DirectoryNodeDto> findDirectoryByIdAsync(String uuid) {
+        return directoryHttpClient.apiFindDirectoryByIdAsync(uuid);
+    }
+
+    @Override
+    public CompletableFuture<DirectoryNodeDto> updateDirectoryAsync(DirectoryNodeDto directory) {
+        return directoryHttpClient.apiUpdateDirectoryAsync(directory);
+    }
+
+    @Override
+    public CompletableFuture<List<DirectoryNodeDto>> findAllDirectoriesByFilterAsync(DirectoryFilterNodeDto filter) {
+        return directoryHttpClient.apiSearchAllDirectoriesByFilterAsync(filter);
+    }
+
     /**
      * Delete directory by identifier
      *
@@ -1,7 +1,9 @@
 package com.example.springmigrate.repository.implemantation;
 
+import com.example.springmigrate.config.utils.SizedPage;
 import com.example.springmigrate.dto.FileFilterDto;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 import com.example.springmigrate.network.implementation.ApiFileHttpClientImpl;
 import com.example.springmigrate.repository.IFileRepository;
 import lombok.AllArgsConstructor;
@@ -9,6 +11,7 @@ import org.springframework.stereotype.Repository;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Repository
 @AllArgsConstructor
@@ -31,6 +34,16 @@ public class FileRepositoryImpl implements IFileRepository {
         return fileHttpClient.apiFindFilesByFilter(filter);
     }
 
+    @Override
+    public SizedPage<FileNodeDto> findFilesPage(FileFilterDto filter) throws IOException {
+        return fileHttpClient.apiFindFilesPage(filter);
+    }
+
+    @Override
+    public SizedPage<FileNodeProjectionDto> findFileProjectionsPage(FileFilterDto filter) throws IOException {
+        return fileHttpClient.apiFindFileProjectionsPage(filter);
+    }
+
     /**
      * Create file, 409 if already exists
      *
@@ -57,6 +70,21 @@ public class FileRepositoryImpl implements IFileRepository {
         return fileHttpClient.apiUpdateFile(dto, id);
     }
 
+    @Override
+    public CompletableFuture<List<FileNodeDto>> findFilesByFilterAsync(FileFilterDto filter) {
+        return fileHttpClient.apiFindFilesByFilterAsync(filter);
+    }
+
+    @Override
+    public CompletableFuture<FileNodeDto> findFileByIdAsync(String uuid) {
+        return fileHttpClient.apiFindFileByIdAsync(uuid);
+    }
+
+    @Override
+    public CompletableFuture<FileNodeDto> moveFileAsync(String id, String name, String parentDirectoryId) {
+        return fileHttpClient.apiMoveFileAsync(id, name, parentDirectoryId);
+    }
+
     /**
      * Delete file by identifier
      *
@@ -6,6 +6,8 @@ import com.example.springmigrate.dto.DirectoryNodeDto;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface IDirectoryLogicalService {
 
@@ -13,6 +15,8 @@ public interface IDirectoryLogicalService {
 
     DirectoryNodeDto createDirectories(List<DirectoryNodeDto> directories) throws IOException;
 
+    List<DirectoryNodeDto> createAllDirectories(List<DirectoryNodeDto> directories) throws IOException;
+
     DirectoryNodeDto updateDirectory(DirectoryNodeDto directory) throws IOException;
 
     DirectoryNodeDto findDirectoryByParentId(String name, String parentId) throws IOException;
@@ -31,5 +35,11 @@ public interface IDirectoryLogicalService {
 
     List<DirectoryNodeDto> findChildrenDirectories(String parentId) throws IOException;
 
+    Stream<DirectoryNodeDto> streamDirectoriesByFilter(DirectoryFilterNodeDto filter);
+
     DirectoryNodeDto createLogicalNode(String name, String basePath) throws IOException, NoRequirementsMeted;
+
+    CompletableFuture<DirectoryNodeDto> findDirectoryByIdAsync(String id);
+
+    CompletableFuture<DirectoryNodeDto> updateDirectoryAsync(DirectoryNodeDto directory);
 }
@@ -2,10 +2,13 @@ package com.example.springmigrate.service;
 
 import com.example.springmigrate.dto.FileFilterDto;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 public interface IFileLogicalService {
 
@@ -23,4 +26,14 @@ public interface IFileLogicalService {
 
     List<FileNodeDto> findCandidateFilesByName(
             @NotNull String name) throws IOException;
+
+    Stream<FileNodeDto> streamFilesByFilter(@NotNull FileFilterDto filter);
+
+    Stream<FileNodeProjectionDto> streamFileProjectionsByFilter(@NotNull FileFilterDto filter);
+
+    CompletableFuture<FileNodeDto> findFileByIdAsync(String id);
+
+    CompletableFuture<FileNodeDto> moveFileAsync(@NotNull String id, String name, @NotNull String parentDirectoryId);
+
+    CompletableFuture<List<FileNodeDto>> findFilesByIdsAsync(@NotNull List<String> ids);
 }
@@ -1,5 +1,6 @@
 package com.example.springmigrate.service.implementation;
 
+import com.example.springmigrate.config.utils.PageCursor;
 import com.example.springmigrate.config.utils.error.NoRequirementsMeted;
 import com.example.springmigrate.dto.ContentDirectoryNodeDto;
 import com.example.springmigrate.dto.DirectoryFilterNodeDto;
@@ -11,25 +12,40 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
+/**
+ * Directory service, lookups are answered by the {@link DirectoryTree} loaded on first use,
+ * and every change made through this service is applied to the tree.
+ */
 @Service
 @Log4j2
 @AllArgsConstructor
 public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
 
     private final IDirectoryRepository repository;
+    private final DirectoryTree tree;
 
 
     /**
-     * Returns a list af all roots directories
+     * Returns a list af all directories, reloading the directory tree
      *
-     * @return list af all roots directories
+     * @return list af all directories
      */
     @Override
     public List<DirectoryNodeDto> findALl() throws IOException {
-        return repository.findAll();
+
+        List<DirectoryNodeDto> directories = repository.findAll();
+
+        if (directories != null) {
+            tree.load(directories);
+        }
+
+        return directories;
     }
 
     /**
@@ -56,6 +72,11 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
             result = findDirectoryByBasePath(name, pathBase);
         }
 
+        if (result == null) {
+            // already exists, but created by others since the tree was loaded
+            result = findRemoteDirectoryByBasePath(name, pathBase);
+        }
+
         return result;
     }
 
@@ -80,6 +101,7 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
     @Override
     public void deleteDirectoryHard(String id) throws IOException {
         repository.deleteDirectoryHard(id);
+        tree.remove(id);
     }
 
     /**
@@ -91,6 +113,7 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
     @Override
     public void deleteDirectoryById(String id) throws IOException {
         repository.deleteDirectory(id);
+        tree.remove(id);
     }
 
     /**
@@ -102,7 +125,15 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
      */
     @Override
     public DirectoryNodeDto findDirectoryById(String id) throws IOException {
-        return repository.findDirectoryById(id);
+        loadTree();
+
+        DirectoryNodeDto directory = tree.findById(id);
+
+        if (directory == null) {
+            directory = repository.findDirectoryById(id);
+        }
+
+        return directory;
     }
 
     /**
@@ -115,18 +146,8 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
      */
     @Override
     public DirectoryNodeDto findDirectoryByParentId(String name, String parentId) throws IOException {
-
-        ContentDirectoryNodeDto content = new ContentDirectoryNodeDto();
-        content.setActive(true);
-        content.setExactName(name);
-        content.setParentDirectoryId(parentId);
-
-        DirectoryFilterNodeDto filter = new DirectoryFilterNodeDto();
-        filter.setContent(content);
-        filter.setPage(0);
-        filter.setSize(20);
-
-        return repository.findDirectoryByFilter(filter);
+        loadTree();
+        return tree.findByParentId(name, parentId);
     }
 
     /**
@@ -139,6 +160,19 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
      */
     @Override
     public DirectoryNodeDto findDirectoryByBasePath(String name, String basePath) throws IOException {
+        loadTree();
+        return tree.findByBasePath(name, basePath);
+    }
+
+    /**
+     * Find directory by name and base path with a search request
+     *
+     * @param name     directory name
+     * @param basePath base path
+     * @return directory if exists, otherwise {@code null}
+     * @throws IOException if I/O error occurred
+     */
+    private DirectoryNodeDto findRemoteDirectoryByBasePath(String name, String basePath) throws IOException {
 
         DirectoryNodeDto result = null;
 
@@ -158,6 +192,7 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
         for (DirectoryNodeDto dto : results) {
             if (dto.getPathBase().equalsIgnoreCase(basePath)) {
                 result = dto;
+                tree.put(result);
                 break;
             }
         }
@@ -173,15 +208,36 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
      */
     @Override
     public DirectoryNodeDto createDirectories(List<DirectoryNodeDto> directories) throws IOException {
-        List<DirectoryNodeDto> result = repository.createDirectory(directories);
+        List<DirectoryNodeDto> result = createAllDirectories(directories);
 
-        if (result == null || result.isEmpty()) {
+        if (result.isEmpty()) {
             return null;
         }
 
         return result.get(result.size() - 1);
     }
 
+    /**
+     * Creates several directories with a single request
+     *
+     * @param directories directory nodes with id null, parents before children
+     * @return directories created, empty if an error occurred
+     * @throws IOException if I/O exception occurred
+     */
+    @Override
+    public List<DirectoryNodeDto> createAllDirectories(List<DirectoryNodeDto> directories) throws IOException {
+        List<DirectoryNodeDto> result = repository.createDirectory(directories);
+
+        if (result == null) {
+            return new ArrayList<>();
+        }
+
+        // created hierarchy, parents first
+        result.forEach(tree::put);
+
+        return result;
+    }
+
     /**
      * Update a directory
      *
@@ -195,11 +251,19 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
      */
     @Override
     public DirectoryNodeDto updateDirectory(DirectoryNodeDto directory) throws IOException {
-        return repository.updateDirectory(directory);
+
+        DirectoryNodeDto updated = repository.updateDirectory(directory);
+
+        if (updated != null) {
+            tree.put(updated);
+        }
+
+        return updated;
     }
 
     /**
-     * Returns a list of all children directories
+     * Returns a list of all children directories, callers can safely move the children
+     * to another parent.
      *
      * @param parentId parent identifier
      * @return children directories
@@ -207,17 +271,25 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
      */
     @Override
     public List<DirectoryNodeDto> findChildrenDirectories(String parentId) throws IOException {
+        loadTree();
+        return tree.findChildren(parentId);
+    }
 
-        ContentDirectoryNodeDto content = new ContentDirectoryNodeDto();
-        content.setActive(true);
-        content.setParentDirectoryId(parentId);
-
-        DirectoryFilterNodeDto filter = new DirectoryFilterNodeDto();
-        filter.setContent(content);
-        filter.setPage(0);
-        filter.setSize(100000);
-
-        return repository.findAllDirectoriesByFilter(filter);
+    /**
+     * Returns all directories that meet filter requirements, pages are requested lazily
+     * while the stream is consumed
+     *
+     * @param filter filter content, page and size are set by the cursor
+     * @return stream of directories, I/O errors are thrown as {@link UncheckedIOException}
+     * @see PageCursor
+     */
+    @Override
+    public Stream<DirectoryNodeDto> streamDirectoriesByFilter(DirectoryFilterNodeDto filter) {
+        return PageCursor.stream((page, size) -> {
+            filter.setPage(page);
+            filter.setSize(size);
+            return repository.findDirectoriesPage(filter);
+        });
     }
 
     /**
@@ -233,11 +305,6 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
     public DirectoryNodeDto createLogicalNode(String name, String basePath) throws IOException, NoRequirementsMeted {
         DirectoryNodeDto directoryNode = this.createDirectory(name, basePath);
 
-        // Could be already created
-        if (directoryNode == null) {
-            directoryNode = this.findDirectoryByBasePath(name, basePath);
-        }
-
         // could be integrity problems
         if (directoryNode == null) {
             throw new NoRequirementsMeted("Unable to create necessary node");
@@ -245,4 +312,61 @@ public class DirectoryLogicalServiceImpl implements IDirectoryLogicalService {
 
         return directoryNode;
     }
+
+    /**
+     * Find directory by identifier without blocking
+     *
+     * @param id identifier
+     * @return future with the directory if exists, otherwise {@code null}
+     */
+    @Override
+    public CompletableFuture<DirectoryNodeDto> findDirectoryByIdAsync(String id) {
+
+        DirectoryNodeDto directory = tree.findById(id);
+
+        if (directory != null) {
+            return CompletableFuture.completedFuture(directory);
+        }
+
+        return repository.findDirectoryByIdAsync(id);
+    }
+
+    /**
+     * Update a directory without blocking
+     *
+     * @param directory directory
+     * @return future with the directory if updated, otherwise {@code null}
+     * @see #updateDirectory(DirectoryNodeDto)
+     */
+    @Override
+    public CompletableFuture<DirectoryNodeDto> updateDirectoryAsync(DirectoryNodeDto directory) {
+        return repository.updateDirectoryAsync(directory)
+                .thenApply(updated -> {
+                    if (updated != null) {
+                        tree.put(updated);
+                    }
+                    return updated;
+                });
+    }
+
+    /**
+     * Loads the directory tree if not loaded yet
+     *
+     * @throws IOException if I/O error occurred
+     */
+    private void loadTree() throws IOException {
+
+        if (tree.isLoaded()) {
+            return;
+        }
+
+        List<DirectoryNodeDto> directories = repository.findAll();
+
+        if (directories == null) {
+            throw new IOException("Unable to load directory tree");
+        }
+
+        tree.load(directories);
+        log.info("Directory tree loaded with {} directories", tree.size());
+    }
 }
@@ -0,0 +1,366 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory model of the logical directory tree, loaded once from {@code /directories}.
+ * <p>
+ * Nodes are indexed by identifier, parent identifier and (path base, name), only active nodes
+ * are returned by the path and children queries, like the searches with {@code active=true}.
+ * The tree must be kept consistent by who creates, updates or purges nodes, moving a node
+ * recomputes the path base of all its descendants.
+ * <p>
+ * Queries return copies, so callers can modify them before an update.
+ */
+@Component
+public class DirectoryTree {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, DirectoryNodeDto> nodes = new HashMap<>();
+    private final Map<String, Set<String>> children = new HashMap<>();
+    private final Map<String, Set<String>> paths = new HashMap<>();
+    private boolean loaded;
+
+    /**
+     * Returns {@code true} if the tree was loaded
+     */
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the tree content
+     *
+     * @param directories all directory nodes
+     */
+    public void load(@NotNull List<DirectoryNodeDto> directories) {
+        lock.writeLock().lock();
+        try {
+            nodes.clear();
+            children.clear();
+            paths.clear();
+
+            for (DirectoryNodeDto directory : directories) {
+                if (directory.getId() != null) {
+                    DirectoryNodeDto node = copy(directory);
+                    nodes.put(node.getId(), node);
+                    index(node);
+                }
+            }
+            loaded = true;
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Discards the tree content, it must be loaded again
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            nodes.clear();
+            children.clear();
+            paths.clear();
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of nodes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all nodes
+     *
+     * @return copy of all nodes
+     */
+    @NotNull
+    public List<DirectoryNodeDto> findAll() {
+        lock.readLock().lock();
+        try {
+            List<DirectoryNodeDto> result = new ArrayList<>(nodes.size());
+
+            for (DirectoryNodeDto node : nodes.values()) {
+                result.add(copy(node));
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find directory by identifier, active or not
+     *
+     * @param id identifier
+     * @return copy of the directory if exists, otherwise {@code null}
+     */
+    public DirectoryNodeDto findById(String id) {
+        lock.readLock().lock();
+        try {
+            DirectoryNodeDto node = id == null ? null : nodes.get(id);
+            return node == null ? null : copy(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find active directory by name and parent identifier
+     *
+     * @param name     directory name
+     * @param parentId parent identifier
+     * @return copy of the directory if exists, otherwise {@code null}
+     */
+    public DirectoryNodeDto findByParentId(String name, String parentId) {
+        lock.readLock().lock();
+        try {
+            for (String id : children.getOrDefault(parentId, Collections.emptySet())) {
+                DirectoryNodeDto node = nodes.get(id);
+
+                if (node.getName().equals(name)) {
+                    return copy(node);
+                }
+            }
+
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find active directory by name and path base, path base is compared ignoring case
+     *
+     * @param name     directory name
+     * @param pathBase directory path base
+     * @return copy of the directory if exists, otherwise {@code null}
+     */
+    public DirectoryNodeDto findByBasePath(String name, String pathBase) {
+        lock.readLock().lock();
+        try {
+            if (name == null || pathBase == null) {
+                return null;
+            }
+
+            for (String id : paths.getOrDefault(pathKey(pathBase, name), Collections.emptySet())) {
+                return copy(nodes.get(id));
+            }
+
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns active children directories
+     *
+     * @param parentId parent identifier
+     * @return copies of children directories
+     */
+    @NotNull
+    public List<DirectoryNodeDto> findChildren(String parentId) {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = children.getOrDefault(parentId, Collections.emptySet());
+            List<DirectoryNodeDto> result = new ArrayList<>(ids.size());
+
+            for (String id : ids) {
+                result.add(copy(nodes.get(id)));
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a created node or replaces an updated one.
+     * <p>
+     * The path base of a node with a known parent is derived from the parent, and
+     * the path bases of all its descendants are recomputed.
+     *
+     * @param directory node returned by the API
+     */
+    public void put(@NotNull DirectoryNodeDto directory) {
+
+        if (directory.getId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            DirectoryNodeDto previous = nodes.remove(directory.getId());
+
+            if (previous != null) {
+                unindex(previous);
+            }
+
+            DirectoryNodeDto node = copy(directory);
+            nodes.put(node.getId(), node);
+            derivePathBase(node);
+            index(node);
+
+            if (previous != null && !samePath(previous, node)) {
+                updateDescendantsPathBase(node);
+            }
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a node and all its descendants
+     *
+     * @param id identifier
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Deque<String> pending = new ArrayDeque<>();
+            pending.push(id);
+
+            while (!pending.isEmpty()) {
+                DirectoryNodeDto node = nodes.remove(pending.pop());
+
+                if (node != null) {
+                    unindex(node);
+                    // active children are indexed under their parent
+                    Set<String> childIds = children.remove(node.getId());
+
+                    if (childIds != null) {
+                        childIds.forEach(pending::push);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void derivePathBase(@NotNull DirectoryNodeDto node) {
+
+        DirectoryNodeDto parent = node.getParentDirectoryId() == null ? null : nodes.get(node.getParentDirectoryId());
+
+        if (parent != null && parent.getPathBase() != null) {
+            node.setPathBase(Paths.get(parent.getPathBase(), parent.getName()).toString());
+        }
+    }
+
+    private void updateDescendantsPathBase(@NotNull DirectoryNodeDto root) {
+
+        Deque<DirectoryNodeDto> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            DirectoryNodeDto parent = pending.pop();
+
+            for (String id : children.getOrDefault(parent.getId(), Collections.emptySet())) {
+                DirectoryNodeDto child = nodes.get(id);
+
+                removeFromIndex(paths, pathKey(child.getPathBase(), child.getName()), id);
+                child.setPathBase(Paths.get(parent.getPathBase(), parent.getName()).toString());
+                addToIndex(paths, pathKey(child.getPathBase(), child.getName()), id);
+
+                pending.push(child);
+            }
+        }
+    }
+
+    private void index(@NotNull DirectoryNodeDto node) {
+
+        if (Boolean.FALSE.equals(node.getActive()) || node.getName() == null) {
+            return;
+        }
+
+        if (node.getParentDirectoryId() != null) {
+            addToIndex(children, node.getParentDirectoryId(), node.getId());
+        }
+        if (node.getPathBase() != null) {
+            addToIndex(paths, pathKey(node.getPathBase(), node.getName()), node.getId());
+        }
+    }
+
+    private void unindex(@NotNull DirectoryNodeDto node) {
+
+        if (node.getParentDirectoryId() != null) {
+            removeFromIndex(children, node.getParentDirectoryId(), node.getId());
+        }
+        if (node.getPathBase() != null && node.getName() != null) {
+            removeFromIndex(paths, pathKey(node.getPathBase(), node.getName()), node.getId());
+        }
+    }
+
+    private static boolean samePath(@NotNull DirectoryNodeDto previous, @NotNull DirectoryNodeDto node) {
+        return Objects.equals(previous.getName(), node.getName())
+                && Objects.equals(previous.getPathBase(), node.getPathBase());
+    }
+
+    private static void addToIndex(@NotNull Map<String, Set<String>> index, String key, String id) {
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>(2)).add(id);
+    }
+
+    private static void removeFromIndex(@NotNull Map<String, Set<String>> index, String key, String id) {
+
+        Set<String> ids = index.get(key);
+
+        if (ids != null) {
+            ids.remove(id);
+
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    @NotNull
+    private static String pathKey(@NotNull String pathBase, @NotNull String name) {
+        return pathBase.toLowerCase() + '\u0000' + name;
+    }
+
+    @NotNull
+    private static DirectoryNodeDto copy(@NotNull DirectoryNodeDto directory) {
+
+        DirectoryNodeDto copy = DirectoryNodeDto.builder()
+                .active(directory.getActive())
+                .name(directory.getName())
+                .parentDirectoryId(directory.getParentDirectoryId())
+                .pathBase(directory.getPathBase())
+                .build();
+
+        copy.setId(directory.getId());
+        copy.setVersionLock(directory.getVersionLock());
+        copy.setInsertDate(directory.getInsertDate());
+        copy.setModificationDate(directory.getModificationDate());
+
+        return copy;
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.springmigrate.service.implementation;
 
+import com.example.springmigrate.config.utils.PageCursor;
 import com.example.springmigrate.dto.ContentFileNodeDto;
 import com.example.springmigrate.dto.FileFilterDto;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 import com.example.springmigrate.model.FilePhysical;
 import com.example.springmigrate.repository.IFileRepository;
 import com.example.springmigrate.service.IFileLogicalService;
@@ -12,7 +14,11 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Log4j2
@@ -64,16 +70,100 @@ public class FileLogicalServiceImpl implements IFileLogicalService {
     public List<FileNodeDto> findCandidateFilesByName(
             @NotNull String name) throws IOException {
 
+        // Find candidates with filename(invalid UUID), all pages
+        try (Stream<FileNodeDto> candidates = this.streamFilesByFilter(candidatesFilter(name))) {
+            return candidates.collect(Collectors.toList());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public CompletableFuture<FileNodeDto> findFileByIdAsync(String id) {
+        return repository.findFileByIdAsync(id);
+    }
+
+    /**
+     * Moves a file node to another directory, the full node is read before updating it
+     * so it can be moved from a projection
+     *
+     * @param id                file node identifier
+     * @param name              new name, {@code null} to keep the current one
+     * @param parentDirectoryId new parent directory identifier
+     * @return future with the updated node, {@code null} if not found or not updated
+     */
+    @Override
+    public CompletableFuture<FileNodeDto> moveFileAsync(@NotNull String id, String name, @NotNull String parentDirectoryId) {
+        return repository.moveFileAsync(id, name, parentDirectoryId);
+    }
+
+    /**
+     * Find logical files by identifiers with a single search request
+     *
+     * @param ids file identifiers
+     * @return future with the list of files found, {@code null} if the search failed
+     */
+    @Override
+    public CompletableFuture<List<FileNodeDto>> findFilesByIdsAsync(@NotNull List<String> ids) {
+
+        // same files as GET /files/{id}, active or not
+        ContentFileNodeDto content = new ContentFileNodeDto();
+        content.setActive(null);
+        content.setIds(ids);
+
+        FileFilterDto filter = new FileFilterDto();
+        filter.setPage(0);
+        filter.setSize(ids.size());
+        filter.setContent(content);
+
+        return repository.findFilesByFilterAsync(filter);
+    }
+
+    @NotNull
+    private static FileFilterDto candidatesFilter(@NotNull String name) {
+
         // Setting content for search files by name (include)
         ContentFileNodeDto content = new ContentFileNodeDto();
         content.setName(name);
 
         // Setting filter
         FileFilterDto filter = new FileFilterDto();
-        filter.setSize(1000);
         filter.setContent(content);
 
-        // Find candidates with filename(invalid UUID)
-        return this.findFilesByFilter(filter);
+        return filter;
+    }
+
+    /**
+     * Returns all logical files that meet filter requirements, pages are requested lazily
+     * while the stream is consumed
+     *
+     * @param filter filter content, page and size are set by the cursor
+     * @return stream of logical files, I/O errors are thrown as {@link UncheckedIOException}
+     * @see PageCursor
+     */
+    @Override
+    public Stream<FileNodeDto> streamFilesByFilter(@NotNull FileFilterDto filter) {
+        return PageCursor.stream((page, size) -> {
+            filter.setPage(page);
+            filter.setSize(size);
+            return repository.findFilesPage(filter);
+        });
+    }
+
+    /**
+     * Returns projections of all logical files that meet filter requirements, without file data.
+     * Pages are requested lazily while the stream is consumed
+     *
+     * @param filter filter content, page and size are set by the cursor
+     * @return stream of file projections, I/O errors are thrown as {@link UncheckedIOException}
+     * @see PageCursor
+     */
+    @Override
+    public Stream<FileNodeProjectionDto> streamFileProjectionsByFilter(@NotNull FileFilterDto filter) {
+        return PageCursor.stream((page, size) -> {
+            filter.setPage(page);
+            filter.setSize(size);
+            return repository.findFileProjectionsPage(filter);
+        });
     }
 }
@@ -0,0 +1,181 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.config.utils.ApiCallExecutor;
+import com.example.springmigrate.config.utils.MigrationUtils;
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.model.FilePhysical;
+import com.example.springmigrate.service.IFileLogicalService;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * Resolves file nodes by uuid in batches, one search request per batch of identifiers.
+ * <p>
+ * Identifiers are known up front (uuid filenames of a directory listing) and looked up in
+ * roughly the same order, the first lookup of a batch requests the whole batch. A batch is
+ * released once all its identifiers were looked up, so lookups out of order never request a
+ * batch again, and only the batches being looked up are kept in memory.
+ * <p>
+ * Lookups are thread safe and never send a request holding a lock, sending may block while
+ * the API window is full. Identifiers of a failed search are requested one by one, from
+ * {@link ApiCallExecutor#chainedCalls()} instead of the HTTP callback thread.
+ */
+public class FileNodeBatchLookup {
+
+    private final IFileLogicalService fileLogicalService;
+    private final List<String> ids;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<Integer, CompletableFuture<Map<String, FileNodeDto>>> batches = new ConcurrentHashMap<>();
+    // lookups of every batch not done yet
+    private final AtomicIntegerArray remaining;
+    private final int batchSize;
+
+    /**
+     * Constructor
+     *
+     * @param fileLogicalService file service
+     * @param ids                file node identifiers in lookup order
+     * @param batchSize          identifiers per search request
+     */
+    public FileNodeBatchLookup(@NotNull IFileLogicalService fileLogicalService, @NotNull List<String> ids, int batchSize) {
+        this.fileLogicalService = fileLogicalService;
+        this.ids = new ArrayList<>(ids.size());
+        this.batchSize = Math.max(1, batchSize);
+
+        for (String id : ids) {
+            String key = id.toLowerCase();
+
+            if (!positions.containsKey(key)) {
+                positions.put(key, this.ids.size());
+                this.ids.add(id);
+            }
+        }
+
+        // an identifier announced twice is looked up twice
+        this.remaining = new AtomicIntegerArray((this.ids.size() + this.batchSize - 1) / this.batchSize);
+        for (String id : ids) {
+            remaining.incrementAndGet(positions.get(id.toLowerCase()) / this.batchSize);
+        }
+    }
+
+    /**
+     * Creates a batch lookup for the files named with a uuid
+     *
+     * @param fileLogicalService file service
+     * @param files              physical files in lookup order
+     * @param batchSize          identifiers per search request
+     * @return batch lookup
+     */
+    @NotNull
+    public static FileNodeBatchLookup forFiles(
+            @NotNull IFileLogicalService fileLogicalService,
+            @NotNull List<FilePhysical> files,
+            int batchSize) {
+
+        List<String> ids = new ArrayList<>();
+
+        for (FilePhysical file : files) {
+            if (MigrationUtils.isValidUUID(file.getName())) {
+                ids.add(file.getName());
+            }
+        }
+
+        return new FileNodeBatchLookup(fileLogicalService, ids, batchSize);
+    }
+
+    /**
+     * Looks up a file node, requesting its batch if not requested yet
+     *
+     * @param id file node identifier
+     * @return future with the node if exists, otherwise {@code null}
+     */
+    @NotNull
+    public CompletableFuture<FileNodeDto> lookup(@NotNull String id) {
+
+        String key = id.toLowerCase();
+        Integer position = positions.get(key);
+
+        // not announced, or its batch already released, single request
+        if (position == null || remaining.get(position / batchSize) <= 0) {
+            return fileLogicalService.findFileByIdAsync(id);
+        }
+
+        int batch = position / batchSize;
+        CompletableFuture<Map<String, FileNodeDto>> requested = batch(batch);
+
+        // every lookup of the batch holds its future
+        if (remaining.decrementAndGet(batch) <= 0) {
+            batches.remove(batch, requested);
+        }
+
+        return requested.thenCompose(found -> found != null
+                ? CompletableFuture.completedFuture(found.get(key))
+                // search failed, fall back to single request
+                // sent by the executor, not by the completion of a supplied future on this thread
+                : CompletableFuture.supplyAsync(() -> fileLogicalService.findFileByIdAsync(id), ApiCallExecutor.chainedCalls())
+                        .thenCompose(Function.identity()));
+    }
+
+    /**
+     * Returns the number of batches kept, requested and not released
+     */
+    public int getBatchesKept() {
+        return batches.size();
+    }
+
+    /**
+     * Returns the search of a batch, sent by the first lookup of the batch
+     */
+    @NotNull
+    private CompletableFuture<Map<String, FileNodeDto>> batch(int batch) {
+
+        CompletableFuture<Map<String, FileNodeDto>> requested = batches.get(batch);
+
+        if (requested != null) {
+            return requested;
+        }
+
+        CompletableFuture<Map<String, FileNodeDto>> placeholder = new CompletableFuture<>();
+        requested = batches.putIfAbsent(batch, placeholder);
+
+        if (requested != null) {
+            return requested;
+        }
+
+        // sent once the batch is published, so concurrent lookups don't wait to send it
+        try {
+            requestBatch(batch).whenComplete((found, ex) -> placeholder.complete(ex == null ? found : null));
+        } catch (RuntimeException ex) {
+            placeholder.complete(null);
+        }
+
+        return placeholder;
+    }
+
+    @NotNull
+    private CompletableFuture<Map<String, FileNodeDto>> requestBatch(int batch) {
+
+        List<String> batchIds = ids.subList(batch * batchSize, Math.min(ids.size(), (batch + 1) * batchSize));
+
+        return fileLogicalService.findFilesByIdsAsync(new ArrayList<>(batchIds))
+                .handle((results, ex) -> {
+                    if (ex != null || results == null) {
+                        return null;
+                    }
+
+                    Map<String, FileNodeDto> found = new HashMap<>();
+                    for (FileNodeDto dto : results) {
+                        if (dto.getId() != null) {
+                            found.put(dto.getId().toLowerCase(), dto);
+                        }
+                    }
+
+                    return found;
+                });
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.config.utils.MigrationUtils;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
+import com.example.springmigrate.model.FilePhysical;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * In memory index of logical file node projections keyed by normalized path base and name.
+ * <p>
+ * Every node is registered under the two names accepted by
+ * {@link MigrationUtils#isLogicalRepresentationOfDirectory(FileNodeProjectionDto, FilePhysical, Map)}:
+ * its name and its lowercase name with the extension of its mime type. A physical file
+ * is then matched with a single hash lookup instead of a server side search.
+ */
+public class FileNodeIndex {
+
+    private final Map<String, String> mimeTypes;
+    private final Map<String, List<FileNodeProjectionDto>> nodes = new HashMap<>();
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param mimeTypes map of mime types(mimetype, extension)
+     */
+    public FileNodeIndex(@NotNull Map<String, String> mimeTypes) {
+        this.mimeTypes = mimeTypes;
+    }
+
+    /**
+     * Adds a file node to the index, nodes without name or path base are ignored
+     *
+     * @param dto logical file node
+     */
+    public synchronized void add(@NotNull FileNodeProjectionDto dto) {
+
+        if (dto.getName() == null || dto.getPathBase() == null) {
+            return;
+        }
+
+        for (String key : keysOf(dto)) {
+            nodes.computeIfAbsent(key, k -> new ArrayList<>(1)).add(dto);
+        }
+        size++;
+    }
+
+    /**
+     * Finds the first not processed node that is the logical representation of the physical file
+     * and removes it from the index, so it can't be matched twice
+     *
+     * @param filePhysical physical file
+     * @param isProcessed  predicate for nodes already migrated
+     * @return matching node, otherwise {@code null}
+     */
+    public synchronized FileNodeProjectionDto claim(@NotNull FilePhysical filePhysical, @NotNull Predicate<FileNodeProjectionDto> isProcessed) {
+
+        String physicalName = MigrationUtils.setFileNameWithExtension(filePhysical, mimeTypes);
+        List<FileNodeProjectionDto> candidates = nodes.get(key(filePhysical.getParentPath(), physicalName));
+
+        if (candidates == null) {
+            return null;
+        }
+
+        for (FileNodeProjectionDto candidate : candidates) {
+            // same check as the per file search, the key only narrows candidates
+            if (!isProcessed.test(candidate)
+                    && MigrationUtils.isLogicalRepresentationOfDirectory(candidate, filePhysical, mimeTypes)) {
+
+                remove(candidate);
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the number of nodes indexed
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void remove(FileNodeProjectionDto dto) {
+
+        for (String key : keysOf(dto)) {
+            List<FileNodeProjectionDto> candidates = nodes.get(key);
+
+            if (candidates != null) {
+                candidates.remove(dto);
+
+                if (candidates.isEmpty()) {
+                    nodes.remove(key);
+                }
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Keys under which a node could be matched
+     */
+    @NotNull
+    private Set<String> keysOf(@NotNull FileNodeProjectionDto dto) {
+
+        Set<String> keys = new HashSet<>(2);
+        keys.add(key(dto.getPathBase(), dto.getName()));
+
+        String extension = mimeTypes.get(dto.getMimeType());
+        if (extension != null) {
+            keys.add(key(dto.getPathBase(), dto.getName().concat(extension).toLowerCase()));
+        }
+
+        return keys;
+    }
+
+    @NotNull
+    private static String key(@NotNull String pathBase, @NotNull String name) {
+        // normalize path bases (api response -> pathBase='opttoolstomcatlatest/Documents/1/VT')
+        return pathBase.replace(File.separator, "") + '\u0000' + name;
+    }
+}
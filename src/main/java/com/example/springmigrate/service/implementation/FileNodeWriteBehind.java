@@ -0,0 +1,300 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.service.IFileLogicalService;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes file node updates behind the physical moves, so moving files doesn't wait for the API.
+ * <p>
+ * Updates are written by a fixed number of writer threads, one request each, in submission order.
+ * An update submitted while a previous update of the same node is still queued replaces it, both
+ * submitters get the result of the single request sent. Updates of a node being written wait for
+ * the request in flight, and take the version returned by it, so a node is never written twice
+ * concurrently.
+ * <p>
+ * Submitters block while {@code maxPending} updates are queued or in flight.
+ * <p>
+ * The queue lives in memory only: callers that must survive a crash record the physical move,
+ * with the node and its parent, in the {@link com.example.springmigrate.config.utils.MigrationJournal}
+ * before submitting, a resumed migration updates the nodes moved but not updated.
+ */
+@Log4j2
+public class FileNodeWriteBehind implements Closeable {
+
+    private final IFileLogicalService fileLogicalService;
+    private final int maxPending;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // queued updates by node identifier, not in flight
+    private final Map<String, PendingUpdate> pending = new HashMap<>();
+    // node identifiers ready to be written, in submission order
+    private final Deque<String> ready = new ArrayDeque<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private boolean closed;
+    private long submitted;
+    private long coalesced;
+    private long written;
+    private long failed;
+
+    /**
+     * Constructor, starts the writer threads
+     *
+     * @param fileLogicalService file service
+     * @param concurrency        number of concurrent update requests
+     * @param maxPending         updates queued or in flight before submitters block
+     */
+    public FileNodeWriteBehind(@NotNull IFileLogicalService fileLogicalService, int concurrency, int maxPending) {
+        this.fileLogicalService = fileLogicalService;
+        this.maxPending = Math.max(1, maxPending);
+
+        for (int i = 0; i < Math.max(1, concurrency); i++) {
+            Thread writer = new Thread(this::write, "write-behind-" + (i + 1));
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Queues an update, blocking while the queue is full
+     *
+     * @param dto file node with its new values
+     * @return future completed with the updated node, {@code null} if not updated,
+     * or exceptionally with the I/O error
+     * @throws InterruptedIOException if interrupted while waiting for room
+     * @throws IllegalStateException  if already closed
+     */
+    @NotNull
+    public CompletableFuture<FileNodeDto> submit(@NotNull FileNodeDto dto) throws InterruptedIOException {
+
+        String id = dto.getId();
+
+        lock.lock();
+        try {
+            PendingUpdate update = pending.get(id);
+
+            // replaces the queued update, room already taken
+            if (update != null) {
+                update.dto = dto;
+                submitted++;
+                coalesced++;
+                return update.future;
+            }
+
+            while (!closed && pending.size() + inFlight.size() >= maxPending) {
+                changed.await();
+            }
+
+            if (closed) {
+                throw new IllegalStateException("Write behind closed, update of " + id + " rejected");
+            }
+
+            update = new PendingUpdate(dto);
+            pending.put(id, update);
+            submitted++;
+
+            // queued after the request in flight otherwise
+            if (!inFlight.contains(id)) {
+                ready.add(id);
+            }
+
+            changed.signalAll();
+            return update.future;
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for write behind queue");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every update submitted is written
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void flush() throws InterruptedIOException {
+        lock.lock();
+        try {
+            while (!pending.isEmpty() || !inFlight.isEmpty()) {
+                changed.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for write behind queue");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the updates still queued and stops the writers
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+
+        try {
+            flush();
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        log.info("Write behind: {}", this);
+    }
+
+    /**
+     * Returns number of updates queued or in flight
+     */
+    public int getPending() {
+        lock.lock();
+        try {
+            return pending.size() + inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of updates replaced by a later update of the same node
+     */
+    public long getCoalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of update requests sent
+     */
+    public long getWritten() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns number of update requests failed or not updated
+     */
+    public long getFailed() {
+        lock.lock();
+        try {
+            return failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("%d submitted, %d coalesced, %d written, %d failed, %d pending",
+                    submitted, coalesced, written, failed, pending.size() + inFlight.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writer loop, ends when closed and nothing is left to write
+     */
+    private void write() {
+
+        while (true) {
+            String id;
+            PendingUpdate update;
+
+            lock.lock();
+            try {
+                while (!closed && ready.isEmpty()) {
+                    changed.awaitUninterruptibly();
+                }
+                if (ready.isEmpty()) {
+                    return;
+                }
+
+                id = ready.poll();
+                update = pending.remove(id);
+                inFlight.add(id);
+            } finally {
+                lock.unlock();
+            }
+
+            FileNodeDto updated = null;
+            Throwable error = null;
+
+            try {
+                updated = fileLogicalService.updateFile(update.dto);
+            } catch (IOException | RuntimeException ex) {
+                error = ex;
+            }
+
+            // completed before flush returns
+            if (error != null) {
+                log.error("Unable to update file node {}: {}", id, error.getMessage());
+                update.future.completeExceptionally(error);
+            } else {
+                update.future.complete(updated);
+            }
+
+            lock.lock();
+            try {
+                inFlight.remove(id);
+                written++;
+                if (updated == null) {
+                    failed++;
+                }
+
+                PendingUpdate next = pending.get(id);
+                if (next != null) {
+                    // written over the version just returned
+                    if (updated != null) {
+                        next.dto.setVersionLock(updated.getVersionLock());
+                    }
+                    ready.add(id);
+                }
+
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Update queued, its node values may be replaced until written
+     */
+    private static class PendingUpdate {
+
+        private final CompletableFuture<FileNodeDto> future = new CompletableFuture<>();
+        private FileNodeDto dto;
+
+        private PendingUpdate(@NotNull FileNodeDto dto) {
+            this.dto = dto;
+        }
+    }
+}
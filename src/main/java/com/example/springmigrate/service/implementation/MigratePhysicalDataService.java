@@ -1,8 +1,14 @@
 package com.example.springmigrate.service.implementation;
 
+import com.example.springmigrate.config.utils.ApiCallExecutor;
+import com.example.springmigrate.config.utils.DestinationNameRegistry;
+import com.example.springmigrate.config.utils.FileTransferEngine;
+import com.example.springmigrate.config.utils.LruCache;
+import com.example.springmigrate.config.utils.MigrationMetrics;
+import com.example.springmigrate.config.utils.MigrationOptions;
+import com.example.springmigrate.config.utils.MigrationPhases;
 import com.example.springmigrate.config.utils.MigrationUtils;
-import com.example.springmigrate.dto.ContentDirectoryNodeDto;
-import com.example.springmigrate.dto.DirectoryFilterNodeDto;
+import com.example.springmigrate.config.utils.ParallelDirectoryTraversal;
 import com.example.springmigrate.dto.DirectoryNodeDto;
 import com.example.springmigrate.dto.FileNodeDto;
 import com.example.springmigrate.model.DirectoryPhysical;
@@ -20,15 +26,27 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Service
 @Log4j2
 public class MigratePhysicalDataService {
 
+    private static final int PARENT_NODES_CACHE_SIZE = 10_000;
+
     private final IDirectoryLogicalService directoryLogicalService;
     private final IFileLogicalService fileLogicalService;
+    private final ApiCallExecutor apiCallExecutor;
+    private final MigrationOptions options;
 
     private final Map<String, String> mimeTypes;
+    // logical nodes of physical directories, by physical path
+    private final LruCache<Path, DirectoryNodeDto> parentNodes = new LruCache<>(PARENT_NODES_CACHE_SIZE);
+    private final DestinationNameRegistry nameRegistry;
+    private final FileTransferEngine transferEngine;
+    private final MigrationPhases phases;
+    private final MigrationMetrics metrics;
 
     /**
      * Constructor
@@ -36,14 +54,32 @@ public class MigratePhysicalDataService {
      * @param directoryLogicalService directory service
      * @param fileLogicalService      file service
      * @param fileTypeService         file type service
+     * @param apiCallExecutor         asynchronous API calls executor
+     * @param options                 migration options
+     * @param nameRegistry            names taken in destination directories
+     * @param transferEngine          file transfers
+     * @param phases                  time spent in every phase
+     * @param metrics                 migration metrics
      */
     public MigratePhysicalDataService(
             IDirectoryLogicalService directoryLogicalService,
             IFileLogicalService fileLogicalService,
-            IFileTypeLogicalService fileTypeService) throws IOException {
+            IFileTypeLogicalService fileTypeService,
+            ApiCallExecutor apiCallExecutor,
+            MigrationOptions options,
+            DestinationNameRegistry nameRegistry,
+            FileTransferEngine transferEngine,
+            MigrationPhases phases,
+            MigrationMetrics metrics) throws IOException {
 
         this.directoryLogicalService = directoryLogicalService;
         this.fileLogicalService = fileLogicalService;
+        this.apiCallExecutor = apiCallExecutor;
+        this.options = options;
+        this.nameRegistry = nameRegistry;
+        this.transferEngine = transferEngine;
+        this.phases = phases;
+        this.metrics = metrics;
         this.mimeTypes = fileTypeService.findAllFileTypes();
     }
 
@@ -54,61 +90,179 @@ public class MigratePhysicalDataService {
      */
     public void migrate(List<Path> directories) {
 
+        phases.clear();
+
+        metrics.bind(transferEngine);
+        metrics.bind(apiCallExecutor);
+        metrics.gauge(MigrationMetrics.CACHE_HIT_RATIO, parentNodes::getHitRatio, "cache", "parent_nodes");
+
         // reduce complex names
         //Directories with uuid and complex names
         for (Path directoryPath : directories) {
             log.info("Working on {}", directoryPath);
             log.info("Normalizing folder names...");
-            List<DirectoryNodeDto> leafs = normalizeDirectoriesNames();
+            phases.run("normalize", this::normalizeDirectoriesNames);
+            // nodes could be renamed by normalization
+            parentNodes.clear();
             log.info("Migrating...");
-            traverseAndMigrate(directoryPath);
+            phases.run("migrate", () -> traverseAndMigrate(directoryPath));
+            // names of the migrated directories aren't needed anymore
+            nameRegistry.clear();
         }
+
+        transferEngine.logStats();
+        phases.logDurations();
     }
 
 
     /**
-     * Traverse directories and make migration
+     * Traverse directories and make migration, directories and chunks of files
+     * are processed in parallel by {@link MigrationOptions#getThreads()} threads
      *
      * @param directoryPath directory path
      */
     //TODO: RENAME EXISTING FOLDERS WITHOUT UUID NAME TO LOWER
     private void traverseAndMigrate(Path directoryPath) {
 
-        for (Path path : MigrationUtils.getPathList(directoryPath)) {
+        ParallelDirectoryTraversal traversal = new ParallelDirectoryTraversal(
+                options.getThreads(),
+                options.getLookupBatchSize());
 
-            FilePhysical filePhysicalUUID = FilePhysical
-                    .builder()
-                    .name(path.getFileName().toString())
-                    .parentDirectory(
-                            new DirectoryPhysical(path.getParent()))
-                    .build();
+        traversal.traverse(directoryPath, new ParallelDirectoryTraversal.Handler() {
+            @Override
+            public List<Path> prepareDirectories(@NotNull Path directory, @NotNull List<Path> subdirectories) {
+                return renamePhysicalDirectoriesNamedWithUUID(subdirectories);
+            }
 
-            // FILES LOGIC
-            // Always absolute path
-            if (Files.isRegularFile(path)) {
+            @Override
+            public void processFiles(@NotNull Path directory, @NotNull List<Path> files) {
+                migrateFiles(directory, files.stream()
+                        .map(path -> FilePhysical
+                                .builder()
+                                .name(path.getFileName().toString())
+                                .parentDirectory(
+                                        new DirectoryPhysical(path.getParent()))
+                                .build())
+                        .collect(Collectors.toList()));
+            }
+        });
+    }
 
-                try {
-                    fileProcessLogic(filePhysicalUUID);
+    /**
+     * Renames the directories named with a uuid, in order
+     *
+     * @param directories sibling directories
+     * @return directories with their current paths
+     */
+    @NotNull
+    private List<Path> renamePhysicalDirectoriesNamedWithUUID(@NotNull List<Path> directories) {
 
-                } catch (IllegalArgumentException ex) {
-                    log.error("Interrupted Exception: {}", ex.getMessage());
-                } catch (IOException ex) {
-                    log.error("I/O error during API request: {}", ex.getMessage());
-                } catch (Exception ex) {
-                    log.error("Unexpected exception occurred: {}", ex.getMessage());
-                }
+        List<Path> renamed = new ArrayList<>(directories.size());
 
+        for (Path path : directories) {
 
-            } else { // FOLDERS LOGIC
+            // Valid UUID as name?, rename it from database.
+            if (MigrationUtils.isValidUUID(path.getFileName().toString())) {
+                path = renamePhysicalDirectoryNamedWithUUID(path);
+            }
 
-                // Valid UUID as name?, rename it from database.
-                if (MigrationUtils.isValidUUID(filePhysicalUUID.getName())) {
-                    path = renamePhysicalDirectoryNamedWithUUID(path);
-                }
+            renamed.add(path);
+        }
 
-                traverseAndMigrate(path);
-            }
+        return renamed;
+    }
+
+    /**
+     * Migrates the files of a physical directory, its logical node is resolved once for all files
+     *
+     * @param directoryPath physical directory path
+     * @param files         physical files in the directory
+     */
+    private void migrateFiles(@NotNull Path directoryPath, @NotNull List<FilePhysical> files) {
+
+        metrics.add(MigrationMetrics.FILES, files.size(), "result", "scanned");
+
+        DirectoryNodeDto parentLogical;
 
+        try {
+            parentLogical = findParentNode(new DirectoryPhysical(directoryPath));
+        } catch (IOException ex) {
+            log.error("I/O error during API request: {}", ex.getMessage());
+            return;
+        }
+
+        if (parentLogical == null || parentLogical.getId() == null) {
+            log.error("Unable to find logical parent directory: {}", directoryPath);
+            return;
+        }
+
+        // uuid named files are resolved in batches
+        FileNodeBatchLookup uuidLookup = FileNodeBatchLookup.forFiles(
+                fileLogicalService,
+                files,
+                options.getLookupBatchSize());
+
+        // file nodes of next files are requested while a file is processed
+        apiCallExecutor.forEachOrdered(
+                files,
+                file -> lookupFileNode(file, uuidLookup),
+                (file, lookup) -> fileProcess(file, parentLogical, lookup));
+    }
+
+    /**
+     * Find logical directory with physical info, creating it if not exists.
+     * Resolved nodes are cached and shared by all directories processed
+     *
+     * @param directory physical directory
+     * @return logical directory node, {@code null} if not resolved
+     * @throws IOException if I/O exception occurred
+     */
+    private DirectoryNodeDto findParentNode(@NotNull DirectoryPhysical directory) throws IOException {
+        return parentNodes.get(directory.getPath(), path -> directoryLogicalService.createDirectory(
+                directory.getName(),
+                directory.getBasePath()));
+    }
+
+    /**
+     * Starts the lookup of the logical file named as the physical file
+     *
+     * @param filePhysicalUUID File with uuid name
+     * @param uuidLookup       batch lookup of uuid named files
+     * @return future with the file node, {@code null} if the name is not a valid uuid
+     */
+    @NotNull
+    private CompletableFuture<FileNodeDto> lookupFileNode(@NotNull FilePhysical filePhysicalUUID, @NotNull FileNodeBatchLookup uuidLookup) {
+
+        if (!MigrationUtils.isValidUUID(filePhysicalUUID.getName())) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return uuidLookup.lookup(filePhysicalUUID.getName());
+    }
+
+    /**
+     * Runs file process logic once its lookup is completed
+     *
+     * @param filePhysicalUUID File with uuid name
+     * @param parentLogical    logical parent directory extracted from physical route
+     * @param lookup           lookup started by {@link #lookupFileNode(FilePhysical, FileNodeBatchLookup)}
+     */
+    private void fileProcess(
+            @NotNull FilePhysical filePhysicalUUID,
+            @NotNull DirectoryNodeDto parentLogical,
+            @NotNull CompletableFuture<FileNodeDto> lookup) {
+        try {
+            fileProcessLogic(filePhysicalUUID, parentLogical, lookup);
+
+        } catch (IllegalArgumentException ex) {
+            metrics.increment(MigrationMetrics.FILES, "result", "failed");
+            log.error("Interrupted Exception: {}", ex.getMessage());
+        } catch (IOException ex) {
+            metrics.increment(MigrationMetrics.FILES, "result", "failed");
+            log.error("I/O error during API request: {}", ex.getMessage());
+        } catch (Exception ex) {
+            metrics.increment(MigrationMetrics.FILES, "result", "failed");
+            log.error("Unexpected exception occurred: {}", ex.getMessage());
         }
     }
 
@@ -116,71 +270,78 @@ public class MigratePhysicalDataService {
      * File process logic
      *
      * @param filePhysicalUUID File with uuid name
+     * @param parentLogical    logical parent directory extracted from physical route
+     * @param lookup           file node lookup by uuid
      * @throws IOException              if IOException occurred
      * @throws IllegalArgumentException if IllegalArgument occurred
      */
-    private void fileProcessLogic(@NotNull FilePhysical filePhysicalUUID) throws IOException, IllegalArgumentException {
-
-        // Find logical directory with physical info
-        DirectoryNodeDto parentLogical = directoryLogicalService.createDirectory(
-                filePhysicalUUID
-                        .getParentDirectory()
-                        .getName(),
-                filePhysicalUUID
-                        .getParentDirectory()
-                        .getBasePath());
-
-        if (parentLogical != null && parentLogical.getId() != null) {
-
-            // Update physicalName
-            if (MigrationUtils.isValidUUID(filePhysicalUUID.getName())) {
-                migrateData(filePhysicalUUID, parentLogical);
+    private void fileProcessLogic(
+            @NotNull FilePhysical filePhysicalUUID,
+            @NotNull DirectoryNodeDto parentLogical,
+            @NotNull CompletableFuture<FileNodeDto> lookup) throws IOException, IllegalArgumentException {
+
+        // Update physicalName
+        if (MigrationUtils.isValidUUID(filePhysicalUUID.getName())) {
+            FileNodeDto dto = ApiCallExecutor.await(lookup);
+            if (dto != null) {
+                migrateData(filePhysicalUUID, parentLogical, dto);
             } else {
-                log.info("Invalid UUID: {}", filePhysicalUUID.getName());
+                metrics.increment(MigrationMetrics.FILES, "result", "unmatched");
+                log.info("File node not found: {}", filePhysicalUUID.getName());
             }
-
-            // TODO: What if we have no UUID file name???
-
-        } else { // directory with physicalName: check and create
-            log.error("Unable to find logical parent directory: {}", filePhysicalUUID.getParentDirectory().getPath());
+        } else {
+            metrics.increment(MigrationMetrics.FILES, "result", "unmatched");
+            log.info("Invalid UUID: {}", filePhysicalUUID.getName());
         }
+
+        // TODO: What if we have no UUID file name???
     }
 
     /**
      * Rename physical files with uuid names based on database information.
-     * Always after update move physical files to database base url to keep integrity
+     * Always after update move physical files to database base url to keep integrity.
+     * The file is counted as matched once moved, as failed if not updated
      *
      * @param filePhysicalUUID physical file with uuid as filename
      * @param parentLogical    logical parent directory extracted from physical route
+     * @param dto              logical file found by uuid
      * @throws IOException I/O exception during service call
      */
-    private void migrateData(@NotNull FilePhysical filePhysicalUUID, @NotNull DirectoryNodeDto parentLogical) throws IOException, IllegalArgumentException {
-        // find logical file by uuid
-        FileNodeDto dto = fileLogicalService.findFileById(filePhysicalUUID.getName());
+    private void migrateData(@NotNull FilePhysical filePhysicalUUID, @NotNull DirectoryNodeDto parentLogical, @NotNull FileNodeDto dto) throws IOException, IllegalArgumentException {
 
-        assert dto != null;
         // complete filename with extension from database information
         FilePhysical filePhysical = getFilenameWithExtension(dto, filePhysicalUUID);
 
         // Full path to physical file renamed
         // if already exist(with prefix (001-, 002, ...) and extension)
-        filePhysical = getPathNameIfDuplicatedFile(filePhysical); // extension added
+        filePhysical = nameRegistry.reserve(filePhysical); // extension added
+        boolean moved = false;
 
-        // update file(logical) with actual physicalName
-        dto.setName(filePhysical.getFileName());
-        dto.setParentDirectoryId(parentLogical.getId());
-        FileNodeDto updated = fileLogicalService.updateFile(dto);
+        try {
+            // update file(logical) with actual physicalName
+            dto.setName(filePhysical.getFileName());
+            dto.setParentDirectoryId(parentLogical.getId());
+            FileNodeDto updated = fileLogicalService.updateFile(dto);
 
-        // Recheck DB and physical
-        if (updated != null) {
+            // Recheck DB and physical
+            if (updated != null) {
 
-            Path originPath = filePhysicalUUID.getAbsolutePathWithoutExtension();
-            Path destinyPath = Paths.get(updated.getPathBase(), updated.getName());
+                Path originPath = filePhysicalUUID.getAbsolutePathWithoutExtension();
+                Path destinyPath = Paths.get(updated.getPathBase(), updated.getName());
 
-            // Renames physical uuid filename with updated data logical
-            Files.move(originPath, destinyPath);
-        } else {
-            log.error("Unable to rename(check rename) '{}' due unable update database record.", filePhysical.getFileName());
+                // Renames physical uuid filename with updated data logical
+                transferEngine.move(originPath, destinyPath);
+                moved = true;
+                metrics.increment(MigrationMetrics.FILES, "result", "matched");
+            } else {
+                metrics.increment(MigrationMetrics.FILES, "result", "failed");
+                log.error("Unable to rename(check rename) '{}' due unable update database record.", filePhysical.getFileName());
+            }
+        } finally {
+            // given up, the name is free again
+            if (!moved) {
+                nameRegistry.release(filePhysical);
+            }
         }
     }
 
@@ -225,7 +386,7 @@ public class MigratePhysicalDataService {
                 Path newName = path.resolveSibling(dto.getName());
 
                 // Update physical folder name
-                Files.move(path, newName);
+                transferEngine.move(path, newName);
 
                 return newName;
             }
@@ -237,38 +398,6 @@ public class MigratePhysicalDataService {
     }
 
 
-    /**
-     * Check for duplicated files in physical storage and return a file with unique filename
-     *
-     * @param filePhysical physical file
-     * @return new file with unique name in storage path
-     */
-    public FilePhysical getPathNameIfDuplicatedFile(@NotNull FilePhysical filePhysical) {
-        String name = filePhysical.getName();
-        File finalFileName = new File(filePhysical.getAbsolutePath().toString());
-        int prefix = 1;
-
-        while (finalFileName.exists()) {
-            name = String.format("%03d-%s", prefix, filePhysical.getName());
-            finalFileName = new File(
-                    Paths.get(
-                                    filePhysical
-                                            .getParentDirectory()
-                                            .getPath()
-                                            .toString(),
-                                    name.concat(filePhysical.getExtension()))
-                            .toString());
-            prefix++;
-        }
-
-        return FilePhysical.builder()
-                .name(name)
-                .extension(filePhysical.getExtension())
-                .parentDirectory(filePhysical.getParentDirectory())
-                .build();
-    }
-
-
     /**
      * Returns a list af leafs created
      *
@@ -289,6 +418,9 @@ public class MigratePhysicalDataService {
 
                 // paths with name count > 1, means complex directory names
                 if (namePath.getNameCount() > 1) {
+                    // lookups below must see previous names already normalized
+                    apiCallExecutor.awaitIdle();
+
                     // Do the magic here
                     // split directory name and create simple directories
                     leafs.add(createParentsAndRenameLeaf(directory));
@@ -301,10 +433,18 @@ public class MigratePhysicalDataService {
                         directory.setPathBase(null);
                     }
 
-                    directoryLogicalService.updateDirectory(directory);
+                    // independent updates, run them concurrently
+                    directoryLogicalService.updateDirectoryAsync(directory)
+                            .whenComplete((updated, ex) -> {
+                                if (updated == null) {
+                                    log.error("Unable to normalize directory name: {}", directory.getId());
+                                }
+                            });
                 }
             }
 
+            apiCallExecutor.awaitIdle();
+
         } catch (IOException e) {
             log.error("I/O error reading directories");
         }
@@ -342,7 +482,7 @@ public class MigratePhysicalDataService {
         DirectoryNodeDto duplicatedDirectory = directoryLogicalService.findDirectoryByParentId(leafName, lastParent.getId());
 
         if (duplicatedDirectory != null) {
-            List<DirectoryNodeDto> children = findChildrenDirectories(duplicatedDirectory.getId());
+            List<DirectoryNodeDto> children = directoryLogicalService.findChildrenDirectories(duplicatedDirectory.getId());
 
             for (DirectoryNodeDto child : children) {
                 child.setParentDirectoryId(directory.getId());
@@ -401,7 +541,7 @@ public class MigratePhysicalDataService {
 
         String actualDirectoryName = path.subpath(index, index + 1).toString();
         String pathBase = Paths.get(parent.getPathBase(), parent.getName()).toString();
-        DirectoryNodeDto result = createDirectory(parent, actualDirectoryName, pathBase);
+        DirectoryNodeDto result = directoryLogicalService.createDirectory(actualDirectoryName, pathBase);
 
         // TODO
         // root's parent directory is a root directory (in root directories table)
@@ -423,53 +563,4 @@ public class MigratePhysicalDataService {
         return createFromRelativeRoute(result, path, complexId, ++index);
     }
 
-    /**
-     * Creates directory
-     *
-     * @param parent   candidate parent directory
-     * @param name     directory name
-     * @param pathBase absolute parent path
-     * @return directory created
-     * @throws IOException if I/O error
-     */
-    private DirectoryNodeDto createDirectory(DirectoryNodeDto parent, String name, String pathBase) throws IOException {
-
-        List<DirectoryNodeDto> request = new ArrayList<>();
-        request.add(DirectoryNodeDto.builder()
-                .active(true)
-                .name(name)
-                .pathBase(pathBase)
-                .build());
-
-        DirectoryNodeDto result = directoryLogicalService.createDirectories(request);
-
-        if (result == null) {
-            // find directory node
-            result = directoryLogicalService.findDirectoryByParentId(name, parent.getId());
-        }
-
-        return result;
-    }
-
-    /**
-     * Returns a list of all children directories
-     *
-     * @param parentId parent identifier
-     * @return children directories
-     * @throws IOException if I/O error occurred
-     */
-    public List<DirectoryNodeDto> findChildrenDirectories(String parentId) throws IOException {
-
-        ContentDirectoryNodeDto content = new ContentDirectoryNodeDto();
-        content.setActive(true);
-        content.setParentDirectoryId(parentId);
-
-        DirectoryFilterNodeDto filter = new DirectoryFilterNodeDto();
-        filter.setContent(content);
-        filter.setPage(0);
-        filter.setSize(100000);
-
-        return directoryLogicalService.findAllDirectoriesByFilter(filter);
-    }
-
 }
@@ -1,9 +1,24 @@
 package com.example.springmigrate.service.implementation;
 
+import com.example.springmigrate.config.utils.ApiCallExecutor;
+import com.example.springmigrate.config.utils.DestinationNameRegistry;
+import com.example.springmigrate.config.utils.FileTransferEngine;
+import com.example.springmigrate.config.utils.MigrationJournal;
+import com.example.springmigrate.config.utils.MigrationMetrics;
+import com.example.springmigrate.config.utils.MigrationOptions;
+import com.example.springmigrate.config.utils.MigrationPhases;
+import com.example.springmigrate.config.utils.MigrationPlan;
 import com.example.springmigrate.config.utils.MigrationUtils;
+import com.example.springmigrate.config.utils.ParallelDirectoryTraversal;
+import com.example.springmigrate.config.utils.PipelineStage;
+import com.example.springmigrate.config.utils.StagedPipeline;
 import com.example.springmigrate.config.utils.error.NoRequirementsMeted;
+import com.example.springmigrate.config.utils.error.NodeAlreadyProcessed;
+import com.example.springmigrate.dto.ContentFileNodeDto;
 import com.example.springmigrate.dto.DirectoryNodeDto;
+import com.example.springmigrate.dto.FileFilterDto;
 import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
 import com.example.springmigrate.dto.PhysicalLogicalDirectoryDto;
 import com.example.springmigrate.dto.RootNodeDto;
 import com.example.springmigrate.model.DirectoryPhysical;
@@ -17,23 +32,52 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Log4j2
 public class MigrateUnixService {
 
+    // files waiting in front of every pipeline stage
+    private static final int PIPELINE_QUEUE_CAPACITY = 1000;
+    // seconds between pipeline statistics logs
+    private static final long PIPELINE_STATS_SECONDS = 30;
+
     private final IDirectoryLogicalService directoryLogicalService;
     private final IFileLogicalService fileLogicalService;
     private final IRootDirectoryService rootDirectoryService;
+    private final MigrationOptions options;
+    private final ApiCallExecutor apiCallExecutor;
 
     private final Map<String, String> mimeTypes;
     private PhysicalLogicalDirectoryDto physicalLogicalRoot;
     private DirectoryNodeDto nodeNotFound;
     private DirectoryPhysical directoryNotFoundInDatabase;
+    // buckets of found and not found directories
+    private ShardedDirectory foundShards;
+    private ShardedDirectory notFoundShards;
     private List<DirectoryNodeDto> unlinkedDirectories;
-    private List<FileNodeDto> unlinkedFiles;
+    private List<FileNodeProjectionDto> unlinkedFiles;
+    private FileNodeIndex fileNodeIndex;
+    // work done by this and previous runs, null if running without journal
+    private MigrationJournal journal;
+    // file node updates written behind the physical moves
+    private FileNodeWriteBehind writeBehind;
+    // steps of a planning run, null while migrating
+    private MigrationPlan plan;
+    // nodes matched in this run whose update could still be in flight
+    private final Set<String> claimedNodeIds = ConcurrentHashMap.newKeySet();
+    private final DestinationNameRegistry nameRegistry;
+    private final FileTransferEngine transferEngine;
+    private final MigrationPhases phases;
+    private final MigrationMetrics metrics;
 
     /**
      * Constructor
@@ -41,16 +85,35 @@ public class MigrateUnixService {
      * @param directoryLogicalService directory service
      * @param fileLogicalService      file service
      * @param fileTypeLogicalService  file type service
+     * @param rootDirectoryService    root directory service
+     * @param options                 migration options
+     * @param apiCallExecutor         asynchronous API calls executor
+     * @param nameRegistry            names taken in destination directories
+     * @param transferEngine          file transfers
+     * @param phases                  time spent in every phase
+     * @param metrics                 migration metrics
      */
     public MigrateUnixService(
             IDirectoryLogicalService directoryLogicalService,
             IFileLogicalService fileLogicalService,
             IFileTypeLogicalService fileTypeLogicalService,
-            IRootDirectoryService rootDirectoryService) throws IOException {
+            IRootDirectoryService rootDirectoryService,
+            MigrationOptions options,
+            ApiCallExecutor apiCallExecutor,
+            DestinationNameRegistry nameRegistry,
+            FileTransferEngine transferEngine,
+            MigrationPhases phases,
+            MigrationMetrics metrics) throws IOException {
 
         this.directoryLogicalService = directoryLogicalService;
         this.fileLogicalService = fileLogicalService;
         this.rootDirectoryService = rootDirectoryService;
+        this.options = options;
+        this.apiCallExecutor = apiCallExecutor;
+        this.nameRegistry = nameRegistry;
+        this.transferEngine = transferEngine;
+        this.phases = phases;
+        this.metrics = metrics;
         this.mimeTypes = fileTypeLogicalService.findAllFileTypes();
     }
 
@@ -61,51 +124,366 @@ public class MigrateUnixService {
      */
     public void migrate(String pathBase, String foundDirectoryName, String notFoundDirectoryName, List<Path> directories) throws IOException, NoRequirementsMeted {
 
+        phases.clear();
+
         // Create logical and physical scaffold
         log.info("Creating directories...");
-        makeInitialScaffold(pathBase, foundDirectoryName, notFoundDirectoryName);
+        phases.run("scaffold", () -> makeInitialScaffold(pathBase, foundDirectoryName, notFoundDirectoryName));
+        // destination directories are listed again
+        nameRegistry.clear();
+        claimedNodeIds.clear();
+
+        journal = options.getJournal() == null ? null : MigrationJournal.open(options.getJournal());
+        writeBehind = new FileNodeWriteBehind(
+                fileLogicalService,
+                options.getUpdateConcurrency(),
+                options.getUpdateQueueSize());
+
+        metrics.bind(transferEngine);
+        metrics.bind(apiCallExecutor);
+        metrics.gauge(MigrationMetrics.QUEUE_DEPTH, writeBehind::getPending, "queue", "write_behind");
+
+        boolean completed = false;
+        try {
+            // complete the work of an interrupted run
+            if (journal != null) {
+                log.info("Resuming journal...");
+                phases.run("journal", this::resumeJournal);
+            }
+
+            phases.run("index", this::indexFileNodes);
 
-        // make migration
-        runMigrations(directories);
+            // make migration
+            phases.run("migrate", () -> {
+                runMigrations(directories);
+
+                // wait for pending node updates before reading all nodes
+                writeBehind.flush();
+                apiCallExecutor.awaitIdle();
+            });
+            completed = true;
+
+        } finally {
+            writeBehind.close();
+            metrics.remove(MigrationMetrics.QUEUE_DEPTH, "queue", "write_behind");
+            closeJournal(completed);
+        }
 
         // clean logical
         log.info("Deleting roots...");
-        deleteRoots();
+        phases.run("roots", this::deleteRoots);
 
         log.info("Deleting Directories...");
-        deleteDirectories();
+        phases.run("directories", this::deleteDirectories);
 
         // Show statistics
+        transferEngine.logStats();
         MigrationUtils.showResume(physicalLogicalRoot.getDirectory(), directoryNotFoundInDatabase, directories);
 
         // clean source directories structure after migrate
         log.info("Clean empty data source directories...");
-        MigrationUtils.cleanPhysicalSourceDirectories(directories);
+        phases.run("cleanup", () -> MigrationUtils.cleanPhysicalSourceDirectories(directories));
+
+        phases.logDurations();
     }
 
     /**
-     * Deletes all directories except nodes created for found and not found data
+     * Computes every side effect of a migration without applying it, and writes them as a plan.
+     * <p>
+     * Found and not found directories, and their buckets, are created, files and nodes are left
+     * untouched. Destination names are allocated as if the files were moved, so the plan is only
+     * valid while the found and not found directories don't change. Uuid named source directories
+     * are not renamed, every file leaves them and they are cleaned after the execution.
+     *
+     * @param pathBase              root path base
+     * @param foundDirectoryName    directory name where the files found in the database will be saved
+     * @param notFoundDirectoryName directory name where the files not found in the database will be saved
+     * @param directories           directories to migrate
+     * @param planFile              plan file, replaced if exists
+     * @throws IOException         if an I/O error occurred
+     * @throws NoRequirementsMeted if the physical or logical scaffold cannot be created
+     * @see #execute(Path)
      */
-    private void deleteDirectories() {
+    public void plan(
+            String pathBase,
+            String foundDirectoryName,
+            String notFoundDirectoryName,
+            List<Path> directories,
+            Path planFile) throws IOException, NoRequirementsMeted {
+
+        log.info("Creating directories...");
+        makeInitialScaffold(pathBase, foundDirectoryName, notFoundDirectoryName);
+        nameRegistry.clear();
+        claimedNodeIds.clear();
+        journal = null;
+
+        MigrationPlan planned = new MigrationPlan(
+                physicalLogicalRoot.getDirectory().getPath(),
+                directoryNotFoundInDatabase.getPath(),
+                nodeNotFound.getId(),
+                directories);
+        plan = planned;
+
+        try {
+            indexFileNodes();
+
+            for (Path directory : directories) {
+                log.info("Planning {}...", directory);
+                migrate(directory);
+            }
+
+            log.info("Planning cleanup...");
+            planCleanup();
+
+        } finally {
+            plan = null;
+        }
+
+        planned.write(planFile);
+
+        log.info("Plan written to {}: {}", planFile, planned.getCounts());
+        if (log.isDebugEnabled()) {
+            for (MigrationPlan.Kind kind : MigrationPlan.Kind.values()) {
+                planned.getSteps(kind).forEach(step -> log.debug("{}", step));
+            }
+        }
+    }
+
+    /**
+     * Applies a plan computed by {@link #plan}. Files are moved and their nodes updated in parallel,
+     * then nodes of files not found are unlinked, roots are created again and directories purged.
+     * Nodes still in a directory about to be purged, like the ones whose update failed, are unlinked
+     * too, and nothing is purged if any of them can't be.
+     * <p>
+     * Every step can be applied again, an interrupted execution is resumed by executing the
+     * same plan. With a journal, files already journaled are skipped, and the journal is deleted
+     * once every file was processed.
+     *
+     * @param planFile plan file
+     * @throws IOException if the plan can't be read, the execution is interrupted, or files can't be unlinked
+     */
+    public void execute(@NotNull Path planFile) throws IOException {
+
+        MigrationPlan executed = MigrationPlan.read(planFile);
+        log.info("Executing plan {}: {}", planFile, executed.getCounts());
+
+        nameRegistry.clear();
+        claimedNodeIds.clear();
+        journal = options.getJournal() == null ? null : MigrationJournal.open(options.getJournal());
+
+        boolean completed = false;
+        try {
+            if (journal != null) {
+                log.info("Resuming journal...");
+                resumeJournal();
+            }
+
+            log.info("Moving files...");
+            executeFiles(planFile, executed.getSteps(MigrationPlan.Kind.FILE));
+            completed = true;
+
+        } finally {
+            closeJournal(completed);
+        }
+
+        log.info("Moving files not found to not found node...");
+        moveFilesToNode(findFilesToUnlink(executed), executed.getNotFoundNodeId());
+
+        for (MigrationPlan.Step step : executed.getSteps(MigrationPlan.Kind.RECREATE_ROOT)) {
+            log.info("Deleting roots...");
+            DirectoryNodeDto directory = directoryLogicalService.findDirectoryById(step.getNodeId());
+            if (directory == null) {
+                throw new IOException("Root directory node not found: " + step.getNodeId());
+            }
+            recreateRoot(step.getSource(), directory);
+        }
+
+        log.info("Deleting Directories...");
+        for (MigrationPlan.Step step : executed.getSteps(MigrationPlan.Kind.DELETE_DIRECTORY)) {
+            deleteDirectory(step.getNodeId());
+        }
+
+        // Show statistics
+        transferEngine.logStats();
+        MigrationUtils.showResume(
+                new DirectoryPhysical(executed.getFoundDirectory()),
+                new DirectoryPhysical(executed.getNotFoundDirectory()),
+                executed.getSourceDirectories());
+
+        log.info("Clean empty data source directories...");
+        MigrationUtils.cleanPhysicalSourceDirectories(executed.getSourceDirectories());
+    }
+
+    /**
+     * Returns the file nodes to point to the not found directory before purging: the nodes of the
+     * unlink steps, and every node still in a directory the plan purges
+     *
+     * @param executed plan executed
+     * @return file node identifiers
+     * @throws IOException if I/O exception occurred
+     */
+    @NotNull
+    private List<String> findFilesToUnlink(@NotNull MigrationPlan executed) throws IOException {
+
+        Set<String> ids = new LinkedHashSet<>();
+        for (MigrationPlan.Step step : executed.getSteps(MigrationPlan.Kind.UNLINK_FILE)) {
+            ids.add(step.getNodeId());
+        }
+
+        Set<String> purged = new HashSet<>();
+        for (MigrationPlan.Step step : executed.getSteps(MigrationPlan.Kind.DELETE_DIRECTORY)) {
+            purged.add(step.getNodeId());
+        }
+
+        // nodes read again, file updates may have failed
+        for (FileNodeProjectionDto file : findAllFileProjections()) {
+            if (purged.contains(file.getParentDirectoryId()) && ids.add(file.getId())) {
+                log.warn("File node {} not updated, moved to not found node", file.getId());
+            }
+        }
+
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Executes the file steps of a plan, physical moves and node updates in their own stages
+     *
+     * @param planFile plan file
+     * @param steps    file steps
+     * @throws InterruptedIOException if interrupted, nothing must be purged then
+     */
+    private void executeFiles(@NotNull Path planFile, @NotNull List<MigrationPlan.Step> steps) throws InterruptedIOException {
+
+        StagedPipeline pipeline = new StagedPipeline(planFile.toString(), PIPELINE_STATS_SECONDS);
+
+        // downstream stages first
+        PipelineStage<MigrationPlan.Step> update = pipeline.addStage(
+                "update", options.getApiConcurrency(), PIPELINE_QUEUE_CAPACITY, this::executeUpdate);
+        PipelineStage<MigrationPlan.Step> move = pipeline.addStage(
+                "move", options.getThreads(), PIPELINE_QUEUE_CAPACITY, step -> executeMove(step, update));
+
+        try {
+            for (MigrationPlan.Step step : steps) {
+                move.submit(step);
+            }
+            pipeline.finish();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while executing " + planFile);
+        }
+    }
+
+    /**
+     * Move stage of a plan execution, a file already in its target is not moved again
+     *
+     * @param step   file step
+     * @param update update stage
+     * @throws IOException          if I/O exception occurred
+     * @throws InterruptedException if interrupted while submitting
+     */
+    private void executeMove(@NotNull MigrationPlan.Step step, @NotNull PipelineStage<MigrationPlan.Step> update) throws IOException, InterruptedException {
+
+        Path source = Paths.get(step.getSource());
+        Path target = Paths.get(step.getTarget());
+
+        if (journal != null) {
+            try {
+                journal.checkNotProcessed(source);
+            } catch (NodeAlreadyProcessed ex) {
+                log.debug("{}, skipped", ex.getMessage());
+                return;
+            }
+        }
+
+        if (Files.exists(source)) {
+            transferEngine.move(source, target);
+        } else if (!Files.exists(target)) {
+            log.error("Unable to move {}, neither source nor target exist", source);
+            return;
+        }
+
+        journalMoved(source, target, step.getNodeId(), step.getParentId());
+
+        if (step.getNodeId() != null) {
+            update.submit(step);
+        }
+    }
+
+    /**
+     * Update stage of a plan execution, points the file node to its target name and parent
+     *
+     * @param step file step
+     * @throws IOException if I/O exception occurred
+     */
+    private void executeUpdate(@NotNull MigrationPlan.Step step) throws IOException {
+
+        Path source = Paths.get(step.getSource());
+        Path target = Paths.get(step.getTarget());
+
+        // full node is read before updating it
+        FileNodeDto updated = ApiCallExecutor.await(
+                fileLogicalService.moveFileAsync(step.getNodeId(), target.getFileName().toString(), step.getParentId()));
+
+        if (updated == null) {
+            log.error("IMPORTANT!!! Unable to update candidate node, but already move to physical folder: {}", step.getNodeId());
+        } else {
+            journalUpdated(source, target, updated);
+        }
+    }
+
+    /**
+     * Plans the cleanup done after moving the files: nodes not matched to a physical file are
+     * unlinked, roots created again and every directory node except the new ones purged
+     *
+     * @throws IOException if I/O exception occurred
+     */
+    private void planCleanup() throws IOException {
 
-        String foundId = physicalLogicalRoot.getNode().getId();
         String notFoundId = nodeNotFound.getId();
 
+        for (FileNodeProjectionDto file : findAllFileProjections()) {
+            // matched nodes will point to a found bucket
+            if (!isProcessed(file)) {
+                plan.add(MigrationPlan.Step.unlinkFile(file.getId(), notFoundId));
+            }
+        }
+
+        DirectoryNodeDto root = physicalLogicalRoot.getNode();
+        plan.add(MigrationPlan.Step.recreateRoot(root.getPathBase(), root.getId()));
+
+        for (DirectoryNodeDto directory : directoryLogicalService.findALl()) {
+            if (!isMigrationDirectory(directory.getId())) {
+                plan.add(MigrationPlan.Step.deleteDirectory(directory.getId()));
+            }
+        }
+    }
+
+    /**
+     * Deletes all directories except nodes created for found and not found data, and their buckets
+     */
+    private void deleteDirectories() {
+
         for (DirectoryNodeDto directory : unlinkedDirectories) {
             // directory is one of new nodes created
-            String id = directory.getId();
-            boolean isNewNode = id.equals(foundId) || id.equals(notFoundId);
-
-            if (!isNewNode) {
-                try {
-                    directoryLogicalService.deleteDirectoryHard(id);
-                } catch (Exception ex) {
-                    log.error("Error deleting {}", directory.getId());
-                }
+            if (!isMigrationDirectory(directory.getId())) {
+                deleteDirectory(directory.getId());
             }
         }
     }
 
+    /**
+     * Purges a directory node, errors are logged
+     *
+     * @param id directory node identifier
+     */
+    private void deleteDirectory(@NotNull String id) {
+        try {
+            directoryLogicalService.deleteDirectoryHard(id);
+        } catch (Exception ex) {
+            log.error("Error deleting {}", id);
+        }
+    }
+
     /**
      * Deletes all root directories except from root drive
      *
@@ -115,19 +493,31 @@ public class MigrateUnixService {
 
         // Get all directories before unlink them from root
         unlinkedDirectories = directoryLogicalService.findALl();
-        // Get all files before unlink them from root
-        unlinkedFiles = fileLogicalService.findAll();
+        // Get all files before unlink them from root, without file data
+        unlinkedFiles = findAllFileProjections();
 
         // Move files that have a parent yet
         moveLinkedFilesToNotFoundNode();
 
+        recreateRoot(physicalLogicalRoot.getNode().getPathBase(), physicalLogicalRoot.getNode());
+    }
+
+    /**
+     * Deletes all roots, and creates a directory as the only root
+     *
+     * @param pathBase  root path base
+     * @param directory root directory node
+     * @throws IOException if IOException occurred
+     */
+    private void recreateRoot(String pathBase, @NotNull DirectoryNodeDto directory) throws IOException {
+
         // delete root data
         rootDirectoryService.truncate();
 
         // create again root directory
         RootNodeDto root = new RootNodeDto();
-        root.setPathBase(physicalLogicalRoot.getNode().getPathBase());
-        root.setDirectory(physicalLogicalRoot.getNode());
+        root.setPathBase(pathBase);
+        root.setDirectory(directory);
 
         rootDirectoryService.createRoot(root);
     }
@@ -139,17 +529,87 @@ public class MigrateUnixService {
      */
     private void moveLinkedFilesToNotFoundNode() throws IOException {
 
-        String directoryFoundId = physicalLogicalRoot.getNode().getId();
-        String directoryNotFoundId = nodeNotFound.getId();
+        List<String> ids = new ArrayList<>();
+
+        for (FileNodeProjectionDto child : unlinkedFiles) {
+            if (!isMigrationDirectory(child.getParentDirectoryId())) {
+                ids.add(child.getId());
+            }
+        }
+
+        moveFilesToNode(ids, nodeNotFound.getId());
+    }
 
-        for (FileNodeDto child : unlinkedFiles) {
-            String parentId = child.getParentDirectoryId();
+    /**
+     * Points file nodes to a directory node, keeping their names
+     *
+     * @param ids         file node identifiers
+     * @param directoryId directory node identifier
+     * @throws IOException if any file node couldn't be moved
+     */
+    private void moveFilesToNode(@NotNull List<String> ids, @NotNull String directoryId) throws IOException {
+
+        AtomicInteger failures = new AtomicInteger();
+
+        for (String id : ids) {
+            // full node is read before updating it
+            fileLogicalService.moveFileAsync(id, null, directoryId)
+                    .whenComplete((updated, ex) -> {
+                        if (ex != null || updated == null) {
+                            failures.incrementAndGet();
+                            log.error("Unable to move {} to not found node: {}", id, ex == null ? "not updated" : ex.getMessage());
+                        }
+                    });
+        }
 
-            if (!parentId.equals(directoryFoundId) && !parentId.equals(directoryNotFoundId)) {
-                child.setParentDirectoryId(directoryNotFoundId);
-                fileLogicalService.updateFile(child);
+        apiCallExecutor.awaitIdle();
+
+        // roots must not be truncated while files still point to old directories
+        if (failures.get() > 0) {
+            throw new IOException(failures.get() + " files could not be moved to not found node");
+        }
+    }
+
+    /**
+     * Completes the work recorded in the journal by an interrupted run: renames the files whose
+     * node was already updated, and updates the nodes whose file was already moved.
+     * Nodes in the journal can't be matched again
+     */
+    private void resumeJournal() throws IOException {
+
+        for (MigrationJournal.Entry entry : journal.getPendingMoves()) {
+            Path source = Paths.get(entry.getSource());
+            Path target = Paths.get(entry.getTarget());
+
+            try {
+                if (Files.exists(source) && !Files.exists(target)) {
+                    transferEngine.move(source, target);
+                }
+                if (Files.exists(target)) {
+                    journal.recordMoved(source, target, entry.getNodeId(), entry.getParentId(), entry.getVersionLock());
+                }
+            } catch (IOException ex) {
+                log.error("Unable to complete move of {} to {}: {}", source, target, ex.getMessage());
             }
         }
+
+        for (MigrationJournal.Entry entry : journal.getPendingUpdates()) {
+            Path source = Paths.get(entry.getSource());
+            Path target = Paths.get(entry.getTarget());
+
+            fileLogicalService.moveFileAsync(entry.getNodeId(), target.getFileName().toString(), entry.getParentId())
+                    .whenComplete((updated, ex) -> {
+                        if (updated == null) {
+                            log.error("IMPORTANT!!! Unable to update candidate node, but already move to physical folder: {}", entry.getNodeId());
+                        } else {
+                            journalUpdated(source, target, updated);
+                        }
+                    });
+        }
+
+        apiCallExecutor.awaitIdle();
+
+        claimedNodeIds.addAll(journal.getNodeIds());
     }
 
     /**
@@ -211,188 +671,550 @@ public class MigrateUnixService {
 
         try {
 
-            MigrationUtils.copyDirectoryContentTo(srcPath, dstPath);
+            MigrationUtils.copyDirectoryContentTo(srcPath, dstPath, transferEngine);
         } catch (Exception ex) {
             //
         }
     }
 
     /**
-     * Recursive logic for traverse a path, rename all physical files, and points them
-     * to {@code unixRoot}, then moves physical directories to {@code unixRoot}
+     * Traverse a path, rename all physical files, and points them to {@code unixRoot}.
+     * <p>
+     * Files flow through a pipeline of stages, each one with its own threads and a bounded
+     * queue in front of it:
+     * <ul>
+     *     <li>scan: directories are traversed by {@link MigrationOptions#getThreads()} threads</li>
+     *     <li>lookup: file nodes are searched by uuid or matched by name (network)</li>
+     *     <li>place: physical files are moved, or their destination reserved (disk)</li>
+     *     <li>update: file nodes are pointed to found directory node (network), written behind by {@link FileNodeWriteBehind}</li>
+     * </ul>
+     * A full queue blocks the previous stage, so the scan can't race ahead of the API.
+     * While planning, the place and update stages are replaced by a plan stage.
      *
      * @param directoryPath path
      * @see FilePhysical
      */
     private void migrate(Path directoryPath) {
 
-        for (Path path : MigrationUtils.getPathList(directoryPath)) {
+        StagedPipeline pipeline = new StagedPipeline(directoryPath.toString(), PIPELINE_STATS_SECONDS);
+        PipelineStage<FileMigration> place;
+
+        // downstream stages first
+        if (plan != null) {
+            place = pipeline.addStage(
+                    "plan", options.getThreads(), PIPELINE_QUEUE_CAPACITY, this::planFile);
+        } else {
+            PipelineStage<FileMigration> update = pipeline.addStage(
+                    "update", options.getApiConcurrency(), PIPELINE_QUEUE_CAPACITY, countingFailures(this::updateNode));
+            place = pipeline.addStage(
+                    "place", options.getThreads(), PIPELINE_QUEUE_CAPACITY, countingFailures(migration -> placeFile(migration, update)));
+        }
+        PipelineStage<FileMigration> lookup = pipeline.addStage(
+                "lookup", options.getApiConcurrency(), PIPELINE_QUEUE_CAPACITY, countingFailures(migration -> lookupNode(migration, place)));
 
-            FilePhysical filePhysicalUUID = FilePhysical
-                    .builder()
-                    .name(path.getFileName().toString())
-                    .parentDirectory(new DirectoryPhysical(path.getParent())).build();
+        // queues of the directory being migrated
+        for (PipelineStage<?> stage : pipeline.getStages()) {
+            metrics.gauge(MigrationMetrics.QUEUE_DEPTH, stage::getQueueDepth, "queue", stage.getName());
+        }
 
-            // Always work on absolute path
-            if (Files.isRegularFile(path)) {
+        ParallelDirectoryTraversal traversal = new ParallelDirectoryTraversal(
+                options.getThreads(),
+                options.getLookupBatchSize());
 
-                try {
-                    if (MigrationUtils.isValidUUID(filePhysicalUUID.getName())) {
-                        // migration based on uuid filename
-                        migrateDataByUUID(filePhysicalUUID);
+        traversal.traverse(directoryPath, new ParallelDirectoryTraversal.Handler() {
+            @Override
+            public List<Path> prepareDirectories(@NotNull Path directory, @NotNull List<Path> subdirectories) {
+                // uuid named directories already resolved
+                return subdirectories;
+            }
 
-                    } else {
-                        // migration with human-readable filename
-                        migrateDataByName(filePhysicalUUID);
-                    }
+            @Override
+            public void processFiles(@NotNull Path directory, @NotNull List<Path> files) {
+                scanFiles(files.stream()
+                        .map(path -> FilePhysical
+                                .builder()
+                                .name(path.getFileName().toString())
+                                .parentDirectory(new DirectoryPhysical(path.getParent())).build())
+                        .collect(Collectors.toList()), lookup);
+            }
+        });
 
-                } catch (IllegalArgumentException ex) {
-                    log.error("Interrupted Exception: {}", ex.getMessage());
-                } catch (IOException ex) {
-                    log.error("I/O error: {}", ex.getMessage());
-                } catch (Exception ex) {
-                    log.error("Unexpected exception occurred: {}", ex.getMessage());
-                }
+        try {
+            pipeline.finish();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while migrating {}", directoryPath);
+        } finally {
+            for (PipelineStage<?> stage : pipeline.getStages()) {
+                metrics.remove(MigrationMetrics.QUEUE_DEPTH, "queue", stage.getName());
+            }
+        }
+    }
 
+    /**
+     * Counts the files a stage worker fails to process
+     *
+     * @param worker stage worker
+     * @return worker counting its failures
+     */
+    @NotNull
+    private PipelineStage.Worker<FileMigration> countingFailures(@NotNull PipelineStage.Worker<FileMigration> worker) {
+        return migration -> {
+            try {
+                worker.process(migration);
+            } catch (Exception ex) {
+                metrics.increment(MigrationMetrics.FILES, "result", "failed");
+                throw ex;
+            }
+        };
+    }
+
+    /**
+     * Scan stage, submits a chunk of files of a directory to the lookup stage
+     *
+     * @param files  physical files
+     * @param lookup lookup stage
+     */
+    private void scanFiles(@NotNull List<FilePhysical> files, @NotNull PipelineStage<FileMigration> lookup) {
+
+        if (journal != null) {
+            files = withoutProcessedFiles(files);
+        }
+
+        // uuid named files are resolved in batches
+        FileNodeBatchLookup uuidLookup = FileNodeBatchLookup.forFiles(
+                fileLogicalService,
+                files,
+                options.getLookupBatchSize());
+
+        metrics.add(MigrationMetrics.FILES, files.size(), "result", "scanned");
 
-            } else { // FOLDERS LOGIC
-                migrate(path);
+        try {
+            for (FilePhysical file : files) {
+                lookup.submit(new FileMigration(file, uuidLookup));
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while scanning {}", files.get(0).getParentDirectory().getFullPath());
         }
     }
 
     /**
-     * Make migration based on huma-readable filename
+     * Removes the files already processed according to the journal
      *
-     * @param filePhysical file
-     * @see FilePhysical
+     * @param files physical files
+     * @return files not processed yet
      */
-    private void migrateDataByName(FilePhysical filePhysical) {
-        try {
-            // find all candidates whose names could match with physical filename
-            List<FileNodeDto> candidateFiles = fileLogicalService.findCandidateFilesByName(filePhysical.getName());
+    @NotNull
+    private List<FilePhysical> withoutProcessedFiles(@NotNull List<FilePhysical> files) {
 
-            if (candidateFiles != null) {
-                // iterate over all candidates
-                for (FileNodeDto candidate : candidateFiles) {
+        List<FilePhysical> pending = new ArrayList<>(files.size());
 
-                    // update logical and physical info if filenames match
-                    boolean isProcessed = candidate.getParentDirectoryId().equals(physicalLogicalRoot.getNode().getId())
-                            || candidate.getParentDirectoryId().equals(nodeNotFound.getId());
+        for (FilePhysical file : files) {
+            try {
+                journal.checkNotProcessed(file.getAbsolutePath());
+                pending.add(file);
+            } catch (NodeAlreadyProcessed ex) {
+                log.warn("{}, skipped", ex.getMessage());
+            }
+        }
 
-                    if (!isProcessed) {
-                        Boolean updated = updateNodeAndMoveToPhysicalPath(candidate, filePhysical);
-                        if (updated) return;
-                    }
-                }
+        return pending;
+    }
+
+    /**
+     * Lookup stage, finds the file node of a physical file. Uuid filenames are searched
+     * by identifier, and if not exists, like human-readable filenames, matched by name.
+     *
+     * @param migration file migration
+     * @param place     place stage
+     * @throws IOException          if I/O exception occurred
+     * @throws InterruptedException if interrupted while submitting
+     */
+    private void lookupNode(@NotNull FileMigration migration, @NotNull PipelineStage<FileMigration> place) throws IOException, InterruptedException {
+
+        FilePhysical filePhysical = migration.file;
+
+        if (MigrationUtils.isValidUUID(filePhysical.getName())) {
+            FileNodeDto dto = ApiCallExecutor.await(migration.uuidLookup.lookup(filePhysical.getName()));
+
+            // node can't be matched again by name
+            if (dto != null && claimedNodeIds.add(dto.getId())) {
+                migration.node = dto;
+                migration.foundByUUID = true;
+                metrics.increment(MigrationMetrics.FILES, "result", "matched");
+                place.submit(migration);
+                return;
             }
+        }
 
-            // not found any match in the database, then store it in not found directory
-            MigrationUtils.movePhysicalFile(
-                    filePhysical,
-                    filePhysical.getName(),
-                    directoryNotFoundInDatabase);
+        // If UUID doesn't exist try to migrate data by filename
+        if (fileNodeIndex != null) {
+            // local lookup, same matching rules as the candidates search
+            migration.projection = fileNodeIndex.claim(filePhysical, this::isProcessed);
 
-        } catch (Exception ex) {
-            log.error("Error when trying to migrate data by name: {}", ex.getMessage());
+        } else {
+            // find all candidates whose names could match with physical filename
+            for (FileNodeDto candidate : fileLogicalService.findCandidateFilesByName(filePhysical.getName())) {
+
+                // node found in database, and not matched by other file in this run
+                if (!isProcessed(candidate)
+                        && MigrationUtils.isLogicalRepresentationOfDirectory(candidate, filePhysical, mimeTypes)
+                        && claimedNodeIds.add(candidate.getId())) {
+                    migration.node = candidate;
+                    break;
+                }
+            }
         }
+
+        boolean matched = migration.node != null || migration.projection != null;
+        metrics.increment(MigrationMetrics.FILES, "result", matched ? "matched" : "unmatched");
+
+        place.submit(migration);
     }
 
     /**
-     * Updates the node and move physical file if names and parent folder match.
+     * Place stage, moves a matched file to found directory and a file without node to not found
+     * directory. For a file found by uuid, its name in found directory is only reserved, it is
+     * renamed once its node is updated.
      *
-     * @param dto          file node dto
-     * @param filePhysical physical file object
-     * @return {@code true} if match, {@code false} if not match,
-     * {@code null} if node math but has been already updated
-     * @throws IOException if I/O exception occurred
+     * @param migration file migration
+     * @param update    update stage
+     * @throws IOException          if I/O exception occurred
+     * @throws InterruptedException if interrupted while submitting
      */
-    private Boolean updateNodeAndMoveToPhysicalPath(@NotNull FileNodeDto dto, FilePhysical filePhysical) throws IOException {
+    private void placeFile(@NotNull FileMigration migration, @NotNull PipelineStage<FileMigration> update) throws IOException, InterruptedException {
 
-        Boolean isUpdated = Boolean.FALSE;
-        boolean isFound = MigrationUtils.isLogicalRepresentationOfDirectory(
-                dto,
-                filePhysical,
-                mimeTypes
-        );
+        FilePhysical filePhysical = migration.file;
 
-        // node found in database
-        if (isFound) {
-            // move file to found directory
-            FilePhysical moved = MigrationUtils.movePhysicalFile(
-                    filePhysical,
-                    filePhysical.getName(),
-                    physicalLogicalRoot.getDirectory());
+        if (migration.foundByUUID) {
+            migration.parent = foundShards.bucketFor(migration.node.getId(), filePhysical);
 
-            // set file node with renamed filename and found directory node
-            dto.setName(moved.getFileName()); // lowercased
-            dto.setParentDirectoryId(physicalLogicalRoot.getNode().getId());
-            // update file node
-            FileNodeDto updated = fileLogicalService.updateFile(dto);
+            // complete filename with extension from database information,
+            // and with physical found parent
+            FilePhysical target = MigrationUtils
+                    .getFilenameWithExtension(migration.node, migration.parent.getDirectory(), mimeTypes);
 
-            if (updated == null) {
-                log.error("IMPORTANT!!! Unable to update candidate node, but already move to physical folder: {}", dto.getId());
-            }
+            // if already exist, get file renamed with found path
+            // with prefix (001-, 002, ...) and extension
+            migration.target = MigrationUtils.getPathNameIfDuplicatedFile(target, nameRegistry);
+
+        } else if (migration.node != null || migration.projection != null) {
+            String id = migration.node != null ? migration.node.getId() : migration.projection.getId();
+
+            migration.parent = foundShards.bucketFor(id, filePhysical);
+            migration.target = moveToFound(filePhysical, migration.parent);
+            journalMoved(migration.source, migration.target.getAbsolutePath(), id, migration.parent.getNode().getId());
 
-            isUpdated = Boolean.TRUE;
+        } else {
+            // not found any match in the database, then store it in not found directory
+            FilePhysical moved = MigrationUtils.movePhysicalFile(
+                    filePhysical,
+                    filePhysical.getName(),
+                    notFoundShards.bucketFor(filePhysical.getAbsolutePath().toString(), filePhysical).getDirectory(),
+                    nameRegistry,
+                    transferEngine);
+            journalMoved(migration.source, moved.getAbsolutePath(), null, null);
+            return;
         }
 
-        return isUpdated;
+        update.submit(migration);
     }
 
     /**
-     * Rename physical files with uuid names based on database information.
-     * And move to {@code unixRote}
+     * Plan stage, allocates the destination of a file like the place stage, and adds the move
+     * and the node update to the plan
      *
-     * @param filePhysicalUUID physical file with uuid as filename
-     * @throws IOException I/O exception during service call
+     * @param migration file migration
+     * @throws IOException if I/O exception occurred
      */
-    private void migrateDataByUUID(@NotNull FilePhysical filePhysicalUUID) throws IOException, IllegalArgumentException {
+    private void planFile(@NotNull FileMigration migration) throws IOException {
 
-        try {
-            // find logical file node by uuid
-            FileNodeDto dto = fileLogicalService.findFileById(filePhysicalUUID.getName());
+        FilePhysical filePhysical = migration.file;
 
-            // If UUID doesn't exist try to migrate data by filename
-            if (dto == null) {
+        if (migration.foundByUUID) {
+            String id = migration.node.getId();
+            PhysicalLogicalDirectoryDto parent = foundShards.bucketFor(id, filePhysical);
+            FilePhysical target = MigrationUtils.getPathNameIfDuplicatedFile(
+                    MigrationUtils.getFilenameWithExtension(migration.node, parent.getDirectory(), mimeTypes),
+                    nameRegistry);
 
-                migrateDataByName(filePhysicalUUID);
+            plan.add(MigrationPlan.Step.file(
+                    filePhysical.getAbsolutePathWithoutExtension(), target.getAbsolutePath(), id, parent.getNode().getId()));
 
-            } else {
-                // complete filename with extension from database information,
-                // and with physical found root parent
-                FilePhysical filePhysical = MigrationUtils
-                        .getFilenameWithExtension(dto, physicalLogicalRoot.getDirectory(), mimeTypes);
+        } else if (migration.node != null || migration.projection != null) {
+            String id = migration.node != null ? migration.node.getId() : migration.projection.getId();
+            PhysicalLogicalDirectoryDto parent = foundShards.bucketFor(id, filePhysical);
 
-                // if already exist, get file renamed with found path
-                // with prefix (001-, 002, ...) and extension
-                filePhysical = MigrationUtils.getPathNameIfDuplicatedFile(filePhysical);
+            filePhysical.setParentDirectory(parent.getDirectory());
+            FilePhysical target = MigrationUtils.getPathNameIfDuplicatedFile(filePhysical, nameRegistry);
+
+            plan.add(MigrationPlan.Step.file(migration.source, target.getAbsolutePath(), id, parent.getNode().getId()));
+
+        } else {
+            DirectoryPhysical parent = notFoundShards.bucketFor(migration.source.toString(), filePhysical).getDirectory();
+
+            filePhysical.setParentDirectory(parent);
+            FilePhysical target = MigrationUtils.getPathNameIfDuplicatedFile(filePhysical, nameRegistry);
+
+            plan.add(MigrationPlan.Step.file(migration.source, target.getAbsolutePath(), null, null));
+        }
+    }
+
+    /**
+     * Update stage, points the file node to found directory node with its physical name.
+     * A file found by uuid is renamed after its node is updated, a matched file was already moved.
+     *
+     * @param migration file migration
+     * @throws IOException if I/O exception occurred
+     */
+    private void updateNode(@NotNull FileMigration migration) throws IOException {
 
+        String foundId = migration.parent.getNode().getId();
+
+        if (migration.foundByUUID) {
+            FilePhysical target = migration.target;
+            boolean moved = false;
+
+            try {
                 // set file node(logical) with actual physicalName
                 // and found parent directory
-                dto.setName(filePhysical.getFileName());
-                dto.setParentDirectoryId(physicalLogicalRoot.getNode().getId());
+                FileNodeDto dto = migration.node;
+                dto.setName(target.getFileName());
+                dto.setParentDirectoryId(foundId);
 
                 // update node
                 FileNodeDto updated = fileLogicalService.updateFile(dto);
 
                 // move to found physical directory
                 if (updated != null) {
-                    Path originPath = filePhysicalUUID.getAbsolutePathWithoutExtension();
-                    Path destinyPath = Paths.get(physicalLogicalRoot.getDirectory().getFullPath(), updated.getName());
+                    Path originPath = migration.file.getAbsolutePathWithoutExtension();
+                    Path destinyPath = Paths.get(migration.parent.getDirectory().getFullPath(), updated.getName());
+                    journalUpdated(originPath, destinyPath, updated);
 
                     // Renames physical uuid filename with updated node name(logical)
-                    Files.move(originPath, destinyPath);
+                    transferEngine.move(originPath, destinyPath);
+                    moved = true;
+                    journalMoved(originPath, destinyPath, updated.getId(), foundId);
 
                 } else {
-                    log.error("Unable to rename '{}' due unable update database record.", filePhysical.getFileName());
+                    claimedNodeIds.remove(dto.getId());
+                    metrics.increment(MigrationMetrics.FILES, "result", "failed");
+                    log.error("Unable to rename '{}' due unable update database record.", target.getFileName());
+                }
+            } finally {
+                // given up, the name is free again
+                if (!moved) {
+                    nameRegistry.release(target);
                 }
             }
-        } catch (Exception ex) {
-            log.error("Unable to migrate {}: {}", filePhysicalUUID.getAbsolutePath(), ex.getMessage());
+            return;
+        }
+
+        if (migration.projection != null) {
+            // full node is read before updating it
+            String id = migration.projection.getId();
+            FileNodeDto updated = ApiCallExecutor.await(
+                    fileLogicalService.moveFileAsync(id, migration.target.getFileName(), foundId));
+
+            nodeUpdated(migration, id, updated);
+
+        } else {
+            // set file node with renamed filename and found directory node
+            FileNodeDto dto = migration.node;
+            dto.setName(migration.target.getFileName()); // lowercased
+            dto.setParentDirectoryId(foundId);
+
+            // written behind, the move is already journaled
+            String id = dto.getId();
+            writeBehind.submit(dto).whenComplete((updated, ex) -> nodeUpdated(migration, id, updated));
+        }
+    }
+
+    /**
+     * Logs a node not updated after its file was moved, or records the update in the journal
+     *
+     * @param migration file moved
+     * @param id        file node identifier
+     * @param updated   updated file node, {@code null} if not updated
+     */
+    private void nodeUpdated(@NotNull FileMigration migration, @NotNull String id, FileNodeDto updated) {
+        if (updated == null) {
+            metrics.increment(MigrationMetrics.FILES, "result", "failed");
+            log.error("IMPORTANT!!! Unable to update candidate node, but already move to physical folder: {}", id);
+        } else {
+            journalUpdated(migration.source, migration.target.getAbsolutePath(), updated);
+        }
+    }
+
+    /**
+     * Closes the journal, if any. The journal of a completed run without pending work is retired,
+     * otherwise it is kept for the next run to resume
+     *
+     * @param completed {@code true} if every file was processed
+     * @throws IOException if the journal can't be closed or deleted
+     */
+    private void closeJournal(boolean completed) throws IOException {
+
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            if (completed && journal.isComplete()) {
+                journal.retire();
+            } else {
+                log.warn("Journal {} kept, the next run resumes its pending work", options.getJournal());
+                journal.close();
+            }
+        } finally {
+            journal = null;
+        }
+    }
+
+    /**
+     * Records a physical move in the journal, if any
+     */
+    private void journalMoved(@NotNull Path source, @NotNull Path target, String nodeId, String parentId) {
+        if (journal != null) {
+            try {
+                journal.recordMoved(source, target, nodeId, parentId, null);
+            } catch (IOException ex) {
+                log.error("Unable to journal move of {}: {}", source, ex.getMessage());
+            }
         }
     }
 
+    /**
+     * Records a logical update in the journal, if any
+     */
+    private void journalUpdated(@NotNull Path source, @NotNull Path target, @NotNull FileNodeDto updated) {
+        if (journal != null) {
+            try {
+                journal.recordUpdated(source, target, updated.getId(), updated.getParentDirectoryId(), updated.getVersionLock());
+            } catch (IOException ex) {
+                log.error("Unable to journal update of {}: {}", updated.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Moves physical file to found directory
+     *
+     * @param filePhysical physical file object
+     * @param parent       found directory or one of its buckets
+     * @return moved file, with lowercased filename
+     * @throws IOException if I/O exception occurred
+     */
+    @NotNull
+    private FilePhysical moveToFound(FilePhysical filePhysical, @NotNull PhysicalLogicalDirectoryDto parent) throws IOException {
+        return MigrationUtils.movePhysicalFile(
+                filePhysical,
+                filePhysical.getName(),
+                parent.getDirectory(),
+                nameRegistry,
+                transferEngine);
+    }
+
+    /**
+     * Check if a file node was already migrated to found or not found nodes
+     *
+     * @param dto file node dto
+     * @return {@code true} if node points to found or not found directory nodes, or was matched in this run
+     */
+    private boolean isProcessed(@NotNull FileNodeDto dto) {
+        return isProcessed(dto.getId(), dto.getParentDirectoryId());
+    }
+
+    /**
+     * Check if a file node was already migrated to found or not found nodes
+     *
+     * @param projection file node projection
+     * @return {@code true} if node points to found or not found directory nodes, or was matched in this run
+     */
+    private boolean isProcessed(@NotNull FileNodeProjectionDto projection) {
+        return isProcessed(projection.getId(), projection.getParentDirectoryId());
+    }
+
+    private boolean isProcessed(String id, String parentDirectoryId) {
+        return isMigrationDirectory(parentDirectoryId) || claimedNodeIds.contains(id);
+    }
+
+    /**
+     * Check if a directory node is the found or not found node, or a bucket of found node
+     *
+     * @param id directory node identifier
+     * @return {@code true} if files in the directory were already migrated
+     */
+    private boolean isMigrationDirectory(String id) {
+        return physicalLogicalRoot.getNode().getId().equals(id)
+                || nodeNotFound.getId().equals(id)
+                || foundShards.isBucket(id);
+    }
+
+    /**
+     * Reads projections of all file nodes, active or not
+     *
+     * @return file node projections
+     * @throws IOException if I/O exception occurred
+     */
+    @NotNull
+    private List<FileNodeProjectionDto> findAllFileProjections() throws IOException {
+
+        ContentFileNodeDto content = new ContentFileNodeDto();
+        content.setActive(null);
+
+        FileFilterDto filter = new FileFilterDto();
+        filter.setContent(content);
+
+        // read all pages before updating, pages are addressed by offset
+        try (Stream<FileNodeProjectionDto> nodes = fileLogicalService.streamFileProjectionsByFilter(filter)) {
+            return nodes.collect(Collectors.toList());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Loads all file nodes once if enabled, name matching is then done locally
+     *
+     * @throws IOException if I/O exception occurred
+     */
+    private void indexFileNodes() throws IOException {
+
+        fileNodeIndex = null;
+
+        if (options.isIndexedNameMatching()) {
+            log.info("Indexing file nodes...");
+            fileNodeIndex = buildFileNodeIndex();
+            log.info("Indexed {} file nodes", fileNodeIndex.size());
+        }
+    }
+
+    /**
+     * Reads projections of all file nodes page by page and indexes those not yet migrated
+     *
+     * @return index of file nodes
+     * @throws IOException if I/O exception occurred
+     */
+    @NotNull
+    private FileNodeIndex buildFileNodeIndex() throws IOException {
+
+        FileNodeIndex index = new FileNodeIndex(mimeTypes);
+
+        FileFilterDto filter = new FileFilterDto();
+        filter.setContent(new ContentFileNodeDto());
+
+        try (Stream<FileNodeProjectionDto> nodes = fileLogicalService.streamFileProjectionsByFilter(filter)) {
+            nodes.filter(projection -> !isProcessed(projection))
+                    .forEach(index::add);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        return index;
+    }
+
     /**
      * Creates logical and physical directory scaffold needed for migrate logic
      *
@@ -421,6 +1243,15 @@ public class MigrateUnixService {
                                 notFoundDirectoryName,
                                 "database"));
 
+        // files could be spread over buckets, nodes of found buckets are created up front
+        foundShards = new ShardedDirectory(options.getLayout(), physicalLogicalRoot, directoryLogicalService);
+        notFoundShards = new ShardedDirectory(
+                options.getLayout(),
+                new PhysicalLogicalDirectoryDto(directoryNotFoundInDatabase, null),
+                null);
+
+        foundShards.prepare();
+        notFoundShards.prepare();
     }
 
     /**
@@ -442,4 +1273,35 @@ public class MigrateUnixService {
 
         return new PhysicalLogicalDirectoryDto(directoryPhysical, directoryNode);
     }
+
+    /**
+     * Physical file flowing through the migration pipeline, handed from one stage to the next
+     */
+    private static class FileMigration {
+
+        private final FilePhysical file;
+        // file path before any move
+        private final Path source;
+        private final FileNodeBatchLookup uuidLookup;
+        // found directory or bucket where the file is stored
+        private PhysicalLogicalDirectoryDto parent;
+        // node found by uuid or matched against candidates
+        private FileNodeDto node;
+        // node matched against the local index
+        private FileNodeProjectionDto projection;
+        private boolean foundByUUID;
+        // reserved destination if found by uuid, otherwise file already moved to found directory
+        private FilePhysical target;
+
+        FileMigration(FilePhysical file, FileNodeBatchLookup uuidLookup) {
+            this.file = file;
+            this.source = file.getAbsolutePath();
+            this.uuidLookup = uuidLookup;
+        }
+
+        @Override
+        public String toString() {
+            return source.toString();
+        }
+    }
 }
@@ -0,0 +1,284 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.config.utils.ShardLayout;
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import com.example.springmigrate.dto.PhysicalLogicalDirectoryDto;
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import com.example.springmigrate.service.IDirectoryLogicalService;
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Destination directory whose files are spread over bucket subdirectories by a {@link ShardLayout}.
+ * <p>
+ * Every physical bucket has its twin logical node, unless the destination has no logical node
+ * (files not found in database). Buckets created in previous runs are reused, predefined buckets
+ * are created up front, level by level with a request per {@value #CREATE_BATCH_SIZE} buckets, and
+ * the others when first needed.
+ */
+@Log4j2
+public class ShardedDirectory {
+
+    // bounds the size of a request creating predefined buckets
+    static final int CREATE_BATCH_SIZE = 1024;
+
+    private final ShardLayout layout;
+    private final PhysicalLogicalDirectoryDto root;
+    private final IDirectoryLogicalService directoryLogicalService;
+    // buckets by relative path (3f/a0), the root is the empty path
+    private final Map<String, PhysicalLogicalDirectoryDto> buckets = new ConcurrentHashMap<>();
+    private final Set<String> bucketNodeIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor
+     *
+     * @param layout                  layout
+     * @param root                    destination directory, with {@code null} node if only physical
+     * @param directoryLogicalService directory service, {@code null} if only physical
+     */
+    public ShardedDirectory(
+            @NotNull ShardLayout layout,
+            @NotNull PhysicalLogicalDirectoryDto root,
+            IDirectoryLogicalService directoryLogicalService) {
+
+        this.layout = layout;
+        this.root = root;
+        this.directoryLogicalService = root.getNode() == null ? null : directoryLogicalService;
+        this.buckets.put("", root);
+    }
+
+    /**
+     * Loads the buckets of previous runs and creates the predefined ones
+     *
+     * @throws IOException if a bucket could not be created
+     */
+    public void prepare() throws IOException {
+
+        if (layout.getDepth() == 0) {
+            return;
+        }
+
+        if (directoryLogicalService != null) {
+            loadExistingBuckets(root, "", 0);
+        }
+
+        // physical only buckets are cheap to create when needed
+        if (!layout.isPredefined() || directoryLogicalService == null) {
+            return;
+        }
+
+        // parents created by the previous level
+        List<String> parents = Collections.singletonList("");
+
+        for (int level = 0; level < layout.getDepth(); level++) {
+            List<String> paths = new ArrayList<>();
+
+            for (String parent : parents) {
+                for (String name : layout.bucketNames(level)) {
+                    paths.add(child(parent, name));
+                }
+            }
+
+            createPredefinedBuckets(paths);
+            parents = paths;
+        }
+
+        log.info("{} buckets ready in {}", bucketNodeIds.size(), root.getDirectory().getFullPath());
+    }
+
+    /**
+     * Returns the bucket of a file, created if not exists
+     *
+     * @param key    stable key of the file (e.g. node identifier)
+     * @param source file to store, read for its last modification if the layout needs it
+     * @return bucket directory, the destination itself if the layout is flat
+     * @throws IOException if the bucket could not be created
+     */
+    @NotNull
+    public PhysicalLogicalDirectoryDto bucketFor(@NotNull String key, @NotNull FilePhysical source) throws IOException {
+
+        if (layout.getDepth() == 0) {
+            return root;
+        }
+
+        List<String> names = layout.bucket(
+                key,
+                layout == ShardLayout.DATE
+                        ? Files.getLastModifiedTime(source.getAbsolutePath()).toInstant()
+                        : Instant.EPOCH);
+
+        PhysicalLogicalDirectoryDto bucket = buckets.get(String.join("/", names));
+
+        return bucket != null ? bucket : createBuckets(names);
+    }
+
+    /**
+     * Check if a logical node is a bucket of this destination
+     *
+     * @param id node identifier
+     * @return {@code true} if the node is a bucket
+     */
+    public boolean isBucket(String id) {
+        return id != null && bucketNodeIds.contains(id);
+    }
+
+    /**
+     * Returns the number of buckets, not counting the destination itself
+     */
+    public int size() {
+        return buckets.size() - 1;
+    }
+
+    private void loadExistingBuckets(@NotNull PhysicalLogicalDirectoryDto parent, @NotNull String path, int level) throws IOException {
+
+        if (level >= layout.getDepth()) {
+            return;
+        }
+
+        for (DirectoryNodeDto child : directoryLogicalService.findChildrenDirectories(parent.getNode().getId())) {
+
+            // other children (e.g. not found node) aren't buckets
+            if (layout.isBucketName(level, child.getName())) {
+                String bucketPath = child(path, child.getName());
+                loadExistingBuckets(register(parent, bucketPath, child), bucketPath, level + 1);
+            }
+        }
+    }
+
+    /**
+     * Creates the missing buckets of a level, whose parents exist, with a request per batch.
+     * Those missing in the response, like buckets created by others meanwhile, are created
+     * one by one
+     */
+    private void createPredefinedBuckets(@NotNull List<String> paths) throws IOException {
+
+        List<String> missing = new ArrayList<>();
+
+        for (String path : paths) {
+            if (!buckets.containsKey(path)) {
+                missing.add(path);
+            }
+        }
+
+        for (int from = 0; from < missing.size(); from += CREATE_BATCH_SIZE) {
+            List<String> batch = missing.subList(from, Math.min(missing.size(), from + CREATE_BATCH_SIZE));
+            List<DirectoryNodeDto> request = new ArrayList<>(batch.size());
+
+            for (String path : batch) {
+                request.add(newNode(name(path), logicalPath(buckets.get(parent(path)).getNode())));
+            }
+
+            Map<String, DirectoryNodeDto> created = new HashMap<>();
+            for (DirectoryNodeDto node : directoryLogicalService.createAllDirectories(request)) {
+                created.put(logicalPath(node), node);
+            }
+
+            for (String path : batch) {
+                PhysicalLogicalDirectoryDto parent = buckets.get(parent(path));
+                DirectoryNodeDto node = created.get(Paths.get(logicalPath(parent.getNode()), name(path)).toString());
+
+                if (node != null) {
+                    register(parent, path, node);
+                } else {
+                    createBuckets(Arrays.asList(path.split("/")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the missing levels of a bucket, the logical nodes already
+     * created are taken from the directory service
+     */
+    @NotNull
+    private synchronized PhysicalLogicalDirectoryDto createBuckets(@NotNull List<String> names) throws IOException {
+
+        PhysicalLogicalDirectoryDto parent = root;
+        String path = "";
+
+        for (String name : names) {
+            path = child(path, name);
+            PhysicalLogicalDirectoryDto bucket = buckets.get(path);
+
+            if (bucket == null) {
+                DirectoryNodeDto node = null;
+
+                if (directoryLogicalService != null) {
+                    String pathBase = logicalPath(parent.getNode());
+                    // created by a previous request or run, otherwise created now
+                    node = directoryLogicalService.findDirectoryByBasePath(name, pathBase);
+
+                    if (node == null) {
+                        node = directoryLogicalService.createDirectory(name, pathBase);
+                    }
+                    if (node == null) {
+                        throw new IOException("Unable to create bucket node " + path);
+                    }
+                }
+                bucket = register(parent, path, node);
+            }
+
+            parent = bucket;
+        }
+
+        return parent;
+    }
+
+    @NotNull
+    private PhysicalLogicalDirectoryDto register(
+            @NotNull PhysicalLogicalDirectoryDto parent,
+            @NotNull String path,
+            DirectoryNodeDto node) throws IOException {
+
+        Path directory = Paths.get(parent.getDirectory().getFullPath(), Paths.get(path).getFileName().toString());
+        Files.createDirectories(directory);
+
+        PhysicalLogicalDirectoryDto bucket = new PhysicalLogicalDirectoryDto(new DirectoryPhysical(directory), node);
+
+        buckets.put(path, bucket);
+        if (node != null) {
+            bucketNodeIds.add(node.getId());
+        }
+
+        return bucket;
+    }
+
+    @NotNull
+    private static String child(@NotNull String path, @NotNull String name) {
+        return path.isEmpty() ? name : path + "/" + name;
+    }
+
+    @NotNull
+    private static String parent(@NotNull String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    @NotNull
+    private static String name(@NotNull String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @NotNull
+    private static String logicalPath(@NotNull DirectoryNodeDto node) {
+        return Paths.get(node.getPathBase(), node.getName()).toString();
+    }
+
+    @NotNull
+    private static DirectoryNodeDto newNode(@NotNull String name, @NotNull String pathBase) {
+        return DirectoryNodeDto.builder()
+                .active(true)
+                .name(name)
+                .pathBase(pathBase)
+                .build();
+    }
+}
@@ -0,0 +1,437 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.dto.*;
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In process stand-in of the document manager API, serving every endpoint of the Retrofit
+ * clients over a {@link FakeApiStore}, so throughput can be measured without network or server.
+ * <p>
+ * Every endpoint has a {@link Profile} with latency, jitter and error rate, applied before the
+ * request is served. Payload sizes follow the file data size of the seeded nodes. Requests are
+ * counted per endpoint.
+ * <pre>
+ * java -cp target/test-classes:target/classes:&lt;dependencies&gt; \
+ *     com.example.springmigrate.benchmark.FakeApiServer [port] [files] [directories] [fileDataBytes] [latencyMillis]
+ * </pre>
+ */
+public class FakeApiServer implements Closeable {
+
+    private static final Gson GSON = new Gson();
+    private static final Type DIRECTORIES = new TypeToken<List<DirectoryNodeDto>>() { }.getType();
+
+    /**
+     * Endpoints of the document manager API
+     */
+    public enum Endpoint {
+        FIND_FILES("GET", "/files"),
+        CREATE_FILE("POST", "/files"),
+        SEARCH_FILES("POST", "/files/searchAll"),
+        FIND_FILE("GET", "/files/{id}"),
+        UPDATE_FILE("PUT", "/files/{id}"),
+        DELETE_FILE("DELETE", "/files/{id}"),
+        FIND_DIRECTORIES("GET", "/directories"),
+        CREATE_DIRECTORIES("POST", "/directories/create-all/logical"),
+        SEARCH_DIRECTORIES("POST", "/directories/searchAll"),
+        SEARCH_DIRECTORY("POST", "/directories/searchOne"),
+        FIND_DIRECTORY("GET", "/directories/{id}"),
+        UPDATE_DIRECTORY("PUT", "/directories/{id}"),
+        DELETE_DIRECTORY("DELETE", "/directories/{id}"),
+        PURGE_DIRECTORY("DELETE", "/directories/{id}/purge"),
+        FIND_ROOTS("GET", "/roots"),
+        CREATE_ROOT("POST", "/roots"),
+        TRUNCATE_ROOTS("DELETE", "/roots/truncate"),
+        FIND_ROOTS_BY_DIRECTORY("GET", "/roots/filterBy/{id}"),
+        DELETE_ROOTS_BY_DIRECTORY("DELETE", "/roots/directory/{id}"),
+        FIND_FILE_TYPES("GET", "/file-types");
+
+        private final String method;
+        private final Pattern pattern;
+
+        Endpoint(String method, String template) {
+            this.method = method;
+            this.pattern = Pattern.compile(template.replace("{id}", "([^/]+)"));
+        }
+
+        /**
+         * Returns the path parameter if the request is for this endpoint, otherwise {@code null}
+         */
+        private String match(@NotNull String method, @NotNull String path) {
+
+            if (!this.method.equals(method)) {
+                return null;
+            }
+
+            Matcher matcher = pattern.matcher(path);
+
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            return matcher.groupCount() > 0 ? matcher.group(1) : "";
+        }
+    }
+
+    /**
+     * Behaviour of an endpoint, may be changed while serving
+     */
+    public static class Profile {
+
+        private volatile long latencyMillis;
+        private volatile long jitterMillis;
+        private volatile double stallRate;
+        private volatile long stallMillis;
+        private volatile double errorRate;
+        private volatile int errorStatus = 500;
+
+        /**
+         * Fixed delay before serving a request
+         */
+        public Profile latency(long millis) {
+            this.latencyMillis = Math.max(0, millis);
+            return this;
+        }
+
+        /**
+         * Maximum random delay added to the latency
+         */
+        public Profile jitter(long millis) {
+            this.jitterMillis = Math.max(0, millis);
+            return this;
+        }
+
+        /**
+         * Ratio of requests delayed further, the tail latency of a server pausing now and then
+         */
+        public Profile stall(double rate, long millis) {
+            this.stallRate = Math.min(1, Math.max(0, rate));
+            this.stallMillis = Math.max(0, millis);
+            return this;
+        }
+
+        /**
+         * Ratio of requests failed with the error status, between 0 and 1
+         */
+        public Profile errorRate(double rate) {
+            this.errorRate = Math.min(1, Math.max(0, rate));
+            return this;
+        }
+
+        /**
+         * Status of failed requests
+         */
+        public Profile errorStatus(int status) {
+            this.errorStatus = status;
+            return this;
+        }
+    }
+
+    private final FakeApiStore store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<Endpoint, Profile> profiles = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> requests = new EnumMap<>(Endpoint.class);
+
+    /**
+     * Constructor, starts serving
+     *
+     * @param store   nodes served
+     * @param port    port, 0 for any free port
+     * @param threads threads serving requests, requests delayed by latency hold a thread
+     * @throws IOException if the server can't be bound
+     */
+    public FakeApiServer(@NotNull FakeApiStore store, int port, int threads) throws IOException {
+        this.store = store;
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            profiles.put(endpoint, new Profile());
+            requests.put(endpoint, new AtomicLong());
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "fake-api-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // responses are written as headers and body, Nagle would hold the body until the headers are acknowledged
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9004;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int directories = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        int fileDataBytes = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+        long latency = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        FakeApiStore store = new FakeApiStore();
+        store.seed(directories, files, fileDataBytes, 0);
+
+        FakeApiServer server = new FakeApiServer(store, port, 256);
+        server.profileAll().forEach(profile -> profile.latency(latency));
+
+        System.out.printf("Serving %d files, %d directories at %s%n", files, directories, server.getUrl());
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Returns base url of the API
+     */
+    @NotNull
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @NotNull
+    public FakeApiStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns profile of an endpoint
+     *
+     * @param endpoint endpoint
+     * @return mutable profile
+     */
+    @NotNull
+    public Profile profile(@NotNull Endpoint endpoint) {
+        return profiles.get(endpoint);
+    }
+
+    /**
+     * Returns profiles of all endpoints
+     */
+    @NotNull
+    public Collection<Profile> profileAll() {
+        return profiles.values();
+    }
+
+    /**
+     * Returns number of requests received by an endpoint, failed or not
+     *
+     * @param endpoint endpoint
+     * @return requests
+     */
+    public long getRequests(@NotNull Endpoint endpoint) {
+        return requests.get(endpoint).get();
+    }
+
+    /**
+     * Resets request counters
+     */
+    public void resetRequests() {
+        requests.values().forEach(counter -> counter.set(0));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+
+            for (Endpoint endpoint : Endpoint.values()) {
+                String id = endpoint.match(method, path);
+
+                if (id != null) {
+                    requests.get(endpoint).incrementAndGet();
+                    serve(exchange, endpoint, id);
+                    return;
+                }
+            }
+
+            respond(exchange, 404, null);
+
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serve(@NotNull HttpExchange exchange, @NotNull Endpoint endpoint, @NotNull String id) throws IOException {
+
+        Profile profile = profiles.get(endpoint);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = profile.latencyMillis + (profile.jitterMillis > 0 ? random.nextLong(profile.jitterMillis + 1) : 0);
+
+        if (profile.stallRate > 0 && random.nextDouble() < profile.stallRate) {
+            delay += profile.stallMillis;
+        }
+
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, null);
+                return;
+            }
+        }
+
+        if (profile.errorRate > 0 && random.nextDouble() < profile.errorRate) {
+            respond(exchange, profile.errorStatus, null);
+            return;
+        }
+
+        try {
+            JsonElement body = readBody(exchange);
+            Object result = dispatch(endpoint, id, body);
+
+            respond(exchange, result == null ? 404 : 200, result == Boolean.TRUE ? null : result);
+
+        } catch (ConcurrentModificationException ex) {
+            respond(exchange, 409, null);
+        } catch (JsonParseException | IllegalStateException ex) {
+            respond(exchange, 400, null);
+        }
+    }
+
+    /**
+     * Serves a request
+     *
+     * @return response body, {@code Boolean.TRUE} for an empty response, {@code null} if not found
+     */
+    private Object dispatch(@NotNull Endpoint endpoint, @NotNull String id, JsonElement body) {
+        switch (endpoint) {
+            case FIND_FILES:
+                return store.findFiles();
+            case CREATE_FILE:
+                return store.createFile(GSON.fromJson(body, FileNodeDto.class));
+            case SEARCH_FILES:
+                return store.searchFiles(fileFilter(body));
+            case FIND_FILE:
+                return store.findFile(id);
+            case UPDATE_FILE:
+                return store.updateFile(id, GSON.fromJson(body, FileNodeDto.class));
+            case DELETE_FILE:
+                return store.deleteFile(id) ? Boolean.TRUE : null;
+            case FIND_DIRECTORIES:
+                return store.findDirectories();
+            case CREATE_DIRECTORIES:
+                return store.createDirectories(GSON.fromJson(body, DIRECTORIES));
+            case SEARCH_DIRECTORIES:
+                return store.searchDirectories(directoryFilter(body));
+            case SEARCH_DIRECTORY:
+                List<DirectoryNodeDto> found = store.searchDirectories(directoryFilter(body)).getResults();
+                return found.isEmpty() ? null : found.get(0);
+            case FIND_DIRECTORY:
+                return store.findDirectory(id);
+            case UPDATE_DIRECTORY:
+                return store.updateDirectory(id, GSON.fromJson(body, DirectoryNodeDto.class));
+            case DELETE_DIRECTORY:
+                return store.deleteDirectory(id) ? Boolean.TRUE : null;
+            case PURGE_DIRECTORY:
+                return store.purgeDirectory(id) ? Boolean.TRUE : null;
+            case FIND_ROOTS:
+                return store.findRoots();
+            case CREATE_ROOT:
+                return store.createRoot(GSON.fromJson(body, RootNodeDto.class));
+            case TRUNCATE_ROOTS:
+                store.truncateRoots();
+                return Boolean.TRUE;
+            case FIND_ROOTS_BY_DIRECTORY:
+                return store.findRootsByDirectory(id);
+            case DELETE_ROOTS_BY_DIRECTORY:
+                store.deleteRootsByDirectory(id);
+                return Boolean.TRUE;
+            default:
+                return store.findFileTypes();
+        }
+    }
+
+    /**
+     * Parses a file filter, an omitted active flag means active or not, like the API
+     */
+    @NotNull
+    private static FileFilterDto fileFilter(JsonElement body) {
+
+        FileFilterDto filter = GSON.fromJson(body, FileFilterDto.class);
+
+        if (filter.getContent() != null && !hasActive(body)) {
+            filter.getContent().setActive(null);
+        }
+
+        return filter;
+    }
+
+    /**
+     * Parses a directory filter, an omitted active flag means active or not, like the API
+     */
+    @NotNull
+    private static DirectoryFilterNodeDto directoryFilter(JsonElement body) {
+
+        DirectoryFilterNodeDto filter = GSON.fromJson(body, DirectoryFilterNodeDto.class);
+
+        if (filter.getContent() != null && !hasActive(body)) {
+            filter.getContent().setActive(null);
+        }
+
+        return filter;
+    }
+
+    private static boolean hasActive(JsonElement body) {
+        JsonElement content = body.getAsJsonObject().get("content");
+        return content != null && content.isJsonObject() && content.getAsJsonObject().has("active");
+    }
+
+    private static JsonElement readBody(@NotNull HttpExchange exchange) throws IOException {
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            JsonElement body = JsonParser.parseReader(reader);
+            return body.isJsonNull() ? new JsonObject() : body;
+        }
+    }
+
+    private static void respond(@NotNull HttpExchange exchange, int status, Object body) throws IOException {
+
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] bytes = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.dto.*;
+import com.example.springmigrate.network.IDirectoryHttpClient;
+import com.example.springmigrate.network.IFileHttpClient;
+import com.example.springmigrate.network.IFileTypeHttpClient;
+import com.example.springmigrate.network.IRootDirectoryHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FakeApiServerTest {
+
+    private FakeApiServer server;
+    private IFileHttpClient files;
+    private IDirectoryHttpClient directories;
+    private IRootDirectoryHttpClient roots;
+
+    @BeforeEach
+    void start() throws IOException {
+        FakeApiStore store = new FakeApiStore();
+        store.seed(10, 1000, 64, 7);
+        server = new FakeApiServer(store, 0, 8);
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(server.getUrl())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build();
+
+        files = retrofit.create(IFileHttpClient.class);
+        directories = retrofit.create(IDirectoryHttpClient.class);
+        roots = retrofit.create(IRootDirectoryHttpClient.class);
+        assertEquals(6, retrofit.create(IFileTypeHttpClient.class).finFileTypes().execute().body().size());
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void searchPagesThroughAllFiles() throws IOException {
+        ContentFileNodeDto content = new ContentFileNodeDto();
+        content.setActive(null);
+        content.setIncludeData(false);
+
+        int read = 0;
+        for (int page = 0; ; page++) {
+            List<FileNodeProjectionDto> results = files
+                    .findFileProjectionsByFilter(new FileFilterDto(content, page, 300))
+                    .execute().body().getResults();
+            read += results.size();
+            if (results.size() < 300) {
+                break;
+            }
+        }
+
+        assertEquals(1000, read);
+        assertEquals(4, server.getRequests(FakeApiServer.Endpoint.SEARCH_FILES));
+    }
+
+    @Test
+    void filesAreFoundByIdsAndName() throws IOException {
+        String id = FakeApiStore.uuid(7, "file", 42);
+
+        ContentFileNodeDto byIds = new ContentFileNodeDto();
+        byIds.setIds(Arrays.asList(id, "missing"));
+        List<FileNodeDto> found = files.findFilesByFilter(new FileFilterDto(byIds, 0, 10)).execute().body().getResults();
+
+        assertEquals(1, found.size());
+        assertEquals(64, found.get(0).getFileData().length());
+
+        ContentFileNodeDto byName = new ContentFileNodeDto();
+        byName.setName("DOCUMENT-0000042");
+        found = files.findFilesByFilter(new FileFilterDto(byName, 0, 10)).execute().body().getResults();
+
+        assertEquals(1, found.size());
+        assertEquals(id, found.get(0).getId());
+    }
+
+    @Test
+    void updateChecksVersionLock() throws IOException {
+        String id = FakeApiStore.uuid(7, "file", 1);
+        FileNodeDto file = files.findFileById(id).execute().body();
+        file.setName("renamed.pdf");
+
+        FileNodeDto updated = files.updateFile(file, id).execute().body();
+        assertEquals("renamed.pdf", updated.getName());
+        assertEquals(Integer.valueOf(1), updated.getVersionLock());
+
+        // stale version
+        assertEquals(409, files.updateFile(file, id).execute().code());
+        assertEquals(404, files.findFileById("missing").execute().code());
+    }
+
+    @Test
+    void directoriesAndRootsAreCreated() throws IOException {
+        DirectoryNodeDto parent = DirectoryNodeDto.builder().active(true).name("old").pathBase("/").build();
+        DirectoryNodeDto child = DirectoryNodeDto.builder().active(true).name("notfound").pathBase("/old").build();
+
+        List<DirectoryNodeDto> created = directories.createDirectoryHierarchicallyLogical(Arrays.asList(parent, child)).execute().body();
+        assertEquals(created.get(0).getId(), created.get(1).getParentDirectoryId());
+
+        ContentDirectoryNodeDto content = new ContentDirectoryNodeDto();
+        content.setExactName("notfound");
+        DirectoryFilterNodeDto filter = new DirectoryFilterNodeDto(content, 0, 20);
+        assertEquals(created.get(1).getId(), directories.searchDirectoryByFilter(filter).execute().body().getId());
+
+        RootNodeDto root = new RootNodeDto();
+        root.setPathBase("/");
+        root.setDirectory(created.get(0));
+        roots.createRoot(root).execute();
+        assertEquals(1, roots.findRootsByDirectoryId(created.get(0).getId()).execute().body().size());
+
+        assertTrue(roots.truncate().execute().isSuccessful());
+        assertEquals(Collections.emptyList(), roots.findRoots().execute().body());
+        assertTrue(directories.deleteDirectoryHardById(created.get(1).getId()).execute().isSuccessful());
+        assertEquals(404, directories.findDirectoryById(created.get(1).getId()).execute().code());
+    }
+
+    @Test
+    void profileInjectsErrors() throws IOException {
+        server.profile(FakeApiServer.Endpoint.FIND_FILE).errorRate(1).errorStatus(503);
+
+        Response<FileNodeDto> response = files.findFileById(FakeApiStore.uuid(7, "file", 1)).execute();
+
+        assertEquals(503, response.code());
+    }
+}
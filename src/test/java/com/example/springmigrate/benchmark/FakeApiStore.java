@@ -0,0 +1,532 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.dto.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In memory nodes of the stand-in document manager API served by {@link FakeApiServer}.
+ * <p>
+ * Nodes are kept ordered by identifier, so pages of a search are stable while nodes are not
+ * modified. The filtered identifiers of the last searches are cached until the next write, a
+ * full scan pages through millions of nodes without filtering them again for every page.
+ * <p>
+ * Stored nodes are never modified, writes replace them, so they can be serialized without locks.
+ * Filters support active, exact name, name (contains, ignoring case), identifiers and parent
+ * directory, other filter fields are ignored. As the document manager does, the path base of a
+ * node written under a parent directory is the path of the parent.
+ */
+public class FakeApiStore {
+
+    private static final int SEARCH_CACHE_SIZE = 64;
+
+    private final ConcurrentSkipListMap<String, FileNodeDto> files = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, DirectoryNodeDto> directories = new ConcurrentSkipListMap<>();
+    private final Map<String, RootNodeDto> roots = new ConcurrentHashMap<>();
+    private final List<FileTypeNodeDto> fileTypes = new ArrayList<>();
+    // incremented on every write, invalidates cached searches
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, CachedSearch> searches = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedSearch>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSearch> eldest) {
+                    return size() > SEARCH_CACHE_SIZE;
+                }
+            });
+
+    public FakeApiStore() {
+        addFileType(1, "pdf", "application/pdf");
+        addFileType(2, "png", "image/png");
+        addFileType(3, "jpg", "image/jpeg");
+        addFileType(4, "tif", "image/tiff");
+        addFileType(5, "txt", "text/plain");
+        addFileType(6, "docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+    }
+
+    /**
+     * Adds synthetic nodes: directories under the root path, and files spread over them with
+     * every file type. Identifiers are derived from the seed, the same seed gives the same nodes
+     *
+     * @param directoryCount directories to add
+     * @param fileCount      files to add
+     * @param fileDataBytes  size of the file data of every file
+     * @param seed           seed of identifiers and names
+     */
+    public void seed(int directoryCount, int fileCount, int fileDataBytes, long seed) {
+
+        List<DirectoryNodeDto> parents = new ArrayList<>(directoryCount);
+
+        for (int i = 0; i < Math.max(1, directoryCount); i++) {
+            DirectoryNodeDto directory = new DirectoryNodeDto(true, String.format("directory-%05d", i), null, "/");
+            directory.setId(uuid(seed, "directory", i));
+            directory.setVersionLock(0);
+            directories.put(directory.getId(), directory);
+            parents.add(directory);
+        }
+
+        // shared by every file
+        char[] data = new char[Math.max(0, fileDataBytes)];
+        Arrays.fill(data, 'A');
+        String fileData = new String(data);
+
+        for (int i = 0; i < fileCount; i++) {
+            FileTypeNodeDto type = fileTypes.get(i % fileTypes.size());
+            DirectoryNodeDto parent = parents.get(i % parents.size());
+
+            FileNodeDto file = new FileNodeDto();
+            file.setId(uuid(seed, "file", i));
+            file.setVersionLock(0);
+            file.setName(String.format("document-%07d.%s", i, type.getExtension()));
+            file.setMimeType(type.getMimeType());
+            file.setParentDirectoryId(parent.getId());
+            file.setPathBase("/" + parent.getName());
+            file.setVersion(1);
+            file.setFileData(fileData);
+            files.put(file.getId(), file);
+        }
+
+        version.incrementAndGet();
+    }
+
+    /**
+     * Returns identifier of a seeded node
+     *
+     * @param seed  seed
+     * @param kind  "file" or "directory"
+     * @param index node index
+     * @return identifier
+     */
+    @NotNull
+    public static String uuid(long seed, @NotNull String kind, int index) {
+        return UUID.nameUUIDFromBytes((kind + "-" + seed + "-" + index).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    @NotNull
+    public List<FileNodeDto> findFiles() {
+        return new ArrayList<>(files.values());
+    }
+
+    public FileNodeDto findFile(@NotNull String id) {
+        return files.get(id);
+    }
+
+    @NotNull
+    public synchronized FileNodeDto createFile(@NotNull FileNodeDto file) {
+        file.setId(file.getId() == null ? UUID.randomUUID().toString() : file.getId());
+        file.setVersionLock(0);
+        file.setInsertDate(Instant.now().toString());
+        files.put(file.getId(), file);
+        version.incrementAndGet();
+        return file;
+    }
+
+    /**
+     * Replaces a file node
+     *
+     * @param id   identifier
+     * @param file new values
+     * @return updated node, {@code null} if not exists
+     * @throws ConcurrentModificationException if the version lock is not the stored one
+     */
+    public synchronized FileNodeDto updateFile(@NotNull String id, @NotNull FileNodeDto file) {
+
+        FileNodeDto stored = files.get(id);
+
+        if (stored == null) {
+            return null;
+        }
+        checkVersion(id, stored.getVersionLock(), file.getVersionLock());
+
+        file.setId(id);
+        file.setPathBase(pathBase(file.getParentDirectoryId(), file.getPathBase()));
+        file.setVersionLock(stored.getVersionLock() + 1);
+        file.setInsertDate(stored.getInsertDate());
+        file.setModificationDate(Instant.now().toString());
+        files.put(id, file);
+        version.incrementAndGet();
+
+        return file;
+    }
+
+    public synchronized boolean deleteFile(@NotNull String id) {
+
+        FileNodeDto stored = files.get(id);
+
+        if (stored == null) {
+            return false;
+        }
+
+        FileNodeDto deleted = copy(stored, true);
+        deleted.setActive(false);
+        files.put(id, deleted);
+        version.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Searches file nodes
+     *
+     * @param filter filter, page and size
+     * @return page of nodes, without file data if not included by the filter
+     */
+    @NotNull
+    public PaginatedListDto<FileNodeDto> searchFiles(@NotNull FileFilterDto filter) {
+
+        ContentFileNodeDto content = filter.getContent() == null ? new ContentFileNodeDto() : filter.getContent();
+        boolean includeData = !Boolean.FALSE.equals(content.getIncludeData());
+
+        Predicate<FileNodeDto> predicate = file ->
+                matches(content.getActive(), file.getActive())
+                        && matchesName(content.getExactName(), content.getName(), file.getName())
+                        && (content.getParentDirectoryId() == null || content.getParentDirectoryId().equals(file.getParentDirectoryId()));
+
+        List<String> ids = search("files:" + key(content), files, content.getIds(), predicate);
+
+        return page(ids, filter.getPage(), filter.getSize(), id -> {
+            FileNodeDto file = files.get(id);
+            return file == null || includeData ? file : copy(file, false);
+        });
+    }
+
+    @NotNull
+    public List<DirectoryNodeDto> findDirectories() {
+        return new ArrayList<>(directories.values());
+    }
+
+    public DirectoryNodeDto findDirectory(@NotNull String id) {
+        return directories.get(id);
+    }
+
+    /**
+     * Creates a hierarchy of directories, a directory without parent is created under the
+     * previous one
+     *
+     * @param created directories, parents first
+     * @return directories created
+     */
+    @NotNull
+    public synchronized List<DirectoryNodeDto> createDirectories(@NotNull List<DirectoryNodeDto> created) {
+
+        DirectoryNodeDto previous = null;
+
+        for (DirectoryNodeDto directory : created) {
+            directory.setId(UUID.randomUUID().toString());
+            directory.setVersionLock(0);
+            directory.setInsertDate(Instant.now().toString());
+            if (directory.getParentDirectoryId() == null && previous != null) {
+                directory.setParentDirectoryId(previous.getId());
+            }
+            directory.setPathBase(pathBase(directory.getParentDirectoryId(), directory.getPathBase()));
+            directories.put(directory.getId(), directory);
+            previous = directory;
+        }
+
+        version.incrementAndGet();
+
+        return created;
+    }
+
+    /**
+     * Adds a directory node keeping its identifier, as a node already in the database
+     *
+     * @param directory directory with identifier
+     * @return directory added
+     */
+    @NotNull
+    public synchronized DirectoryNodeDto addDirectory(@NotNull DirectoryNodeDto directory) {
+        directory.setVersionLock(0);
+        directory.setInsertDate(Instant.now().toString());
+        directories.put(directory.getId(), directory);
+        version.incrementAndGet();
+        return directory;
+    }
+
+    /**
+     * Replaces a directory node
+     *
+     * @param id        identifier
+     * @param directory new values
+     * @return updated node, {@code null} if not exists
+     * @throws ConcurrentModificationException if the version lock is not the stored one
+     */
+    public synchronized DirectoryNodeDto updateDirectory(@NotNull String id, @NotNull DirectoryNodeDto directory) {
+
+        DirectoryNodeDto stored = directories.get(id);
+
+        if (stored == null) {
+            return null;
+        }
+        checkVersion(id, stored.getVersionLock(), directory.getVersionLock());
+
+        directory.setId(id);
+        directory.setPathBase(pathBase(directory.getParentDirectoryId(), directory.getPathBase()));
+        directory.setVersionLock(stored.getVersionLock() + 1);
+        directory.setInsertDate(stored.getInsertDate());
+        directory.setModificationDate(Instant.now().toString());
+        directories.put(id, directory);
+        version.incrementAndGet();
+
+        return directory;
+    }
+
+    public synchronized boolean deleteDirectory(@NotNull String id) {
+
+        DirectoryNodeDto stored = directories.get(id);
+
+        if (stored == null) {
+            return false;
+        }
+
+        DirectoryNodeDto deleted = new DirectoryNodeDto(false, stored.getName(), stored.getParentDirectoryId(), stored.getPathBase());
+        deleted.setId(id);
+        deleted.setVersionLock(stored.getVersionLock() + 1);
+        deleted.setInsertDate(stored.getInsertDate());
+        directories.put(id, deleted);
+        version.incrementAndGet();
+
+        return true;
+    }
+
+    public boolean purgeDirectory(@NotNull String id) {
+        boolean purged = directories.remove(id) != null;
+        version.incrementAndGet();
+        return purged;
+    }
+
+    /**
+     * Searches directory nodes
+     *
+     * @param filter filter, page and size
+     * @return page of nodes
+     */
+    @NotNull
+    public PaginatedListDto<DirectoryNodeDto> searchDirectories(@NotNull DirectoryFilterNodeDto filter) {
+
+        ContentDirectoryNodeDto content = filter.getContent() == null ? new ContentDirectoryNodeDto() : filter.getContent();
+
+        Predicate<DirectoryNodeDto> predicate = directory ->
+                matches(content.getActive(), directory.getActive())
+                        && matchesName(content.getExactName(), content.getName(), directory.getName())
+                        && (content.getParentDirectoryId() == null || content.getParentDirectoryId().equals(directory.getParentDirectoryId()));
+
+        List<String> ids = search("directories:" + key(content), directories, content.getIds(), predicate);
+
+        return page(ids, filter.getPage(), filter.getSize(), directories::get);
+    }
+
+    @NotNull
+    public List<RootNodeDto> findRoots() {
+        return new ArrayList<>(roots.values());
+    }
+
+    @NotNull
+    public List<RootNodeDto> findRootsByDirectory(@NotNull String directoryId) {
+
+        List<RootNodeDto> found = new ArrayList<>();
+
+        for (RootNodeDto root : roots.values()) {
+            if (root.getDirectory() != null && directoryId.equals(root.getDirectory().getId())) {
+                found.add(root);
+            }
+        }
+
+        return found;
+    }
+
+    @NotNull
+    public RootNodeDto createRoot(@NotNull RootNodeDto root) {
+        root.setId(UUID.randomUUID().toString());
+        root.setVersionLock(0);
+        roots.put(root.getId(), root);
+        return root;
+    }
+
+    public void deleteRootsByDirectory(@NotNull String directoryId) {
+        for (RootNodeDto root : findRootsByDirectory(directoryId)) {
+            roots.remove(root.getId());
+        }
+    }
+
+    public void truncateRoots() {
+        roots.clear();
+    }
+
+    @NotNull
+    public List<FileTypeNodeDto> findFileTypes() {
+        return Collections.unmodifiableList(fileTypes);
+    }
+
+    public int fileCount() {
+        return files.size();
+    }
+
+    public int directoryCount() {
+        return directories.size();
+    }
+
+    /**
+     * Path base of a node under a parent directory, the given path base if the parent is unknown
+     */
+    private String pathBase(String parentDirectoryId, String pathBase) {
+
+        DirectoryNodeDto parent = parentDirectoryId == null ? null : directories.get(parentDirectoryId);
+
+        if (parent == null || parent.getName() == null) {
+            return pathBase;
+        }
+
+        String parentPathBase = pathBase(parent.getParentDirectoryId(), parent.getPathBase());
+
+        return parentPathBase == null ? pathBase : Paths.get(parentPathBase, parent.getName()).toString();
+    }
+
+    private void addFileType(int id, String extension, String mimeType) {
+        FileTypeNodeDto type = new FileTypeNodeDto(extension.toUpperCase(), extension, mimeType);
+        type.setId(Integer.toString(id));
+        fileTypes.add(type);
+    }
+
+    /**
+     * Identifiers matching a filter, in identifier order
+     */
+    @NotNull
+    private <T> List<String> search(
+            @NotNull String key,
+            @NotNull ConcurrentSkipListMap<String, T> nodes,
+            List<String> ids,
+            @NotNull Predicate<T> predicate) {
+
+        // searched by identifiers, never cached
+        if (ids != null) {
+            List<String> found = new ArrayList<>();
+            for (String id : new TreeSet<>(ids)) {
+                T node = nodes.get(id);
+                if (node != null && predicate.test(node)) {
+                    found.add(id);
+                }
+            }
+            return found;
+        }
+
+        long current = version.get();
+        CachedSearch cached = searches.get(key);
+
+        if (cached != null && cached.version == current) {
+            return cached.ids;
+        }
+
+        List<String> found = new ArrayList<>();
+        for (Map.Entry<String, T> entry : nodes.entrySet()) {
+            if (predicate.test(entry.getValue())) {
+                found.add(entry.getKey());
+            }
+        }
+
+        searches.put(key, new CachedSearch(current, found));
+
+        return found;
+    }
+
+    @NotNull
+    private static <T> PaginatedListDto<T> page(
+            @NotNull List<String> ids,
+            Integer page,
+            Integer size,
+            @NotNull Function<String, T> node) {
+
+        int pageSize = size == null || size <= 0 ? 20 : size;
+        int pageNumber = page == null || page < 0 ? 0 : page;
+        long from = (long) pageNumber * pageSize;
+
+        List<T> results = new ArrayList<>();
+        for (long i = from; i < Math.min(ids.size(), from + pageSize); i++) {
+            T found = node.apply(ids.get((int) i));
+            if (found != null) {
+                results.add(found);
+            }
+        }
+
+        PaginatedListDto<T> result = new PaginatedListDto<>();
+        result.setResults(results);
+        result.setPage(pageNumber);
+        result.setSize(pageSize);
+        result.setRowNum(ids.size());
+
+        return result;
+    }
+
+    private static boolean matches(Boolean expected, Boolean actual) {
+        return expected == null || expected.equals(actual == null ? Boolean.TRUE : actual);
+    }
+
+    private static boolean matchesName(String exactName, String name, String actual) {
+
+        if (exactName != null && !exactName.equalsIgnoreCase(actual)) {
+            return false;
+        }
+
+        return name == null || (actual != null && actual.toLowerCase().contains(name.toLowerCase()));
+    }
+
+    private static void checkVersion(@NotNull String id, Integer stored, Integer requested) {
+        if (requested != null && !requested.equals(stored)) {
+            throw new ConcurrentModificationException(
+                    String.format("Node %s has version %d, update requested over %d", id, stored, requested));
+        }
+    }
+
+    @NotNull
+    private static String key(@NotNull ContentFileNodeDto content) {
+        return content.getActive() + "|" + content.getExactName() + "|" + content.getName() + "|" + content.getParentDirectoryId();
+    }
+
+    @NotNull
+    private static String key(@NotNull ContentDirectoryNodeDto content) {
+        return content.getActive() + "|" + content.getExactName() + "|" + content.getName() + "|" + content.getParentDirectoryId();
+    }
+
+    @NotNull
+    private static FileNodeDto copy(@NotNull FileNodeDto file, boolean includeData) {
+
+        FileNodeDto copy = new FileNodeDto(
+                file.getActive(),
+                includeData ? file.getFileData() : null,
+                file.getMimeType(),
+                file.getName(),
+                file.getParentDirectoryId(),
+                file.getPathBase(),
+                file.getVersion(),
+                includeData ? file.getFileExports() : null);
+
+        copy.setId(file.getId());
+        copy.setVersionLock(file.getVersionLock());
+        copy.setInsertDate(file.getInsertDate());
+        copy.setModificationDate(file.getModificationDate());
+
+        return copy;
+    }
+
+    /**
+     * Identifiers matching a filter at a store version
+     */
+    private static class CachedSearch {
+
+        private final long version;
+        private final List<String> ids;
+
+        private CachedSearch(long version, @NotNull List<String> ids) {
+            this.version = version;
+            this.ids = ids;
+        }
+    }
+}
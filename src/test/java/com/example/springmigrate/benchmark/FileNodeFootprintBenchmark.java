@@ -0,0 +1,127 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileNodeProjectionDto;
+import com.example.springmigrate.dto.PaginatedListDto;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Retained heap per file node, full dto against migration projection.
+ * <p>
+ * Deserializes the same {@code /files/searchAll} page with Gson, like the Retrofit converter,
+ * and measures the heap retained by the results.
+ * <pre>
+ * java -cp target/test-classes:target/classes:&lt;gson&gt; \
+ *     com.example.springmigrate.benchmark.FileNodeFootprintBenchmark [nodes] [fileDataBytes]
+ * </pre>
+ */
+public class FileNodeFootprintBenchmark {
+
+    private static final Gson GSON = new Gson();
+    // keeps measured results reachable
+    private static PaginatedListDto<?> retained;
+
+    public static void main(String[] args) {
+
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int fileDataBytes = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+
+        String fullPage = page(nodes, fileDataBytes, true);
+        // response with includeData=false
+        String slimPage = page(nodes, fileDataBytes, false);
+
+        Type fullType = new TypeToken<PaginatedListDto<FileNodeDto>>() { }.getType();
+        Type slimType = new TypeToken<PaginatedListDto<FileNodeProjectionDto>>() { }.getType();
+
+        double full = footprint(fullPage, fullType, nodes);
+        double fullAsProjection = footprint(fullPage, slimType, nodes);
+        double slim = footprint(slimPage, slimType, nodes);
+
+        System.out.printf("nodes=%d fileData=%d bytes, response full=%d KiB slim=%d KiB%n",
+                nodes, fileDataBytes, fullPage.length() / 1024, slimPage.length() / 1024);
+        System.out.printf("FileNodeDto                     %10.0f bytes/node%n", full);
+        System.out.printf("FileNodeProjectionDto           %10.0f bytes/node%n", fullAsProjection);
+        System.out.printf("FileNodeProjectionDto, no data  %10.0f bytes/node%n", slim);
+    }
+
+    private static double footprint(String json, Type type, int nodes) {
+
+        retained = null;
+        long before = usedHeap();
+        retained = GSON.fromJson(json, type);
+        long after = usedHeap();
+
+        if (retained.getResults().size() != nodes) {
+            throw new IllegalStateException("Unexpected results " + retained.getResults().size());
+        }
+
+        return (double) (after - before) / nodes;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+
+        // collect until the used heap is stable
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+
+        return used;
+    }
+
+    private static String page(int nodes, int fileDataBytes, boolean includeData) {
+
+        StringBuilder fileData = new StringBuilder(fileDataBytes);
+        for (int i = 0; i < fileDataBytes; i++) {
+            fileData.append((char) ('A' + i % 26));
+        }
+
+        StringBuilder json = new StringBuilder("{\"page\":0,\"size\":").append(nodes)
+                .append(",\"rowNum\":").append(nodes).append(",\"results\":[");
+
+        for (int i = 0; i < nodes; i++) {
+            String id = UUID.randomUUID().toString();
+
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"id\":\"").append(id).append('"')
+                    .append(",\"versionLock\":1")
+                    .append(",\"insertDate\":\"2023-05-04T10:11:12\",\"modificationDate\":\"2023-05-04T10:11:12\"")
+                    .append(",\"active\":true,\"mimeType\":\"application/pdf\"")
+                    .append(",\"name\":\"document-").append(i).append('"')
+                    .append(",\"parentDirectoryId\":\"").append(UUID.randomUUID()).append('"')
+                    .append(",\"pathBase\":\"opt/tools/tomcat/latest/Documents/").append(i % 100).append('"')
+                    .append(",\"version\":1");
+
+            if (includeData) {
+                json.append(",\"fileData\":\"").append(fileData).append('"')
+                        .append(",\"fileExports\":[");
+
+                for (int e = 0; e < 2; e++) {
+                    json.append(e == 0 ? "" : ",")
+                            .append("{\"id\":\"").append(UUID.randomUUID()).append('"')
+                            .append(",\"active\":true,\"expirationDate\":\"2024-05-04T10:11:12\",\"file\":\"").append(id).append('"')
+                            .append(",\"download\":{\"authority\":\"localhost:9004\",\"defaultPort\":80")
+                            .append(",\"deserializedFields\":{},\"file\":\"/files/").append(id).append("/download\"")
+                            .append(",\"host\":\"localhost\",\"path\":\"/files/").append(id).append("/download\"")
+                            .append(",\"port\":9004,\"protocol\":\"http\",\"serializedHashCode\":-1}}");
+                }
+                json.append(']');
+            }
+            json.append('}');
+        }
+
+        return json.append("]}").toString();
+    }
+}
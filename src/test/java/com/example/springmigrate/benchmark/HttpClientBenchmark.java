@@ -0,0 +1,225 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.config.utils.*;
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.network.implementation.ApiFileHttpClientImpl;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import okhttp3.OkHttpClient;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Throughput of concurrent file lookups by identifier, as done by the batch and pipeline
+ * lookups, with the {@link HttpClientOptions} of every client against a {@link FakeApiServer}.
+ * <p>
+ * Clients, as {@code name:option=value;option=value}, the {@code okhttp} client has the
+ * OkHttp defaults (5 idle connections, 5 calls per host), the {@code tuned} one the
+ * application defaults. Every run reports lookups per second, connections left in the pool,
+ * mean latency of the requests, the adaptive concurrency limit reached and the lookups
+ * coalesced, as a JSON line appended to the output file. Fewer {@code files} than lookups
+ * in flight look up the same files concurrently.
+ * <pre>
+ * java -cp target/test-classes:target/classes:&lt;dependencies&gt; \
+ *     com.example.springmigrate.benchmark.HttpClientBenchmark \
+ *     lookups=20000 concurrency=16,64,256 latency=2 out=target/http-client-benchmark.jsonl
+ * </pre>
+ * Options, as {@code name=value}:
+ * <ul>
+ *     <li>{@code clients}: clients compared, {@code okhttp,tuned} by default</li>
+ *     <li>{@code lookups}: lookups of every run</li>
+ *     <li>{@code concurrency}: lookups in flight, comma separated</li>
+ *     <li>{@code files}, {@code fileBytes}: nodes served and size of their file data</li>
+ *     <li>{@code latency}, {@code jitter}, {@code stallRate}, {@code stall}: profile of the
+ *     lookup endpoint</li>
+ *     <li>{@code serverThreads}: threads serving requests</li>
+ *     <li>{@code out}: JSON lines file, {@code http-client-benchmark.jsonl} by default</li>
+ * </ul>
+ */
+public class HttpClientBenchmark {
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private static final Map<String, String> CLIENTS = Map.of(
+            "okhttp", "maxIdleConnections=5;maxRequests=64;maxRequestsPerHost=5;tcpNoDelay=false",
+            "tuned", "");
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            arguments.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        Path out = Paths.get(arguments.getOrDefault("out", "http-client-benchmark.jsonl"));
+        int lookups = Integer.parseInt(arguments.getOrDefault("lookups", "20000"));
+
+        FakeApiStore store = new FakeApiStore();
+        store.seed(
+                100,
+                Integer.parseInt(arguments.getOrDefault("files", "10000")),
+                Integer.parseInt(arguments.getOrDefault("fileBytes", "0")),
+                1);
+        List<String> ids = store.findFiles().stream().map(FileNodeDto::getId).collect(Collectors.toList());
+
+        try (FakeApiServer server = new FakeApiServer(store, 0, Integer.parseInt(arguments.getOrDefault("serverThreads", "256")))) {
+            server.profile(FakeApiServer.Endpoint.FIND_FILE)
+                    .latency(Long.parseLong(arguments.getOrDefault("latency", "2")))
+                    .jitter(Long.parseLong(arguments.getOrDefault("jitter", "0")))
+                    .stall(
+                            Double.parseDouble(arguments.getOrDefault("stallRate", "0")),
+                            Long.parseLong(arguments.getOrDefault("stall", "0")));
+
+            for (String concurrency : arguments.getOrDefault("concurrency", "16,64,256").split(",")) {
+                for (String client : arguments.getOrDefault("clients", "okhttp,tuned").split(",")) {
+                    Map<String, Object> result = run(server, ids, client.trim(), lookups, Integer.parseInt(concurrency.trim()));
+                    result.put("latencyMillis", Long.parseLong(arguments.getOrDefault("latency", "2")));
+
+                    System.out.println(GSON.toJson(result));
+                    Files.write(
+                            out,
+                            Collections.singletonList(GSON.toJson(result)),
+                            StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up files by identifier with a new client, the first lookups warm it up
+     *
+     * @param server      API
+     * @param ids         identifiers of the files served
+     * @param client      client name, or {@code name:option=value;...}
+     * @param lookups     measured lookups
+     * @param concurrency lookups in flight
+     * @return results
+     * @throws IOException if a lookup fails
+     */
+    @NotNull
+    static Map<String, Object> run(
+            @NotNull FakeApiServer server,
+            @NotNull List<String> ids,
+            @NotNull String client,
+            int lookups,
+            int concurrency) throws IOException {
+
+        String name = client.contains(":") ? client.substring(0, client.indexOf(':')) : client;
+        String spec = client.contains(":") ? client.substring(client.indexOf(':') + 1) : CLIENTS.getOrDefault(client, "");
+
+        Map<String, String> arguments = new HashMap<>();
+        for (String option : spec.split(";")) {
+            if (!option.isEmpty()) {
+                arguments.put(option.substring(0, option.indexOf('=')), option.substring(option.indexOf('=') + 1));
+            }
+        }
+
+        MigrationOptions options = new MigrationOptions();
+        options.setApiConcurrency(concurrency);
+
+        MigrationMetrics metrics = new MigrationMetrics();
+        HttpClientOptions httpOptions = MigrationBenchmark.httpOptions(arguments);
+        RetrofitClient retrofitClient = new RetrofitClient(new ApiUrl(server.getUrl()), metrics, httpOptions);
+        ApiFileHttpClientImpl fileClient = new ApiFileHttpClientImpl(
+                retrofitClient,
+                new ApiCallExecutor(options),
+                new SingleFlight(httpOptions, metrics));
+        OkHttpClient httpClient = (OkHttpClient) retrofitClient.getInstance().callFactory();
+        AtomicLong notFound = new AtomicLong();
+
+        try {
+            lookup(fileClient, ids, Math.min(lookups, 1000), null);
+
+            long started = System.nanoTime();
+            lookup(fileClient, ids, lookups, notFound);
+            long elapsed = System.nanoTime() - started;
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("client", name);
+            result.put("options", new TreeMap<>(arguments));
+            result.put("concurrency", concurrency);
+            result.put("lookups", lookups);
+            result.put("wallMillis", elapsed / 1_000_000);
+            result.put("lookupsPerSecond", lookups * 1e9 / elapsed);
+            result.put("pooledConnections", httpClient.connectionPool().connectionCount());
+            result.put("notFound", notFound.get());
+            result.put("requestMillis", requestMillis(metrics.snapshot()));
+            result.put("concurrencyLimit", metrics.snapshot().get(MigrationMetrics.API_CONCURRENCY_LIMIT));
+            result.put("hedges", count(metrics.snapshot(), MigrationMetrics.API_HEDGES, "sent"));
+            result.put("hedgesWon", count(metrics.snapshot(), MigrationMetrics.API_HEDGES, "won"));
+            result.put("coalesced", sum(metrics.snapshot(), MigrationMetrics.API_COALESCED));
+            return result;
+        } finally {
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * Mean latency of the requests sent, waiting for the limits excluded
+     */
+    private static double requestMillis(@NotNull Map<String, Double> snapshot) {
+
+        double count = 0;
+        double sum = 0;
+
+        for (Map.Entry<String, Double> entry : snapshot.entrySet()) {
+            if (entry.getKey().startsWith(MigrationMetrics.API_REQUESTS + "_count")) {
+                count += entry.getValue();
+            } else if (entry.getKey().startsWith(MigrationMetrics.API_REQUESTS + "_sum")) {
+                sum += entry.getValue();
+            }
+        }
+
+        return count == 0 ? 0 : sum * 1000 / count;
+    }
+
+    private static double count(@NotNull Map<String, Double> snapshot, @NotNull String name, @NotNull String outcome) {
+        return snapshot.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(name) && entry.getKey().contains("\"" + outcome + "\""))
+                .mapToDouble(Map.Entry::getValue)
+                .sum();
+    }
+
+    private static double sum(@NotNull Map<String, Double> snapshot, @NotNull String name) {
+        return snapshot.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(name))
+                .mapToDouble(Map.Entry::getValue)
+                .sum();
+    }
+
+    private static void lookup(
+            @NotNull ApiFileHttpClientImpl fileClient,
+            @NotNull List<String> ids,
+            int lookups,
+            AtomicLong notFound) throws IOException {
+
+        List<CompletableFuture<FileNodeDto>> futures = new ArrayList<>(lookups);
+
+        for (int i = 0; i < lookups; i++) {
+            futures.add(fileClient.apiFindFileByIdAsync(ids.get(i % ids.size())));
+        }
+
+        for (CompletableFuture<FileNodeDto> future : futures) {
+            if (ApiCallExecutor.await(future) == null && notFound != null) {
+                notFound.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.springmigrate.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.springmigrate.config.utils.*;
+import com.example.springmigrate.network.implementation.ApiDirectoryHttpClientImpl;
+import com.example.springmigrate.network.implementation.ApiFileHttpClientImpl;
+import com.example.springmigrate.network.implementation.ApiFileTypeHttpClientImpl;
+import com.example.springmigrate.network.implementation.ApiRootDirectoryHttpClient;
+import com.example.springmigrate.repository.implemantation.CachedDirectoryRepositoryImpl;
+import com.example.springmigrate.repository.implemantation.CachedFileRepositoryImpl;
+import com.example.springmigrate.repository.implemantation.CachedRootDirectoryRepositoryImpl;
+import com.example.springmigrate.repository.implemantation.DirectoryRepositoryImpl;
+import com.example.springmigrate.repository.implemantation.FileRepositoryImpl;
+import com.example.springmigrate.repository.implemantation.FileTypeImpl;
+import com.example.springmigrate.repository.implemantation.RootDirectoryRepositoryImpl;
+import com.example.springmigrate.service.implementation.*;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.io.FileUtils;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * End to end throughput benchmark of both migrations, run over a {@link MigrationWorkload}
+ * served by a {@link FakeApiServer}. The services are wired by hand as the application context
+ * does, so the whole client stack, HTTP included, is measured.
+ * <p>
+ * Every run reports files per second, API requests per file, by endpoint too, peak heap,
+ * the wall clock time of every {@link MigrationPhases phase} and the {@link MigrationMetrics},
+ * as a JSON line appended to the output file, so runs of different releases can be compared.
+ * <pre>
+ * java -Xmx8g -cp target/test-classes:target/classes:&lt;dependencies&gt; \
+ *     com.example.springmigrate.benchmark.MigrationBenchmark \
+ *     service=unix,physical files=10000,100000,1000000 latency=2 out=target/migration-benchmark.jsonl
+ * </pre>
+ * Options, as {@code name=value}:
+ * <ul>
+ *     <li>{@code service}: {@code unix}, {@code unix-plan}, planned then executed, or
+ *     {@code physical}, comma separated</li>
+ *     <li>{@code files}: physical files of every run, comma separated, up to millions</li>
+ *     <li>{@code depth}, {@code fanOut}, {@code fileBytes}, {@code seed}: shape of the workload</li>
+ *     <li>{@code latency}, {@code jitter}, {@code errorRate}: profile of every endpoint</li>
+ *     <li>{@code serverThreads}: threads serving requests</li>
+ *     <li>{@code threads}, {@code apiConcurrency}, {@code lookupBatchSize},
+ *     {@code updateConcurrency}, {@code indexedNameMatching}: migration options</li>
+ *     <li>{@code maxIdleConnections}, {@code maxRequestsPerHost}, {@code tcpNoDelay}, ...:
+ *     {@link HttpClientOptions HTTP client options}</li>
+ *     <li>{@code cache}, {@code negativeTtlSeconds}: {@link CacheOptions cache options}</li>
+ *     <li>{@code work}: directory of the source trees, temporary by default</li>
+ *     <li>{@code keep}: keeps the source trees after the runs</li>
+ *     <li>{@code out}: JSON lines file, {@code migration-benchmark.jsonl} by default</li>
+ *     <li>{@code log}: log level while migrating, {@code WARN} by default</li>
+ * </ul>
+ */
+public class MigrationBenchmark {
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final Gson PRETTY = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+
+    private final Map<String, String> arguments;
+    private final Path work;
+
+    public MigrationBenchmark(@NotNull Map<String, String> arguments) throws IOException {
+        this.arguments = arguments;
+        this.work = arguments.containsKey("work")
+                ? Files.createDirectories(Paths.get(arguments.get("work")))
+                : Files.createTempDirectory("migration-benchmark");
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            arguments.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        MigrationBenchmark benchmark = new MigrationBenchmark(arguments);
+        Path out = Paths.get(arguments.getOrDefault("out", "migration-benchmark.jsonl"));
+
+        for (String files : arguments.getOrDefault("files", "10000").split(",")) {
+            for (String service : arguments.getOrDefault("service", "unix,physical").split(",")) {
+                Map<String, Object> result = benchmark.run(service.trim(), Integer.parseInt(files.trim()));
+
+                System.out.println(PRETTY.toJson(result));
+                Files.write(
+                        out,
+                        Collections.singletonList(GSON.toJson(result)),
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            }
+        }
+    }
+
+    /**
+     * Generates a workload and migrates it
+     *
+     * @param service {@code unix}, {@code unix-plan} or {@code physical}
+     * @param files   physical files
+     * @return results
+     * @throws Exception if the workload can't be generated or migrated
+     */
+    @NotNull
+    public Map<String, Object> run(@NotNull String service, int files) throws Exception {
+
+        Path root = Files.createTempDirectory(work, service + "-" + files + "-");
+        Path source = root.resolve("source");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("service", service);
+        result.put("files", files);
+        result.put("javaVersion", System.getProperty("java.version"));
+        result.put("processors", Runtime.getRuntime().availableProcessors());
+        result.put("arguments", new TreeMap<>(arguments));
+
+        FakeApiStore store = new FakeApiStore();
+        long started = System.nanoTime();
+        MigrationWorkload.Summary summary = workload(files).generate(store, source);
+        result.put("generateMillis", (System.nanoTime() - started) / 1_000_000);
+        result.put("workload", summary);
+
+        try (FakeApiServer server = new FakeApiServer(store, 0, integer("serverThreads", 64))) {
+            server.profileAll().forEach(profile -> profile
+                    .latency(integer("latency", 0))
+                    .jitter(integer("jitter", 0))
+                    .errorRate(Double.parseDouble(arguments.getOrDefault("errorRate", "0"))));
+
+            MigrationOptions options = options();
+            MigrationPhases phases = new MigrationPhases();
+            MigrationMetrics metrics = new MigrationMetrics();
+            Level level = Level.toLevel(arguments.getOrDefault("log", "WARN"));
+            Level previous = setLogLevel(level);
+
+            System.gc();
+            resetPeakHeap();
+            started = System.nanoTime();
+
+            try {
+                migrate(service, server, options, phases, metrics, root, source);
+            } finally {
+                setLogLevel(previous);
+            }
+
+            long elapsed = System.nanoTime() - started;
+            long requests = 0;
+            Map<String, Long> endpoints = new LinkedHashMap<>();
+
+            for (FakeApiServer.Endpoint endpoint : FakeApiServer.Endpoint.values()) {
+                long count = server.getRequests(endpoint);
+                if (count > 0) {
+                    endpoints.put(endpoint.name(), count);
+                    requests += count;
+                }
+            }
+
+            result.put("wallMillis", elapsed / 1_000_000);
+            result.put("filesPerSecond", files * 1e9 / elapsed);
+            result.put("apiRequests", requests);
+            result.put("apiRequestsPerFile", files == 0 ? 0 : (double) requests / files);
+            result.put("apiRequestsByEndpoint", endpoints);
+            result.put("peakHeapBytes", peakHeap());
+            result.put("phaseMillis", phases.getMillis());
+            result.put("metrics", metrics.snapshot());
+            result.put("uuidNamedFilesLeft", countUuidNamedFiles(root));
+
+        } finally {
+            if (!Boolean.parseBoolean(arguments.getOrDefault("keep", "false"))) {
+                FileUtils.deleteDirectory(root.toFile());
+            }
+        }
+
+        return result;
+    }
+
+    @NotNull
+    private MigrationWorkload workload(int files) {
+        return new MigrationWorkload()
+                .files(files)
+                .depth(integer("depth", 2))
+                .fanOut(integer("fanOut", 8))
+                .fileBytes(integer("fileBytes", 0))
+                .seed(integer("seed", 1));
+    }
+
+    @NotNull
+    private MigrationOptions options() {
+
+        MigrationOptions options = new MigrationOptions();
+
+        options.setThreads(integer("threads", options.getThreads()));
+        options.setApiConcurrency(integer("apiConcurrency", options.getApiConcurrency()));
+        options.setLookupBatchSize(integer("lookupBatchSize", options.getLookupBatchSize()));
+        options.setUpdateConcurrency(integer("updateConcurrency", options.getUpdateConcurrency()));
+        options.setIndexedNameMatching(Boolean.parseBoolean(arguments.getOrDefault("indexedNameMatching", "false")));
+
+        return options;
+    }
+
+    /**
+     * Wires the services as the application context does and migrates the source directory
+     */
+    private void migrate(
+            @NotNull String service,
+            @NotNull FakeApiServer server,
+            @NotNull MigrationOptions options,
+            @NotNull MigrationPhases phases,
+            @NotNull MigrationMetrics metrics,
+            @NotNull Path root,
+            @NotNull Path source) throws Exception {
+
+        HttpClientOptions httpOptions = httpOptions(arguments);
+        RetrofitClient retrofitClient = new RetrofitClient(new ApiUrl(server.getUrl()), metrics, httpOptions);
+        ApiCallExecutor executor = new ApiCallExecutor(options);
+        SingleFlight singleFlight = new SingleFlight(httpOptions, metrics);
+        CacheOptions cacheOptions = new CacheOptions();
+        cacheOptions.setEnabled(Boolean.parseBoolean(arguments.getOrDefault("cache", "true")));
+        cacheOptions.setNegativeTtlSeconds(Long.parseLong(arguments.getOrDefault("negativeTtlSeconds", String.valueOf(cacheOptions.getNegativeTtlSeconds()))));
+
+        CachedFileRepositoryImpl fileRepository = new CachedFileRepositoryImpl(
+                new FileRepositoryImpl(new ApiFileHttpClientImpl(retrofitClient, executor, singleFlight)),
+                cacheOptions,
+                metrics);
+        CachedDirectoryRepositoryImpl directoryRepository = new CachedDirectoryRepositoryImpl(
+                new DirectoryRepositoryImpl(new ApiDirectoryHttpClientImpl(retrofitClient, executor, singleFlight)),
+                fileRepository,
+                cacheOptions,
+                metrics);
+
+        DirectoryLogicalServiceImpl directoryService = new DirectoryLogicalServiceImpl(directoryRepository, new DirectoryTree());
+        FileLogicalServiceImpl fileService = new FileLogicalServiceImpl(fileRepository);
+        FileTypeLogicalServiceImpl fileTypeService = new FileTypeLogicalServiceImpl(
+                new FileTypeImpl(new ApiFileTypeHttpClientImpl(retrofitClient)));
+        RootDirectoryServiceImpl rootService = new RootDirectoryServiceImpl(
+                new CachedRootDirectoryRepositoryImpl(
+                        new RootDirectoryRepositoryImpl(new ApiRootDirectoryHttpClient(retrofitClient, executor)),
+                        directoryRepository));
+
+        switch (service) {
+            case "unix":
+            case "unix-plan":
+                MigrateUnixService unixService = new MigrateUnixService(
+                        directoryService,
+                        fileService,
+                        fileTypeService,
+                        rootService,
+                        options,
+                        executor,
+                        new DestinationNameRegistry(),
+                        new FileTransferEngine(),
+                        phases,
+                        metrics);
+                if (service.equals("unix")) {
+                    unixService.migrate(root.toString(), "old", "notfound", Collections.singletonList(source));
+                } else {
+                    Path plan = root.resolve("migration.plan");
+                    unixService.plan(root.toString(), "old", "notfound", Collections.singletonList(source), plan);
+                    unixService.execute(plan);
+                }
+                break;
+            case "physical":
+                new MigratePhysicalDataService(
+                        directoryService,
+                        fileService,
+                        fileTypeService,
+                        executor,
+                        options,
+                        new DestinationNameRegistry(),
+                        new FileTransferEngine(),
+                        phases,
+                        metrics)
+                        .migrate(Collections.singletonList(source));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown service: " + service);
+        }
+    }
+
+    /**
+     * HTTP client options, defaults overridden by the arguments named as their properties
+     *
+     * @param arguments {@code maxIdleConnections}, {@code keepAliveSeconds}, {@code maxRequests},
+     *                  {@code maxRequestsPerHost}, {@code http2PriorKnowledge}, {@code tcpNoDelay},
+     *                  {@code sendBufferSize}, {@code receiveBufferSize}, {@code adaptiveConcurrency},
+     *                  {@code initialConcurrency}, {@code maxConcurrency}, {@code latencyTolerance},
+     *                  {@code rateLimit}, {@code latencyBudgets}, {@code hedging}, {@code hedgeMaxRatio},
+     *                  {@code coalesceRequests}
+     * @return options
+     */
+    @NotNull
+    static HttpClientOptions httpOptions(@NotNull Map<String, String> arguments) {
+
+        HttpClientOptions options = new HttpClientOptions();
+
+        options.setMaxIdleConnections(Integer.parseInt(arguments.getOrDefault("maxIdleConnections", String.valueOf(options.getMaxIdleConnections()))));
+        options.setKeepAliveSeconds(Long.parseLong(arguments.getOrDefault("keepAliveSeconds", String.valueOf(options.getKeepAliveSeconds()))));
+        options.setMaxRequests(Integer.parseInt(arguments.getOrDefault("maxRequests", String.valueOf(options.getMaxRequests()))));
+        options.setMaxRequestsPerHost(Integer.parseInt(arguments.getOrDefault("maxRequestsPerHost", String.valueOf(options.getMaxRequestsPerHost()))));
+        options.setHttp2PriorKnowledge(Boolean.parseBoolean(arguments.getOrDefault("http2PriorKnowledge", String.valueOf(options.isHttp2PriorKnowledge()))));
+        options.setTcpNoDelay(Boolean.parseBoolean(arguments.getOrDefault("tcpNoDelay", String.valueOf(options.isTcpNoDelay()))));
+        options.setSendBufferSize(Integer.parseInt(arguments.getOrDefault("sendBufferSize", String.valueOf(options.getSendBufferSize()))));
+        options.setReceiveBufferSize(Integer.parseInt(arguments.getOrDefault("receiveBufferSize", String.valueOf(options.getReceiveBufferSize()))));
+        options.setAdaptiveConcurrency(Boolean.parseBoolean(arguments.getOrDefault("adaptiveConcurrency", String.valueOf(options.isAdaptiveConcurrency()))));
+        options.setInitialConcurrency(Integer.parseInt(arguments.getOrDefault("initialConcurrency", String.valueOf(options.getInitialConcurrency()))));
+        options.setMaxConcurrency(Integer.parseInt(arguments.getOrDefault("maxConcurrency", String.valueOf(options.getMaxConcurrency()))));
+        options.setLatencyTolerance(Double.parseDouble(arguments.getOrDefault("latencyTolerance", String.valueOf(options.getLatencyTolerance()))));
+        options.setRateLimit(Double.parseDouble(arguments.getOrDefault("rateLimit", String.valueOf(options.getRateLimit()))));
+        options.setLatencyBudgets(Boolean.parseBoolean(arguments.getOrDefault("latencyBudgets", String.valueOf(options.isLatencyBudgets()))));
+        options.setHedging(Boolean.parseBoolean(arguments.getOrDefault("hedging", String.valueOf(options.isHedging()))));
+        options.setHedgeMaxRatio(Double.parseDouble(arguments.getOrDefault("hedgeMaxRatio", String.valueOf(options.getHedgeMaxRatio()))));
+        options.setCoalesceRequests(Boolean.parseBoolean(arguments.getOrDefault("coalesceRequests", String.valueOf(options.isCoalesceRequests()))));
+
+        return options;
+    }
+
+    private int integer(@NotNull String name, int defaultValue) {
+        String value = arguments.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    @NotNull
+    private static Level setLogLevel(@NotNull Level level) {
+        Logger logger = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        Level previous = logger.getLevel();
+        logger.setLevel(level);
+        return previous;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Sum of the peak usage of every heap pool, an upper bound of the peak heap
+     */
+    private static long peakHeap() {
+
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+
+    private static long countUuidNamedFiles(@NotNull Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> MigrationUtils.isValidUUID(path.getFileName().toString()))
+                    .count();
+        }
+    }
+}
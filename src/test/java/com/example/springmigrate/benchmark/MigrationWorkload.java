@@ -0,0 +1,287 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.dto.FileTypeNodeDto;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic migration workload: a physical source tree and the nodes of its files and
+ * directories in a {@link FakeApiStore}, with the shapes found in real document storages.
+ * <p>
+ * Files are spread round robin over a tree of {@code depth} levels of {@code fanOut}
+ * directories. Every file is one of:
+ * <ul>
+ *     <li>uuid named, its node found by identifier, some of them sharing the name of another
+ *     node of the same directory</li>
+ *     <li>named as its node, found by name and path base</li>
+ *     <li>unmatched, no node at all</li>
+ * </ul>
+ * Some directories are named with the uuid of their node, some of those nodes have complex
+ * names ({@code a/b/c}). Orphan nodes, without physical file, are added too.
+ * <p>
+ * The same seed gives the same workload.
+ */
+public class MigrationWorkload {
+
+    private int files = 10_000;
+    private int depth = 2;
+    private int fanOut = 8;
+    private double uuidShare = 0.6;
+    private double namedShare = 0.2;
+    private double duplicateShare = 0.05;
+    private double orphanShare = 0.05;
+    private double uuidDirectoryShare = 0.2;
+    private double complexDirectoryShare = 0.3;
+    private int fileBytes;
+    private long seed = 1;
+
+    /**
+     * Physical files generated
+     */
+    public MigrationWorkload files(int files) {
+        this.files = files;
+        return this;
+    }
+
+    /**
+     * Levels of directories below the source directory
+     */
+    public MigrationWorkload depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * Subdirectories of every directory
+     */
+    public MigrationWorkload fanOut(int fanOut) {
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * Share of files named with the uuid of their node
+     */
+    public MigrationWorkload uuidShare(double share) {
+        this.uuidShare = share;
+        return this;
+    }
+
+    /**
+     * Share of files named as their node
+     */
+    public MigrationWorkload namedShare(double share) {
+        this.namedShare = share;
+        return this;
+    }
+
+    /**
+     * Share of uuid named files whose node has the name of another node of the same directory
+     */
+    public MigrationWorkload duplicateShare(double share) {
+        this.duplicateShare = share;
+        return this;
+    }
+
+    /**
+     * Orphan nodes added, as a share of the files
+     */
+    public MigrationWorkload orphanShare(double share) {
+        this.orphanShare = share;
+        return this;
+    }
+
+    /**
+     * Share of directories named with the uuid of their node
+     */
+    public MigrationWorkload uuidDirectoryShare(double share) {
+        this.uuidDirectoryShare = share;
+        return this;
+    }
+
+    /**
+     * Share of uuid named directories whose node has a complex name
+     */
+    public MigrationWorkload complexDirectoryShare(double share) {
+        this.complexDirectoryShare = share;
+        return this;
+    }
+
+    /**
+     * Size of every physical file and of the file data of its node
+     */
+    public MigrationWorkload fileBytes(int bytes) {
+        this.fileBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Seed of names, identifiers and shares
+     */
+    public MigrationWorkload seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Writes the source tree and adds its nodes
+     *
+     * @param store  nodes
+     * @param source source directory, created if not exists
+     * @return what was generated
+     * @throws IOException if the source tree can't be written
+     */
+    @NotNull
+    public Summary generate(@NotNull FakeApiStore store, @NotNull Path source) throws IOException {
+
+        Random random = new Random(seed);
+        Summary summary = new Summary();
+        List<FileTypeNodeDto> types = store.findFileTypes();
+
+        Files.createDirectories(source);
+
+        // node of the source directory, parent of the nodes of files in it
+        DirectoryNodeDto sourceNode = new DirectoryNodeDto(true, source.getFileName().toString(), null, source.getParent().toString());
+        sourceNode.setId(FakeApiStore.uuid(seed, "directory", 0));
+        store.addDirectory(sourceNode);
+
+        // physical path, node and path in the database of every directory
+        List<Path> paths = new ArrayList<>();
+        List<String> nodeIds = new ArrayList<>();
+        List<Path> logicalPaths = new ArrayList<>();
+        paths.add(source);
+        nodeIds.add(sourceNode.getId());
+        logicalPaths.add(source);
+
+        // breadth first, parents before children
+        for (int parent = 0, level = 0, levelEnd = 1; level < depth; level++) {
+            for (; parent < levelEnd; parent++) {
+                for (int child = 0; child < fanOut; child++) {
+                    int index = paths.size();
+                    String name = String.format("folder-%05d", index);
+                    String id = FakeApiStore.uuid(seed, "directory", index);
+                    Path path = paths.get(parent).resolve(name);
+
+                    if (random.nextDouble() < uuidDirectoryShare) {
+                        path = paths.get(parent).resolve(id);
+                        summary.uuidDirectories++;
+
+                        if (random.nextDouble() < complexDirectoryShare) {
+                            name = String.format("archive/%d/%s", 2000 + index % 20, name);
+                            summary.complexDirectories++;
+                        }
+                    }
+
+                    DirectoryNodeDto node = new DirectoryNodeDto(true, name, nodeIds.get(parent), logicalPaths.get(parent).toString());
+                    node.setId(id);
+                    store.addDirectory(node);
+
+                    Files.createDirectories(path);
+                    paths.add(path);
+                    nodeIds.add(id);
+                    logicalPaths.add(logicalPaths.get(parent).resolve(name));
+                }
+            }
+            levelEnd = paths.size();
+        }
+        summary.directories = paths.size();
+
+        byte[] content = new byte[Math.max(0, fileBytes)];
+        Arrays.fill(content, (byte) 'A');
+        String fileData = new String(content, StandardCharsets.US_ASCII);
+        String[] lastNames = new String[paths.size()];
+
+        for (int i = 0; i < files; i++) {
+            int directory = i % paths.size();
+            Path parent = paths.get(directory);
+            FileTypeNodeDto type = types.get(i % types.size());
+            String name = String.format("document-%07d.%s", i, type.getExtension());
+            double kind = random.nextDouble();
+
+            FileNodeDto node = new FileNodeDto();
+            node.setId(FakeApiStore.uuid(seed, "file", i));
+            node.setActive(true);
+            node.setMimeType(type.getMimeType());
+            node.setParentDirectoryId(nodeIds.get(directory));
+            node.setPathBase(logicalPaths.get(directory).toString());
+            node.setVersion(1);
+            node.setFileData(fileData);
+
+            Path file;
+
+            if (kind < uuidShare) {
+                if (lastNames[directory] != null && random.nextDouble() < duplicateShare) {
+                    name = lastNames[directory];
+                    summary.duplicateFiles++;
+                }
+                file = parent.resolve(node.getId());
+                summary.uuidFiles++;
+            } else if (kind < uuidShare + namedShare) {
+                file = parent.resolve(name);
+                summary.namedFiles++;
+            } else {
+                file = parent.resolve(String.format("scan-%07d.%s", i, type.getExtension()));
+                node = null;
+                summary.unmatchedFiles++;
+            }
+
+            if (node != null) {
+                node.setName(name);
+                store.createFile(node);
+                lastNames[directory] = name;
+            }
+
+            Files.write(file, content);
+            summary.bytes += content.length;
+        }
+
+        int orphans = (int) (files * orphanShare);
+        for (int i = 0; i < orphans; i++) {
+            int directory = i % paths.size();
+            FileTypeNodeDto type = types.get(i % types.size());
+
+            FileNodeDto node = new FileNodeDto();
+            node.setId(FakeApiStore.uuid(seed, "orphan", i));
+            node.setActive(true);
+            node.setName(String.format("orphan-%07d.%s", i, type.getExtension()));
+            node.setMimeType(type.getMimeType());
+            node.setParentDirectoryId(nodeIds.get(directory));
+            node.setPathBase(logicalPaths.get(directory).toString());
+            node.setVersion(1);
+            node.setFileData(fileData);
+            store.createFile(node);
+        }
+        summary.orphanNodes = orphans;
+        summary.files = files;
+
+        return summary;
+    }
+
+    /**
+     * Counts of a generated workload
+     */
+    @Getter
+    public static class Summary {
+        private int files;
+        private int uuidFiles;
+        private int namedFiles;
+        private int unmatchedFiles;
+        private int duplicateFiles;
+        private int orphanNodes;
+        private int directories;
+        private int uuidDirectories;
+        private int complexDirectories;
+        private long bytes;
+    }
+}
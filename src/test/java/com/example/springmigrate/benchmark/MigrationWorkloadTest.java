@@ -0,0 +1,88 @@
+package com.example.springmigrate.benchmark;
+
+import com.example.springmigrate.config.utils.MigrationUtils;
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import com.example.springmigrate.dto.FileNodeDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationWorkloadTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void physicalFilesMatchTheirNodes() throws IOException {
+        FakeApiStore store = new FakeApiStore();
+        Path source = temp.resolve("source");
+
+        MigrationWorkload.Summary summary = new MigrationWorkload()
+                .files(500)
+                .depth(2)
+                .fanOut(4)
+                .uuidDirectoryShare(0.5)
+                .generate(store, source);
+
+        List<Path> files = walkFiles(source);
+        assertEquals(500, files.size());
+        assertEquals(500, summary.getUuidFiles() + summary.getNamedFiles() + summary.getUnmatchedFiles());
+        assertEquals(1 + 4 + 16, summary.getDirectories());
+        assertEquals(summary.getDirectories(), store.directoryCount());
+        assertEquals(summary.getUuidFiles() + summary.getNamedFiles() + summary.getOrphanNodes(), store.fileCount());
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (MigrationUtils.isValidUUID(name)) {
+                assertNotNull(store.findFile(name));
+            }
+        }
+
+        for (Path directory : walkDirectories(source)) {
+            String name = directory.getFileName().toString();
+            if (MigrationUtils.isValidUUID(name)) {
+                DirectoryNodeDto node = store.findDirectory(name);
+                assertNotNull(node);
+                assertNotNull(node.getParentDirectoryId());
+            }
+        }
+    }
+
+    @Test
+    void sameSeedGivesSameWorkload() throws IOException {
+        FakeApiStore first = new FakeApiStore();
+        FakeApiStore second = new FakeApiStore();
+
+        new MigrationWorkload().files(300).seed(3).generate(first, temp.resolve("first"));
+        new MigrationWorkload().files(300).seed(3).generate(second, temp.resolve("second"));
+
+        assertEquals(names(first), names(second));
+        assertEquals(
+                walkFiles(temp.resolve("first")).stream().map(Path::getFileName).map(Path::toString).sorted().collect(Collectors.toList()),
+                walkFiles(temp.resolve("second")).stream().map(Path::getFileName).map(Path::toString).sorted().collect(Collectors.toList()));
+    }
+
+    private static List<String> names(FakeApiStore store) {
+        return store.findFiles().stream().map(FileNodeDto::getName).sorted().collect(Collectors.toList());
+    }
+
+    private static List<Path> walkFiles(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> walkDirectories(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+    }
+}
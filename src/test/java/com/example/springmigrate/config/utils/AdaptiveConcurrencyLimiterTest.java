@@ -0,0 +1,105 @@
+package com.example.springmigrate.config.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void limitGrowsWhileLatencyIsFlat() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100, 2.0, 0.5);
+        Deque<Long> inFlight = new ArrayDeque<>();
+
+        // every request answered is replaced, as many in flight as the limit allows
+        for (int i = 0; i < 200; i++) {
+            while (inFlight.size() < limiter.getLimit()) {
+                inFlight.add(limiter.acquire() - 10 * MILLIS);
+            }
+            limiter.release(inFlight.poll(), AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+
+        assertTrue(limiter.getLimit() >= 15);
+        assertTrue(limiter.getLimit() <= 25);
+    }
+
+    @Test
+    void limitIsCutOnDroppedRequests() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(40, 1, 100, 2.0, 0.5);
+
+        limiter.release(limiter.acquire(), AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        assertEquals(20, limiter.getLimit());
+
+        // once per round trip
+        limiter.release(limiter.acquire(), AdaptiveConcurrencyLimiter.Outcome.DROPPED);
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void limitIsCutOnLatencySpikes() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(40, 1, 100, 2.0, 0.5);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.release(limiter.acquire() - 10 * MILLIS, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+        int flat = limiter.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            limiter.release(limiter.acquire() - 200 * MILLIS, AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+        }
+
+        assertTrue(limiter.getLimit() < flat);
+        assertTrue(limiter.getLimit() >= 1);
+    }
+
+    @Test
+    void ignoredRequestsOnlyRelease() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 100, 2.0, 0.5);
+
+        limiter.release(limiter.acquire(), AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void requestsWaitForTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 2.0, 0.5);
+        long start = limiter.acquire();
+
+        Thread waiting = new Thread(() -> {
+            try {
+                limiter.release(limiter.acquire(), AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        waiting.start();
+        waiting.join(100);
+        assertTrue(waiting.isAlive());
+
+        limiter.release(start, AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+        waiting.join(1000);
+        assertFalse(waiting.isAlive());
+    }
+
+    @Test
+    void tokenBucketSpacesRequestsBeyondTheBurst() {
+        TokenBucket bucket = new TokenBucket(100, 2);
+
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+
+        long wait = bucket.reserve();
+        assertTrue(wait > 5 * MILLIS && wait <= 10 * MILLIS);
+
+        long next = bucket.reserve();
+        assertTrue(next > wait);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiCacheTest {
+
+    private final CacheOptions options = new CacheOptions();
+    private final MigrationMetrics metrics = new MigrationMetrics();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void cachedValuesAreCopies() throws IOException {
+        ApiCache cache = new ApiCache("directories", options, metrics);
+
+        DirectoryNodeDto first = cache.get("id", DirectoryNodeDto.class, this::load);
+        first.setName("changed");
+        DirectoryNodeDto second = cache.get("id", DirectoryNodeDto.class, this::load);
+        DirectoryNodeDto third = cache.get("id", DirectoryNodeDto.class, this::load);
+
+        assertEquals("name", second.getName());
+        assertNotSame(second, third);
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void missingValuesAreRememberedUntilCreated() throws IOException {
+        ApiCache cache = new ApiCache("directories", options, metrics);
+
+        assertNull(cache.get("id", DirectoryNodeDto.class, this::notFound));
+        assertNull(cache.get("id", DirectoryNodeDto.class, this::notFound));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getNegativeHits());
+
+        cache.invalidateMissing();
+
+        assertEquals("name", cache.get("id", DirectoryNodeDto.class, this::load).getName());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void missingValuesAreNotRememberedWithoutTtl() throws IOException {
+        options.setNegativeTtlSeconds(0);
+        ApiCache cache = new ApiCache("directories", options, metrics);
+
+        cache.get("id", DirectoryNodeDto.class, this::notFound);
+        cache.get("id", DirectoryNodeDto.class, this::notFound);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getNegativeHits());
+    }
+
+    @Test
+    void writtenValuesReplaceCachedOnes() throws IOException {
+        ApiCache cache = new ApiCache("directories", options, metrics);
+        cache.get("id", DirectoryNodeDto.class, this::load);
+
+        DirectoryNodeDto updated = directory();
+        updated.setName("updated");
+        cache.put("id", updated);
+
+        assertEquals("updated", cache.get("id", DirectoryNodeDto.class, this::load).getName());
+        assertEquals(1, loads.get());
+
+        cache.invalidate("id");
+
+        assertEquals("name", cache.get("id", DirectoryNodeDto.class, this::load).getName());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void lookupsOverlappingAWriteAreNotCached() throws IOException {
+        ApiCache cache = new ApiCache("directories", options, metrics);
+
+        cache.get("id", DirectoryNodeDto.class, key -> {
+            cache.invalidate(key);
+            return load(key);
+        });
+        cache.get("id", DirectoryNodeDto.class, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void valuesBeyondTheMaximumWeightAreEvicted() throws IOException {
+        options.setMaxWeightBytes(1000);
+        ApiCache cache = new ApiCache("directories", options, metrics);
+
+        for (int i = 0; i < 20; i++) {
+            cache.get("id" + i, DirectoryNodeDto.class, this::load);
+        }
+
+        assertTrue(cache.size() < 20);
+        assertEquals(20 - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    void asynchronousLookupsAreCached() throws Exception {
+        ApiCache cache = new ApiCache("directories", options, metrics);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("name", cache.getAsync("id", DirectoryNodeDto.class,
+                    key -> CompletableFuture.completedFuture(load(key))).get().getName());
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2.0 / 3, cache.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    void nothingIsCachedWhenDisabled() throws IOException {
+        options.setEnabled(false);
+        ApiCache cache = new ApiCache("directories", options, metrics);
+
+        cache.get("id", DirectoryNodeDto.class, this::load);
+        cache.get("id", DirectoryNodeDto.class, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    private DirectoryNodeDto load(String id) {
+        loads.incrementAndGet();
+        DirectoryNodeDto directory = directory();
+        directory.setId(id);
+        return directory;
+    }
+
+    private DirectoryNodeDto notFound(String id) {
+        loads.incrementAndGet();
+        return null;
+    }
+
+    private static DirectoryNodeDto directory() {
+        DirectoryNodeDto directory = new DirectoryNodeDto();
+        directory.setId("id");
+        directory.setName("name");
+        directory.setPathBase("/base");
+        return directory;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.network.Hedged;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiLatencyInterceptorTest {
+
+    private static final int WARM_UP = 5;
+    private static final long STALL_MILLIS = 3000;
+
+    private HttpServer server;
+    private final Queue<Long> delays = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private MigrationMetrics metrics;
+    private OkHttpClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            Long delay = delays.poll();
+            try {
+                if (delay != null) {
+                    Thread.sleep(delay);
+                }
+                exchange.sendResponseHeaders(200, -1);
+            } catch (InterruptedException | IOException ex) {
+                // client gone
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        HttpClientOptions options = new HttpClientOptions();
+        options.setLatencySamples(WARM_UP);
+        options.setMinBudgetMillis(100);
+        options.setHedgeMaxRatio(1);
+
+        metrics = new MigrationMetrics();
+        OkHttpClient attempts = new OkHttpClient.Builder()
+                .addInterceptor(ApiLatencyInterceptor.DEADLINES)
+                .build();
+        OkHttpClient.Builder builder = attempts.newBuilder();
+        builder.interceptors().add(0, new ApiLatencyInterceptor(options, metrics, attempts));
+        client = builder.build();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void stalledIdempotentRequestsTimeOutAfterTheBudget() throws Exception {
+        warmUp(false);
+        delays.add(STALL_MILLIS);
+
+        long start = System.nanoTime();
+        assertThrows(SocketTimeoutException.class, () -> client.newCall(request(false)).execute());
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < STALL_MILLIS);
+    }
+
+    @Test
+    void slowHedgedRequestsAreSentAgain() throws Exception {
+        warmUp(true);
+        delays.add(STALL_MILLIS);
+
+        long start = System.nanoTime();
+        try (Response response = client.newCall(request(true)).execute()) {
+            assertEquals(200, response.code());
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < STALL_MILLIS);
+        assertEquals(WARM_UP + 2, requests.get());
+        assertEquals(1.0, metrics.snapshot().entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(MigrationMetrics.API_HEDGES)
+                        && entry.getKey().contains("outcome=\"won\""))
+                .mapToDouble(entry -> entry.getValue())
+                .sum(), 1e-9);
+    }
+
+    @Test
+    void requestsNotHedgedAreSentOnce() throws Exception {
+        warmUp(false);
+        delays.add(50L);
+
+        try (Response response = client.newCall(request(false)).execute()) {
+            assertEquals(200, response.code());
+        }
+
+        assertEquals(WARM_UP + 1, requests.get());
+    }
+
+    @Test
+    void writesHaveNoBudget() throws Exception {
+        for (int i = 0; i < WARM_UP; i++) {
+            try (Response response = client.newCall(purge()).execute()) {
+                assertEquals(200, response.code());
+            }
+        }
+        // slower than a budget of 100 ms, answered within the client timeouts
+        delays.add(1000L);
+
+        try (Response response = client.newCall(purge()).execute()) {
+            assertEquals(200, response.code());
+        }
+
+        assertEquals(WARM_UP + 1, requests.get());
+        assertFalse(ApiLatencyInterceptor.isRead(purge()));
+        assertTrue(ApiLatencyInterceptor.isRead(request(false)));
+    }
+
+    private void warmUp(boolean hedged) throws Exception {
+        for (int i = 0; i < WARM_UP; i++) {
+            try (Response response = client.newCall(request(hedged)).execute()) {
+                assertEquals(200, response.code());
+            }
+        }
+    }
+
+    private Request request(boolean hedged) throws NoSuchMethodException {
+        String name = hedged ? "hedged" : "plain";
+        return new Request.Builder()
+                .url("http://localhost:" + server.getAddress().getPort() + "/files")
+                .tag(Invocation.class, Invocation.of(Client.class.getMethod(name), Collections.emptyList()))
+                .get()
+                .build();
+    }
+
+    private Request purge() throws NoSuchMethodException {
+        return new Request.Builder()
+                .url("http://localhost:" + server.getAddress().getPort() + "/directories/id/purge")
+                .tag(Invocation.class, Invocation.of(Client.class.getMethod("plain"), Collections.emptyList()))
+                .delete()
+                .build();
+    }
+
+    interface Client {
+
+        @Hedged
+        void hedged();
+
+        void plain();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.config.utils.error.ApiUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiRetryInterceptorTest {
+
+    private HttpServer server;
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private MigrationMetrics metrics;
+    private OkHttpClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            Integer status = statuses.poll();
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(status == null ? 200 : status, -1);
+            exchange.close();
+        });
+        server.start();
+
+        HttpClientOptions options = new HttpClientOptions();
+        options.setMaxRetries(2);
+        options.setRetryBaseDelayMillis(1);
+        options.setRetryMaxDelayMillis(5);
+
+        metrics = new MigrationMetrics();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(new ApiRetryInterceptor(options, metrics))
+                .build();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void serverErrorsOfIdempotentRequestsAreRetried() throws IOException {
+        statuses.add(503);
+        statuses.add(500);
+
+        try (Response response = client.newCall(get()).execute()) {
+            assertEquals(200, response.code());
+        }
+
+        assertEquals(3, requests.get());
+        assertEquals(2.0, metrics.snapshot().entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(MigrationMetrics.API_RETRIES))
+                .mapToDouble(entry -> entry.getValue())
+                .sum(), 1e-9);
+    }
+
+    @Test
+    void serverErrorsOfOtherRequestsAreNotRetried() throws IOException {
+        statuses.add(500);
+
+        try (Response response = client.newCall(post()).execute()) {
+            assertEquals(500, response.code());
+        }
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void tooManyRequestsAreAlwaysRetried() throws IOException {
+        statuses.add(429);
+
+        try (Response response = client.newCall(post()).execute()) {
+            assertEquals(200, response.code());
+        }
+
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void requestsFailingAfterAllRetriesAreUnavailable() {
+        for (int i = 0; i < 10; i++) {
+            statuses.add(502);
+        }
+
+        assertThrows(ApiUnavailableException.class, () -> client.newCall(get()).execute());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() throws IOException {
+        statuses.add(404);
+
+        try (Response response = client.newCall(get()).execute()) {
+            assertEquals(404, response.code());
+        }
+
+        assertEquals(1, requests.get());
+    }
+
+    private Request get() {
+        return new Request.Builder().url(url()).get().build();
+    }
+
+    private Request post() {
+        return new Request.Builder().url(url()).post(RequestBody.create("{}", MediaType.get("application/json"))).build();
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/files";
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.config.utils.error.ApiUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailures() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("files", 3, TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(60));
+
+        breaker.onFailure(false);
+        breaker.onFailure(false);
+        breaker.onSuccess(false);
+        breaker.onFailure(false);
+        breaker.onFailure(false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpened());
+    }
+
+    @Test
+    void requestsWaitForTheProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("files", 1, TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.SECONDS.toNanos(10));
+
+        long started = System.nanoTime();
+        breaker.onFailure(false);
+
+        // first caller after the open period is the probe
+        assertTrue(breaker.acquire());
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        Thread waiting = new Thread(() -> {
+            try {
+                breaker.acquire();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        waiting.start();
+        waiting.join(100);
+        assertTrue(waiting.isAlive());
+
+        breaker.onSuccess(true);
+        waiting.join(1000);
+        assertFalse(waiting.isAlive());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void failedProbeOpensAgain() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("files", 1, TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(10));
+
+        breaker.onFailure(false);
+        assertTrue(breaker.acquire());
+        breaker.onFailure(true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpened());
+    }
+
+    @Test
+    void waitingIsBounded() {
+        CircuitBreaker breaker = new CircuitBreaker("files", 1, TimeUnit.SECONDS.toNanos(60), TimeUnit.MILLISECONDS.toNanos(20));
+
+        breaker.onFailure(false);
+
+        assertThrows(ApiUnavailableException.class, breaker::acquire);
+    }
+
+    @Test
+    void requestsSentBeforeOpeningDontEndTheProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("files", 1, TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(100));
+
+        boolean early = breaker.acquire();
+        boolean late = breaker.acquire();
+        assertFalse(early);
+        breaker.onFailure(late);
+        assertTrue(breaker.acquire());
+
+        // outcomes of the request sent while closed
+        breaker.onSuccess(early);
+        breaker.onFailure(early);
+        breaker.release(early);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpened());
+        assertThrows(ApiUnavailableException.class, breaker::acquire);
+
+        breaker.onSuccess(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.acquire());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DestinationNameRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void existingFilesArePrefixedIgnoringCase() throws IOException {
+        Files.createFile(directory.resolve("Scan.pdf"));
+        Files.createFile(directory.resolve("001-scan.pdf"));
+        DestinationNameRegistry registry = new DestinationNameRegistry();
+
+        assertEquals("002-scan.pdf", registry.reserve(file("scan", ".pdf")).getFileName());
+        assertEquals("003-scan.pdf", registry.reserve(file("scan", ".pdf")).getFileName());
+        assertEquals("scan.txt", registry.reserve(file("scan", ".txt")).getFileName());
+    }
+
+    @Test
+    void releasedNameCanBeReservedAgain() {
+        DestinationNameRegistry registry = new DestinationNameRegistry();
+
+        FilePhysical reserved = registry.reserve(file("report", ".doc"));
+        registry.release(reserved);
+
+        assertEquals("report.doc", registry.reserve(file("report", ".doc")).getFileName());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void concurrentReservationsNeverCollide() throws Exception {
+        DestinationNameRegistry registry = new DestinationNameRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(() -> names.add(registry.reserve(file("scan", ".pdf")).getFileName())));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1000, names.size());
+        assertTrue(names.contains("scan.pdf"));
+        assertTrue(names.contains("999-scan.pdf"));
+    }
+
+    private FilePhysical file(String name, String extension) {
+        return FilePhysical.builder()
+                .name(name)
+                .extension(extension)
+                .parentDirectory(new DirectoryPhysical(directory))
+                .build();
+    }
+}
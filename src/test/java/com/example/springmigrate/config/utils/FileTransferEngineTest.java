@@ -0,0 +1,95 @@
+package com.example.springmigrate.config.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileTransferEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sameStoreIsRenamed() throws IOException {
+        FileTransferEngine engine = new FileTransferEngine(1024, 2);
+        Path source = write("source.bin", 10_000);
+        Path target = directory.resolve("target.bin");
+
+        assertEquals(FileTransferEngine.TransferKind.RENAME, engine.move(source, target));
+        assertFalse(Files.exists(source));
+        assertEquals(10_000, Files.size(target));
+        assertEquals(1, engine.getStats(FileTransferEngine.TransferKind.RENAME).getFiles());
+    }
+
+    @Test
+    void chunkedCopyVerifiesAndDeletesSource() throws IOException {
+        FileTransferEngine engine = new FileTransferEngine(1000, 3);
+        Path source = write("source.bin", 10_500);
+        byte[] content = Files.readAllBytes(source);
+        Path target = directory.resolve("target.bin");
+
+        engine.copyAndDelete(source, target, Files.size(source));
+
+        assertFalse(Files.exists(source));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(directory.resolve("target.bin" + FileTransferEngine.PART_SUFFIX)));
+        assertFalse(Files.exists(directory.resolve("target.bin" + FileTransferEngine.OFFSETS_SUFFIX)));
+    }
+
+    @Test
+    void interruptedCopyResumesMissingChunks() throws IOException {
+        FileTransferEngine engine = new FileTransferEngine(1000, 2);
+        Path source = write("source.bin", 3000);
+        byte[] content = Files.readAllBytes(source);
+        Path target = directory.resolve("target.bin");
+
+        // first chunk copied, recorded as done, the others garbage
+        byte[] part = new byte[3000];
+        System.arraycopy(content, 0, part, 0, 1000);
+        Arrays.fill(part, 1000, 3000, (byte) 7);
+        Files.write(directory.resolve("target.bin" + FileTransferEngine.PART_SUFFIX), part);
+        Files.write(directory.resolve("target.bin" + FileTransferEngine.OFFSETS_SUFFIX), Arrays.asList("3000 1000", "0"));
+
+        engine.copyAndDelete(source, target, 3000);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    void existingTargetIsNotOverwritten() throws IOException {
+        FileTransferEngine engine = new FileTransferEngine(1000, 2);
+        Path source = write("source.bin", 100);
+        Path target = write("target.bin", 10);
+
+        assertThrows(IOException.class, () -> engine.copyAndDelete(source, target, 100));
+        assertTrue(Files.exists(source));
+        assertEquals(10, Files.size(target));
+    }
+
+    @Test
+    void existingTargetIsNotReplacedByRename() throws IOException {
+        FileTransferEngine engine = new FileTransferEngine(1000, 2);
+        Path source = write("source.bin", 100);
+        Path target = write("target.bin", 10);
+        byte[] content = Files.readAllBytes(target);
+
+        assertThrows(FileAlreadyExistsException.class, () -> engine.move(source, target));
+        assertTrue(Files.exists(source));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(0, engine.getStats(FileTransferEngine.TransferKind.RENAME).getFiles());
+    }
+
+    private Path write(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(directory.resolve(name), content);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.springmigrate.config.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    @Test
+    void loadsMissingValueOnce() {
+        LruCache<String, String> cache = new LruCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("A", cache.get("a", key -> {
+                loads.incrementAndGet();
+                return key.toUpperCase();
+            }));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(4, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void nullValuesAreNotCached() {
+        LruCache<String, String> cache = new LruCache<>(10);
+
+        assertNull(cache.get("a", key -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondMaxWeight() {
+        LruCache<String, String> cache = new LruCache<>(10, 10, (key, value) -> value.length());
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.get("a");
+        cache.put("c", "cccc");
+
+        assertEquals("aaaa", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("cccc", cache.get("c"));
+        assertEquals(8, cache.getWeight());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void replacedAndInvalidatedValuesAreNotWeighted() {
+        LruCache<String, String> cache = new LruCache<>(10, 100, (key, value) -> value.length());
+        cache.put("a", "aaaa");
+        cache.put("a", "aa");
+        cache.put("b", "bbb");
+        cache.invalidate("b");
+
+        assertEquals(2, cache.getWeight());
+        assertEquals(0, cache.getEvictions());
+    }
+}
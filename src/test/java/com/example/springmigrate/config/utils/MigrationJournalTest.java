@@ -0,0 +1,116 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.config.utils.error.NodeAlreadyProcessed;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReplayedOnReopen() throws IOException {
+        Path file = directory.resolve("journal");
+
+        try (MigrationJournal journal = MigrationJournal.open(file)) {
+            journal.recordMoved(Path.of("/in/a"), Path.of("/out/a"), "node-a", "parent", null);
+            journal.recordUpdated(Path.of("/in/a"), Path.of("/out/a"), "node-a", "parent", 3);
+            journal.recordMoved(Path.of("/in/b"), Path.of("/out/b"), null, null, null);
+        }
+
+        try (MigrationJournal journal = MigrationJournal.open(file)) {
+            assertThrows(NodeAlreadyProcessed.class, () -> journal.checkNotProcessed(Path.of("/in/a")));
+            assertThrows(NodeAlreadyProcessed.class, () -> journal.checkNotProcessed(Path.of("/in/b")));
+            assertDoesNotThrow(() -> journal.checkNotProcessed(Path.of("/in/c")));
+            assertEquals(1, journal.getNodeIds().size());
+            assertTrue(journal.getPendingMoves().isEmpty());
+            assertTrue(journal.getPendingUpdates().isEmpty());
+        }
+    }
+
+    @Test
+    void unfinishedWorkIsPending() throws IOException {
+        try (MigrationJournal journal = MigrationJournal.open(directory.resolve("journal"))) {
+            journal.recordUpdated(Path.of("/in/a"), Path.of("/out/a"), "node-a", "parent", 7);
+            journal.recordMoved(Path.of("/in/b"), Path.of("/out/b"), "node-b", "parent", null);
+
+            List<MigrationJournal.Entry> moves = journal.getPendingMoves();
+            List<MigrationJournal.Entry> updates = journal.getPendingUpdates();
+
+            assertEquals(1, moves.size());
+            assertEquals("node-a", moves.get(0).getNodeId());
+            assertEquals(Integer.valueOf(7), moves.get(0).getVersionLock());
+            assertEquals(1, updates.size());
+            assertEquals("node-b", updates.get(0).getNodeId());
+            assertNull(updates.get(0).getVersionLock());
+        }
+    }
+
+    @Test
+    void tornRecordEndsReplayAndIsOverwritten() throws IOException {
+        Path file = directory.resolve("journal");
+
+        try (MigrationJournal journal = MigrationJournal.open(file)) {
+            journal.recordMoved(Path.of("/in/a"), Path.of("/out/a"), null, null, null);
+            journal.recordMoved(Path.of("/in/b"), Path.of("/out/b"), null, null, null);
+        }
+
+        // corrupt the body of the second record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            long second = 8 + length.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), second + 8 + 1);
+        }
+
+        try (MigrationJournal journal = MigrationJournal.open(file)) {
+            assertThrows(NodeAlreadyProcessed.class, () -> journal.checkNotProcessed(Path.of("/in/a")));
+            assertDoesNotThrow(() -> journal.checkNotProcessed(Path.of("/in/b")));
+            journal.recordMoved(Path.of("/in/c"), Path.of("/out/c"), null, null, null);
+        }
+
+        try (MigrationJournal journal = MigrationJournal.open(file)) {
+            assertThrows(NodeAlreadyProcessed.class, () -> journal.checkNotProcessed(Path.of("/in/a")));
+            assertDoesNotThrow(() -> journal.checkNotProcessed(Path.of("/in/b")));
+            assertThrows(NodeAlreadyProcessed.class, () -> journal.checkNotProcessed(Path.of("/in/c")));
+        }
+    }
+
+    @Test
+    void retiredJournalIsNotReplayed() throws IOException {
+        Path file = directory.resolve("journal");
+
+        MigrationJournal journal = MigrationJournal.open(file);
+        journal.recordMoved(Path.of("/in/a"), Path.of("/out/a"), "node-a", "parent", null);
+        assertFalse(journal.isComplete());
+        journal.recordUpdated(Path.of("/in/a"), Path.of("/out/a"), "node-a", "parent", 3);
+        assertTrue(journal.isComplete());
+
+        journal.retire();
+        assertFalse(Files.exists(file));
+
+        try (MigrationJournal next = MigrationJournal.open(file)) {
+            assertDoesNotThrow(() -> next.checkNotProcessed(Path.of("/in/a")));
+            assertTrue(next.getNodeIds().isEmpty());
+        }
+    }
+
+    @Test
+    void recordsAfterCloseFail() throws IOException {
+        MigrationJournal journal = MigrationJournal.open(directory.resolve("journal"));
+        journal.close();
+
+        assertThrows(IOException.class, () -> journal.recordUpdated(Path.of("/in/a"), Path.of("/out/a"), "node-a", "parent", 3));
+    }
+}
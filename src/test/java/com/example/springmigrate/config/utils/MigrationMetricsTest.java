@@ -0,0 +1,101 @@
+package com.example.springmigrate.config.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationMetricsTest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void countersAreScrapedByNameAndLabels() {
+        MigrationMetrics metrics = new MigrationMetrics();
+
+        metrics.add(MigrationMetrics.FILES, 10, "result", "scanned");
+        metrics.increment(MigrationMetrics.FILES, "result", "matched");
+        metrics.increment(MigrationMetrics.FILES, "result", "matched");
+
+        String text = metrics.scrape();
+
+        assertTrue(text.contains("# TYPE migration_files_total counter\n"));
+        assertTrue(text.contains("migration_files_total{result=\"scanned\"} 10\n"));
+        assertTrue(text.contains("migration_files_total{result=\"matched\"} 2\n"));
+        assertEquals(1, text.split("# TYPE migration_files_total").length - 1);
+    }
+
+    @Test
+    void timersKeepCountSumAndMax() {
+        MigrationMetrics metrics = new MigrationMetrics();
+
+        metrics.record(MigrationMetrics.API_REQUESTS, TimeUnit.MILLISECONDS.toNanos(100), "endpoint", "files", "status", "200");
+        metrics.record(MigrationMetrics.API_REQUESTS, TimeUnit.MILLISECONDS.toNanos(300), "endpoint", "files", "status", "200");
+
+        Map<String, Double> snapshot = metrics.snapshot();
+        String key = "{endpoint=\"files\",status=\"200\"}";
+
+        assertEquals(2.0, snapshot.get(MigrationMetrics.API_REQUESTS + "_count" + key), 1e-9);
+        assertEquals(0.4, snapshot.get(MigrationMetrics.API_REQUESTS + "_sum" + key), 1e-9);
+        assertEquals(0.3, snapshot.get(MigrationMetrics.API_REQUESTS + "_max" + key), 1e-9);
+        assertTrue(metrics.scrape().contains("# TYPE migration_api_request_seconds summary\n"));
+    }
+
+    @Test
+    void gaugesAreReadWhenScraped() {
+        MigrationMetrics metrics = new MigrationMetrics();
+        AtomicInteger depth = new AtomicInteger(3);
+
+        metrics.gauge(MigrationMetrics.QUEUE_DEPTH, depth::get, "queue", "update");
+        assertTrue(metrics.scrape().contains("migration_queue_depth{queue=\"update\"} 3\n"));
+
+        depth.set(7);
+        assertTrue(metrics.scrape().contains("migration_queue_depth{queue=\"update\"} 7\n"));
+
+        metrics.remove(MigrationMetrics.QUEUE_DEPTH, "queue", "update");
+        assertFalse(metrics.scrape().contains("migration_queue_depth"));
+    }
+
+    @Test
+    void labelsMustBePairs() {
+        MigrationMetrics metrics = new MigrationMetrics();
+
+        assertThrows(IllegalArgumentException.class, () -> metrics.increment(MigrationMetrics.FILES, "result"));
+    }
+
+    @Test
+    void stopWritesTheFileAndUnregistersTheMBean() throws Exception {
+        MigrationMetrics metrics = new MigrationMetrics();
+        Path file = temp.resolve("migration.prom");
+        ObjectName name = new ObjectName(MigrationMetrics.OBJECT_NAME);
+
+        metrics.start(file, 3600);
+        metrics.increment(MigrationMetrics.FILES, "result", "failed");
+
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertEquals(1.0, ((Number) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "migration_files_total{result=\"failed\"}")).doubleValue(), 1e-9);
+
+        metrics.stop();
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        assertTrue(read(file).contains("migration_files_total{result=\"failed\"} 1\n"));
+        assertFalse(Files.exists(temp.resolve("migration.prom.part")));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
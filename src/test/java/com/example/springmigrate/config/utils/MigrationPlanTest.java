@@ -0,0 +1,81 @@
+package com.example.springmigrate.config.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationPlanTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void planIsReadAsWritten() throws IOException {
+        Path file = directory.resolve("plan");
+        MigrationPlan plan = plan();
+
+        plan.write(file);
+        MigrationPlan read = MigrationPlan.read(file);
+
+        assertEquals(Path.of("/data/old"), read.getFoundDirectory());
+        assertEquals(Path.of("/data/old/notfound/database"), read.getNotFoundDirectory());
+        assertEquals("notfound", read.getNotFoundNodeId());
+        assertEquals(Arrays.asList(Path.of("/in/a"), Path.of("/in/b")), read.getSourceDirectories());
+        assertEquals(plan.getCounts(), read.getCounts());
+
+        List<MigrationPlan.Step> files = read.getSteps(MigrationPlan.Kind.FILE);
+        assertEquals(2, files.size());
+        assertEquals("/in/a/5f0c", files.get(0).getSource());
+        assertEquals("/data/old/report.pdf", files.get(0).getTarget());
+        assertEquals("node", files.get(0).getNodeId());
+        assertEquals("old", files.get(0).getParentId());
+        assertNull(files.get(1).getNodeId());
+        assertNull(files.get(1).getParentId());
+
+        MigrationPlan.Step root = read.getSteps(MigrationPlan.Kind.RECREATE_ROOT).get(0);
+        assertEquals("/", root.getSource());
+        assertEquals("old", root.getNodeId());
+    }
+
+    @Test
+    void truncatedPlanIsRejected() throws IOException {
+        Path file = directory.resolve("plan");
+        plan().write(file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        assertThrows(IOException.class, () -> MigrationPlan.read(file));
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = directory.resolve("plan");
+        Files.write(file, "not a plan".getBytes());
+
+        assertThrows(IOException.class, () -> MigrationPlan.read(file));
+    }
+
+    private static MigrationPlan plan() {
+        MigrationPlan plan = new MigrationPlan(
+                Path.of("/data/old"),
+                Path.of("/data/old/notfound/database"),
+                "notfound",
+                Arrays.asList(Path.of("/in/a"), Path.of("/in/b")));
+
+        plan.add(MigrationPlan.Step.file(Path.of("/in/a/5f0c"), Path.of("/data/old/report.pdf"), "node", "old"));
+        plan.add(MigrationPlan.Step.file(Path.of("/in/b/scan.tif"), Path.of("/data/old/notfound/database/scan.tif"), null, null));
+        plan.add(MigrationPlan.Step.unlinkFile("lost", "notfound"));
+        plan.add(MigrationPlan.Step.recreateRoot("/", "old"));
+        plan.add(MigrationPlan.Step.deleteDirectory("legacy"));
+
+        return plan;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationUtilsTest {
+
+    @Test
+    void onlyCanonicalUuidsAreValid() {
+        for (int i = 0; i < 1000; i++) {
+            String uuid = UUID.randomUUID().toString();
+            assertTrue(MigrationUtils.isValidUUID(uuid));
+            assertTrue(MigrationUtils.isValidUUID(uuid.toUpperCase()));
+        }
+
+        assertFalse(MigrationUtils.isValidUUID(null));
+        assertFalse(MigrationUtils.isValidUUID(""));
+        assertFalse(MigrationUtils.isValidUUID("document-0000001.pdf"));
+        assertFalse(MigrationUtils.isValidUUID("1-2-3-4-5"));
+        assertFalse(MigrationUtils.isValidUUID("123e4567-e89b-12d3-a456-42661417400g"));
+        assertFalse(MigrationUtils.isValidUUID("123e4567-e89b-12d3-a456_426614174000"));
+        assertFalse(MigrationUtils.isValidUUID("123e4567-e89b-12d3-a456-4266141740000"));
+    }
+
+    @Test
+    void extensionIsFoundWithoutJoiningNameAndExtension() {
+        Path parent = Paths.get("data");
+
+        assertTrue(new FilePhysical("report", ".pdf", parent.resolve("report.pdf")).isFullNameWithExtension());
+        assertTrue(file("report.pdf", null).isFullNameWithExtension());
+        assertFalse(file("report", null).isFullNameWithExtension());
+        assertFalse(file("report.", null).isFullNameWithExtension());
+        assertFalse(file("report.  ", null).isFullNameWithExtension());
+        assertFalse(file(UUID.randomUUID().toString(), null).isFullNameWithExtension());
+        assertTrue(file("report", ".txt").isFullNameWithExtension());
+    }
+
+    @Test
+    void logicalRepresentationMatchesNameAndPathBase() {
+        Map<String, String> mimeTypes = Collections.singletonMap("application/pdf", ".pdf");
+        Path parent = Paths.get("opt", "documents", "1");
+
+        FilePhysical physical = FilePhysical.builder()
+                .name("report.pdf")
+                .parentDirectory(new DirectoryPhysical(parent))
+                .build();
+
+        FileNodeDto node = new FileNodeDto();
+        node.setName("Report");
+        node.setMimeType("application/pdf");
+        node.setPathBase(File.separator + parent + File.separator);
+
+        assertTrue(MigrationUtils.isLogicalRepresentationOfDirectory(node, physical, mimeTypes));
+
+        node.setPathBase(Paths.get("opt", "documents", "2").toString());
+        assertFalse(MigrationUtils.isLogicalRepresentationOfDirectory(node, physical, mimeTypes));
+
+        node.setPathBase(parent.toString());
+        node.setName("Other");
+        assertFalse(MigrationUtils.isLogicalRepresentationOfDirectory(node, physical, mimeTypes));
+
+        node.setName("report");
+        node.setMimeType("image/png");
+        assertFalse(MigrationUtils.isLogicalRepresentationOfDirectory(node, physical, mimeTypes));
+    }
+
+    @Test
+    void basePathIsTheParentPath() {
+        Path path = Paths.get("opt", "documents", "1");
+
+        assertEquals(path.getParent().toString(), new DirectoryPhysical(path).getBasePath());
+        assertEquals(new DirectoryPhysical(path).getParent().getFullPath(), new DirectoryPhysical(path).getBasePath());
+    }
+
+    private static FilePhysical file(String name, String extension) {
+        return FilePhysical.builder()
+                .name(name)
+                .extension(extension)
+                .parentDirectory(new DirectoryPhysical(Paths.get("data")))
+                .build();
+    }
+}
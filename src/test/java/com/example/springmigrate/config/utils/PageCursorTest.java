@@ -0,0 +1,92 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.dto.PaginatedListDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void streamReadsAllPagesInOrder() {
+        List<Integer> items = IntStream.range(0, 50_000).boxed().collect(Collectors.toList());
+
+        List<Integer> read = PageCursor.stream(pages(items, new ArrayList<>())).collect(Collectors.toList());
+
+        assertEquals(items, read);
+    }
+
+    @Test
+    void pageSizeGrowsOnlyAtPageBoundaries() {
+        List<Integer> items = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        List<int[]> requests = new ArrayList<>();
+
+        PageCursor.stream(pages(items, requests)).forEach(i -> { });
+
+        for (int[] request : requests) {
+            assertTrue(request[1] >= PageCursor.MIN_PAGE_SIZE && request[1] <= PageCursor.MAX_PAGE_SIZE);
+        }
+        assertTrue(requests.get(requests.size() - 1)[1] > PageCursor.INITIAL_PAGE_SIZE);
+    }
+
+    @Test
+    void pageSizeShrinksOnLargePayload() {
+        List<Integer> items = IntStream.range(0, 4096).boxed().collect(Collectors.toList());
+        List<int[]> requests = new ArrayList<>();
+
+        PageCursor.PageFetcher<Integer> fetcher = pages(items, requests);
+        PageCursor<Integer> cursor = new PageCursor<>((page, size) ->
+                new SizedPage<>(fetcher.fetch(page, size).getPage(), PageCursor.MAX_PAGE_BYTES + 1));
+
+        List<Integer> read = new ArrayList<>();
+        cursor.forEachRemaining(read::add);
+
+        assertEquals(items, read);
+        assertEquals(PageCursor.INITIAL_PAGE_SIZE / 2, requests.get(1)[1]);
+    }
+
+    @Test
+    void emptyResultStopsWithoutItems() {
+        assertEquals(0, PageCursor.stream(pages(new ArrayList<Integer>(), new ArrayList<>())).count());
+    }
+
+    @Test
+    void failedPageThrowsUncheckedIOException() {
+        PageCursor<Integer> cursor = new PageCursor<>((page, size) -> null);
+
+        assertThrows(UncheckedIOException.class, cursor::hasNext);
+    }
+
+    @Test
+    void ioExceptionIsWrapped() {
+        PageCursor<Integer> cursor = new PageCursor<>((page, size) -> {
+            throw new IOException("timeout");
+        });
+
+        UncheckedIOException ex = assertThrows(UncheckedIOException.class, cursor::hasNext);
+        assertEquals("timeout", ex.getCause().getMessage());
+    }
+
+    private static PageCursor.PageFetcher<Integer> pages(List<Integer> items, List<int[]> requests) {
+        return (page, size) -> {
+            requests.add(new int[]{page, size});
+
+            int from = Math.min(items.size(), page * size);
+            int to = Math.min(items.size(), from + size);
+
+            PaginatedListDto<Integer> result = new PaginatedListDto<>();
+            result.setResults(new ArrayList<>(items.subList(from, to)));
+            result.setPage(page);
+            result.setSize(size);
+            result.setRowNum(items.size());
+            return new SizedPage<>(result, 0);
+        };
+    }
+}
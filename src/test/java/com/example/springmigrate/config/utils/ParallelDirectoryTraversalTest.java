@@ -0,0 +1,86 @@
+package com.example.springmigrate.config.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelDirectoryTraversalTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void processesEveryFileOnceInChunks() throws IOException {
+        for (int d = 0; d < 5; d++) {
+            Path directory = Files.createDirectories(root.resolve("d" + d).resolve("nested"));
+            for (int f = 0; f < 25; f++) {
+                Files.createFile(directory.resolve("f" + f));
+                Files.createFile(directory.getParent().resolve("f" + f));
+            }
+        }
+
+        Set<Path> processed = ConcurrentHashMap.newKeySet();
+        List<Integer> chunkSizes = new ArrayList<>();
+
+        new ParallelDirectoryTraversal(4, 10).traverse(root, new ParallelDirectoryTraversal.Handler() {
+            @Override
+            public List<Path> prepareDirectories(@NotNull Path directory, @NotNull List<Path> subdirectories) {
+                return subdirectories;
+            }
+
+            @Override
+            public void processFiles(@NotNull Path directory, @NotNull List<Path> files) {
+                synchronized (chunkSizes) {
+                    chunkSizes.add(files.size());
+                }
+                for (Path file : files) {
+                    assertEquals(directory, file.getParent());
+                    assertTrue(processed.add(file));
+                }
+            }
+        });
+
+        assertEquals(250, processed.size());
+        assertTrue(chunkSizes.stream().allMatch(size -> size <= 10));
+    }
+
+    @Test
+    void traversesPreparedDirectories() throws IOException {
+        Files.createFile(Files.createDirectories(root.resolve("uuid")).resolve("file"));
+
+        Set<Path> processed = ConcurrentHashMap.newKeySet();
+
+        new ParallelDirectoryTraversal(2, 10).traverse(root, new ParallelDirectoryTraversal.Handler() {
+            @Override
+            public List<Path> prepareDirectories(@NotNull Path directory, @NotNull List<Path> subdirectories) {
+                List<Path> renamed = new ArrayList<>();
+                for (Path subdirectory : subdirectories) {
+                    try {
+                        renamed.add(Files.move(subdirectory, subdirectory.resolveSibling("name")));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+                return renamed;
+            }
+
+            @Override
+            public void processFiles(@NotNull Path directory, @NotNull List<Path> files) {
+                processed.addAll(files);
+            }
+        });
+
+        assertEquals(Set.of(root.resolve("name").resolve("file")), processed);
+    }
+}
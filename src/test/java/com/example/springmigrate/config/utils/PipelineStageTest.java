@@ -0,0 +1,118 @@
+package com.example.springmigrate.config.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineStageTest {
+
+    @Test
+    void processesAllItemsThroughStages() throws InterruptedException {
+        StagedPipeline pipeline = new StagedPipeline("test", 0);
+        Set<Integer> results = ConcurrentHashMap.newKeySet();
+
+        PipelineStage<Integer> last = pipeline.addStage("last", 2, 4, results::add);
+        PipelineStage<Integer> first = pipeline.addStage("first", 3, 4, item -> last.submit(item * 2));
+
+        for (int i = 0; i < 100; i++) {
+            first.submit(i);
+        }
+        pipeline.finish();
+
+        assertEquals(100, results.size());
+        assertTrue(results.contains(198));
+        assertEquals(100, first.getProcessed());
+        assertEquals(100, last.getProcessed());
+
+        List<PipelineStage<?>> stages = pipeline.getStages();
+        assertSame(first, stages.get(0));
+        assertSame(last, stages.get(1));
+    }
+
+    @Test
+    void failuresAreCountedAndDoNotStopTheStage() throws InterruptedException {
+        PipelineStage<Integer> stage = new PipelineStage<>("failing", 2, 10, item -> {
+            if (item % 2 == 0) {
+                throw new IllegalStateException("even");
+            }
+        });
+
+        for (int i = 0; i < 10; i++) {
+            stage.submit(i);
+        }
+        stage.finish();
+
+        assertEquals(10, stage.getProcessed());
+        assertEquals(5, stage.getFailed());
+    }
+
+    @Test
+    void interruptedWorkerStopsItsThread() throws InterruptedException {
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        PipelineStage<Integer> stage = new PipelineStage<>("interrupted", 1, 10, item -> {
+            processed.add(item);
+            if (item == 1) {
+                throw new InterruptedException();
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            stage.submit(i);
+        }
+        stage.finish();
+
+        assertEquals(Arrays.asList(0, 1), processed);
+        assertEquals(2, stage.getProcessed());
+        assertEquals(1, stage.getFailed());
+        assertEquals(1, stage.getQueueDepth());
+    }
+
+    @Test
+    void fullQueueBlocksSubmit() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        PipelineStage<Integer> stage = new PipelineStage<>("blocked", 1, 2, item -> release.await());
+
+        // one item taken by the worker, two queued
+        for (int i = 0; i < 3; i++) {
+            stage.submit(i);
+        }
+        while (stage.getQueueDepth() < 2) {
+            Thread.sleep(10);
+        }
+
+        Thread producer = new Thread(() -> {
+            try {
+                stage.submit(3);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(200);
+
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join();
+        stage.finish();
+
+        assertEquals(4, stage.getProcessed());
+        assertEquals(0, stage.getQueueDepth());
+    }
+
+    @Test
+    void submitAfterFinishFails() throws InterruptedException {
+        PipelineStage<Integer> stage = new PipelineStage<>("finished", 1, 1, item -> {
+        });
+        stage.finish();
+
+        assertThrows(IllegalStateException.class, () -> stage.submit(1));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.springmigrate.config.utils;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.Test;
+import retrofit2.Retrofit;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetrofitClientTest {
+
+    @Test
+    void clientIsBuiltFromTheOptions() throws Exception {
+        HttpClientOptions options = new HttpClientOptions();
+        options.setMaxRequests(100);
+        options.setMaxRequestsPerHost(50);
+        options.setReadTimeoutSeconds(30);
+        options.setSendBufferSize(64 * 1024);
+
+        OkHttpClient client = new RetrofitClient(new ApiUrl("http://localhost:9004/"), new MigrationMetrics(), options).newHttpClient();
+
+        assertEquals(100, client.dispatcher().getMaxRequests());
+        assertEquals(50, client.dispatcher().getMaxRequestsPerHost());
+        assertEquals(30_000, client.readTimeoutMillis());
+        assertTrue(client.protocols().contains(Protocol.HTTP_1_1));
+
+        try (Socket socket = client.socketFactory().createSocket()) {
+            assertTrue(socket.getTcpNoDelay());
+        }
+    }
+
+    @Test
+    void http2PriorKnowledgeIsTheOnlyProtocol() {
+        HttpClientOptions options = new HttpClientOptions();
+        options.setHttp2PriorKnowledge(true);
+
+        OkHttpClient client = new RetrofitClient(new ApiUrl("http://localhost:9004/"), new MigrationMetrics(), options).newHttpClient();
+
+        assertEquals(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE), client.protocols());
+    }
+
+    @Test
+    void instanceIsCreatedOnce() throws Exception {
+        RetrofitClient retrofitClient = new RetrofitClient(new ApiUrl("http://localhost:9004/"), new MigrationMetrics(), new HttpClientOptions());
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Retrofit> instances = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 8; i++) {
+                futures.add(threads.submit(() -> {
+                    start.await();
+                    instances.add(retrofitClient.getInstance());
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(1, instances.size());
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.springmigrate.config.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardLayoutTest {
+
+    @Test
+    void flatLayoutHasNoBuckets() {
+        assertTrue(ShardLayout.FLAT.bucket("key", Instant.now()).isEmpty());
+        assertEquals(0, ShardLayout.FLAT.getDepth());
+    }
+
+    @Test
+    void hashBucketsAreStableAndSpread() {
+        Set<String> firstLevel = new HashSet<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            String key = UUID.randomUUID().toString();
+            List<String> bucket = ShardLayout.HASH.bucket(key, Instant.EPOCH);
+
+            assertEquals(bucket, ShardLayout.HASH.bucket(key.toUpperCase(), Instant.now()));
+            assertTrue(ShardLayout.HASH.isBucketName(0, bucket.get(0)));
+            assertTrue(ShardLayout.HASH.isBucketName(1, bucket.get(1)));
+            firstLevel.add(bucket.get(0));
+        }
+
+        assertEquals(256, firstLevel.size());
+        assertEquals(256, ShardLayout.HASH.bucketNames(1).size());
+    }
+
+    @Test
+    void dateBucketsAreYearAndMonth() {
+        Instant modified = LocalDateTime.of(2021, 7, 15, 10, 0).atZone(ZoneId.systemDefault()).toInstant();
+
+        assertEquals(List.of("2021", "07"), ShardLayout.DATE.bucket("key", modified));
+        assertFalse(ShardLayout.DATE.isPredefined());
+        assertFalse(ShardLayout.DATE.isBucketName(0, "notfound"));
+    }
+}
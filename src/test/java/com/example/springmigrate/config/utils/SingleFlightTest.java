@@ -0,0 +1,185 @@
+package com.example.springmigrate.config.utils;
+
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+    private static final String ENDPOINT = "IDirectoryHttpClient.findDirectoryById";
+
+    private final HttpClientOptions options = new HttpClientOptions();
+    private final MigrationMetrics metrics = new MigrationMetrics();
+    private final SingleFlight singleFlight = new SingleFlight(options, metrics);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch answer = new CountDownLatch(1);
+    private ExecutorService callers;
+
+    @BeforeEach
+    void start() {
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void stop() {
+        answer.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalLookupsShareOneRequest() throws Exception {
+        List<Future<DirectoryNodeDto>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> singleFlight.execute(ENDPOINT, "id", DirectoryNodeDto.class, this::lookup)));
+        }
+
+        awaitCoalesced(CALLERS - 1);
+        answer.countDown();
+
+        List<DirectoryNodeDto> directories = new ArrayList<>();
+        for (Future<DirectoryNodeDto> result : results) {
+            directories.add(result.get(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, requests.get());
+        assertEquals(0, singleFlight.getInFlight());
+        for (DirectoryNodeDto directory : directories) {
+            assertEquals("name", directory.getName());
+            assertEquals(1, directories.stream().filter(other -> other == directory).count());
+        }
+    }
+
+    @Test
+    void lookupsWithOtherArgumentsAreSent() throws Exception {
+        answer.countDown();
+
+        singleFlight.execute(ENDPOINT, "first", DirectoryNodeDto.class, this::lookup);
+        singleFlight.execute(ENDPOINT, "second", DirectoryNodeDto.class, this::lookup);
+        singleFlight.execute(ENDPOINT, "first", DirectoryNodeDto.class, this::lookup);
+
+        assertEquals(3, requests.get());
+        assertEquals(0.0, coalesced(), 1e-9);
+    }
+
+    @Test
+    void failuresAreSharedWithTheLookupsWaiting() throws Exception {
+        Future<DirectoryNodeDto> leader = callers.submit(() -> singleFlight.execute(ENDPOINT, "id", DirectoryNodeDto.class, () -> {
+            requests.incrementAndGet();
+            hold();
+            throw new IOException("unavailable");
+        }));
+        awaitRequests(1);
+        Future<DirectoryNodeDto> follower = callers.submit(() -> singleFlight.execute(ENDPOINT, "id", DirectoryNodeDto.class, this::lookup));
+
+        awaitCoalesced(1);
+        answer.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(10, TimeUnit.SECONDS));
+        ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(10, TimeUnit.SECONDS));
+        assertTrue(leaderError.getCause() instanceof IOException);
+        assertTrue(followerError.getCause() instanceof IOException);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void asynchronousLookupsShareOneRequest() throws Exception {
+        CompletableFuture<DirectoryNodeDto> response = new CompletableFuture<>();
+
+        CompletableFuture<DirectoryNodeDto> first = singleFlight.executeAsync(ENDPOINT, "id", DirectoryNodeDto.class, () -> {
+            requests.incrementAndGet();
+            return response;
+        });
+        CompletableFuture<DirectoryNodeDto> second = singleFlight.executeAsync(ENDPOINT, "id", DirectoryNodeDto.class, () -> {
+            requests.incrementAndGet();
+            return response;
+        });
+
+        response.complete(directory());
+
+        assertEquals("name", first.get().getName());
+        assertEquals("name", second.get().getName());
+        assertNotSame(first.get(), second.get());
+        assertEquals(1, requests.get());
+        assertEquals(1.0, coalesced(), 1e-9);
+    }
+
+    @Test
+    void lookupsAreNotCoalescedWhenDisabled() throws Exception {
+        options.setCoalesceRequests(false);
+
+        List<Future<DirectoryNodeDto>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(() -> singleFlight.execute(ENDPOINT, "id", DirectoryNodeDto.class, this::lookup)));
+        }
+
+        awaitRequests(CALLERS);
+        answer.countDown();
+
+        for (Future<DirectoryNodeDto> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(CALLERS, requests.get());
+    }
+
+    private DirectoryNodeDto lookup() throws IOException {
+        requests.incrementAndGet();
+        hold();
+        return directory();
+    }
+
+    private void hold() throws IOException {
+        try {
+            answer.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+
+    private static DirectoryNodeDto directory() {
+        DirectoryNodeDto directory = new DirectoryNodeDto();
+        directory.setId("id");
+        directory.setName("name");
+        return directory;
+    }
+
+    private double coalesced() {
+        return metrics.snapshot().entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(MigrationMetrics.API_COALESCED))
+                .mapToDouble(entry -> entry.getValue())
+                .sum();
+    }
+
+    private void awaitCoalesced(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalesced() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, coalesced(), 1e-9);
+    }
+
+    private void awaitRequests(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (requests.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, requests.get());
+    }
+}
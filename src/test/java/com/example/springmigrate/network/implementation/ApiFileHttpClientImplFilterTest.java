@@ -0,0 +1,58 @@
+package com.example.springmigrate.network.implementation;
+
+import com.example.springmigrate.benchmark.FakeApiServer;
+import com.example.springmigrate.benchmark.FakeApiStore;
+import com.example.springmigrate.config.utils.*;
+import com.example.springmigrate.dto.ContentFileNodeDto;
+import com.example.springmigrate.dto.FileFilterDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiFileHttpClientImplFilterTest {
+
+    private FakeApiServer server;
+    private ApiFileHttpClientImpl client;
+
+    @BeforeEach
+    void start() throws IOException {
+        FakeApiStore store = new FakeApiStore();
+        store.seed(2, 50, 64, 7);
+        server = new FakeApiServer(store, 0, 2);
+
+        MigrationMetrics metrics = new MigrationMetrics();
+        HttpClientOptions options = new HttpClientOptions();
+        client = new ApiFileHttpClientImpl(
+                new RetrofitClient(new ApiUrl(server.getUrl()), metrics, options),
+                new ApiCallExecutor(new MigrationOptions()),
+                new SingleFlight(options, metrics));
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void projectionsLeaveTheFilterUnchanged() throws IOException {
+        ContentFileNodeDto content = new ContentFileNodeDto();
+        content.setActive(null);
+        content.setIncludeData(true);
+        FileFilterDto filter = new FileFilterDto(content, 0, 20);
+
+        assertEquals(20, client.apiFindFileProjectionsPage(filter).getPage().getResults().size());
+        assertTrue(filter.getContent().getIncludeData());
+    }
+
+    @Test
+    void projectionsOfFilterWithoutContent() throws IOException {
+        FileFilterDto filter = new FileFilterDto(null, 0, 20);
+
+        assertNotNull(client.apiFindFileProjectionsPage(filter));
+        assertNull(filter.getContent());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.springmigrate.repository.implemantation;
+
+import com.example.springmigrate.config.utils.CacheOptions;
+import com.example.springmigrate.config.utils.MigrationMetrics;
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import com.example.springmigrate.dto.FileNodeDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedDirectoryRepositoryImplTest {
+
+    private final CacheOptions options = new CacheOptions();
+    private final MigrationMetrics metrics = new MigrationMetrics();
+    private final List<String> requests = new ArrayList<>();
+
+    private final CachedFileRepositoryImpl files = new CachedFileRepositoryImpl(
+            new FileRepositoryImpl(null) {
+                @Override
+                public FileNodeDto findFileById(String uuid) {
+                    requests.add("file " + uuid);
+                    FileNodeDto file = new FileNodeDto();
+                    file.setId(uuid);
+                    return file;
+                }
+            },
+            options,
+            metrics);
+
+    private final CachedDirectoryRepositoryImpl directories = new CachedDirectoryRepositoryImpl(
+            new DirectoryRepositoryImpl(null) {
+                @Override
+                public DirectoryNodeDto findDirectoryById(String uuid) {
+                    requests.add("directory " + uuid);
+                    DirectoryNodeDto directory = new DirectoryNodeDto();
+                    directory.setId(uuid);
+                    return directory;
+                }
+
+                @Override
+                public void deleteDirectoryHard(String uuid) {
+                    requests.add("purge " + uuid);
+                }
+            },
+            files,
+            options,
+            metrics);
+
+    @Test
+    void purgeClearsCachedDirectoriesAndFiles() throws IOException {
+        lookUp();
+
+        directories.deleteDirectoryHard("purged");
+        lookUp();
+
+        assertEquals(Arrays.asList(
+                "directory child", "file file",
+                "purge purged",
+                "directory child", "file file"), requests);
+    }
+
+    @Test
+    void truncateClearsCachedDirectoriesAndFiles() throws IOException {
+        CachedRootDirectoryRepositoryImpl roots = new CachedRootDirectoryRepositoryImpl(
+                new RootDirectoryRepositoryImpl(null) {
+                    @Override
+                    public void truncate() {
+                        requests.add("truncate");
+                    }
+                },
+                directories);
+        lookUp();
+
+        roots.truncate();
+        lookUp();
+
+        assertEquals(Arrays.asList(
+                "directory child", "file file",
+                "truncate",
+                "directory child", "file file"), requests);
+    }
+
+    /**
+     * Looks up a directory and a file twice, loaded once unless invalidated
+     */
+    private void lookUp() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            assertEquals("child", directories.findDirectoryById("child").getId());
+            assertEquals("file", files.findFileById("file").getId());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryTreeTest {
+
+    private DirectoryTree tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new DirectoryTree();
+        tree.load(Arrays.asList(
+                node("root", "documents", null, "/opt"),
+                node("a", "a", "root", "/opt/documents"),
+                node("b", "b", "a", "/opt/documents/a"),
+                node("c", "c", "b", "/opt/documents/a/b")));
+    }
+
+    @Test
+    void findsByParentAndBasePath() {
+        assertEquals("b", tree.findByParentId("b", "a").getId());
+        assertEquals("b", tree.findByBasePath("b", "/OPT/Documents/a").getId());
+        assertNull(tree.findByParentId("c", "a"));
+    }
+
+    @Test
+    void queriesReturnCopies() {
+        tree.findById("b").setParentDirectoryId("root");
+
+        assertEquals("a", tree.findById("b").getParentDirectoryId());
+        assertEquals(1, tree.findChildren("a").size());
+    }
+
+    @Test
+    void moveRecomputesDescendantsPathBase() {
+        DirectoryNodeDto moved = tree.findById("b");
+        moved.setParentDirectoryId("root");
+        moved.setPathBase(null);
+
+        tree.put(moved);
+
+        assertEquals("/opt/documents", tree.findById("b").getPathBase());
+        assertEquals("/opt/documents/b", tree.findById("c").getPathBase());
+        assertEquals("c", tree.findByBasePath("c", "/opt/documents/b").getId());
+        assertNull(tree.findByBasePath("c", "/opt/documents/a/b"));
+        assertTrue(tree.findChildren("a").isEmpty());
+    }
+
+    @Test
+    void renameRecomputesDescendantsPathBase() {
+        DirectoryNodeDto renamed = tree.findById("a");
+        renamed.setName("A2");
+
+        tree.put(renamed);
+
+        assertEquals("/opt/documents/A2/b", tree.findById("c").getPathBase());
+    }
+
+    @Test
+    void removeDropsSubtree() {
+        tree.remove("a");
+
+        assertNull(tree.findById("b"));
+        assertNull(tree.findById("c"));
+        assertTrue(tree.findChildren("root").isEmpty());
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    void inactiveNodesAreNotFoundByPath() {
+        DirectoryNodeDto inactive = node("d", "d", "root", "/opt/documents");
+        inactive.setActive(false);
+
+        tree.put(inactive);
+
+        assertNotNull(tree.findById("d"));
+        assertNull(tree.findByParentId("d", "root"));
+    }
+
+    private static DirectoryNodeDto node(String id, String name, String parentId, String pathBase) {
+        DirectoryNodeDto dto = DirectoryNodeDto.builder()
+                .active(true)
+                .name(name)
+                .parentDirectoryId(parentId)
+                .pathBase(pathBase)
+                .build();
+        dto.setId(id);
+        return dto;
+    }
+}
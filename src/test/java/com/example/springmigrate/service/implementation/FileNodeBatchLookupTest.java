@@ -0,0 +1,146 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.service.IFileLogicalService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileNodeBatchLookupTest {
+
+    private final List<List<String>> searches = new CopyOnWriteArrayList<>();
+    private final List<String> singles = new CopyOnWriteArrayList<>();
+    private final List<String> singleThreads = new CopyOnWriteArrayList<>();
+    private final Set<String> existing = new HashSet<>(Arrays.asList("a", "b", "c", "d", "e"));
+    private volatile boolean searchFails;
+    private volatile CountDownLatch sendBlocked;
+    private final ExecutorService callbacks = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "callback");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Test
+    void filesAreLookedUpOneSearchPerBatch() throws Exception {
+        FileNodeBatchLookup lookup = new FileNodeBatchLookup(service(), Arrays.asList("a", "B", "c", "d", "x"), 2);
+
+        assertEquals("a", lookup.lookup("a").get().getId());
+        assertEquals("b", lookup.lookup("b").get().getId());
+        assertEquals("c", lookup.lookup("c").get().getId());
+        assertEquals("d", lookup.lookup("d").get().getId());
+        assertNull(lookup.lookup("x").get());
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "B"), Arrays.asList("c", "d"), Collections.singletonList("x")), searches);
+        assertTrue(singles.isEmpty());
+        assertEquals(0, lookup.getBatchesKept());
+    }
+
+    @Test
+    void lookupsOutOfOrderDontRequestABatchAgain() throws Exception {
+        FileNodeBatchLookup lookup = new FileNodeBatchLookup(service(), Arrays.asList("a", "b", "c", "d", "e", "a"), 2);
+
+        lookup.lookup("a").get();
+        lookup.lookup("c").get();
+        lookup.lookup("e").get();
+        // stragglers of the first batches, announced twice
+        lookup.lookup("d").get();
+        lookup.lookup("b").get();
+        lookup.lookup("a").get();
+
+        assertEquals(3, searches.size());
+        assertTrue(singles.isEmpty());
+        assertEquals(0, lookup.getBatchesKept());
+
+        // looked up more times than announced, or not announced
+        assertEquals("a", lookup.lookup("a").get().getId());
+        assertNull(lookup.lookup("z").get());
+        assertEquals(Arrays.asList("a", "z"), singles);
+        assertEquals(3, searches.size());
+    }
+
+    @Test
+    void failedSearchFallsBackToSingleRequests() throws Exception {
+        searchFails = true;
+        FileNodeBatchLookup lookup = new FileNodeBatchLookup(service(), Arrays.asList("a", "b", "x"), 3);
+
+        assertEquals("a", lookup.lookup("a").get().getId());
+        assertEquals("b", lookup.lookup("b").get().getId());
+        assertNull(lookup.lookup("x").get());
+
+        assertEquals(1, searches.size());
+        assertEquals(Arrays.asList("a", "b", "x"), singles);
+        // never sent by the thread completing the search
+        assertFalse(singleThreads.contains("callback"));
+    }
+
+    @Test
+    void lookupsDontWaitForTheSearchOfAnotherBatch() throws Exception {
+        sendBlocked = new CountDownLatch(1);
+        FileNodeBatchLookup lookup = new FileNodeBatchLookup(service(), Arrays.asList("a", "b", "c", "d"), 2);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // sending the first search blocks, like a full API window
+            Future<CompletableFuture<FileNodeDto>> blocked = executor.submit(() -> lookup.lookup("a"));
+            while (searches.isEmpty()) {
+                Thread.sleep(5);
+            }
+
+            assertEquals("c", lookup.lookup("c").get(5, TimeUnit.SECONDS).getId());
+            assertFalse(blocked.isDone());
+
+            sendBlocked.countDown();
+            assertEquals("a", blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS).getId());
+        } finally {
+            sendBlocked.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Service searching the existing files, the first search blocks until released if a latch is set
+     */
+    private IFileLogicalService service() {
+        return ServiceStub.of(IFileLogicalService.class)
+                .when("findFilesByIdsAsync", args -> {
+                    @SuppressWarnings("unchecked")
+                    List<String> ids = (List<String>) args[0];
+                    searches.add(ids);
+
+                    CountDownLatch latch = sendBlocked;
+                    if (latch != null && searches.size() == 1 && !latch.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Not released");
+                    }
+                    if (searchFails) {
+                        return CompletableFuture.supplyAsync(() -> {
+                            throw new CompletionException(new IOException("search failed"));
+                        }, callbacks);
+                    }
+
+                    List<FileNodeDto> found = new ArrayList<>();
+                    for (String id : ids) {
+                        if (existing.contains(id.toLowerCase())) {
+                            found.add(node(id.toLowerCase()));
+                        }
+                    }
+                    return CompletableFuture.completedFuture(found);
+                })
+                .when("findFileByIdAsync", args -> {
+                    String id = (String) args[0];
+                    singles.add(id);
+                    singleThreads.add(Thread.currentThread().getName());
+                    return CompletableFuture.completedFuture(existing.contains(id) ? node(id) : null);
+                })
+                .build();
+    }
+
+    private static FileNodeDto node(String id) {
+        FileNodeDto dto = new FileNodeDto();
+        dto.setId(id);
+        return dto;
+    }
+}
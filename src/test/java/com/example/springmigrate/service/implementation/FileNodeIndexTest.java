@@ -0,0 +1,69 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.dto.FileNodeProjectionDto;
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileNodeIndexTest {
+
+    private FileNodeIndex index;
+    private FilePhysical filePhysical;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, String> mimeTypes = new HashMap<>();
+        mimeTypes.put("application/pdf", ".pdf");
+
+        index = new FileNodeIndex(mimeTypes);
+        filePhysical = FilePhysical.builder()
+                .name("report.pdf")
+                .parentDirectory(new DirectoryPhysical(Paths.get("/opt", "documents")))
+                .build();
+    }
+
+    @Test
+    void claimMatchesNameWithExtensionFromMimeType() {
+        FileNodeProjectionDto dto = node("1", "report", "/opt/documents");
+        index.add(dto);
+
+        assertSame(dto, index.claim(filePhysical, d -> false));
+    }
+
+    @Test
+    void claimMatchesOnlyOnce() {
+        index.add(node("1", "report.pdf", "/opt/documents"));
+
+        assertNotNull(index.claim(filePhysical, d -> false));
+        assertNull(index.claim(filePhysical, d -> false));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void claimSkipsProcessedNodes() {
+        FileNodeProjectionDto processed = node("1", "report.pdf", "/opt/documents");
+        FileNodeProjectionDto pending = node("2", "report.pdf", "/opt/documents");
+        index.add(processed);
+        index.add(pending);
+
+        assertSame(pending, index.claim(filePhysical, d -> d == processed));
+    }
+
+    @Test
+    void claimIgnoresNodesInOtherDirectories() {
+        index.add(node("1", "report.pdf", "/opt/other"));
+
+        assertNull(index.claim(filePhysical, d -> false));
+    }
+
+    private FileNodeProjectionDto node(String id, String name, String pathBase) {
+        return new FileNodeProjectionDto(id, name, "application/pdf", "parent", pathBase, 0);
+    }
+}
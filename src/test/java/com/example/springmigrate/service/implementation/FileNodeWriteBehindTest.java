@@ -0,0 +1,102 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.dto.FileNodeDto;
+import com.example.springmigrate.service.IFileLogicalService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileNodeWriteBehindTest {
+
+    private final List<FileNodeDto> written = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void queuedUpdatesOfSameNodeAreCoalesced() throws Exception {
+        FileNodeWriteBehind writeBehind = new FileNodeWriteBehind(service(), 1, 100);
+
+        CompletableFuture<FileNodeDto> a1 = writeBehind.submit(node("a", "a1", 1));
+        waitForWrites(1);
+        CompletableFuture<FileNodeDto> b1 = writeBehind.submit(node("b", "b1", 1));
+        CompletableFuture<FileNodeDto> b2 = writeBehind.submit(node("b", "b2", 1));
+        CompletableFuture<FileNodeDto> a2 = writeBehind.submit(node("a", "a2", 1));
+
+        release.countDown();
+        writeBehind.close();
+
+        assertSame(b1, b2);
+        assertEquals("b2", b1.get().getName());
+        assertEquals("a1", a1.get().getName());
+        assertEquals("a2", a2.get().getName());
+        assertEquals(3, written.size());
+        // written after the request in flight, over the version it returned
+        assertEquals("a2", written.get(2).getName());
+        assertEquals(Integer.valueOf(2), written.get(2).getVersionLock());
+        assertEquals(1, writeBehind.getCoalesced());
+        assertEquals(0, writeBehind.getPending());
+    }
+
+    @Test
+    void submitBlocksWhileQueueIsFull() throws Exception {
+        FileNodeWriteBehind writeBehind = new FileNodeWriteBehind(service(), 1, 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            writeBehind.submit(node("a", "a", 1));
+            Future<CompletableFuture<FileNodeDto>> blocked = executor.submit(() -> writeBehind.submit(node("b", "b", 1)));
+
+            assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertEquals("b", blocked.get(5, TimeUnit.SECONDS).get().getName());
+            writeBehind.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closedWriteBehindRejectsUpdates() throws Exception {
+        FileNodeWriteBehind writeBehind = new FileNodeWriteBehind(service(), 2, 10);
+        release.countDown();
+        writeBehind.close();
+
+        assertThrows(IllegalStateException.class, () -> writeBehind.submit(node("a", "a", 1)));
+    }
+
+    private void waitForWrites(int count) throws InterruptedException {
+        while (written.size() < count) {
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Service whose updates wait for the release latch and increase the version
+     */
+    private IFileLogicalService service() {
+        return ServiceStub.of(IFileLogicalService.class)
+                .when("updateFile", args -> {
+                    FileNodeDto dto = (FileNodeDto) args[0];
+                    written.add(node(dto.getId(), dto.getName(), dto.getVersionLock()));
+
+                    if (!release.await(5, TimeUnit.SECONDS)) {
+                        throw new IOException("Not released");
+                    }
+
+                    return node(dto.getId(), dto.getName(), dto.getVersionLock() + 1);
+                })
+                .build();
+    }
+
+    private static FileNodeDto node(String id, String name, Integer versionLock) {
+        FileNodeDto dto = new FileNodeDto();
+        dto.setId(id);
+        dto.setName(name);
+        dto.setVersionLock(versionLock);
+        return dto;
+    }
+}
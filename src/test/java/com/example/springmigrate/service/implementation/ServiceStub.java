@@ -0,0 +1,78 @@
+package com.example.springmigrate.service.implementation;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test double of a service interface answering the stubbed methods, any other call fails
+ *
+ * @param <T> service interface
+ */
+final class ServiceStub<T> {
+
+    /**
+     * Answer of a stubbed method, called with the arguments of the invocation
+     */
+    @FunctionalInterface
+    interface Answer {
+        Object answer(Object[] args) throws Exception;
+    }
+
+    private final Class<T> type;
+    private final Map<String, Answer> answers = new HashMap<>();
+
+    private ServiceStub(Class<T> type) {
+        this.type = type;
+    }
+
+    static <T> ServiceStub<T> of(Class<T> type) {
+        return new ServiceStub<>(type);
+    }
+
+    /**
+     * Stubs every overload of a method
+     *
+     * @param method method name, must be declared by the interface
+     * @param answer answer of the calls
+     * @return this stub
+     */
+    ServiceStub<T> when(String method, Answer answer) {
+        if (Arrays.stream(type.getMethods()).noneMatch(declared -> declared.getName().equals(method))) {
+            throw new IllegalArgumentException(type.getSimpleName() + " has no method " + method);
+        }
+        answers.put(method, answer);
+        return this;
+    }
+
+    T build() {
+        Map<String, Answer> stubbed = new HashMap<>(answers);
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class[]{type},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return objectMethod(proxy, method, args);
+                    }
+
+                    Answer answer = stubbed.get(method.getName());
+                    if (answer == null) {
+                        throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+                    }
+                    return answer.answer(args);
+                }));
+    }
+
+    private Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return type.getSimpleName() + " stub";
+        }
+    }
+}
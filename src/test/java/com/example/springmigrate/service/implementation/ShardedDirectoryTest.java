@@ -0,0 +1,168 @@
+package com.example.springmigrate.service.implementation;
+
+import com.example.springmigrate.config.utils.ShardLayout;
+import com.example.springmigrate.dto.DirectoryNodeDto;
+import com.example.springmigrate.dto.PhysicalLogicalDirectoryDto;
+import com.example.springmigrate.model.DirectoryPhysical;
+import com.example.springmigrate.model.FilePhysical;
+import com.example.springmigrate.service.IDirectoryLogicalService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedDirectoryTest {
+
+    private static final int BUCKETS = 256 + 256 * 256;
+
+    @TempDir
+    Path directory;
+
+    // logical path of every node
+    private final Map<String, DirectoryNodeDto> nodes = new HashMap<>();
+    private final List<Integer> createAllRequests = new ArrayList<>();
+    private final List<String> singleRequests = new ArrayList<>();
+    private final Set<String> droppedFromResponse = new HashSet<>();
+
+    @Test
+    void predefinedBucketsAreCreatedByLevelInBatches() throws IOException {
+        ShardedDirectory shards = new ShardedDirectory(ShardLayout.HASH, root(), service());
+
+        shards.prepare();
+
+        assertEquals(BUCKETS, shards.size());
+        assertEquals(1 + 256 * 256 / ShardedDirectory.CREATE_BATCH_SIZE, createAllRequests.size());
+        assertTrue(createAllRequests.stream().allMatch(size -> size <= ShardedDirectory.CREATE_BATCH_SIZE));
+        assertTrue(singleRequests.isEmpty());
+        assertTrue(Files.isDirectory(directory.resolve("old/3f/a0")));
+
+        PhysicalLogicalDirectoryDto bucket = shards.bucketFor("node", file());
+        assertTrue(shards.isBucket(bucket.getNode().getId()));
+        assertEquals(nodes.get(logicalPath(bucket.getNode())).getId(), bucket.getNode().getId());
+        assertTrue(singleRequests.isEmpty());
+    }
+
+    @Test
+    void existingBucketsAreReused() throws IOException {
+        new ShardedDirectory(ShardLayout.HASH, root(), service()).prepare();
+        String existing = nodes.get("/old/00/01").getId();
+        createAllRequests.clear();
+
+        ShardedDirectory shards = new ShardedDirectory(ShardLayout.HASH, root(), service());
+        shards.prepare();
+
+        assertEquals(BUCKETS, shards.size());
+        assertTrue(createAllRequests.isEmpty());
+        assertTrue(shards.isBucket(existing));
+    }
+
+    @Test
+    void bucketsMissingInTheResponseAreCreatedOneByOne() throws IOException {
+        droppedFromResponse.add("/old/7f/e0");
+        ShardedDirectory shards = new ShardedDirectory(ShardLayout.HASH, root(), service());
+
+        shards.prepare();
+
+        assertEquals(BUCKETS, shards.size());
+        assertEquals(Arrays.asList("find /old/7f/e0", "create /old/7f/e0"), singleRequests);
+    }
+
+    @Test
+    void bucketsDependingOnFilesAreCreatedWhenNeeded() throws IOException {
+        ShardedDirectory shards = new ShardedDirectory(ShardLayout.DATE, root(), service());
+        shards.prepare();
+        assertEquals(0, shards.size());
+
+        FilePhysical file = file();
+        Files.setLastModifiedTime(file.getAbsolutePath(), FileTime.from(Instant.parse("2021-07-15T12:00:00Z")));
+
+        PhysicalLogicalDirectoryDto bucket = shards.bucketFor("node", file);
+        PhysicalLogicalDirectoryDto again = shards.bucketFor("other", file);
+
+        assertSame(bucket, again);
+        assertEquals(2, shards.size());
+        assertEquals("/old/2021", bucket.getNode().getPathBase());
+        assertTrue(Files.isDirectory(directory.resolve("old/2021/07")));
+        assertEquals(Arrays.asList("find /old/2021", "create /old/2021", "find /old/2021/07", "create /old/2021/07"), singleRequests);
+        assertTrue(createAllRequests.isEmpty());
+    }
+
+    private PhysicalLogicalDirectoryDto root() throws IOException {
+        Path old = Files.createDirectories(directory.resolve("old"));
+        DirectoryNodeDto node = nodes.computeIfAbsent("/old", path -> node("old", "/"));
+        return new PhysicalLogicalDirectoryDto(new DirectoryPhysical(old), node);
+    }
+
+    private FilePhysical file() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("in"));
+        return new FilePhysical("file", "txt", Files.write(source.resolve("file.txt"), new byte[1]));
+    }
+
+    /**
+     * Directory service keeping the nodes in memory
+     */
+    private IDirectoryLogicalService service() {
+        return ServiceStub.of(IDirectoryLogicalService.class)
+                .when("findChildrenDirectories", args -> {
+                    List<DirectoryNodeDto> children = new ArrayList<>();
+                    for (DirectoryNodeDto node : nodes.values()) {
+                        if (args[0].equals(node.getParentDirectoryId())) {
+                            children.add(node);
+                        }
+                    }
+                    return children;
+                })
+                .when("createAllDirectories", args -> {
+                    @SuppressWarnings("unchecked")
+                    List<DirectoryNodeDto> request = (List<DirectoryNodeDto>) args[0];
+                    createAllRequests.add(request.size());
+
+                    List<DirectoryNodeDto> created = new ArrayList<>();
+                    for (DirectoryNodeDto directory : request) {
+                        String path = Paths.get(directory.getPathBase(), directory.getName()).toString();
+                        DirectoryNodeDto node = create(directory.getName(), directory.getPathBase());
+                        if (!droppedFromResponse.contains(path)) {
+                            created.add(node);
+                        }
+                    }
+                    return created;
+                })
+                .when("findDirectoryByBasePath", args -> {
+                    singleRequests.add("find " + Paths.get((String) args[1], (String) args[0]));
+                    // created but missing in the response, not found by this lookup
+                    String found = Paths.get((String) args[1], (String) args[0]).toString();
+                    return droppedFromResponse.contains(found) ? null : nodes.get(found);
+                })
+                .when("createDirectory", args -> {
+                    singleRequests.add("create " + Paths.get((String) args[1], (String) args[0]));
+                    return create((String) args[0], (String) args[1]);
+                })
+                .build();
+    }
+
+    private DirectoryNodeDto create(String name, String pathBase) {
+        return nodes.computeIfAbsent(Paths.get(pathBase, name).toString(), path -> node(name, pathBase));
+    }
+
+    private DirectoryNodeDto node(String name, String pathBase) {
+        DirectoryNodeDto parent = nodes.get(pathBase);
+        DirectoryNodeDto node = new DirectoryNodeDto();
+        node.setId(UUID.randomUUID().toString());
+        node.setName(name);
+        node.setPathBase(pathBase);
+        node.setParentDirectoryId(parent == null ? null : parent.getId());
+        return node;
+    }
+
+    private static String logicalPath(DirectoryNodeDto node) {
+        return Paths.get(node.getPathBase(), node.getName()).toString();
+    }
+}